@@ -0,0 +1,230 @@
+package com.library.jmh;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every benchmark in this package and checks the results against a stored baseline.
+ *
+ * Each benchmark runs in throughput mode for ops/s and in sample mode for the 99th percentile,
+ * with the GC profiler reporting bytes allocated per operation. Results are written to
+ * jmh.results.
+ *
+ * Raw ops/s and p99 depend on the machine, so the gate compares them relative to
+ * ReferenceBenchmark, measured in the same run: a benchmark fails if its throughput or p99 as a
+ * multiple of the reference moved by more than jmh.tolerance from the baseline (jmh.baseline).
+ * Bytes allocated do not depend on the machine but do on the JIT, so they are only compared
+ * when the baseline was recorded on the same Java feature release. The run also fails when the
+ * baseline is missing or has no entry for a benchmark, so a gate without numbers never passes
+ * by default. With jmh.updateBaseline=true the results replace the baseline instead. Run with
+ * {@code mvn verify -Pjmh}.
+ */
+public final class BenchmarkRunner {
+
+    private static final String REFERENCE = "ReferenceBenchmark.mixedWork";
+    private static final String[] DATASET_PROPERTIES = {"jmh.books", "jmh.readers", "jmh.loansPerReader", "jmh.seed"};
+    // Allocation barely varies between runs, but a few bytes of noise on a tiny number should not fail
+    private static final double ALLOC_TOLERANCE = 0.10;
+    private static final double ALLOC_SLACK_BYTES = 64;
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path baselinePath = Paths.get(System.getProperty("jmh.baseline", "src/jmh/resources/jmh-baseline.properties"));
+        Path resultsPath = Paths.get(System.getProperty("jmh.results", "target/jmh-results.properties"));
+        double tolerance = Double.parseDouble(System.getProperty("jmh.tolerance", "0.25"));
+        boolean updateBaseline = Boolean.getBoolean("jmh.updateBaseline");
+
+        Map<String, Measurement> measurements = run();
+        Measurement reference = measurements.get(REFERENCE);
+        if (reference == null) {
+            System.out.println(REFERENCE + " did not run; the results cannot be compared without it");
+            System.exit(1);
+        }
+        Properties results = toProperties(measurements, reference);
+        print(measurements);
+        store(results, resultsPath);
+
+        if (updateBaseline) {
+            store(results, baselinePath);
+            System.out.println("Baseline written to " + baselinePath);
+            return;
+        }
+        if (!Files.exists(baselinePath)) {
+            System.out.println("No baseline at " + baselinePath + "; run with -Djmh.updateBaseline=true to create one");
+            System.exit(1);
+        }
+
+        Properties baseline = new Properties();
+        try (Reader reader = Files.newBufferedReader(baselinePath)) {
+            baseline.load(reader);
+        }
+        List<String> regressions = compare(measurements, reference, baseline, tolerance);
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions against " + baselinePath);
+            return;
+        }
+        System.out.println("Regressions against " + baselinePath + ":");
+        for (String regression : regressions) {
+            System.out.println("  " + regression);
+        }
+        System.exit(1);
+    }
+
+    private static Map<String, Measurement> run() throws RunnerException {
+        List<String> jvmArgs = new ArrayList<>();
+        for (String name : DATASET_PROPERTIES) {
+            String value = System.getProperty(name);
+            if (value != null) jvmArgs.add("-D" + name + "=" + value);
+        }
+
+        Options options = new OptionsBuilder()
+                .include("com\\.library\\.jmh\\..*Benchmark")
+                .mode(Mode.Throughput)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(Integer.getInteger("jmh.warmups", 3))
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(Integer.getInteger("jmh.iterations", 5))
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .jvmArgsAppend(jvmArgs.toArray(new String[0]))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        Map<String, Measurement> measurements = new TreeMap<>();
+        for (RunResult result : new Runner(options).run()) {
+            String name = shortName(result.getParams().getBenchmark());
+            Measurement m = measurements.computeIfAbsent(name, k -> new Measurement());
+            if (result.getParams().getMode() == Mode.Throughput) {
+                // Scored in ops/us
+                m.opsPerSec = result.getPrimaryResult().getScore() * 1e6;
+                m.allocBytesPerOp = allocation(result);
+            } else if (result.getParams().getMode() == Mode.SampleTime) {
+                m.p99Us = result.getPrimaryResult().getStatistics().getPercentile(99);
+            }
+        }
+        return measurements;
+    }
+
+    private static double allocation(RunResult result) {
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith("gc.alloc.rate.norm")) return entry.getValue().getScore();
+        }
+        return Double.NaN;
+    }
+
+    private static List<String> compare(Map<String, Measurement> measurements, Measurement reference,
+                                        Properties baseline, double tolerance) {
+        String baselineJvm = baseline.getProperty("jvm");
+        boolean sameJvm = String.valueOf(Runtime.version().feature()).equals(baselineJvm);
+        if (!sameJvm) {
+            System.out.println("Baseline recorded on Java " + baselineJvm + ", running on " + Runtime.version().feature() +
+                    "; allocation is not compared");
+        }
+
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Measurement> entry : measurements.entrySet()) {
+            String name = entry.getKey();
+            Measurement m = entry.getValue();
+            if (name.equals(REFERENCE)) continue;
+            if (baseline.getProperty(name + ".relativeOps") == null) {
+                regressions.add(name + ": not in the baseline; record it with -Djmh.updateBaseline=true");
+                continue;
+            }
+
+            double ops = baselineValue(baseline, name + ".relativeOps");
+            double relativeOps = m.opsPerSec / reference.opsPerSec;
+            if (ops > 0 && relativeOps < ops * (1 - tolerance)) {
+                regressions.add(String.format("%s: %.4f x reference ops/s, baseline %.4f", name, relativeOps, ops));
+            }
+            double p99 = baselineValue(baseline, name + ".relativeP99");
+            double relativeP99 = m.p99Us / reference.p99Us;
+            if (p99 > 0 && relativeP99 > p99 * (1 + tolerance)) {
+                regressions.add(String.format("%s: p99 %.4f x reference p99, baseline %.4f", name, relativeP99, p99));
+            }
+            double alloc = baselineValue(baseline, name + ".allocBytesPerOp");
+            if (sameJvm && !Double.isNaN(alloc) && m.allocBytesPerOp > alloc * (1 + ALLOC_TOLERANCE) + ALLOC_SLACK_BYTES) {
+                regressions.add(String.format("%s: %,.0f B/op allocated, baseline %,.0f", name, m.allocBytesPerOp, alloc));
+            }
+        }
+        return regressions;
+    }
+
+    private static double baselineValue(Properties baseline, String key) {
+        String value = baseline.getProperty(key);
+        return value != null ? Double.parseDouble(value) : Double.NaN;
+    }
+
+    // The raw ops/s and p99 are kept for reading; only the relative ones are compared
+    private static Properties toProperties(Map<String, Measurement> measurements, Measurement reference) {
+        Properties properties = new Properties();
+        properties.setProperty("jvm", String.valueOf(Runtime.version().feature()));
+        for (Map.Entry<String, Measurement> entry : measurements.entrySet()) {
+            Measurement m = entry.getValue();
+            properties.setProperty(entry.getKey() + ".relativeOps",
+                    String.format(Locale.ROOT, "%.6f", m.opsPerSec / reference.opsPerSec));
+            properties.setProperty(entry.getKey() + ".relativeP99",
+                    String.format(Locale.ROOT, "%.6f", m.p99Us / reference.p99Us));
+            properties.setProperty(entry.getKey() + ".opsPerSec", String.format(Locale.ROOT, "%.1f", m.opsPerSec));
+            properties.setProperty(entry.getKey() + ".p99Us", String.format(Locale.ROOT, "%.2f", m.p99Us));
+            properties.setProperty(entry.getKey() + ".allocBytesPerOp", String.format(Locale.ROOT, "%.1f", m.allocBytesPerOp));
+        }
+        return properties;
+    }
+
+    private static void print(Map<String, Measurement> measurements) {
+        System.out.println();
+        System.out.printf("%-50s %14s %12s %14s%n", "Benchmark", "ops/s", "p99 us", "alloc B/op");
+        for (Map.Entry<String, Measurement> entry : measurements.entrySet()) {
+            Measurement m = entry.getValue();
+            System.out.printf("%-50s %,14.0f %,12.1f %,14.0f%n", entry.getKey(), m.opsPerSec, m.p99Us, m.allocBytesPerOp);
+        }
+        System.out.println();
+    }
+
+    private static void store(Properties properties, Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        // Written by hand rather than with Properties.store, so the keys are sorted and the baseline diffs cleanly
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            writer.write("# JMH results: ops/s, p99 in microseconds, bytes allocated per op, and ops/s and p99 as\n");
+            writer.write("# multiples of " + REFERENCE + " in the same run; jvm is the Java feature release\n");
+            for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+                writer.write(key + "=" + properties.getProperty(key) + "\n");
+            }
+        }
+    }
+
+    // com.library.jmh.BookServiceBenchmark.search -> BookServiceBenchmark.search
+    private static String shortName(String benchmark) {
+        return benchmark.substring("com.library.jmh.".length());
+    }
+
+    private static final class Measurement {
+        private double opsPerSec = Double.NaN;
+        private double p99Us = Double.NaN;
+        private double allocBytesPerOp = Double.NaN;
+    }
+}
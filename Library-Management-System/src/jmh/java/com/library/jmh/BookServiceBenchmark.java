@@ -0,0 +1,72 @@
+package com.library.jmh;
+
+import com.library.model.Book;
+import com.library.service.BookService;
+import com.library.tools.DatasetGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Catalog lookups: ranked and typo-tolerant search over the in-memory index, cached lookups by
+ * id and ISBN, and a keyset page read from the database.
+ */
+@State(Scope.Benchmark)
+public class BookServiceBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private DatasetGenerator.Dataset dataset;
+    private BookService bookService;
+    private String[] queries;
+    private String[] typos;
+
+    @Setup
+    public void setUp() {
+        dataset = SyntheticDataset.install();
+        bookService = new BookService();
+
+        Random random = new Random(SyntheticDataset.SEED);
+        queries = new String[QUERIES];
+        typos = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = SyntheticDataset.titleWord(random);
+            // Swap two letters, the most common typing slip
+            char[] word = SyntheticDataset.titleWord(random).toCharArray();
+            int at = random.nextInt(word.length - 1);
+            char c = word[at];
+            word[at] = word[at + 1];
+            word[at + 1] = c;
+            typos[i] = new String(word);
+        }
+    }
+
+    @Benchmark
+    public List<Book> search(Cursor cursor) {
+        return bookService.search(queries[cursor.next(QUERIES)]);
+    }
+
+    @Benchmark
+    public List<Book> fuzzySearch(Cursor cursor) {
+        return bookService.fuzzySearch(typos[cursor.next(QUERIES)]);
+    }
+
+    @Benchmark
+    public Book findById(Cursor cursor) {
+        return bookService.findById(dataset.bookId(cursor.next(dataset.getBooks())));
+    }
+
+    @Benchmark
+    public Book findByIsbn(Cursor cursor) {
+        return bookService.findByISBN(DatasetGenerator.isbn(dataset.bookId(cursor.next(dataset.getBooks()))));
+    }
+
+    @Benchmark
+    public List<Book> findPage(Cursor cursor) {
+        return bookService.findPage(dataset.bookId(cursor.next(dataset.getBooks())), 200, null, false);
+    }
+}
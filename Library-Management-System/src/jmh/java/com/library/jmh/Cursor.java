@@ -0,0 +1,21 @@
+package com.library.jmh;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Per-thread source of indexes, so each call looks up something different without threads
+ * sharing a random number generator.
+ */
+@State(Scope.Thread)
+public class Cursor {
+
+    private final SplittableRandom random = new SplittableRandom(SyntheticDataset.SEED);
+
+    /** An index from 0 to {@code bound} - 1. */
+    public int next(int bound) {
+        return random.nextInt(bound);
+    }
+}
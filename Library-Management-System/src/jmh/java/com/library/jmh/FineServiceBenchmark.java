@@ -0,0 +1,48 @@
+package com.library.jmh;
+
+import com.library.model.Fine;
+import com.library.service.FineService;
+import com.library.tools.DatasetGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Fine pricing, which runs for every row of the My Books table, and the reader's fine list.
+ */
+@State(Scope.Benchmark)
+public class FineServiceBenchmark {
+
+    private static final int DUE_DATES = 64;
+
+    private DatasetGenerator.Dataset dataset;
+    private FineService fineService;
+    private LocalDate today;
+    private LocalDate[] dueDates;
+
+    @Setup
+    public void setUp() {
+        dataset = SyntheticDataset.install();
+        fineService = new FineService();
+        today = LocalDate.now();
+        dueDates = new LocalDate[DUE_DATES];
+        for (int i = 0; i < DUE_DATES; i++) {
+            // From not yet due to well into the highest tier
+            dueDates[i] = today.plusDays(5 - i);
+        }
+    }
+
+    @Benchmark
+    public double calculateFine(Cursor cursor) {
+        return fineService.calculateFine(dueDates[cursor.next(DUE_DATES)], today);
+    }
+
+    @Benchmark
+    public List<Fine> findAllFinesByReaderId(Cursor cursor) {
+        return fineService.findAllFinesByReaderId(dataset.readerId(cursor.next(dataset.getReaders())));
+    }
+}
@@ -0,0 +1,43 @@
+package com.library.jmh;
+
+import com.library.model.Loan;
+import com.library.model.ReaderDashboardSnapshot;
+import com.library.service.LoanService;
+import com.library.tools.DatasetGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * The loan queries behind the reader screens, for a random reader each call.
+ */
+@State(Scope.Benchmark)
+public class LoanServiceBenchmark {
+
+    private DatasetGenerator.Dataset dataset;
+    private LoanService loanService;
+
+    @Setup
+    public void setUp() {
+        dataset = SyntheticDataset.install();
+        loanService = new LoanService();
+    }
+
+    @Benchmark
+    public List<Loan> findActiveLoansByReaderId(Cursor cursor) {
+        return loanService.findActiveLoansByReaderId(dataset.readerId(cursor.next(dataset.getReaders())));
+    }
+
+    @Benchmark
+    public List<Loan> findLoanHistoryByReaderId(Cursor cursor) {
+        return loanService.findLoanHistoryByReaderId(dataset.readerId(cursor.next(dataset.getReaders())));
+    }
+
+    @Benchmark
+    public ReaderDashboardSnapshot loadReaderDashboard(Cursor cursor) {
+        return loanService.loadReaderDashboard(dataset.readerId(cursor.next(dataset.getReaders())), 3);
+    }
+}
@@ -0,0 +1,114 @@
+package com.library.jmh;
+
+import com.library.tools.DatasetGenerator;
+import com.library.util.ConnectionPool;
+import com.library.util.DatabaseConfig;
+import com.library.util.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * What one timed call costs on top of the work it measures; the registry wraps every JDBC
+ * execution, so this has to stay well under a microsecond. The pooledQuery pair runs the same
+ * cached statement through a pool with metrics and through one without, so the difference is
+ * what the statement wrapper adds.
+ */
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private static final String SQL = "SELECT title, available_copies FROM books WHERE id = ?";
+
+    private MetricsRegistry.Metric timer;
+    private DatasetGenerator.Dataset dataset;
+    private ConnectionPool measured;
+    private ConnectionPool unmeasured;
+
+    @Setup
+    public void setUp() {
+        // The registry reads its settings from the same configuration as the pool
+        dataset = SyntheticDataset.install();
+        timer = MetricsRegistry.getInstance().timer("MetricsBenchmark.timer");
+        measured = pool(MetricsRegistry.getInstance());
+        unmeasured = pool(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        measured.shutdown();
+        unmeasured.shutdown();
+    }
+
+    @Benchmark
+    public void startStop() {
+        timer.stop(timer.start());
+    }
+
+    @Benchmark
+    public void startStopWithRows(Cursor cursor) {
+        timer.stop(timer.start(), cursor.next(64));
+    }
+
+    @Benchmark
+    public int pooledQuery(Connections connections, Cursor cursor) throws SQLException {
+        return query(connections.measured, cursor);
+    }
+
+    @Benchmark
+    public int pooledQueryWithoutMetrics(Connections connections, Cursor cursor) throws SQLException {
+        return query(connections.unmeasured, cursor);
+    }
+
+    private int query(Connection conn, Cursor cursor) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL)) {
+            ps.setInt(1, dataset.bookId(cursor.next(dataset.getBooks())));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(2) : -1;
+            }
+        }
+    }
+
+    private static ConnectionPool pool(MetricsRegistry metrics) {
+        return new ConnectionPool(
+                () -> DriverManager.getConnection(DatabaseConfig.getUrl(), DatabaseConfig.getUsername(),
+                        DatabaseConfig.getPassword()),
+                DatabaseConfig.getPoolMaxSize(), 0,
+                DatabaseConfig.getPoolConnectionTimeoutMs(),
+                DatabaseConfig.getPoolValidationIntervalMs(),
+                DatabaseConfig.getPoolMaxLifetimeMs(),
+                0,
+                DatabaseConfig.getPoolStatementCacheSize(),
+                metrics
+        );
+    }
+
+    /**
+     * One connection from each pool per thread, held for the whole run so only the statement
+     * path is measured.
+     */
+    @State(Scope.Thread)
+    public static class Connections {
+        private Connection measured;
+        private Connection unmeasured;
+
+        @Setup
+        public void setUp(MetricsBenchmark benchmark) throws SQLException {
+            measured = benchmark.measured.getConnection();
+            unmeasured = benchmark.unmeasured.getConnection();
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException {
+            measured.close();
+            unmeasured.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.library.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fixed work that does not touch the library code, measured in every run so BenchmarkRunner can
+ * express the other results relative to it. A faster or slower machine moves this benchmark as
+ * much as the others, so the ratios carry over between machines where the raw numbers do not.
+ *
+ * The mix resembles what the services spend their time on: hash lookups in a table larger than
+ * the CPU caches, sorting, and short-lived allocation.
+ */
+@State(Scope.Benchmark)
+public class ReferenceBenchmark {
+
+    private static final int KEYS = 200_000;
+    private static final int LOOKUPS = 64;
+
+    private final Map<String, Integer> table = new HashMap<>();
+    private String[] keys;
+    private int[] numbers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key-" + random.nextInt();
+            table.put(keys[i], i);
+        }
+        numbers = new int[1024];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = random.nextInt();
+        }
+    }
+
+    @Benchmark
+    public long mixedWork() {
+        long sum = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            next = (next + 7919) % KEYS;
+            sum += table.get(keys[next]);
+        }
+        int[] sorted = numbers.clone();
+        Arrays.sort(sorted);
+        return sum + sorted[sorted.length / 2];
+    }
+}
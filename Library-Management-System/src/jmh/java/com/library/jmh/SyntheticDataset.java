@@ -0,0 +1,64 @@
+package com.library.jmh;
+
+import com.library.service.BookService;
+import com.library.service.FineAccrualService;
+import com.library.tools.DatasetGenerator;
+import com.library.util.TestDatabase;
+
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Fills the in-memory test database with a reproducible library for the benchmarks, using
+ * {@link DatasetGenerator}.
+ *
+ * Sizes come from jmh.* system properties, which {@link BenchmarkRunner} passes to every fork:
+ * jmh.books, jmh.readers and jmh.loansPerReader, with jmh.seed picking the data. Any other
+ * {@link DatasetGenerator.Spec} field can be set the same way.
+ */
+public final class SyntheticDataset {
+
+    public static final long SEED = Long.getLong("jmh.seed", 42);
+
+    private static DatasetGenerator generator;
+    private static DatasetGenerator.Dataset dataset;
+
+    private SyntheticDataset() {}
+
+    /**
+     * Creates and seeds the database once per JVM, then loads the catalog cache.
+     */
+    public static synchronized DatasetGenerator.Dataset install() {
+        if (dataset != null) return dataset;
+
+        TestDatabase.init();
+        // TestDatabase turns leak tracking on for tests; it would skew every measurement here
+        System.setProperty("db.debug.trackLeaks", "false");
+        System.setProperty("db.pool.maxSize", "16");
+
+        DatasetGenerator.Spec spec = DatasetGenerator.Spec.fromSystemProperties("jmh");
+        spec.setSeed(SEED);
+        generator = new DatasetGenerator(spec);
+        try {
+            dataset = generator.generate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not seed the benchmark database", e);
+        }
+        FineAccrualService.ensureLedger();
+        new BookService().findAll();
+        return dataset;
+    }
+
+    /** The generator behind {@link #install()}, for picking popular books and title words. */
+    public static synchronized DatasetGenerator generator() {
+        install();
+        return generator;
+    }
+
+    /**
+     * A word that occurs in titles, for search queries. Common words come up more often.
+     */
+    public static String titleWord(Random random) {
+        return generator().titleWord(random);
+    }
+}
@@ -0,0 +1,46 @@
+package com.library.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One catalog search, from the query to the ranked books.
+ */
+@Name("com.library.BookSearch")
+@Label("Book Search")
+@Category({"Library", "Catalog"})
+@Description("A catalog search through BookService")
+@StackTrace(false)
+public class BookSearchEvent extends jdk.jfr.Event {
+
+    @Label("Query")
+    public String query;
+
+    @Label("Fuzzy")
+    @Description("Typo-tolerant search")
+    public boolean fuzzy;
+
+    @Label("Indexed")
+    @Description("Answered from the in-memory index rather than a LIKE scan")
+    public boolean indexed;
+
+    @Label("Results")
+    public int results;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     */
+    public void complete(String query, boolean fuzzy, boolean indexed, int results) {
+        end();
+        if (shouldCommit()) {
+            this.query = query;
+            this.fuzzy = fuzzy;
+            this.indexed = indexed;
+            this.results = results;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.library.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One run of a fine job over the overdue loans.
+ */
+@Name("com.library.FineGeneration")
+@Label("Fine Generation")
+@Category({"Library", "Fines"})
+@Description("A run of LoanService.generateFinesForOverdueLoans or FineAccrualService.accrueThrough")
+@StackTrace(false)
+public class FineGenerationEvent extends jdk.jfr.Event {
+
+    @Label("Job")
+    @Description("\"generate\" for one-off fines, \"accrue\" for the daily accrual ledger")
+    public String job;
+
+    @Label("Loans Processed")
+    public int loansProcessed;
+
+    @Label("Fines Written")
+    @Description("Fines created, or accrual rows updated")
+    public int finesWritten;
+
+    @Label("Completed")
+    @Description("False if the job stopped on an error")
+    public boolean completed;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     */
+    public void complete(String job, int loansProcessed, int finesWritten, boolean completed) {
+        end();
+        if (shouldCommit()) {
+            this.job = job;
+            this.loansProcessed = loansProcessed;
+            this.finesWritten = finesWritten;
+            this.completed = completed;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.library.jfr;
+
+import jdk.jfr.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * Java Flight Recorder events for library operations, and the recording profile that goes with them.
+ *
+ * The services emit an event per search, issue, return, fine job and login, and the views one per
+ * table reload, so a recording shows what the library was doing rather than only JDBC frames.
+ * The bundled library.jfc enables all of them, with searches over 1 ms, plus the JDK events that
+ * usually explain a slow one: GC, lock and park waits over 20 ms, socket I/O over 20 ms and
+ * execution samples every 20 ms. That keeps the overhead at the level of the JDK's own default
+ * profile. To record from startup, point the JVM at the file:
+ *
+ * <pre>java -XX:StartFlightRecording:settings=src/main/resources/com/library/jfr/library.jfc,filename=library.jfr ...</pre>
+ *
+ * or start a {@code new Recording(LibraryEvents.configuration())} in-process.
+ */
+public final class LibraryEvents {
+
+    public static final String PROFILE = "library.jfc";
+
+    private LibraryEvents() {}
+
+    /**
+     * The bundled library.jfc profile.
+     */
+    public static Configuration configuration() throws IOException, ParseException {
+        InputStream in = LibraryEvents.class.getResourceAsStream(PROFILE);
+        if (in == null) {
+            throw new IOException(PROFILE + " is missing from the classpath");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.library.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One book issued to a reader, either directly or by approving their request.
+ */
+@Name("com.library.LoanIssue")
+@Label("Loan Issue")
+@Category({"Library", "Circulation"})
+@Description("A book issued through LoanService or IssueService")
+@StackTrace(false)
+public class LoanIssueEvent extends jdk.jfr.Event {
+
+    @Label("Request Id")
+    @Description("The approved book request, 0 when the book was issued directly")
+    public int requestId;
+
+    @Label("Loan Id")
+    @Description("The loan created, 0 when the book was not issued")
+    public int loanId;
+
+    @Label("Book Id")
+    public int bookId;
+
+    @Label("Reader Id")
+    public int readerId;
+
+    @Label("Librarian Id")
+    public int librarianId;
+
+    @Label("Outcome")
+    public String outcome;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     * Ids that are not known are passed as 0.
+     */
+    public void complete(int requestId, int loanId, int bookId, int readerId, int librarianId, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.requestId = requestId;
+            this.loanId = loanId;
+            this.bookId = bookId;
+            this.readerId = readerId;
+            this.librarianId = librarianId;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.library.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One loan marked as returned.
+ */
+@Name("com.library.LoanReturn")
+@Label("Loan Return")
+@Category({"Library", "Circulation"})
+@Description("A loan returned through LoanService")
+@StackTrace(false)
+public class LoanReturnEvent extends jdk.jfr.Event {
+
+    @Label("Loan Id")
+    public int loanId;
+
+    @Label("Returned")
+    @Description("False if the loan was not found or the update failed")
+    public boolean returned;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     */
+    public void complete(int loanId, boolean returned) {
+        end();
+        if (shouldCommit()) {
+            this.loanId = loanId;
+            this.returned = returned;
+            commit();
+        }
+    }
+}
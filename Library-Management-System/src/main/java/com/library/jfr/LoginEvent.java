@@ -0,0 +1,45 @@
+package com.library.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One login attempt. The password is never recorded.
+ */
+@Name("com.library.Login")
+@Label("Login")
+@Category({"Library", "Authentication"})
+@Description("A login attempt through AuthenticationService")
+@StackTrace(false)
+public class LoginEvent extends jdk.jfr.Event {
+
+    @Label("Username")
+    public String username;
+
+    @Label("User Type")
+    public String userType;
+
+    @Label("User Id")
+    @Description("0 if the login failed")
+    public int userId;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     */
+    public void complete(String username, String userType, int userId, boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            this.username = username;
+            this.userType = userType;
+            this.userId = userId;
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.library.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One Swing table filled with new rows.
+ */
+@Name("com.library.TableReload")
+@Label("Table Reload")
+@Category({"Library", "Swing"})
+@Description("Rows replaced in a dashboard table, or a page of a paged table loaded. For a page the " +
+        "duration runs from the request to the rows being on screen, including the fetch.")
+@StackTrace(false)
+public class TableReloadEvent extends jdk.jfr.Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Page")
+    @Description("Index of the page loaded, -1 when all rows were replaced")
+    public int page;
+
+    @Label("Rows")
+    public int rows;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     */
+    public void complete(String table, int page, int rows) {
+        end();
+        if (shouldCommit()) {
+            this.table = table;
+            this.page = page;
+            this.rows = rows;
+            commit();
+        }
+    }
+}
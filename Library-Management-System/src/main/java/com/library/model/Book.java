@@ -12,6 +12,7 @@ public class Book {
     private String category;
     private int totalCopies;
     private int availableCopies;
+    private int version;
 
     public Book() {
         this.totalCopies = 1;
@@ -39,6 +40,19 @@ public class Book {
         this.availableCopies = availableCopies;
     }
 
+    public Book(Book other) {
+        this.bookId = other.bookId;
+        this.isbn = other.isbn;
+        this.title = other.title;
+        this.author = other.author;
+        this.publisher = other.publisher;
+        this.publicationDate = other.publicationDate;
+        this.category = other.category;
+        this.totalCopies = other.totalCopies;
+        this.availableCopies = other.availableCopies;
+        this.version = other.version;
+    }
+
     // Getters and Setters
     public int getBookId() { return bookId; }
     public void setBookId(int bookId) { this.bookId = bookId; }
@@ -67,6 +81,10 @@ public class Book {
     public int getAvailableCopies() { return availableCopies; }
     public void setAvailableCopies(int availableCopies) { this.availableCopies = availableCopies; }
 
+    // Row version this copy was read at; BookService.update refuses edits made from a stale one
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
 
     @Override
     public String toString() {
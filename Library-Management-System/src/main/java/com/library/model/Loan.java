@@ -17,6 +17,10 @@ public class Loan {
     private String bookAuthor;
     private String bookIsbn;
 
+    // Fine ledger, see FineAccrualService
+    private double accruedFine;
+    private LocalDate fineAccruedThrough;
+
     // Constructors
     public Loan() {}
 
@@ -116,4 +120,20 @@ public class Loan {
     public void setBookIsbn(String bookIsbn) {
         this.bookIsbn = bookIsbn;
     }
+
+    public double getAccruedFine() {
+        return accruedFine;
+    }
+
+    public void setAccruedFine(double accruedFine) {
+        this.accruedFine = accruedFine;
+    }
+
+    public LocalDate getFineAccruedThrough() {
+        return fineAccruedThrough;
+    }
+
+    public void setFineAccruedThrough(LocalDate fineAccruedThrough) {
+        this.fineAccruedThrough = fineAccruedThrough;
+    }
 }
@@ -0,0 +1,99 @@
+package com.library.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the reader dashboard shows, read in one go so the summary cards and the tables agree.
+ */
+public class ReaderDashboardSnapshot {
+    private int readerId;
+    private int activeLoanCount;
+    private int dueSoonCount;
+    private int overdueCount;
+    private int totalBooksRead;
+    private double totalUnpaidFines;
+    private List<Loan> activeLoans = new ArrayList<>();
+    private List<Loan> history = new ArrayList<>();
+    private List<Fine> fines = new ArrayList<>();
+
+    // Constructors
+    public ReaderDashboardSnapshot() {}
+
+    public ReaderDashboardSnapshot(int readerId) {
+        this.readerId = readerId;
+    }
+
+    // Getters and Setters
+    public int getReaderId() {
+        return readerId;
+    }
+
+    public void setReaderId(int readerId) {
+        this.readerId = readerId;
+    }
+
+    public int getActiveLoanCount() {
+        return activeLoanCount;
+    }
+
+    public void setActiveLoanCount(int activeLoanCount) {
+        this.activeLoanCount = activeLoanCount;
+    }
+
+    public int getDueSoonCount() {
+        return dueSoonCount;
+    }
+
+    public void setDueSoonCount(int dueSoonCount) {
+        this.dueSoonCount = dueSoonCount;
+    }
+
+    public int getOverdueCount() {
+        return overdueCount;
+    }
+
+    public void setOverdueCount(int overdueCount) {
+        this.overdueCount = overdueCount;
+    }
+
+    public int getTotalBooksRead() {
+        return totalBooksRead;
+    }
+
+    public void setTotalBooksRead(int totalBooksRead) {
+        this.totalBooksRead = totalBooksRead;
+    }
+
+    public double getTotalUnpaidFines() {
+        return totalUnpaidFines;
+    }
+
+    public void setTotalUnpaidFines(double totalUnpaidFines) {
+        this.totalUnpaidFines = totalUnpaidFines;
+    }
+
+    public List<Loan> getActiveLoans() {
+        return activeLoans;
+    }
+
+    public void setActiveLoans(List<Loan> activeLoans) {
+        this.activeLoans = activeLoans;
+    }
+
+    public List<Loan> getHistory() {
+        return history;
+    }
+
+    public void setHistory(List<Loan> history) {
+        this.history = history;
+    }
+
+    public List<Fine> getFines() {
+        return fines;
+    }
+
+    public void setFines(List<Fine> fines) {
+        this.fines = fines;
+    }
+}
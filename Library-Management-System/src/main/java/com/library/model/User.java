@@ -7,6 +7,7 @@ public abstract class User {
     private String fullName;
     private String email;
     private String status;
+    private int version;
 
     User() {}
 
@@ -35,6 +36,10 @@ public abstract class User {
     public String getStatus() { return status; } // Add this
     public void setStatus(String status) { this.status = status; } // Add this
 
+    // Row version this copy was read at; UserService.update refuses edits made from a stale one
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
     public abstract String getUserType();
     public abstract String getRole();
 }
@@ -1,5 +1,6 @@
 package com.library.service;
 
+import com.library.jfr.LoginEvent;
 import com.library.model.Librarian;
 import com.library.model.Reader;
 import com.library.model.User;
@@ -13,6 +14,14 @@ import java.sql.SQLException;
 public class AuthenticationService {
 
     public User authenticate(String username, String password, String userType){
+        LoginEvent event = new LoginEvent();
+        event.begin();
+        User user = findUser(username, password, userType);
+        event.complete(username, userType, user != null ? user.getId() : 0, user != null);
+        return user;
+    }
+
+    private User findUser(String username, String password, String userType) {
         String sql = "SELECT id, username, password, full_name, role " +
                 "FROM users WHERE username = ? AND password = ? AND role = ?";
 
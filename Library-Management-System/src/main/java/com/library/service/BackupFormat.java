@@ -0,0 +1,390 @@
+package com.library.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * File formats understood by {@link BackupService}. Both read and write one record at a time.
+ *
+ * CSV starts with a header row of column names. Fields containing a comma, quote or line break
+ * are quoted, with quotes doubled. An empty unquoted field is NULL and {@code ""} is an empty string.
+ *
+ * JSON Lines holds one flat object per line, keyed by column name. Numeric columns are written
+ * as JSON numbers and NULL as {@code null}.
+ */
+public enum BackupFormat {
+
+    CSV("csv") {
+        @Override
+        RecordWriter writer(Writer out, String[] columns, boolean[] numeric) throws IOException {
+            writeCsvRecord(out, columns);
+            return values -> writeCsvRecord(out, values);
+        }
+
+        @Override
+        RecordReader reader(Reader in, String[] columns) throws IOException {
+            CsvParser parser = new CsvParser(in);
+            String[] header = parser.next();
+            if (header == null) return () -> null;
+
+            int[] target = new int[header.length];
+            for (int i = 0; i < header.length; i++) {
+                target[i] = indexOf(columns, header[i]);
+            }
+            return () -> {
+                String[] fields = parser.next();
+                if (fields == null) return null;
+                if (fields.length != header.length) {
+                    throw new MalformedRecordException("Expected " + header.length + " fields but found " + fields.length +
+                            " on record " + parser.records);
+                }
+                String[] values = new String[columns.length];
+                for (int i = 0; i < fields.length; i++) {
+                    values[target[i]] = fields[i];
+                }
+                return values;
+            };
+        }
+    },
+
+    JSONL("jsonl") {
+        @Override
+        RecordWriter writer(Writer out, String[] columns, boolean[] numeric) {
+            return values -> {
+                StringBuilder line = new StringBuilder(128).append('{');
+                for (int i = 0; i < columns.length; i++) {
+                    if (i > 0) line.append(',');
+                    appendJsonString(line, columns[i]).append(':');
+                    if (values[i] == null) {
+                        line.append("null");
+                    } else if (numeric[i]) {
+                        line.append(values[i]);
+                    } else {
+                        appendJsonString(line, values[i]);
+                    }
+                }
+                out.write(line.append('}').append('\n').toString());
+            };
+        }
+
+        @Override
+        RecordReader reader(Reader in, String[] columns) {
+            BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < columns.length; i++) index.put(columns[i].toLowerCase(Locale.ROOT), i);
+            int[] lineNumber = {0};
+
+            return () -> {
+                String line;
+                do {
+                    line = lines.readLine();
+                    lineNumber[0]++;
+                    if (line == null) return null;
+                } while (line.isBlank());
+                try {
+                    return new JsonObjectParser(line, columns, index).parse();
+                } catch (IOException e) {
+                    throw new IOException(e.getMessage() + " on line " + lineNumber[0], e);
+                }
+            };
+        }
+    };
+
+    private final String extension;
+
+    BackupFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * File extension without the dot, e.g. "csv".
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Writes records whose values line up with {@code columns}; null values are SQL NULLs.
+     */
+    abstract RecordWriter writer(Writer out, String[] columns, boolean[] numeric) throws IOException;
+
+    /**
+     * Reads records and lines their values up with {@code columns}. Columns missing from the
+     * input are null; a column in the input that is not in {@code columns} is an error.
+     */
+    abstract RecordReader reader(Reader in, String[] columns) throws IOException;
+
+    /**
+     * A record that was read but could not be lined up with the columns. The reader has moved
+     * past it, so a caller that can skip bad records may carry on reading.
+     */
+    static final class MalformedRecordException extends IOException {
+        MalformedRecordException(String message) {
+            super(message);
+        }
+    }
+
+    interface RecordWriter {
+        void write(String[] values) throws IOException;
+    }
+
+    interface RecordReader {
+        /** The next record, or null at the end of the input. */
+        String[] next() throws IOException;
+    }
+
+    private static int indexOf(String[] columns, String name) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(name)) return i;
+        }
+        throw new IOException("Unknown column: " + name);
+    }
+
+    private static void writeCsvRecord(Writer out, String[] values) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) line.append(',');
+            String value = values[i];
+            if (value == null) continue;
+            if (value.isEmpty() || needsQuotes(value)) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        out.write(line.append('\n').toString());
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    private static StringBuilder appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+
+    /**
+     * Splits CSV into records, allowing line breaks inside quoted fields.
+     */
+    private static final class CsvParser {
+        private final Reader in;
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
+        private long records;
+
+        private CsvParser(Reader in) {
+            this.in = in;
+        }
+
+        private String[] next() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean inQuotes = false;
+            boolean any = false;
+
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    if (inQuotes) throw new IOException("Unterminated quoted field on record " + (records + 1));
+                    if (!any) return null;
+                    break;
+                }
+                any = true;
+                if (inQuotes) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            field.append('"');
+                        } else {
+                            inQuotes = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == ',') {
+                    fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                    field.setLength(0);
+                    quoted = false;
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    if (peek() == '\n') read();
+                    break;
+                } else if (c == '"' && field.length() == 0 && !quoted) {
+                    inQuotes = true;
+                    quoted = true;
+                } else {
+                    field.append((char) c);
+                }
+            }
+            fields.add(quoted || field.length() > 0 ? field.toString() : null);
+            records++;
+            return fields.toArray(new String[0]);
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position++];
+        }
+
+        private int peek() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position];
+        }
+
+        private boolean fill() throws IOException {
+            int n = in.read(buffer);
+            if (n <= 0) return false;
+            position = 0;
+            limit = n;
+            return true;
+        }
+    }
+
+    /**
+     * Parses one flat JSON object whose values are strings, numbers, booleans or null.
+     */
+    private static final class JsonObjectParser {
+        private final String text;
+        private final String[] columns;
+        private final Map<String, Integer> index;
+        private int position;
+
+        private JsonObjectParser(String text, String[] columns, Map<String, Integer> index) {
+            this.text = text;
+            this.columns = columns;
+            this.index = index;
+        }
+
+        private String[] parse() throws IOException {
+            String[] values = new String[columns.length];
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return values;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                Integer column = index.get(key.toLowerCase(Locale.ROOT));
+                if (column == null) throw new IOException("Unknown column: " + key);
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                values[column] = readValue();
+                skipWhitespace();
+                char c = next();
+                if (c == '}') return values;
+                if (c != ',') throw new IOException("Expected ',' or '}' at position " + (position - 1));
+            }
+        }
+
+        private String readValue() throws IOException {
+            if (peek() == '"') return readString();
+            int start = position;
+            while (position < text.length() && ",} \t".indexOf(text.charAt(position)) < 0) {
+                position++;
+            }
+            String token = text.substring(start, position);
+            if (token.isEmpty()) throw new IOException("Missing value at position " + start);
+            return token.equals("null") ? null : token;
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') return out.toString();
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"': case '\\': case '/': out.append(escaped); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'n': out.append('\n'); break;
+                    case 'r': out.append('\r'); break;
+                    case 't': out.append('\t'); break;
+                    case 'u':
+                        out.append(readHexChar());
+                        break;
+                    default:
+                        throw new IOException("Bad escape \\" + escaped + " at position " + (position - 1));
+                }
+            }
+        }
+
+        /**
+         * The four hex digits of a unicode escape as the character they encode.
+         */
+        private char readHexChar() throws IOException {
+            int start = position - 2;
+            if (position + 4 > text.length()) throw new IOException("Bad \\u escape at position " + start);
+            int code = 0;
+            for (int i = 0; i < 4; i++) {
+                char c = text.charAt(position++);
+                int digit = c < 128 ? Character.digit(c, 16) : -1;
+                if (digit < 0) throw new IOException("Bad \\u escape at position " + start);
+                code = code * 16 + digit;
+            }
+            return (char) code;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        private char peek() throws IOException {
+            if (position >= text.length()) throw new IOException("Unexpected end of line");
+            return text.charAt(position);
+        }
+
+        private char next() throws IOException {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char expected) throws IOException {
+            char c = next();
+            if (c != expected) {
+                throw new IOException("Expected '" + expected + "' at position " + (position - 1) + " but found '" + c + "'");
+            }
+        }
+    }
+}
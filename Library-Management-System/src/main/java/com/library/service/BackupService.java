@@ -0,0 +1,299 @@
+package com.library.service;
+
+import com.library.util.DatabaseConfig;
+import com.library.util.DatabaseConnection;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exports tables to CSV or JSON Lines files and imports them back.
+ *
+ * Both directions stream: an export reads the table through one forward-only cursor and writes
+ * each row as it arrives, and an import inserts rows in batches of {@value #BATCH_SIZE}, one
+ * transaction per batch. Memory use does not grow with the table, so tables of tens of millions
+ * of rows can be moved. On MySQL the cursor uses the driver's row-by-row streaming mode, and
+ * connections send each batch as a multi-row insert (rewriteBatchedStatements).
+ *
+ * Rows keep their ids, so an import is meant for empty tables, for example when moving the
+ * library to a new database. Import users and books before the loans and fines that refer to
+ * them; {@link #importAll(Path, BackupFormat, TransferListener)} does this.
+ */
+public class BackupService {
+
+    public enum Table {
+        USERS("users"),
+        BOOKS("books"),
+        LOANS("loans"),
+        FINES("fines");
+
+        private final String tableName;
+
+        Table(String tableName) {
+            this.tableName = tableName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+    }
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int FETCH_SIZE = 1000;
+    private static final long PROGRESS_INTERVAL = 100_000;
+
+    /**
+     * Writes every row of {@code table} to {@code out}, in id order. {@code out} is not closed.
+     *
+     * @param listener told every {@value #PROGRESS_INTERVAL} rows, may be null
+     */
+    public TransferResult exportTable(Table table, BackupFormat format, Writer out, TransferListener listener) {
+        TransferResult result = new TransferResult(table);
+        long start = System.nanoTime();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Columns columns = describe(conn, table);
+            String sql = "SELECT " + String.join(", ", columns.names) + " FROM " + table.tableName + " ORDER BY id";
+
+            // MySQL only streams a forward-only, read-only result set with this fetch size;
+            // anything else makes the driver read the whole table into memory first
+            boolean mysql = DatabaseConfig.getUrl().startsWith("jdbc:mysql:");
+            try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    BackupFormat.RecordWriter writer = format.writer(out, columns.names, columns.numeric);
+                    String[] values = new String[columns.names.length];
+                    while (rs.next()) {
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = rs.getString(i + 1);
+                        }
+                        writer.write(values);
+                        result.rows++;
+                        if (listener != null && result.rows % PROGRESS_INTERVAL == 0) {
+                            result.elapsedNanos = System.nanoTime() - start;
+                            listener.onProgress(table, result.rows, result.getRowsPerSecond());
+                        }
+                    }
+                }
+                out.flush();
+            }
+            result.completed = true;
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            result.failure = e;
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Inserts the rows read from {@code in} into {@code table}. Each batch of {@value #BATCH_SIZE}
+     * rows is committed on its own, so after a failure the result's row count tells how many rows
+     * made it in. {@code in} is not closed.
+     *
+     * @param listener told every {@value #PROGRESS_INTERVAL} rows, may be null
+     */
+    public TransferResult importTable(Table table, BackupFormat format, Reader in, TransferListener listener) {
+        TransferResult result = new TransferResult(table);
+        long start = System.nanoTime();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            Columns columns = describe(conn, table);
+            String sql = "INSERT INTO " + table.tableName + " (" + String.join(", ", columns.names) + ") VALUES (" +
+                    String.join(", ", Collections.nCopies(columns.names.length, "?")) + ")";
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                BackupFormat.RecordReader reader = format.reader(in, columns.names);
+                int batched = 0;
+                String[] values;
+                while ((values = reader.next()) != null) {
+                    for (int i = 0; i < values.length; i++) {
+                        if (values[i] == null) {
+                            ps.setNull(i + 1, columns.types[i]);
+                        } else {
+                            ps.setString(i + 1, values[i]);
+                        }
+                    }
+                    ps.addBatch();
+                    if (++batched == BATCH_SIZE) {
+                        commitBatch(conn, ps, result, batched, start, listener);
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) commitBatch(conn, ps, result, batched, start, listener);
+                result.completed = true;
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            result.failure = e;
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+
+        if (result.rows > 0) {
+            if (table == Table.BOOKS) CatalogCache.getInstance().invalidateAll();
+            StatsService.getInstance().invalidate();
+        }
+        return result;
+    }
+
+    /**
+     * Exports every table to {@code dir}, one file per table named after it, e.g. books.csv.
+     * Stops at the first table that fails.
+     */
+    public List<TransferResult> exportAll(Path dir, BackupFormat format, TransferListener listener) {
+        List<TransferResult> results = new ArrayList<>();
+        for (Table table : Table.values()) {
+            TransferResult result;
+            try (Writer out = Files.newBufferedWriter(fileFor(dir, table, format), StandardCharsets.UTF_8)) {
+                result = exportTable(table, format, out, listener);
+            } catch (IOException e) {
+                e.printStackTrace();
+                result = new TransferResult(table);
+                result.failure = e;
+            }
+            results.add(result);
+            if (!result.completed) break;
+        }
+        return results;
+    }
+
+    /**
+     * Imports the files written by {@link #exportAll(Path, BackupFormat, TransferListener)}, users
+     * and books first. Tables without a file are skipped. Stops at the first table that fails.
+     */
+    public List<TransferResult> importAll(Path dir, BackupFormat format, TransferListener listener) {
+        List<TransferResult> results = new ArrayList<>();
+        for (Table table : Table.values()) {
+            Path file = fileFor(dir, table, format);
+            if (!Files.exists(file)) continue;
+
+            TransferResult result;
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                result = importTable(table, format, in, listener);
+            } catch (IOException e) {
+                e.printStackTrace();
+                result = new TransferResult(table);
+                result.failure = e;
+            }
+            results.add(result);
+            if (!result.completed) break;
+        }
+        return results;
+    }
+
+    private static Path fileFor(Path dir, Table table, BackupFormat format) {
+        return dir.resolve(table.tableName + "." + format.getExtension());
+    }
+
+    private static void commitBatch(Connection conn, PreparedStatement ps, TransferResult result, int batched,
+                                    long start, TransferListener listener) throws SQLException {
+        ps.executeBatch();
+        conn.commit();
+        long before = result.rows;
+        result.rows += batched;
+        if (listener != null && result.rows / PROGRESS_INTERVAL != before / PROGRESS_INTERVAL) {
+            result.elapsedNanos = System.nanoTime() - start;
+            listener.onProgress(result.table, result.rows, result.getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Column names and types of a table, read from the database so the files follow the schema.
+     */
+    private static Columns describe(Connection conn, Table table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM " + table.tableName + " WHERE 1 = 0");
+             ResultSet rs = ps.executeQuery()) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int count = meta.getColumnCount();
+            Columns columns = new Columns(count);
+            for (int i = 0; i < count; i++) {
+                columns.names[i] = meta.getColumnLabel(i + 1).toLowerCase(Locale.ROOT);
+                columns.types[i] = meta.getColumnType(i + 1);
+                columns.numeric[i] = isNumeric(columns.types[i]);
+            }
+            return columns;
+        }
+    }
+
+    private static boolean isNumeric(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static final class Columns {
+        private final String[] names;
+        private final int[] types;
+        private final boolean[] numeric;
+
+        private Columns(int count) {
+            this.names = new String[count];
+            this.types = new int[count];
+            this.numeric = new boolean[count];
+        }
+    }
+
+    /**
+     * Progress callback for exports and imports.
+     */
+    public interface TransferListener {
+        void onProgress(Table table, long rows, double rowsPerSecond);
+    }
+
+    /**
+     * Outcome of moving one table. When it did not complete, {@link #getRows()} rows were
+     * written (export) or committed (import) before the failure.
+     */
+    public static final class TransferResult {
+        private final Table table;
+        private long rows;
+        private long elapsedNanos;
+        private boolean completed;
+        private Exception failure;
+
+        private TransferResult(Table table) {
+            this.table = table;
+        }
+
+        public Table getTable() { return table; }
+        public long getRows() { return rows; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public boolean isCompleted() { return completed; }
+        public Exception getFailure() { return failure; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? rows * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "TransferResult{table=" + table + ", completed=" + completed + ", rows=" + rows +
+                    ", elapsedMs=" + elapsedNanos / 1_000_000 +
+                    ", rowsPerSecond=" + Math.round(getRowsPerSecond()) + "}";
+        }
+    }
+}
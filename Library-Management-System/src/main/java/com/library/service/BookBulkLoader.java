@@ -0,0 +1,557 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.DatabaseConnection;
+
+import java.io.Reader;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds or updates many books in one go, for acquisition lists of thousands of titles.
+ *
+ * Rows flow through three stages joined by bounded queues: a parser thread reads the input, a
+ * validation thread checks each book, and the calling thread writes them in batches of
+ * {@value #BATCH_SIZE}, one transaction per batch. A slow database therefore holds back the
+ * parser instead of letting rows pile up in memory.
+ *
+ * A book whose ISBN is already in the catalog updates that book. Its catalog details and total
+ * copies are replaced, and its available copies move by the same amount as the total, so loans
+ * in progress stay counted. The update is refused when the new total is below the copies on loan.
+ *
+ * A bad row is reported in the result and the rest of the load carries on. When a batch fails
+ * in the database, it is rolled back and its rows are retried one at a time to find the failing one.
+ */
+public class BookBulkLoader {
+
+    /** Header names understood by {@link #loadCsv(Reader)}. */
+    public static final String[] CSV_COLUMNS = {
+            "isbn", "title", "author", "category", "publisher", "published_date", "total_copies", "available_copies"
+    };
+
+    private static final int BATCH_SIZE = 500;
+    private static final int QUEUE_CAPACITY = 2048;
+    private static final long QUEUE_POLL_MS = 100;
+
+    private static final int MAX_ISBN = 20;
+    private static final int MAX_TEXT = 255;
+    private static final int MAX_CATEGORY = 50;
+
+    private final CatalogCache cache = CatalogCache.getInstance();
+    private final BookSearchIndex searchIndex = BookSearchIndex.getInstance();
+    private final StatsService stats = StatsService.getInstance();
+
+    /**
+     * Loads {@code books}. Rows are numbered from 1 in iteration order. Loaded books get their id
+     * and stored available copies set.
+     */
+    public Result load(Iterable<Book> books) {
+        return run(out -> {
+            int row = 0;
+            for (Book book : books) {
+                row++;
+                out.put(book != null ? new Row(row, book) : new Row(row, null, "Row is empty"));
+            }
+        });
+    }
+
+    /**
+     * Loads books from CSV with a header row naming some of {@link #CSV_COLUMNS}; isbn and title
+     * are required. Missing copy counts default to one copy, all available. Rows are numbered from
+     * 1, not counting the header. A row with more or fewer fields than the header is reported
+     * and skipped; input that cannot be read as CSV at all stops the load.
+     */
+    public Result loadCsv(Reader in) {
+        return run(out -> {
+            BackupFormat.RecordReader reader = BackupFormat.CSV.reader(in, CSV_COLUMNS);
+            int row = 0;
+            while (true) {
+                String[] values;
+                try {
+                    values = reader.next();
+                } catch (BackupFormat.MalformedRecordException e) {
+                    out.put(new Row(++row, null, e.getMessage()));
+                    continue;
+                }
+                if (values == null) break;
+                out.put(parse(++row, values));
+            }
+        });
+    }
+
+    private static Row parse(int row, String[] values) {
+        Book book = new Book(values[0], values[1], values[2], values[4]);
+        book.setCategory(values[3]);
+        try {
+            if (values[5] != null && !values[5].isBlank()) {
+                book.setPublicationDate(LocalDate.parse(values[5].trim()));
+            }
+        } catch (DateTimeParseException e) {
+            return new Row(row, book, "published_date is not a yyyy-mm-dd date: " + values[5]);
+        }
+        try {
+            int total = values[6] != null && !values[6].isBlank() ? Integer.parseInt(values[6].trim()) : 1;
+            int available = values[7] != null && !values[7].isBlank() ? Integer.parseInt(values[7].trim()) : total;
+            book.setTotalCopies(total);
+            book.setAvailableCopies(available);
+        } catch (NumberFormatException e) {
+            return new Row(row, book, "Copy counts must be whole numbers");
+        }
+        return new Row(row, book);
+    }
+
+    private Result run(Source source) {
+        Result result = new Result();
+        long start = System.nanoTime();
+        Pipeline pipeline = new Pipeline();
+
+        Thread parser = new Thread(() -> {
+            try {
+                source.produce(pipeline.parsed::put);
+            } catch (Exception e) {
+                pipeline.fail(e);
+            } finally {
+                pipeline.parsed.putEnd();
+            }
+        }, "library-bulk-parse");
+
+        Thread validator = new Thread(() -> {
+            Map<String, Integer> seen = new HashMap<>();
+            try {
+                Row row;
+                while ((row = pipeline.parsed.take()) != Row.END) {
+                    if (row.error == null) row.error = validate(row.book, row.number, seen);
+                    pipeline.validated.put(row);
+                }
+            } catch (InterruptedException e) {
+                pipeline.fail(e);
+            } finally {
+                pipeline.validated.putEnd();
+            }
+        }, "library-bulk-validate");
+
+        parser.setDaemon(true);
+        validator.setDaemon(true);
+        parser.start();
+        validator.start();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            List<Row> batch = new ArrayList<>(BATCH_SIZE);
+            Row row;
+            while ((row = pipeline.validated.take()) != Row.END) {
+                result.rowsRead++;
+                if (row.error != null) {
+                    result.addError(row, row.error);
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == BATCH_SIZE) {
+                    writeBatch(conn, batch, result);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) writeBatch(conn, batch, result);
+        } catch (SQLException | InterruptedException e) {
+            e.printStackTrace();
+            pipeline.fail(e);
+        } finally {
+            pipeline.stopped = true;
+        }
+
+        try {
+            parser.join();
+            validator.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        result.failure = pipeline.failure;
+        result.completed = pipeline.failure == null;
+        result.errors.sort(Comparator.comparingInt(RowError::getRow));
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static String validate(Book book, int row, Map<String, Integer> seen) {
+        String isbn = book.getIsbn() != null ? book.getIsbn().trim() : "";
+        if (isbn.isEmpty()) return "ISBN is missing";
+        if (isbn.length() > MAX_ISBN) return "ISBN is longer than " + MAX_ISBN + " characters";
+        book.setIsbn(isbn);
+
+        if (book.getTitle() == null || book.getTitle().isBlank()) return "Title is missing";
+        if (book.getTitle().length() > MAX_TEXT) return "Title is longer than " + MAX_TEXT + " characters";
+        if (book.getAuthor() != null && book.getAuthor().length() > MAX_TEXT) {
+            return "Author is longer than " + MAX_TEXT + " characters";
+        }
+        if (book.getPublisher() != null && book.getPublisher().length() > MAX_TEXT) {
+            return "Publisher is longer than " + MAX_TEXT + " characters";
+        }
+        if (book.getCategory() != null && book.getCategory().length() > MAX_CATEGORY) {
+            return "Category is longer than " + MAX_CATEGORY + " characters";
+        }
+        if (book.getTotalCopies() < 0) return "Total copies cannot be negative";
+        if (book.getAvailableCopies() < 0 || book.getAvailableCopies() > book.getTotalCopies()) {
+            return "Available copies must be between 0 and the total copies";
+        }
+
+        Integer earlier = seen.putIfAbsent(isbn, row);
+        if (earlier != null) return "ISBN " + isbn + " already appears on row " + earlier;
+        return null;
+    }
+
+    /**
+     * Writes one batch in one transaction. If the database rejects it, the batch is rolled back and
+     * its rows are written one by one so only the offending rows are reported.
+     */
+    private void writeBatch(Connection conn, List<Row> rows, Result result) throws SQLException {
+        // The rows change in the database before the cache hears of it
+        cache.beginChange();
+        try {
+            List<Runnable> applied;
+            try {
+                applied = writeRows(conn, rows, result);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                if (rows.size() == 1) {
+                    result.addError(rows.get(0), e.getMessage());
+                    return;
+                }
+                for (Row row : rows) {
+                    writeBatch(conn, Collections.singletonList(row), result);
+                }
+                return;
+            }
+            applied.forEach(Runnable::run);
+        } finally {
+            cache.endChange();
+        }
+    }
+
+    /**
+     * Runs the statements for {@code rows} and returns the cache and counter updates to make once
+     * they are committed.
+     */
+    private List<Runnable> writeRows(Connection conn, List<Row> rows, Result result) throws SQLException {
+        Map<String, Book> existing = findExisting(conn, rows);
+        List<Row> inserts = new ArrayList<>();
+        List<Row> updates = new ArrayList<>();
+        for (Row row : rows) {
+            (existing.containsKey(row.book.getIsbn()) ? updates : inserts).add(row);
+        }
+
+        List<Runnable> applied = new ArrayList<>(rows.size());
+        if (!inserts.isEmpty()) insert(conn, inserts, result, applied);
+        if (!updates.isEmpty()) update(conn, updates, existing, result, applied);
+        return applied;
+    }
+
+    private Map<String, Book> findExisting(Connection conn, List<Row> rows) throws SQLException {
+        String sql = "SELECT id, isbn, total_copies, available_copies, row_version FROM books WHERE isbn IN (" +
+                String.join(", ", Collections.nCopies(rows.size(), "?")) + ")";
+
+        Map<String, Book> existing = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < rows.size(); i++) {
+                ps.setString(i + 1, rows.get(i).book.getIsbn());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Book book = new Book();
+                    book.setBookId(rs.getInt("id"));
+                    book.setIsbn(rs.getString("isbn"));
+                    book.setTotalCopies(rs.getInt("total_copies"));
+                    book.setAvailableCopies(rs.getInt("available_copies"));
+                    book.setVersion(rs.getInt("row_version"));
+                    existing.put(book.getIsbn(), book);
+                }
+            }
+        }
+        return existing;
+    }
+
+    private void insert(Connection conn, List<Row> rows, Result result, List<Runnable> applied) throws SQLException {
+        String sql = "INSERT INTO books " +
+                "(isbn, title, author, publisher, published_date, category, total_copies, available_copies) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Row row : rows) {
+                Book book = row.book;
+                ps.setString(1, book.getIsbn());
+                ps.setString(2, book.getTitle());
+                ps.setString(3, book.getAuthor());
+                ps.setString(4, book.getPublisher());
+                if (book.getPublicationDate() != null) {
+                    ps.setDate(5, Date.valueOf(book.getPublicationDate()));
+                } else {
+                    ps.setNull(5, Types.DATE);
+                }
+                ps.setString(6, book.getCategory());
+                ps.setInt(7, book.getTotalCopies());
+                ps.setInt(8, book.getAvailableCopies());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            int assigned = 0;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                while (assigned < rows.size() && keys.next()) {
+                    rows.get(assigned++).book.setBookId(keys.getInt(1));
+                }
+            }
+            // Not every driver returns keys for a whole batch; fall back to looking them up
+            if (assigned < rows.size()) {
+                Map<String, Book> stored = findExisting(conn, rows);
+                for (Row row : rows) {
+                    row.book.setBookId(stored.get(row.book.getIsbn()).getBookId());
+                }
+            }
+        }
+
+        applied.add(() -> {
+            for (Row row : rows) {
+                cache.put(row.book);
+                searchIndex.put(row.book);
+                stats.bookAdded(row.book);
+            }
+            result.inserted += rows.size();
+        });
+    }
+
+    private void update(Connection conn, List<Row> rows, Map<String, Book> existing, Result result,
+                        List<Runnable> applied) throws SQLException {
+        // available_copies is assigned first so it sees the old total_copies on MySQL too
+        String sql = "UPDATE books SET title = ?, author = ?, publisher = ?, published_date = ?, category = ?, " +
+                "available_copies = available_copies + (? - total_copies), total_copies = ?, " +
+                "row_version = row_version + 1 " +
+                "WHERE id = ? AND total_copies - available_copies <= ?";
+
+        int[] counts;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Row row : rows) {
+                Book book = row.book;
+                ps.setString(1, book.getTitle());
+                ps.setString(2, book.getAuthor());
+                ps.setString(3, book.getPublisher());
+                if (book.getPublicationDate() != null) {
+                    ps.setDate(4, Date.valueOf(book.getPublicationDate()));
+                } else {
+                    ps.setNull(4, Types.DATE);
+                }
+                ps.setString(5, book.getCategory());
+                ps.setInt(6, book.getTotalCopies());
+                ps.setInt(7, book.getTotalCopies());
+                ps.setInt(8, existing.get(book.getIsbn()).getBookId());
+                ps.setInt(9, book.getTotalCopies());
+                ps.addBatch();
+            }
+            counts = ps.executeBatch();
+        }
+
+        List<Row> updated = new ArrayList<>(rows.size());
+        List<Row> refused = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            (counts[i] == 0 ? refused : updated).add(rows.get(i));
+        }
+        if (!updated.isEmpty()) readStored(conn, updated, existing);
+
+        applied.add(() -> {
+            for (Row row : updated) {
+                Book before = existing.get(row.book.getIsbn());
+                Book after = row.book;
+                // Only the change this load made to the copies, not any issue or return since the snapshot
+                Book counted = new Book(before);
+                counted.setAvailableCopies(after.getAvailableCopies() - (after.getTotalCopies() - before.getTotalCopies()));
+                cache.put(after);
+                searchIndex.put(after);
+                stats.bookChanged(counted, after);
+            }
+            result.updated += updated.size();
+            for (Row row : refused) {
+                Book before = existing.get(row.book.getIsbn());
+                int onLoan = before.getTotalCopies() - before.getAvailableCopies();
+                result.addError(row, "Total copies cannot go below the " + onLoan + " copies on loan");
+            }
+        });
+    }
+
+    /**
+     * Sets the id, available copies and version of each updated book from its row as this
+     * transaction left it. The copies the snapshot read may have moved since, so they are not
+     * worked out from it.
+     */
+    private static void readStored(Connection conn, List<Row> rows, Map<String, Book> existing) throws SQLException {
+        String sql = "SELECT id, available_copies, row_version FROM books WHERE id IN (" +
+                String.join(", ", Collections.nCopies(rows.size(), "?")) + ")";
+
+        Map<Integer, Book> byId = new HashMap<>();
+        for (Row row : rows) {
+            row.book.setBookId(existing.get(row.book.getIsbn()).getBookId());
+            byId.put(row.book.getBookId(), row.book);
+        }
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (Integer id : byId.keySet()) {
+                ps.setInt(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Book book = byId.get(rs.getInt("id"));
+                    book.setAvailableCopies(rs.getInt("available_copies"));
+                    book.setVersion(rs.getInt("row_version"));
+                }
+            }
+        }
+    }
+
+    private interface Source {
+        void produce(Sink out) throws Exception;
+    }
+
+    private interface Sink {
+        void put(Row row) throws InterruptedException;
+    }
+
+    /**
+     * The two queues between the stages and the first failure of any stage.
+     */
+    private static final class Pipeline {
+        private final Stage parsed = new Stage(this);
+        private final Stage validated = new Stage(this);
+        private volatile boolean stopped;
+        private volatile Exception failure;
+
+        private synchronized void fail(Exception e) {
+            if (failure == null) failure = e;
+            stopped = true;
+        }
+    }
+
+    /**
+     * A bounded queue whose producer gives up once the pipeline has stopped, so a failed insert
+     * stage does not leave the other threads blocked on a full queue.
+     */
+    private static final class Stage {
+        private final BlockingQueue<Row> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Pipeline pipeline;
+
+        private Stage(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        private void put(Row row) throws InterruptedException {
+            while (!queue.offer(row, QUEUE_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (pipeline.stopped) throw new InterruptedException("Bulk load stopped");
+            }
+        }
+
+        private void putEnd() {
+            try {
+                while (!queue.offer(Row.END, QUEUE_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    if (pipeline.stopped) return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Row take() throws InterruptedException {
+            Row row;
+            while ((row = queue.poll(QUEUE_POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+                if (pipeline.stopped) return Row.END;
+            }
+            return row;
+        }
+    }
+
+    private static final class Row {
+        private static final Row END = new Row(0, null);
+
+        private final int number;
+        private final Book book;
+        private String error;
+
+        private Row(int number, Book book) {
+            this(number, book, null);
+        }
+
+        private Row(int number, Book book, String error) {
+            this.number = number;
+            this.book = book;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A row that was not loaded and why.
+     */
+    public static final class RowError {
+        private final int row;
+        private final String isbn;
+        private final String message;
+
+        private RowError(int row, String isbn, String message) {
+            this.row = row;
+            this.isbn = isbn;
+            this.message = message;
+        }
+
+        public int getRow() { return row; }
+        public String getIsbn() { return isbn; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "row " + row + (isbn != null ? " (" + isbn + ")" : "") + ": " + message;
+        }
+    }
+
+    /**
+     * Outcome of a bulk load. When it did not complete, the batches written before the failure
+     * are committed.
+     */
+    public static final class Result {
+        private int rowsRead;
+        private int inserted;
+        private int updated;
+        private final List<RowError> errors = new ArrayList<>();
+        private long elapsedNanos;
+        private boolean completed;
+        private Exception failure;
+
+        private void addError(Row row, String message) {
+            errors.add(new RowError(row.number, row.book != null ? row.book.getIsbn() : null, message));
+        }
+
+        public int getRowsRead() { return rowsRead; }
+        public int getInserted() { return inserted; }
+        public int getUpdated() { return updated; }
+        public List<RowError> getErrors() { return Collections.unmodifiableList(errors); }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public boolean isCompleted() { return completed; }
+        public Exception getFailure() { return failure; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? rowsRead * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{completed=" + completed + ", rowsRead=" + rowsRead + ", inserted=" + inserted +
+                    ", updated=" + updated + ", errors=" + errors.size() +
+                    ", rowsPerSecond=" + Math.round(getRowsPerSecond()) + "}";
+        }
+    }
+}
@@ -103,6 +103,30 @@ public class BookRequestService {
         }
     }
 
+    /**
+     * Claim a PENDING request for this librarian: APPROVED, or ON_HOLD until {@code holdUntilDate}
+     * when it is given. Returns false when the request is no longer pending, because another
+     * librarian resolved it first, or when the update fails.
+     */
+    public boolean claimPendingRequest(int requestId, int librarianId, LocalDate holdUntilDate) {
+        String sql = "UPDATE book_requests SET status = ?, hold_until_date = ?, librarian_id = ?, " +
+                "resolved_at = CASE WHEN ? IS NULL THEN NOW() ELSE resolved_at END " +
+                "WHERE id = ? AND status = 'PENDING'";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            Date holdUntil = holdUntilDate != null ? Date.valueOf(holdUntilDate) : null;
+            stmt.setString(1, holdUntil != null ? "ON_HOLD" : "APPROVED");
+            stmt.setDate(2, holdUntil);
+            stmt.setInt(3, librarianId);
+            stmt.setDate(4, holdUntil);
+            stmt.setInt(5, requestId);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * Reject a request: update status to REJECTED.
      */
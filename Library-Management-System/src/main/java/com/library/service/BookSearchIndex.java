@@ -0,0 +1,938 @@
+package com.library.service;
+
+import com.library.model.Book;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over book title, author, ISBN, publisher and category.
+ *
+ * Text is case- and accent-folded and split on anything that is not a letter or digit. Every
+ * query token must match some field, either exactly or as a prefix of an indexed term, so
+ * "tolk lord" finds "The Lord of the Rings" by Tolkien. Results are ranked by which field
+ * matched (title and ISBN above author, above category and publisher) and exact matches score
+ * above prefix matches.
+ *
+ * {@link #fuzzySearch(String, int)} additionally lets each token match dictionary terms a
+ * couple of typos away, found through a {@link TrigramIndex} over the same dictionary.
+ */
+public class BookSearchIndex {
+
+    private static final class Holder {
+        private static final BookSearchIndex INSTANCE = new BookSearchIndex();
+    }
+
+    private static final int TITLE = 1;
+    private static final int AUTHOR = 1 << 1;
+    private static final int ISBN = 1 << 2;
+    private static final int PUBLISHER = 1 << 3;
+    private static final int CATEGORY = 1 << 4;
+    // Fields whose terms are typo-corrected by fuzzySearch
+    private static final int FUZZY_FIELDS = TITLE | AUTHOR;
+    // Fields a match scores highest in
+    private static final int TOP_FIELDS = TITLE | ISBN;
+
+    // A prefix of more terms than this, such as a short one, keeps the union of their postings,
+    // so a token reads one list rather than merging hundreds; any other prefix expands to at
+    // most this many terms
+    private static final int MAX_EXPANDED_TERMS = 64;
+    // A query whose rarest token is in more books than this is matched a window of ids at a time,
+    // the first expected to hold about this many of them, and none spanning more than MAX_WINDOW
+    // ids
+    private static final int WINDOW_HITS = 2_048;
+    private static final int MAX_WINDOW = 1 << 20;
+    // A window in which the first token's books are on average at most INTERSECTED_SPAN ids apart
+    // is intersected as bitsets rather than by merging postings lists. For that, a postings list
+    // of at least BITSET_MIN_DOCS books at most BITSET_SPAN ids apart on average keeps a bitset.
+    private static final int INTERSECTED_SPAN = 256;
+    private static final int BITSET_SPAN = 16;
+    private static final int BITSET_MIN_DOCS = 4_096;
+    // Terms in this many books also keep the books with the term in a TOP_FIELDS field apart
+    private static final int TOP_TIER_MIN_DOCS = 256;
+    // Upper bound on misspelled-term matches per token, closest and most common terms first
+    private static final int MAX_TYPO_EXPANSIONS = 32;
+
+    // How much a term counts depending on how it matched the query token
+    private static final int EXACT_BOOST = 4;
+    private static final int PREFIX_BOOST = 2;
+    private static final int ONE_EDIT_BOOST = 2;
+    private static final int TWO_EDITS_BOOST = 1;
+    // Closest typos first, then the terms in the most books
+    private static final Comparator<Match> CLOSEST_FIRST =
+            Comparator.comparingInt((Match m) -> -m.boost).thenComparingInt(m -> -m.postings.size);
+
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private NavigableMap<String, Postings> terms = new TreeMap<>();
+    // Union of the postings of every longer term, for each prefix of more than MAX_EXPANDED_TERMS
+    // terms; a prefix with a union has one at each shorter length too
+    private Map<String, Postings> prefixes = new HashMap<>();
+    private Map<Integer, IndexedBook> books = new HashMap<>();
+    private TrigramIndex trigrams = new TrigramIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public static BookSearchIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * True once the index has been built from a full catalog.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole index. The new index is built off to the side so searches keep running.
+     */
+    public void rebuild(List<Book> catalog) {
+        install(build(catalog));
+    }
+
+    /**
+     * Builds an index of the catalog without touching the current one; {@link #install} swaps it in.
+     */
+    public Snapshot build(List<Book> catalog) {
+        List<Book> byId = new ArrayList<>(catalog);
+        // Ascending ids turn every postings insert into an append
+        byId.sort(Comparator.comparingInt(Book::getBookId));
+
+        NavigableMap<String, Postings> newTerms = new TreeMap<>();
+        Map<Integer, IndexedBook> newBooks = new HashMap<>(byId.size() * 2);
+        for (Book book : byId) {
+            add(newTerms, newBooks, book);
+        }
+        Map<String, Postings> newPrefixes = new HashMap<>();
+        for (String prefix : crowdedPrefixes(newTerms)) {
+            newPrefixes.put(prefix, prefixUnion(newTerms, prefix));
+        }
+        TrigramIndex newTrigrams = new TrigramIndex();
+        for (Postings postings : newTerms.values()) {
+            if (postings.fuzzyDocs > 0) newTrigrams.add(postings.term);
+        }
+        return new Snapshot(newTerms, newPrefixes, newBooks, newTrigrams);
+    }
+
+    public void install(Snapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            terms = snapshot.terms;
+            prefixes = snapshot.prefixes;
+            books = snapshot.books;
+            trigrams = snapshot.trigrams;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(Book book) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(book.getBookId());
+            IndexedBook indexed = add(terms, books, book);
+            for (Postings postings : indexed.postings) {
+                if (postings.fuzzyDocs > 0) trigrams.add(postings.term);
+                // Only this book has the term, so it is new and may crowd its prefixes
+                if (postings.size == 1) addCrowdedPrefixes(postings.term);
+            }
+            addToPrefixes(indexed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int bookId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the stored copy count without re-indexing; copies are not searchable text.
+     */
+    public void adjustAvailableCopies(int bookId, int delta) {
+        lock.writeLock().lock();
+        try {
+            IndexedBook indexed = books.get(bookId);
+            if (indexed != null) {
+                indexed.book.setAvailableCopies(indexed.book.getAvailableCopies() + delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} books matching every token of the query, best match first.
+     */
+    public List<Book> search(String query, int limit) {
+        return find(query, limit, false);
+    }
+
+    /**
+     * Like {@link #search(String, int)}, but tokens may also match terms with typos: one edit for
+     * tokens of four to seven characters, two edits from eight characters up. Shorter tokens only
+     * match exactly or as a prefix, since almost any short word is one edit from another.
+     */
+    public List<Book> fuzzySearch(String query, int limit) {
+        return find(query, limit, true);
+    }
+
+    private List<Book> find(String query, int limit, boolean fuzzy) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<TokenMatches> perToken = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                TokenMatches matches = expand(token);
+                if (fuzzy) addTypoMatches(matches);
+                if (matches.matches.isEmpty()) return new ArrayList<>();
+                perToken.add(matches);
+            }
+            return rank(perToken, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static int maxEdits(String token) {
+        int length = token.length();
+        if (length >= 8) return 2;
+        if (length >= 4) return 1;
+        return 0;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) return tokens;
+
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String token : NON_ALPHANUMERIC.split(folded.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * The token's exact term and the terms it is a prefix of. For a prefix of more than
+     * MAX_EXPANDED_TERMS terms their union stands in for them, so no token walks more of the
+     * dictionary than that.
+     */
+    private TokenMatches expand(String token) {
+        TokenMatches expansion = new TokenMatches(token);
+        Postings exact = terms.get(token);
+        if (exact != null) expansion.add(new Match(exact, EXACT_BOOST));
+        Postings longer = prefixes.get(token);
+        if (longer != null) {
+            expansion.add(new Match(longer, PREFIX_BOOST));
+        } else {
+            for (Postings p : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                expansion.add(new Match(p, PREFIX_BOOST));
+            }
+        }
+        return expansion;
+    }
+
+    private void addTypoMatches(TokenMatches expansion) {
+        String token = expansion.token;
+        int maxEdits = maxEdits(token);
+        if (maxEdits == 0) return;
+
+        List<Match> typos = new ArrayList<>();
+        for (TrigramIndex.Candidate candidate : trigrams.candidates(token, maxEdits)) {
+            // Terms with the token as prefix were already expanded
+            if (candidate.term.startsWith(token)) continue;
+            Postings postings = terms.get(candidate.term);
+            if (postings == null) continue;
+            typos.add(new Match(postings, candidate.distance <= 1 ? ONE_EDIT_BOOST : TWO_EDITS_BOOST));
+        }
+        if (typos.size() > MAX_TYPO_EXPANSIONS) {
+            typos.sort(CLOSEST_FIRST);
+            typos = typos.subList(0, MAX_TYPO_EXPANSIONS);
+        }
+        for (Match typo : typos) {
+            expansion.add(typo);
+        }
+    }
+
+    /**
+     * Books with ids in {@code [from, to)} matching every token, as parallel arrays of ascending
+     * ids and summed scores. The tokens come most selective first.
+     */
+    private Hits intersect(List<TokenMatches> perToken, int from, int to) {
+        // Start from the most selective token and intersect the others into it
+        List<Match> first = perToken.get(0).matches;
+        Slices slices = new Slices(first, from, to);
+        if (slices.count == 0) return new Hits(0);
+        long span = (long) slices.hi - slices.lo + 1;
+        if (span <= MAX_WINDOW && span <= (long) slices.count * INTERSECTED_SPAN) {
+            return intersectBits(perToken, slices.lo, slices.hi);
+        }
+
+        Hits hits = union(first, slices);
+        for (int t = 1; t < perToken.size() && hits.size > 0; t++) {
+            int[] best = mergeScores(hits, perToken.get(t).matches);
+
+            int kept = 0;
+            for (int i = 0; i < hits.size; i++) {
+                if (best[i] == 0) continue;
+                hits.docs[kept] = hits.docs[i];
+                hits.scores[kept] = hits.scores[i] + best[i];
+                kept++;
+            }
+            hits.size = kept;
+        }
+        return hits;
+    }
+
+    /**
+     * Same as the merges in {@link #intersect} for books close together: each token's books
+     * between {@code lo} and {@code hi} are set as bits, one per id, and the bitsets are ANDed a
+     * word at a time, so only the books left at the end are merged for their scores.
+     */
+    private static Hits intersectBits(List<TokenMatches> perToken, int lo, int hi) {
+        int base = lo & ~63;
+        int words = ((hi - base) >>> 6) + 1;
+        Scratch scratch = SCRATCH.get();
+        long[] matched = scratch.matched(words);
+        long[] token = scratch.token(words);
+        for (int t = 0; t < perToken.size(); t++) {
+            long[] bits = t == 0 ? matched : token;
+            Arrays.fill(bits, 0, words, 0L);
+            for (Match match : perToken.get(t).matches) {
+                setBits(bits, match.postings, base, hi);
+            }
+            if (t == 0) continue;
+            for (int w = 0; w < words; w++) {
+                matched[w] &= token[w];
+            }
+        }
+        // The first token's books around [lo, hi] are outside the window
+        matched[0] &= -1L << (lo - base);
+        matched[words - 1] &= -1L >>> (63 - ((hi - base) & 63));
+
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(matched[w]);
+        }
+        Hits hits = new Hits(count);
+        for (int w = 0; w < words; w++) {
+            for (long word = matched[w]; word != 0; word &= word - 1) {
+                hits.docs[hits.size++] = base + (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        for (TokenMatches t : perToken) {
+            int[] best = mergeScores(hits, t.matches);
+            for (int i = 0; i < hits.size; i++) {
+                hits.scores[i] += best[i];
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Sets the bits of the postings' books with ids in {@code [base, hi]}, bit 0 being base.
+     */
+    private static void setBits(long[] bits, Postings p, int base, int hi) {
+        if (p.bits != null) {
+            int from = base >>> 6;
+            int to = Math.min(hi >>> 6, p.bits.length - 1);
+            for (int w = from; w <= to; w++) {
+                bits[w - from] |= p.bits[w];
+            }
+            return;
+        }
+        if (p.size == 0) return;
+        int j = base <= p.docs[0] ? 0 : gallop(p.docs, 0, p.size, base);
+        for (; j < p.size && p.docs[j] <= hi; j++) {
+            int at = p.docs[j] - base;
+            bits[at >>> 6] |= 1L << at;
+        }
+    }
+
+    /**
+     * Best score of each hit against the matches, 0 where none contains it.
+     */
+    private static int[] mergeScores(Hits hits, List<Match> matches) {
+        int[] best = new int[hits.size];
+        for (Match match : matches) {
+            // Merge each postings list against the hits, skipping ahead by galloping so a
+            // short list costs little against a long one and vice versa
+            Postings p = match.postings;
+            int i = 0;
+            int j = 0;
+            while (i < hits.size && j < p.size) {
+                int doc = hits.docs[i];
+                int other = p.docs[j];
+                if (doc == other) {
+                    best[i] = Math.max(best[i], score(p.fields[j], match.boost));
+                    i++;
+                    j++;
+                } else if (doc < other) {
+                    i = gallop(hits.docs, i + 1, hits.size, other);
+                } else {
+                    j = gallop(p.docs, j + 1, p.size, doc);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static Hits union(List<Match> matches, Slices slices) {
+        // Merge the (already sorted) postings lists pairwise, which stays linear per round
+        List<Hits> round = new ArrayList<>(matches.size());
+        for (int m = 0; m < matches.size(); m++) {
+            Match match = matches.get(m);
+            Postings p = match.postings;
+            int start = slices.starts[m];
+            Hits hits = new Hits(slices.ends[m] - start);
+            System.arraycopy(p.docs, start, hits.docs, 0, hits.docs.length);
+            for (int i = start; i < slices.ends[m]; i++) {
+                hits.scores[i - start] = score(p.fields[i], match.boost);
+            }
+            hits.size = hits.docs.length;
+            round.add(hits);
+        }
+        while (round.size() > 1) {
+            List<Hits> next = new ArrayList<>((round.size() + 1) / 2);
+            for (int r = 0; r + 1 < round.size(); r += 2) {
+                next.add(merge(round.get(r), round.get(r + 1)));
+            }
+            if (round.size() % 2 == 1) next.add(round.get(round.size() - 1));
+            round = next;
+        }
+        return round.get(0);
+    }
+
+    private static Hits merge(Hits a, Hits b) {
+        Hits merged = new Hits(a.size + b.size);
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.size && j < b.size) {
+            int docA = a.docs[i];
+            int docB = b.docs[j];
+            if (docA == docB) {
+                merged.docs[n] = docA;
+                merged.scores[n++] = Math.max(a.scores[i++], b.scores[j++]);
+            } else if (docA < docB) {
+                merged.docs[n] = docA;
+                merged.scores[n++] = a.scores[i++];
+            } else {
+                merged.docs[n] = docB;
+                merged.scores[n++] = b.scores[j++];
+            }
+        }
+        for (; i < a.size; i++, n++) {
+            merged.docs[n] = a.docs[i];
+            merged.scores[n] = a.scores[i];
+        }
+        for (; j < b.size; j++, n++) {
+            merged.docs[n] = b.docs[j];
+            merged.scores[n] = b.scores[j];
+        }
+        merged.size = n;
+        return merged;
+    }
+
+    /**
+     * First index in {@code [from, to)} whose value is at least {@code key}.
+     */
+    private static int gallop(int[] values, int from, int to, int key) {
+        // Dense lists usually advance by a step or two; only search when that is not enough
+        int linearEnd = Math.min(to, from + 8);
+        while (from < linearEnd && values[from] < key) from++;
+        if (from < linearEnd || from == to) return from;
+
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < to && values[high] < key) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int i = Arrays.binarySearch(values, low, Math.min(high + 1, to), key);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /**
+     * The best {@code limit} books matching every token. When even the rarest token is in many
+     * books, they are matched a window of ids at a time, the windows growing fourfold. Ties go to
+     * the lower id, so once {@code limit} books are found only a higher score gets a later book
+     * in: each further window is matched only through the terms, and the title postings of
+     * common terms, that can still reach it, and the search stops when none can.
+     */
+    private List<Book> rank(List<TokenMatches> perToken, int limit) {
+        perToken.sort(Comparator.comparingLong((TokenMatches t) -> t.postings));
+        TokenMatches first = perToken.get(0);
+        int maxScore = 0;
+        for (TokenMatches token : perToken) maxScore += token.maxScore;
+
+        // Keep only the best `limit` hits in a min-heap instead of sorting every match. Each hit is
+        // packed as (score, -id) so higher longs rank first and ties go to the lower id.
+        PriorityQueue<Long> top = new PriorityQueue<>();
+        if (first.postings <= WINDOW_HITS) {
+            offer(top, intersect(perToken, 0, Integer.MAX_VALUE), limit);
+        } else {
+            int lastDoc = 0;
+            for (Match match : first.matches) {
+                lastDoc = Math.max(lastDoc, match.postings.docs[match.postings.size - 1]);
+            }
+            long window = Math.min(Math.max(1, lastDoc * (long) WINDOW_HITS / first.postings), MAX_WINDOW);
+            for (long from = 0; from <= lastDoc; from += window, window = Math.min(window * 4, MAX_WINDOW)) {
+                List<TokenMatches> query = perToken;
+                if (top.size() == limit) {
+                    query = restrict(perToken, maxScore, (int) (top.peek() >>> 32) + 1);
+                    if (query == null) break;
+                }
+                offer(top, intersect(query, (int) from, (int) Math.min(lastDoc + 1L, from + window)), limit);
+            }
+        }
+
+        Book[] ranked = new Book[top.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            int id = Integer.MAX_VALUE - (int) (top.poll() & 0xFFFFFFFFL);
+            ranked[i] = new Book(books.get(id).book);
+        }
+        return new ArrayList<>(Arrays.asList(ranked));
+    }
+
+    /**
+     * The tokens cut down to the matches through which a book can still score {@code minScore},
+     * most selective first, or null if no book can. A match that has to be in a title or ISBN to
+     * count is replaced by its title postings where the term keeps them.
+     */
+    private static List<TokenMatches> restrict(List<TokenMatches> perToken, int maxScore, int minScore) {
+        List<TokenMatches> restricted = new ArrayList<>(perToken.size());
+        for (TokenMatches token : perToken) {
+            // What the token has to add with every other token at its best
+            int needed = minScore - (maxScore - token.maxScore);
+            if (needed <= 1) {
+                restricted.add(token);
+                continue;
+            }
+            if (needed > token.maxScore) return null;
+
+            TokenMatches cut = new TokenMatches(token.token);
+            for (Match match : token.matches) {
+                if (score(TOP_FIELDS, match.boost) < needed) continue;
+                Postings top = match.postings.topFields;
+                if (top != null && score(AUTHOR, match.boost) < needed) {
+                    if (top.size == 0) continue;
+                    match = new Match(top, match.boost);
+                }
+                cut.add(match);
+            }
+            if (cut.matches.isEmpty()) return null;
+            restricted.add(cut);
+        }
+        restricted.sort(Comparator.comparingLong((TokenMatches t) -> t.postings));
+        return restricted;
+    }
+
+    private static void offer(PriorityQueue<Long> top, Hits hits, int limit) {
+        for (int i = 0; i < hits.size; i++) {
+            long packed = ((long) hits.scores[i] << 32) | (Integer.MAX_VALUE - hits.docs[i]);
+            if (top.size() < limit) {
+                top.offer(packed);
+            } else if (packed > top.peek()) {
+                top.poll();
+                top.offer(packed);
+            }
+        }
+    }
+
+    private static int score(int fields, int boost) {
+        int weight;
+        if ((fields & TOP_FIELDS) != 0) weight = 8;
+        else if ((fields & AUTHOR) != 0) weight = 4;
+        else if ((fields & CATEGORY) != 0) weight = 2;
+        else weight = 1;
+        return weight * boost;
+    }
+
+    /**
+     * Indexes the book's terms. The caller keeps prefixes current and registers any new title or
+     * author terms for typo matching.
+     */
+    private static IndexedBook add(NavigableMap<String, Postings> terms, Map<Integer, IndexedBook> books, Book book) {
+        Map<String, Integer> fieldsByTerm = new HashMap<>();
+        collect(fieldsByTerm, book.getTitle(), TITLE);
+        collect(fieldsByTerm, book.getAuthor(), AUTHOR);
+        collect(fieldsByTerm, book.getPublisher(), PUBLISHER);
+        collect(fieldsByTerm, book.getCategory(), CATEGORY);
+        if (book.getIsbn() != null) {
+            collect(fieldsByTerm, book.getIsbn(), ISBN);
+            // Also index the ISBN without separators so "978026..." matches "978-026..."
+            collect(fieldsByTerm, String.join("", tokenize(book.getIsbn())), ISBN);
+        }
+
+        Postings[] postings = new Postings[fieldsByTerm.size()];
+        byte[] fields = new byte[postings.length];
+        int n = 0;
+        for (Map.Entry<String, Integer> entry : fieldsByTerm.entrySet()) {
+            Postings p = terms.get(entry.getKey());
+            if (p == null) {
+                p = new Postings(entry.getKey());
+                terms.put(p.term, p);
+            }
+            p.add(book.getBookId(), entry.getValue());
+            fields[n] = (byte) (int) entry.getValue();
+            postings[n++] = p;
+        }
+        IndexedBook indexed = new IndexedBook(new Book(book), postings, fields);
+        books.put(book.getBookId(), indexed);
+        return indexed;
+    }
+
+    private void removeLocked(int bookId) {
+        IndexedBook old = books.remove(bookId);
+        if (old == null) return;
+        for (Postings postings : old.postings) {
+            postings.remove(bookId);
+            if (postings.fuzzyDocs == 0) trigrams.remove(postings.term);
+            if (postings.size == 0) terms.remove(postings.term);
+
+            // Every prefix, not only up to the first without a union: another of the book's
+            // terms may have just emptied one that longer ones still have to be removed behind
+            String term = postings.term;
+            for (int length = 1; length < term.length(); length++) {
+                Postings union = prefixes.get(term.substring(0, length));
+                if (union == null) continue;
+                union.remove(bookId);
+                if (union.size == 0) prefixes.remove(union.term);
+            }
+        }
+    }
+
+    private void addToPrefixes(IndexedBook book) {
+        int doc = book.book.getBookId();
+        for (int k = 0; k < book.postings.length; k++) {
+            String term = book.postings[k].term;
+            for (int length = 1; length < term.length(); length++) {
+                Postings union = prefixes.get(term.substring(0, length));
+                if (union == null) break;
+                union.add(doc, book.fields[k]);
+            }
+        }
+    }
+
+    /**
+     * Gives the new term's prefixes that now have more than MAX_EXPANDED_TERMS terms their union.
+     */
+    private void addCrowdedPrefixes(String term) {
+        for (int length = 1; length <= term.length(); length++) {
+            String prefix = term.substring(0, length);
+            if (prefixes.containsKey(prefix)) continue;
+
+            Iterator<String> withPrefix = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet().iterator();
+            int count = 0;
+            while (count <= MAX_EXPANDED_TERMS && withPrefix.hasNext()) {
+                withPrefix.next();
+                count++;
+            }
+            // Nor does any longer prefix have more
+            if (count <= MAX_EXPANDED_TERMS) return;
+            prefixes.put(prefix, prefixUnion(terms, prefix));
+        }
+    }
+
+    /**
+     * Every prefix of more than MAX_EXPANDED_TERMS terms. Terms sharing a prefix are adjacent in
+     * the dictionary, so a prefix has that many where the first term with it still shares it with
+     * the term MAX_EXPANDED_TERMS places on.
+     */
+    private static List<String> crowdedPrefixes(NavigableMap<String, Postings> terms) {
+        String[] sorted = terms.keySet().toArray(new String[0]);
+        List<String> crowded = new ArrayList<>();
+        for (int i = 0; i + MAX_EXPANDED_TERMS < sorted.length; i++) {
+            String term = sorted[i];
+            int shared = commonPrefixLength(term, sorted[i + MAX_EXPANDED_TERMS]);
+            // Prefixes the previous term also has were looked at from the first term with them
+            int known = i == 0 ? 0 : commonPrefixLength(sorted[i - 1], term);
+            for (int length = known + 1; length <= shared; length++) {
+                crowded.add(term.substring(0, length));
+            }
+        }
+        return crowded;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) return i;
+        }
+        return length;
+    }
+
+    /**
+     * The books with a term longer than the prefix that starts with it, each with the fields of
+     * all such terms in the book.
+     */
+    private static Postings prefixUnion(NavigableMap<String, Postings> terms, String prefix) {
+        Collection<Postings> longer = terms.subMap(prefix, false, prefix + Character.MAX_VALUE, false).values();
+        int total = 0;
+        for (Postings p : longer) total += p.size;
+
+        // Sorted (id, fields) pairs, so every add below appends or extends the last book
+        long[] entries = new long[total];
+        int n = 0;
+        for (Postings p : longer) {
+            for (int j = 0; j < p.size; j++) {
+                entries[n++] = (long) p.docs[j] << 8 | p.fields[j];
+            }
+        }
+        Arrays.sort(entries);
+        Postings union = new Postings(prefix, false, total);
+        for (long entry : entries) {
+            union.add((int) (entry >>> 8), (int) entry & 0xFF);
+        }
+        return union;
+    }
+
+    private static void collect(Map<String, Integer> fieldsByTerm, String text, int field) {
+        for (String token : tokenize(text)) {
+            fieldsByTerm.merge(token, field, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * A complete index built by {@link #build}, not yet searchable.
+     */
+    public static final class Snapshot {
+        private final NavigableMap<String, Postings> terms;
+        private final Map<String, Postings> prefixes;
+        private final Map<Integer, IndexedBook> books;
+        private final TrigramIndex trigrams;
+
+        private Snapshot(NavigableMap<String, Postings> terms, Map<String, Postings> prefixes,
+                         Map<Integer, IndexedBook> books, TrigramIndex trigrams) {
+            this.terms = terms;
+            this.prefixes = prefixes;
+            this.books = books;
+            this.trigrams = trigrams;
+        }
+    }
+
+    /**
+     * Per-thread bitsets for intersectBits. Searches run concurrently under the read lock, so
+     * each thread keeps its own.
+     */
+    private static final class Scratch {
+        private long[] matched = new long[0];
+        private long[] token = new long[0];
+
+        private long[] matched(int words) {
+            if (matched.length < words) matched = new long[words];
+            return matched;
+        }
+
+        private long[] token(int words) {
+            if (token.length < words) token = new long[words];
+            return token;
+        }
+    }
+
+    /**
+     * Where each of a token's postings lists enters and leaves a window of ids, and the lowest
+     * and highest id in the window across them.
+     */
+    private static final class Slices {
+        private final int[] starts;
+        private final int[] ends;
+        private int count;
+        private int lo = Integer.MAX_VALUE;
+        private int hi = Integer.MIN_VALUE;
+
+        private Slices(List<Match> matches, int from, int to) {
+            starts = new int[matches.size()];
+            ends = new int[matches.size()];
+            for (int m = 0; m < matches.size(); m++) {
+                Postings p = matches.get(m).postings;
+                if (p.size == 0) continue;
+                starts[m] = from <= p.docs[0] ? 0 : gallop(p.docs, 0, p.size, from);
+                ends[m] = to > p.docs[p.size - 1] ? p.size : gallop(p.docs, starts[m], p.size, to);
+                if (ends[m] == starts[m]) continue;
+                count += ends[m] - starts[m];
+                lo = Math.min(lo, p.docs[starts[m]]);
+                hi = Math.max(hi, p.docs[ends[m] - 1]);
+            }
+        }
+    }
+
+    private static final class Hits {
+        private final int[] docs;
+        private final int[] scores;
+        private int size;
+
+        private Hits(int capacity) {
+            docs = new int[capacity];
+            scores = new int[capacity];
+        }
+    }
+
+    private static final class IndexedBook {
+        private final Book book;
+        private final Postings[] postings;
+        // Mask of the fields each of the terms occurs in
+        private final byte[] fields;
+
+        private IndexedBook(Book book, Postings[] postings, byte[] fields) {
+            this.book = book;
+            this.postings = postings;
+            this.fields = fields;
+        }
+    }
+
+    private static final class TokenMatches {
+        private final String token;
+        private final List<Match> matches = new ArrayList<>();
+        // Postings across all matches, an upper bound on the books the token can match
+        private long postings;
+        // Highest score any book can get from the token
+        private int maxScore;
+
+        private TokenMatches(String token) {
+            this.token = token;
+        }
+
+        private void add(Match match) {
+            matches.add(match);
+            postings += match.postings.size;
+            maxScore = Math.max(maxScore, score(match.postings.allFields, match.boost));
+        }
+    }
+
+    private static final class Match {
+        private final Postings postings;
+        private final int boost;
+
+        private Match(Postings postings, int boost) {
+            this.postings = postings;
+            this.boost = boost;
+        }
+    }
+
+    /**
+     * Book ids containing a term, kept sorted, with a bitmask of the fields the term occurs in.
+     * For a prefix union, the books and fields of every term longer than the prefix.
+     */
+    private static final class Postings {
+        private final String term;
+        private int[] docs;
+        private byte[] fields;
+        private int size;
+        // Every field the term was ever indexed in; only grows, so it bounds the score of any book
+        private int allFields;
+        // Books with the term in a FUZZY_FIELDS field
+        private int fuzzyDocs;
+        // The books with the term in a TOP_FIELDS field, once the term is in TOP_TIER_MIN_DOCS
+        // books; null before that, and always for a tier or a prefix union
+        private Postings topFields;
+        // The same books as one bit per id, once there are BITSET_MIN_DOCS of them at most
+        // BITSET_SPAN ids apart on average; null before that
+        private long[] bits;
+        // False for tiers and prefix unions, which never split off a tier of their own
+        private final boolean tiered;
+
+        private Postings(String term) {
+            this(term, true, 2);
+        }
+
+        private Postings(String term, boolean tiered, int capacity) {
+            this.term = term;
+            this.tiered = tiered;
+            docs = new int[Math.max(capacity, 2)];
+            fields = new byte[docs.length];
+        }
+
+        private void add(int doc, int fieldMask) {
+            allFields |= fieldMask;
+            if (topFields != null && (fieldMask & TOP_FIELDS) != 0) topFields.add(doc, fieldMask);
+            int i = Arrays.binarySearch(docs, 0, size, doc);
+            if (i >= 0) {
+                if ((fields[i] & FUZZY_FIELDS) == 0 && (fieldMask & FUZZY_FIELDS) != 0) fuzzyDocs++;
+                fields[i] |= (byte) fieldMask;
+                return;
+            }
+            int at = -i - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            System.arraycopy(fields, at, fields, at + 1, size - at);
+            docs[at] = doc;
+            fields[at] = (byte) fieldMask;
+            size++;
+            if (bits != null) {
+                setBit(doc);
+            } else if (size >= BITSET_MIN_DOCS && (long) size * BITSET_SPAN > docs[size - 1]) {
+                bits = new long[(docs[size - 1] >>> 6) + 1];
+                for (int j = 0; j < size; j++) setBit(docs[j]);
+            }
+            if ((fieldMask & FUZZY_FIELDS) != 0) fuzzyDocs++;
+            if (topFields == null && tiered && size >= TOP_TIER_MIN_DOCS) {
+                topFields = new Postings(term, false, 2);
+                for (int j = 0; j < size; j++) {
+                    if ((fields[j] & TOP_FIELDS) != 0) topFields.add(docs[j], fields[j]);
+                }
+            }
+        }
+
+        private void remove(int doc) {
+            if (topFields != null) topFields.remove(doc);
+            int i = Arrays.binarySearch(docs, 0, size, doc);
+            if (i < 0) return;
+            if ((fields[i] & FUZZY_FIELDS) != 0) fuzzyDocs--;
+            if (bits != null) bits[doc >>> 6] &= ~(1L << doc);
+            System.arraycopy(docs, i + 1, docs, i, size - i - 1);
+            System.arraycopy(fields, i + 1, fields, i, size - i - 1);
+            size--;
+        }
+
+        private void setBit(int doc) {
+            int word = doc >>> 6;
+            if (word >= bits.length) bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+            bits[word] |= 1L << doc;
+        }
+    }
+}
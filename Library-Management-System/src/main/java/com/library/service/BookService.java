@@ -2,26 +2,63 @@ package com.library.service;
 
 import com.library.model.Book;
 import com.library.util.DatabaseConnection;
+import com.library.jfr.BookSearchEvent;
+import com.library.util.MetricsRegistry;
 
+import java.io.Reader;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BookService {
 
+    // Ranked search results shown at most; the index keeps only the best matches
+    private static final int SEARCH_LIMIT = 500;
+    // Reads of a just-updated row before giving up on caching it, see reloadRow
+    private static final int RELOAD_ATTEMPTS = 3;
+
+    // Index searches never reach JDBC, so they are timed here
+    private static final MetricsRegistry.Metric SEARCH_TIMER = MetricsRegistry.getInstance().timer("BookSearchIndex.search");
+    private static final MetricsRegistry.Metric FUZZY_SEARCH_TIMER = MetricsRegistry.getInstance().timer("BookSearchIndex.fuzzySearch");
+
+    // Reloads an expired catalog for searches, which keep using the index meanwhile
+    private static final ExecutorService REFRESHER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "library-catalog-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicBoolean REFRESHING = new AtomicBoolean();
+
+    private final CatalogCache cache = CatalogCache.getInstance();
+    private final BookSearchIndex searchIndex = BookSearchIndex.getInstance();
+    private final StatsService stats = StatsService.getInstance();
+
     public List<Book> findAll() {
+        List<Book> cached = cache.findAll();
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = cache.getVersion();
         List<Book> books = new ArrayList<>();
-        String sql = "select id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, created_at from books";
+        String sql = "select id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version, created_at from books";
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ResultSet rs = ps.executeQuery();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
                 Book book = mapRowToBook(rs);
                 books.add(book);
             }
+            // Swapped in under the cache lock: a write that lands after the snapshot then reaches
+            // the index after the rebuild instead of being overwritten by it
+            BookSearchIndex.Snapshot index = searchIndex.build(books);
+            cache.loadAll(books, version, () -> searchIndex.install(index));
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -29,14 +66,20 @@ public class BookService {
     }
 
     public List<Book> findAvailable() {
-        List<Book> books = new ArrayList<>();
-        String sql = "select id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, created_at from books where available_copies > 0";
+        if (cache.isComplete()) {
+            List<Book> available = new ArrayList<>();
+            for (Book book : findAll()) {
+                if (book.getAvailableCopies() > 0) available.add(book);
+            }
+            return available;
+        }
 
+        List<Book> books = new ArrayList<>();
+        String sql = "select id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version, created_at from books where available_copies > 0";
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ResultSet rs = ps.executeQuery();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
                 Book book = mapRowToBook(rs);
@@ -48,22 +91,59 @@ public class BookService {
         return books;
     }
 
+    /**
+     * Up to {@code limit} books with an id above {@code afterId}, in id order. Pass the id of the
+     * last book of one page to get the next. {@code category} (ignored when null or "All") and
+     * {@code availableOnly} narrow the result.
+     */
+    public List<Book> findPage(int afterId, int limit, String category, boolean availableOnly) {
+        boolean byCategory = category != null && !category.equals("All");
+        String sql = "SELECT id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version " +
+                "FROM books WHERE id > ?" +
+                (byCategory ? " AND LOWER(category) = LOWER(?)" : "") +
+                (availableOnly ? " AND available_copies > 0" : "") +
+                " ORDER BY id LIMIT ?";
+
+        List<Book> books = new ArrayList<>(limit);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            ps.setInt(i++, afterId);
+            if (byCategory) ps.setString(i++, category);
+            ps.setInt(i, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    books.add(mapRowToBook(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return books;
+    }
+
     public Book findByISBN(String isbn) {
-        String sql = "select id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, created_at from books where isbn = ?";
+        Book cached = cache.findByIsbn(isbn);
+        if (cached != null) {
+            return cached;
+        }
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement ps = conn.prepareStatement(sql);
+        long version = cache.getVersion();
+        String sql = "select id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version, created_at from books where isbn = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, isbn);
 
-            try {
-                ResultSet rs = ps.executeQuery();
+            try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapRowToBook(rs);
+                    Book book = mapRowToBook(rs);
+                    cache.remember(book, version);
+                    return book;
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -71,11 +151,26 @@ public class BookService {
         return null;
     }
 
+    /**
+     * Ranked search over title, author, ISBN, publisher and category using the in-memory index.
+     * Falls back to a LIKE scan of title, author and ISBN if the catalog could not be loaded.
+     */
     public List<Book> search(String query) {
+        BookSearchEvent event = new BookSearchEvent();
+        event.begin();
+        refreshCatalog();
+        if (searchIndex.isReady()) {
+            long start = SEARCH_TIMER.start();
+            List<Book> found = searchIndex.search(query, SEARCH_LIMIT);
+            SEARCH_TIMER.stop(start, found.size());
+            event.complete(query, false, true, found.size());
+            return found;
+        }
+
         List<Book> books = new ArrayList<>();
 
         String sql = "SELECT id, isbn, title, author, publisher, " +
-                "published_date, category, total_copies, available_copies " +
+                "published_date, category, total_copies, available_copies, row_version " +
                 "FROM books " +
                 "WHERE LOWER(title) LIKE ? " +
                 "   OR LOWER(author) LIKE ? " +
@@ -99,17 +194,69 @@ public class BookService {
             e.printStackTrace();
         }
 
+        event.complete(query, false, false, books.size());
         return books;
     }
 
+    /**
+     * Typo-tolerant variant of {@link #search(String)}: "tolkein" still finds Tolkien. Falls back
+     * to the plain search when the index could not be built.
+     */
+    public List<Book> fuzzySearch(String query) {
+        BookSearchEvent event = new BookSearchEvent();
+        event.begin();
+        refreshCatalog();
+        if (searchIndex.isReady()) {
+            long start = FUZZY_SEARCH_TIMER.start();
+            List<Book> found = searchIndex.fuzzySearch(query, SEARCH_LIMIT);
+            FUZZY_SEARCH_TIMER.stop(start, found.size());
+            event.complete(query, true, true, found.size());
+            return found;
+        }
+        // The plain search records its own event
+        return search(query);
+    }
+
+    /**
+     * Makes sure the search index reflects the catalog. A catalog that merely expired is reloaded
+     * in the background while searches keep using the index built from it; one that was never
+     * loaded or was invalidated is loaded before searching.
+     */
+    private void refreshCatalog() {
+        if (cache.isComplete()) return;
+        if (!cache.isExpired() || !searchIndex.isReady()) {
+            findAll();
+            return;
+        }
+        if (REFRESHING.compareAndSet(false, true)) {
+            REFRESHER.execute(() -> {
+                try {
+                    findAll();
+                } finally {
+                    REFRESHING.set(false);
+                }
+            });
+        }
+    }
+
     public Book findByTitle(String title) {
-        String sql = "SELECT * FROM books WHERE title = ?";
+        Book cached = cache.findByTitle(title);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = cache.getVersion();
+        String sql = "SELECT id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version, created_at " +
+                "FROM books WHERE title = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, title);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return mapRowToBook(rs);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Book book = mapRowToBook(rs);
+                    cache.remember(book, version);
+                    return book;
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -122,9 +269,8 @@ public class BookService {
                 "(isbn, title, author, publisher, published_date, category, total_copies, available_copies) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try {
-            Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, book.getIsbn());
             ps.setString(2, book.getTitle());
@@ -142,56 +288,144 @@ public class BookService {
             int affected = ps.executeUpdate();
             if (affected == 0) return false;
 
-            try {
-                ResultSet keys = ps.getGeneratedKeys();
-                    if (keys.next()) {
-                        book.setBookId(keys.getInt(1));
-                    }
-                return true;
-            } catch (SQLException e) {
-                e.printStackTrace();
-                return false;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    book.setBookId(keys.getInt(1));
+                    cache.put(book);
+                    searchIndex.put(book);
+                }
             }
+            stats.bookAdded(book);
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    public boolean update(Book book) {
-        String sql = "UPDATE books SET " +
-                "isbn = ?, title = ?, author = ?, publisher = ?, " +
-                "published_date = ?, category = ?, total_copies = ?, available_copies = ? " +
-                "WHERE id = ?";
+    /**
+     * Adds many books at once, updating those whose ISBN is already in the catalog. Rows that
+     * cannot be loaded are listed in the result without stopping the rest; see {@link BookBulkLoader}.
+     */
+    public BookBulkLoader.Result addAll(Iterable<Book> books) {
+        return new BookBulkLoader().load(books);
+    }
+
+    /**
+     * Like {@link #addAll(Iterable)}, reading the books from a CSV acquisition list whose header
+     * names some of {@link BookBulkLoader#CSV_COLUMNS}.
+     */
+    public BookBulkLoader.Result addAllFromCsv(Reader csv) {
+        return new BookBulkLoader().loadCsv(csv);
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    /**
+     * Saves the changes made to {@code original} in {@code edited}, unless someone else has saved
+     * the book since {@code original} was read.
+     *
+     * Only the fields that differ are written. Available copies move by the amount they were
+     * edited by instead of being overwritten, so issues and returns made in the meantime still
+     * count, the same way {@link BookBulkLoader} adjusts them. The edit is a conflict when the
+     * book's row version has moved on, or when it would leave fewer than zero copies on the
+     * shelf or more than the total.
+     */
+    public UpdateResult<Book> update(Book original, Book edited) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        change(assignments, values, "isbn", original.getIsbn(), edited.getIsbn());
+        change(assignments, values, "title", original.getTitle(), edited.getTitle());
+        change(assignments, values, "author", original.getAuthor(), edited.getAuthor());
+        change(assignments, values, "publisher", original.getPublisher(), edited.getPublisher());
+        change(assignments, values, "published_date",
+                original.getPublicationDate() != null ? Date.valueOf(original.getPublicationDate()) : null,
+                edited.getPublicationDate() != null ? Date.valueOf(edited.getPublicationDate()) : null);
+        change(assignments, values, "category", original.getCategory(), edited.getCategory());
+        change(assignments, values, "total_copies", original.getTotalCopies(), edited.getTotalCopies());
+
+        int shelfChange = edited.getAvailableCopies() - original.getAvailableCopies();
+        if (shelfChange != 0) {
+            assignments.add("available_copies = available_copies + ?");
+            values.add(shelfChange);
+        }
+        if (assignments.isEmpty()) {
+            return new UpdateResult<>(UpdateResult.Outcome.UNCHANGED, original);
+        }
+        boolean copiesChanged = shelfChange != 0 || original.getTotalCopies() != edited.getTotalCopies();
+
+        String sql = "UPDATE books SET " + String.join(", ", assignments) + ", row_version = row_version + 1 " +
+                "WHERE id = ? AND row_version = ?" +
+                (copiesChanged ? " AND available_copies + ? BETWEEN 0 AND ?" : "");
+        Book before = cache.findById(original.getBookId());
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int affected;
+            // Whether or not the edit went through, what is cached for the book may be older than
+            // the row; it is dropped here and put back from the row below
+            cache.beginChange();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                for (Object value : values) {
+                    if (value != null) {
+                        ps.setObject(i++, value);
+                    } else {
+                        ps.setNull(i++, Types.NULL);
+                    }
+                }
+                ps.setInt(i++, original.getBookId());
+                ps.setInt(i++, original.getVersion());
+                if (copiesChanged) {
+                    ps.setInt(i++, shelfChange);
+                    ps.setInt(i, edited.getTotalCopies());
+                }
+                affected = ps.executeUpdate();
+                cache.remove(original.getBookId());
+                searchIndex.remove(original.getBookId());
+            } finally {
+                cache.endChange();
+            }
 
-            ps.setString(1, book.getIsbn());
-            ps.setString(2, book.getTitle());
-            ps.setString(3, book.getAuthor());
-            ps.setString(4, book.getPublisher());
-            if (book.getPublicationDate() != null) {
-                ps.setDate(5, Date.valueOf(book.getPublicationDate()));
-            } else {
-                ps.setNull(5, Types.DATE);
+            Book current = reloadRow(conn, original.getBookId());
+            if (current == null) {
+                return new UpdateResult<>(UpdateResult.Outcome.NOT_FOUND, null);
+            }
+            if (affected == 0) {
+                // Still at the version we loaded, so it was the copies bound that refused the edit
+                return new UpdateResult<>(copiesChanged && current.getVersion() == original.getVersion()
+                        ? UpdateResult.Outcome.INVALID_COPIES : UpdateResult.Outcome.CONFLICT, current);
             }
-            ps.setString(6, book.getCategory());
-            ps.setInt(7, book.getTotalCopies());
-            ps.setInt(8, book.getAvailableCopies());
-            ps.setInt(9, book.getBookId());
 
-            int affected = ps.executeUpdate();
-            return affected > 0;
+            if (before != null) {
+                stats.bookChanged(before, current);
+            } else {
+                stats.invalidate();
+            }
+            return new UpdateResult<>(UpdateResult.Outcome.UPDATED, current);
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
+            return new UpdateResult<>(UpdateResult.Outcome.FAILED, null);
+        }
+    }
+
+    private static void change(List<String> assignments, List<Object> values, String column, Object from, Object to) {
+        if (!Objects.equals(from, to)) {
+            assignments.add(column + " = ?");
+            values.add(to);
         }
     }
 
     public List<Book> findByCategory(String category) {
+        if (cache.isComplete()) {
+            List<Book> matching = new ArrayList<>();
+            for (Book book : findAll()) {
+                if (book.getCategory() != null && book.getCategory().equalsIgnoreCase(category)) {
+                    matching.add(book);
+                }
+            }
+            return matching;
+        }
+
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, created_at " +
+        String sql = "SELECT id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version, created_at " +
                 "FROM books WHERE LOWER(category) = LOWER(?)";
 
         try (Connection conn = DatabaseConnection.getConnection();
@@ -213,13 +447,23 @@ public class BookService {
     }
 
     public Book findById(int bookId) {
-        String sql = "SELECT * FROM books WHERE id = ?";
+        Book cached = cache.findById(bookId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = cache.getVersion();
+        String sql = "SELECT id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version, created_at " +
+                "FROM books WHERE id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, bookId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return mapRowToBook(rs);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Book book = mapRowToBook(rs);
+                    cache.remember(book, version);
+                    return book;
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -227,14 +471,52 @@ public class BookService {
         return null;
     }
 
+    /**
+     * Reads the book back after a write and caches it, along with its search index entry, unless
+     * another change lands in between: an issue or return made meanwhile may not be in the row
+     * yet, and caching it would overwrite the adjustment. After a few tries the whole catalog is
+     * invalidated instead, so it is loaded again rather than served without the book.
+     */
+    private Book reloadRow(Connection conn, int bookId) throws SQLException {
+        for (int attempt = 0; attempt < RELOAD_ATTEMPTS; attempt++) {
+            long version = cache.getVersion();
+            Book current = loadRow(conn, bookId);
+            if (current == null) return null;
+            if (cache.remember(current, version, () -> searchIndex.put(current))) return current;
+        }
+        cache.invalidateAll();
+        return loadRow(conn, bookId);
+    }
+
+    private Book loadRow(Connection conn, int bookId) throws SQLException {
+        String sql = "SELECT id, isbn, title, author, category, publisher, published_date, total_copies, available_copies, row_version, created_at " +
+                "FROM books WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, bookId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapRowToBook(rs) : null;
+            }
+        }
+    }
+
     public boolean deleteById(int id) {
         String sql = "DELETE FROM books WHERE id = ?";
+        Book deleted = findById(id);
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, id);
             int affected = ps.executeUpdate();
+            if (affected > 0) {
+                cache.remove(id);
+                searchIndex.remove(id);
+                if (deleted != null) {
+                    stats.bookRemoved(deleted);
+                } else {
+                    stats.invalidate();
+                }
+            }
             return affected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -246,27 +528,46 @@ public class BookService {
         String sql = "UPDATE books SET available_copies = available_copies - 1 " +
                 "WHERE id = ? AND available_copies > 0";
 
+        cache.beginChange();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, bookId);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() > 0) {
+                cache.adjustAvailableCopies(bookId, -1);
+                searchIndex.adjustAvailableCopies(bookId, -1);
+                stats.availableCopiesChanged(-1);
+                return true;
+            }
+            return false;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            cache.endChange();
         }
     }
 
     public boolean incrementAvailableCopies(int bookId) {
+        // Never past the total, even if the same return is approved twice
         String sql = "UPDATE books SET available_copies = available_copies + 1 " +
-                "WHERE id = ?";
+                "WHERE id = ? AND available_copies < total_copies";
 
+        cache.beginChange();
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, bookId);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() > 0) {
+                cache.adjustAvailableCopies(bookId, 1);
+                searchIndex.adjustAvailableCopies(bookId, 1);
+                stats.availableCopiesChanged(1);
+                return true;
+            }
+            return false;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            cache.endChange();
         }
     }
 
@@ -288,6 +589,7 @@ public class BookService {
         book.setCategory(rs.getString("category"));
         book.setTotalCopies(rs.getInt("total_copies"));
         book.setAvailableCopies(rs.getInt("available_copies"));
+        book.setVersion(rs.getInt("row_version"));
 
         return book;
     }
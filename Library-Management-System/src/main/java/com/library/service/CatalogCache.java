@@ -0,0 +1,288 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.DatabaseConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the books table shared by every BookService instance.
+ *
+ * BookService writes through to the cache after each successful statement, so reads from this
+ * process never see stale rows. The full snapshot, and every single book, expires
+ * db.cache.catalogTtlMs after it was read to pick up changes made by other workstations. Every
+ * change bumps {@link #getVersion()} so views can skip reloading when nothing has changed since
+ * they last rendered; caching a row that was only read does not.
+ *
+ * Writes that the cache learns about as a delta, like a copy being issued, are bracketed by
+ * {@link #beginChange()} and {@link #endChange()}: a row or snapshot read while one is under way
+ * may already hold the change, so it is not cached, or the delta would be applied twice.
+ *
+ * Books are copied on the way in and out; callers may freely modify what they get back.
+ *
+ * Copies of books kept elsewhere, such as the rows on screen, can follow the cache through a
+ * {@link ChangeListener}, which hears about every change BookService reports.
+ */
+public class CatalogCache {
+
+    private static final class Holder {
+        private static final CatalogCache INSTANCE = new CatalogCache(DatabaseConfig.getCatalogCacheTtlMs());
+    }
+
+    private final long ttlMs;
+    private final Map<Integer, Entry> byId = new ConcurrentHashMap<>();
+    private final Map<String, Integer> byIsbn = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Integer>> byTitle = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean complete;
+    private volatile long loadedAt;
+    // Writes between beginChange and endChange; guarded by this
+    private int changesInFlight;
+
+    CatalogCache(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    public static CatalogCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Increases whenever any cached book changes or the snapshot is reloaded.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * True while the cache holds every book and the snapshot has not expired.
+     */
+    public boolean isComplete() {
+        return complete && System.currentTimeMillis() - loadedAt < ttlMs;
+    }
+
+    /**
+     * True when a full snapshot was loaded but has outlived the TTL. Unlike a cache that was
+     * never loaded or was invalidated, it is only out of date by whatever other workstations
+     * changed since, so callers may keep using what they built from it while it is reloaded.
+     */
+    public boolean isExpired() {
+        return complete && System.currentTimeMillis() - loadedAt >= ttlMs;
+    }
+
+    /**
+     * All books ordered by id, or null when the snapshot is missing or expired.
+     */
+    public List<Book> findAll() {
+        if (!isComplete()) return null;
+        List<Book> books = new ArrayList<>(byId.size());
+        for (Entry entry : byId.values()) {
+            books.add(new Book(entry.book));
+        }
+        books.sort(Comparator.comparingInt(Book::getBookId));
+        return books;
+    }
+
+    /**
+     * The cached book, or null when it is not cached or was read longer than the TTL ago.
+     */
+    public Book findById(int id) {
+        return fresh(byId.get(id));
+    }
+
+    public Book findByIsbn(String isbn) {
+        if (isbn == null) return null;
+        Integer id = byIsbn.get(isbn);
+        return id == null ? null : fresh(byId.get(id));
+    }
+
+    public Book findByTitle(String title) {
+        if (title == null) return null;
+        NavigableSet<Integer> ids = byTitle.get(title);
+        if (ids == null || ids.isEmpty()) return null;
+        return fresh(byId.get(ids.first()));
+    }
+
+    /**
+     * Installs a full snapshot read from the database, unless the cache changed while it was read.
+     *
+     * @param whileLocked run after the snapshot is installed and before the lock is released, so
+     *                    whatever it installs alongside cannot miss a change made in between
+     */
+    public synchronized boolean loadAll(List<Book> books, long expectedVersion, Runnable whileLocked) {
+        if (changesInFlight > 0 || version.get() != expectedVersion) return false;
+
+        byId.clear();
+        byIsbn.clear();
+        byTitle.clear();
+        long now = System.currentTimeMillis();
+        for (Book book : books) {
+            index(new Entry(new Book(book), now));
+        }
+        complete = true;
+        loadedAt = now;
+        if (whileLocked != null) whileLocked.run();
+        version.incrementAndGet();
+        // The new snapshot may carry changes made by other workstations
+        fireAllChanged();
+        return true;
+    }
+
+    /**
+     * Caches a single row read from the database, unless the cache changed while it was read.
+     * A read is not a change, so the version stays put and listeners are not told.
+     */
+    public boolean remember(Book book, long expectedVersion) {
+        return remember(book, expectedVersion, null);
+    }
+
+    /**
+     * Like {@link #remember(Book, long)}, and runs {@code whileLocked} if the row was cached,
+     * before the lock is released, so what it installs alongside cannot miss a change.
+     *
+     * @return whether the row was cached
+     */
+    public synchronized boolean remember(Book book, long expectedVersion, Runnable whileLocked) {
+        if (book == null || changesInFlight > 0 || version.get() != expectedVersion) return false;
+        unindex(book.getBookId());
+        index(new Entry(new Book(book), System.currentTimeMillis()));
+        if (whileLocked != null) whileLocked.run();
+        return true;
+    }
+
+    public synchronized void put(Book book) {
+        unindex(book.getBookId());
+        index(new Entry(new Book(book), System.currentTimeMillis()));
+        version.incrementAndGet();
+        fireBookChanged(book.getBookId());
+    }
+
+    public synchronized void remove(int id) {
+        if (unindex(id) != null) {
+            version.incrementAndGet();
+        }
+        fireBookChanged(id);
+    }
+
+    /**
+     * Call before running a write the cache will then be told about, and {@link #endChange()}
+     * once it has been, whether or not the write went through. Until then nothing read from the
+     * database is cached.
+     */
+    public synchronized void beginChange() {
+        changesInFlight++;
+        version.incrementAndGet();
+    }
+
+    public synchronized void endChange() {
+        changesInFlight--;
+        // A read that took the version while the write was under way may have missed it
+        version.incrementAndGet();
+    }
+
+    public synchronized void adjustAvailableCopies(int id, int delta) {
+        Entry current = byId.get(id);
+        if (current != null) {
+            Book updated = new Book(current.book);
+            updated.setAvailableCopies(current.book.getAvailableCopies() + delta);
+            // The rest of the row is as old as it was, so it keeps its read time
+            byId.put(id, new Entry(updated, current.cachedAt));
+            version.incrementAndGet();
+        }
+        // Listeners may hold the book even when the cache does not
+        fireBookChanged(id);
+    }
+
+    public synchronized void invalidateAll() {
+        byId.clear();
+        byIsbn.clear();
+        byTitle.clear();
+        complete = false;
+        version.incrementAndGet();
+        fireAllChanged();
+    }
+
+    private void fireBookChanged(int id) {
+        for (ChangeListener listener : listeners) {
+            listener.bookChanged(id);
+        }
+    }
+
+    private void fireAllChanged() {
+        for (ChangeListener listener : listeners) {
+            listener.allChanged();
+        }
+    }
+
+    private void index(Entry entry) {
+        Book book = entry.book;
+        byId.put(book.getBookId(), entry);
+        if (book.getIsbn() != null) {
+            byIsbn.put(book.getIsbn(), book.getBookId());
+        }
+        if (book.getTitle() != null) {
+            byTitle.computeIfAbsent(book.getTitle(), t -> new ConcurrentSkipListSet<>()).add(book.getBookId());
+        }
+    }
+
+    private Book unindex(int id) {
+        Entry removed = byId.remove(id);
+        if (removed == null) return null;
+        Book old = removed.book;
+        if (old.getIsbn() != null) {
+            byIsbn.remove(old.getIsbn(), id);
+        }
+        if (old.getTitle() != null) {
+            NavigableSet<Integer> ids = byTitle.get(old.getTitle());
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) byTitle.remove(old.getTitle());
+            }
+        }
+        return old;
+    }
+
+    private Book fresh(Entry entry) {
+        if (entry == null || System.currentTimeMillis() - entry.cachedAt >= ttlMs) return null;
+        return new Book(entry.book);
+    }
+
+    private static final class Entry {
+        private final Book book;
+        private final long cachedAt;
+
+        private Entry(Book book, long cachedAt) {
+            this.book = book;
+            this.cachedAt = cachedAt;
+        }
+    }
+
+    /**
+     * Told about each change right after it is made, on the thread that made it and while the
+     * cache is locked, so listeners see changes in order but must return quickly.
+     */
+    public interface ChangeListener {
+        /** The book with this id was added, changed or deleted. */
+        void bookChanged(int bookId);
+
+        /** Any book may have changed. */
+        void allChanged();
+    }
+}
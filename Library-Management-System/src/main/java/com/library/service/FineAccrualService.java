@@ -0,0 +1,219 @@
+package com.library.service;
+
+import com.library.jfr.FineGenerationEvent;
+import com.library.util.DatabaseConnection;
+import com.library.util.SchemaMigrator;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a running fine for every overdue loan in the fine_accruals ledger, so screens read the
+ * current amount with the loan instead of recomputing it.
+ *
+ * Each ledger row records how many overdue days have been charged and up to which date. An
+ * accrual run advances every overdue, still issued loan from its accrued_through date to the
+ * run date, adding the charge for the new days at their tier rate (100 per day for days 1-5,
+ * 200 for days 6-10, 500 from day 11). Rows already current are skipped, so running twice on
+ * the same day does nothing, and a run after the app was down for a while catches up all the
+ * missed days in one pass.
+ *
+ * Loans are processed in id order, one transaction per chunk, like
+ * {@link LoanService#generateFinesForOverdueLoans(int, int, LoanService.FineGenerationListener)}.
+ */
+public class FineAccrualService {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static volatile boolean ledgerChecked;
+    private static volatile boolean ledgerReady;
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Makes sure this database has the ledger table, which the schema migrations create. The
+     * migrations are only tried once: if they failed, later calls return false straight away
+     * rather than waiting on the migration lock again, and the queries report the missing table.
+     */
+    public static boolean ensureLedger() {
+        if (!ledgerChecked) {
+            ledgerReady = SchemaMigrator.ensureCurrent();
+            ledgerChecked = true;
+        }
+        return ledgerReady;
+    }
+
+    /**
+     * Catches up on any days missed while the app was down, then accrues again shortly after
+     * every midnight. Safe to call more than once.
+     */
+    public static synchronized void startDailyAccrual() {
+        if (scheduler != null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-fine-accrual");
+            t.setDaemon(true);
+            return t;
+        });
+        FineAccrualService service = new FineAccrualService();
+        scheduler.execute(service::catchUp);
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextRun = now.toLocalDate().plusDays(1).atTime(0, 5);
+        scheduler.scheduleAtFixedRate(service::catchUp,
+                ChronoUnit.MILLIS.between(now, nextRun), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopDailyAccrual() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Accrues fines through today.
+     */
+    public AccrualResult catchUp() {
+        return accrueThrough(LocalDate.now());
+    }
+
+    /**
+     * Advances every overdue issued loan whose ledger row is behind {@code day}.
+     */
+    public AccrualResult accrueThrough(LocalDate day) {
+        FineGenerationEvent event = new FineGenerationEvent();
+        event.begin();
+        ensureLedger();
+        AccrualResult result = new AccrualResult(day);
+
+        String selectSql = "SELECT l.id, l.reader_id, l.due_date, a.days_overdue, a.amount, a.accrued_through " +
+                "FROM loans l " +
+                "LEFT JOIN fine_accruals a ON a.loan_id = l.id " +
+                "WHERE l.status = 'ISSUED' AND l.due_date < ? AND l.id > ? " +
+                "AND (a.loan_id IS NULL OR a.accrued_through < ?) " +
+                "ORDER BY l.id LIMIT ?";
+        // Existing rows are updated and new ones inserted rather than upserted: MySQL deprecated
+        // ON DUPLICATE KEY UPDATE ... VALUES(), and the SELECT already says which rows exist
+        String updateSql = "UPDATE fine_accruals SET days_overdue = ?, amount = ?, accrued_through = ? " +
+                "WHERE loan_id = ?";
+        String insertSql = "INSERT INTO fine_accruals (loan_id, reader_id, days_overdue, amount, accrued_through) " +
+                "VALUES (?, ?, ?, ?, ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(selectSql);
+                 PreparedStatement update = conn.prepareStatement(updateSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+
+                int lastLoanId = 0;
+                boolean retried = false;
+                while (true) {
+                    int chunkStart = lastLoanId;
+                    select.setDate(1, Date.valueOf(day));
+                    select.setInt(2, lastLoanId);
+                    select.setDate(3, Date.valueOf(day));
+                    select.setInt(4, CHUNK_SIZE);
+
+                    int loans = 0;
+                    int inserts = 0;
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            loans++;
+                            lastLoanId = rs.getInt("id");
+                            LocalDate dueDate = rs.getDate("due_date").toLocalDate();
+                            int chargedDays = rs.getInt("days_overdue");
+                            double amount = rs.getDouble("amount");
+                            Date accruedThrough = rs.getDate("accrued_through");
+
+                            int daysOverdue = (int) ChronoUnit.DAYS.between(dueDate, day);
+                            amount += accrual(chargedDays, daysOverdue);
+                            if (accruedThrough != null) {
+                                long missed = ChronoUnit.DAYS.between(accruedThrough.toLocalDate(), day);
+                                result.maxDaysCaughtUp = Math.max(result.maxDaysCaughtUp, missed);
+
+                                update.setInt(1, daysOverdue);
+                                update.setDouble(2, amount);
+                                update.setDate(3, Date.valueOf(day));
+                                update.setInt(4, lastLoanId);
+                                update.addBatch();
+                            } else {
+                                insert.setInt(1, lastLoanId);
+                                insert.setInt(2, rs.getInt("reader_id"));
+                                insert.setInt(3, daysOverdue);
+                                insert.setDouble(4, amount);
+                                insert.setDate(5, Date.valueOf(day));
+                                insert.addBatch();
+                                inserts++;
+                            }
+                        }
+                    }
+                    if (loans == 0) break;
+
+                    try {
+                        if (loans > inserts) update.executeBatch();
+                        if (inserts > 0) insert.executeBatch();
+                    } catch (BatchUpdateException e) {
+                        // Another workstation added one of these rows since the SELECT; read the
+                        // chunk again so those loans take the update path
+                        String state = e.getSQLState();
+                        if (retried || state == null || !state.startsWith("23")) throw e;
+                        conn.rollback();
+                        update.clearBatch();
+                        insert.clearBatch();
+                        lastLoanId = chunkStart;
+                        retried = true;
+                        continue;
+                    }
+                    conn.commit();
+                    retried = false;
+                    result.loansAccrued += loans;
+                    if (loans < CHUNK_SIZE) break;
+                }
+                result.completed = true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        event.complete("accrue", result.loansAccrued, result.loansAccrued, result.completed);
+        return result;
+    }
+
+    /**
+     * Charge for overdue days {@code chargedDays + 1} through {@code daysOverdue}.
+     */
+    static double accrual(int chargedDays, int daysOverdue) {
+        if (daysOverdue <= chargedDays) return 0;
+        return FineService.fineForDaysOverdue(daysOverdue) - FineService.fineForDaysOverdue(chargedDays);
+    }
+
+    public static final class AccrualResult {
+        private final LocalDate day;
+        private int loansAccrued;
+        private long maxDaysCaughtUp;
+        private boolean completed;
+
+        private AccrualResult(LocalDate day) {
+            this.day = day;
+        }
+
+        public LocalDate getDay() { return day; }
+        public int getLoansAccrued() { return loansAccrued; }
+        /** Largest number of days a single loan was advanced by; above 1 means days were missed. */
+        public long getMaxDaysCaughtUp() { return maxDaysCaughtUp; }
+        public boolean isCompleted() { return completed; }
+
+        @Override
+        public String toString() {
+            return "AccrualResult{day=" + day + ", loansAccrued=" + loansAccrued +
+                    ", maxDaysCaughtUp=" + maxDaysCaughtUp + ", completed=" + completed + "}";
+        }
+    }
+}
@@ -19,14 +19,28 @@ public class FineService {
      * Days 11+: 500 per day
      */
     public double calculateFine(LocalDate dueDate) {
-        LocalDate today = LocalDate.now();
+        return calculateFine(dueDate, LocalDate.now());
+    }
 
+    /**
+     * Fine for a loan due on {@code dueDate} as of {@code today}, using the tiers above.
+     */
+    public double calculateFine(LocalDate dueDate, LocalDate today) {
         if (today.isBefore(dueDate) || today.equals(dueDate)) {
             return 0; // No fine yet
         }
 
-        long daysOverdue = ChronoUnit.DAYS.between(dueDate, today);
-        double fine = 0;
+        return fineForDaysOverdue(ChronoUnit.DAYS.between(dueDate, today));
+    }
+
+    /**
+     * Total fine once a loan is {@code daysOverdue} days late, using the tiers above.
+     */
+    public static double fineForDaysOverdue(long daysOverdue) {
+        if (daysOverdue <= 0) {
+            return 0;
+        }
+        double fine;
 
         if (daysOverdue <= 5) {
             fine = daysOverdue * 100;
@@ -39,25 +53,41 @@ public class FineService {
         return fine;
     }
 
+    /**
+     * Uses the amount accrued in the fine ledger when it is current, see {@link FineAccrualService};
+     * otherwise computes the fine from the due date.
+     */
     public double calculateFineForLoan(Loan loan) {
         if (loan == null || loan.getDueDate() == null) {
             return 0;
         }
-        return calculateFine(loan.getDueDate());
+        LocalDate today = LocalDate.now();
+        if (loan.getFineAccruedThrough() != null && !loan.getFineAccruedThrough().isBefore(today)) {
+            return loan.getAccruedFine();
+        }
+        return calculateFine(loan.getDueDate(), today);
     }
 
     public boolean addFine(Fine fine) {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return insertFine(conn, fine);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static boolean insertFine(Connection conn, Fine fine) throws SQLException {
         String sql = "INSERT INTO fines (loan_id, reader_id, amount, status, created_date) " +
                 "VALUES (?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, fine.getLoanId());
             ps.setInt(2, fine.getReaderId());
             ps.setDouble(3, fine.getAmount());
             ps.setString(4, fine.getStatus());
-            ps.setDate(5, Date.valueOf(fine.getCreatedDate()));
+            // The return dialog builds fines without a date
+            ps.setDate(5, Date.valueOf(fine.getCreatedDate() != null ? fine.getCreatedDate() : LocalDate.now()));
 
             int affected = ps.executeUpdate();
             if (affected == 0) return false;
@@ -68,6 +98,44 @@ public class FineService {
                 }
             }
             return true;
+        }
+    }
+
+    /**
+     * Adds the fine unless its loan already has one. The loan row is locked while checking, so
+     * two librarians handling the same loan cannot both add a fine. Returns true when the loan
+     * has a fine afterwards; the fine's id is only set if this call added it.
+     */
+    public boolean addFineIfNoneForLoan(Fine fine) {
+        String lockSql = "SELECT id FROM loans WHERE id = ? FOR UPDATE";
+        String existsSql = "SELECT 1 FROM fines WHERE loan_id = ? LIMIT 1";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(lockSql)) {
+                    ps.setInt(1, fine.getLoanId());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return false;
+                        }
+                    }
+                }
+                boolean exists;
+                try (PreparedStatement ps = conn.prepareStatement(existsSql)) {
+                    ps.setInt(1, fine.getLoanId());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        exists = rs.next();
+                    }
+                }
+                if (!exists) insertFine(conn, fine);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -83,23 +151,10 @@ public class FineService {
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, readerId);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                Fine fine = new Fine();
-                fine.setFineId(rs.getInt("id"));
-                fine.setLoanId(rs.getInt("loan_id"));
-                fine.setReaderId(rs.getInt("reader_id"));
-                fine.setAmount(rs.getDouble("amount"));
-                fine.setStatus(rs.getString("status"));
-                fine.setCreatedDate(rs.getDate("created_date").toLocalDate());
-
-                Date paidDate = rs.getDate("paid_date");
-                if (paidDate != null) {
-                    fine.setPaidDate(paidDate.toLocalDate());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    fines.add(mapRowToFine(rs));
                 }
-
-                fines.add(fine);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -116,23 +171,10 @@ public class FineService {
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, readerId);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                Fine fine = new Fine();
-                fine.setFineId(rs.getInt("id"));
-                fine.setLoanId(rs.getInt("loan_id"));
-                fine.setReaderId(rs.getInt("reader_id"));
-                fine.setAmount(rs.getDouble("amount"));
-                fine.setStatus(rs.getString("status"));
-                fine.setCreatedDate(rs.getDate("created_date").toLocalDate());
-
-                Date paidDate = rs.getDate("paid_date");
-                if (paidDate != null) {
-                    fine.setPaidDate(paidDate.toLocalDate());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    fines.add(mapRowToFine(rs));
                 }
-
-                fines.add(fine);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -189,4 +231,20 @@ public class FineService {
             return false;
         }
     }
+
+    static Fine mapRowToFine(ResultSet rs) throws SQLException {
+        Fine fine = new Fine();
+        fine.setFineId(rs.getInt("id"));
+        fine.setLoanId(rs.getInt("loan_id"));
+        fine.setReaderId(rs.getInt("reader_id"));
+        fine.setAmount(rs.getDouble("amount"));
+        fine.setStatus(rs.getString("status"));
+        fine.setCreatedDate(rs.getDate("created_date").toLocalDate());
+
+        Date paidDate = rs.getDate("paid_date");
+        if (paidDate != null) {
+            fine.setPaidDate(paidDate.toLocalDate());
+        }
+        return fine;
+    }
 }
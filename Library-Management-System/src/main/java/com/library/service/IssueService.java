@@ -0,0 +1,132 @@
+package com.library.service;
+
+import com.library.jfr.LoanIssueEvent;
+import com.library.util.DatabaseConnection;
+
+import java.sql.*;
+import java.time.LocalDate;
+
+/**
+ * Issues a book for a pending request in one transaction: claims the request, takes a copy and
+ * creates the loan. Each step is a conditional update, so two librarians approving at the same
+ * time can neither issue the same request twice nor issue more copies than the book has.
+ */
+public class IssueService {
+
+    public static final int DEFAULT_LOAN_DAYS = 14;
+
+    public enum Outcome {
+        ISSUED,
+        REQUEST_NOT_FOUND,
+        NOT_AN_ISSUE_REQUEST,
+        ALREADY_PROCESSED,
+        NO_COPIES_AVAILABLE,
+        FAILED
+    }
+
+    private final CatalogCache cache = CatalogCache.getInstance();
+    private final BookSearchIndex searchIndex = BookSearchIndex.getInstance();
+    private final StatsService stats = StatsService.getInstance();
+
+    public Outcome issue(int requestId, int librarianId) {
+        LocalDate today = LocalDate.now();
+        return issue(requestId, librarianId, today, today.plusDays(DEFAULT_LOAN_DAYS));
+    }
+
+    public Outcome issue(int requestId, int librarianId, LocalDate issueDate, LocalDate dueDate) {
+        LoanIssueEvent event = new LoanIssueEvent();
+        event.begin();
+        Outcome outcome;
+        // The copy is taken in the database before the cache hears of it
+        cache.beginChange();
+        try {
+            outcome = issueInTransaction(requestId, librarianId, issueDate, dueDate, event);
+        } finally {
+            cache.endChange();
+        }
+        event.complete(requestId, event.loanId, event.bookId, event.readerId, librarianId, outcome.name());
+        return outcome;
+    }
+
+    // Fills in the event's book and reader once the request has been read, and its loan once created
+    private Outcome issueInTransaction(int requestId, int librarianId, LocalDate issueDate, LocalDate dueDate,
+                                       LoanIssueEvent event) {
+        String requestSql = "SELECT book_id, reader_id, request_type FROM book_requests WHERE id = ?";
+        String claimSql = "UPDATE book_requests SET status = 'APPROVED', librarian_id = ?, resolved_at = NOW() " +
+                "WHERE id = ? AND status = 'PENDING'";
+        String copySql = "UPDATE books SET available_copies = available_copies - 1 " +
+                "WHERE id = ? AND available_copies > 0";
+        String loanSql = "INSERT INTO loans (book_id, reader_id, librarian_id, issue_date, due_date, status, notes) " +
+                "VALUES (?, ?, ?, ?, ?, 'ISSUED', NULL)";
+
+        int bookId;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int readerId;
+                try (PreparedStatement ps = conn.prepareStatement(requestSql)) {
+                    ps.setInt(1, requestId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return Outcome.REQUEST_NOT_FOUND;
+                        }
+                        if ("RETURN".equals(rs.getString("request_type"))) {
+                            conn.rollback();
+                            return Outcome.NOT_AN_ISSUE_REQUEST;
+                        }
+                        bookId = rs.getInt("book_id");
+                        readerId = rs.getInt("reader_id");
+                        event.bookId = bookId;
+                        event.readerId = readerId;
+                    }
+                }
+
+                // Claim the request first; a concurrent approval of the same request finds it no longer PENDING
+                try (PreparedStatement ps = conn.prepareStatement(claimSql)) {
+                    ps.setInt(1, librarianId);
+                    ps.setInt(2, requestId);
+                    if (ps.executeUpdate() == 0) {
+                        conn.rollback();
+                        return Outcome.ALREADY_PROCESSED;
+                    }
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(copySql)) {
+                    ps.setInt(1, bookId);
+                    if (ps.executeUpdate() == 0) {
+                        conn.rollback();
+                        return Outcome.NO_COPIES_AVAILABLE;
+                    }
+                }
+
+                int loanId = 0;
+                try (PreparedStatement ps = conn.prepareStatement(loanSql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, bookId);
+                    ps.setInt(2, readerId);
+                    ps.setInt(3, librarianId);
+                    ps.setDate(4, Date.valueOf(issueDate));
+                    ps.setDate(5, Date.valueOf(dueDate));
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (keys.next()) loanId = keys.getInt(1);
+                    }
+                }
+
+                conn.commit();
+                event.loanId = loanId;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return Outcome.FAILED;
+        }
+
+        cache.adjustAvailableCopies(bookId, -1);
+        searchIndex.adjustAvailableCopies(bookId, -1);
+        stats.availableCopiesChanged(-1);
+        return Outcome.ISSUED;
+    }
+}
@@ -1,7 +1,11 @@
 package com.library.service;
 
+import com.library.jfr.FineGenerationEvent;
+import com.library.jfr.LoanIssueEvent;
+import com.library.jfr.LoanReturnEvent;
 import com.library.model.Fine;
 import com.library.model.Loan;
+import com.library.model.ReaderDashboardSnapshot;
 import com.library.util.DatabaseConnection;
 
 import java.sql.*;
@@ -12,38 +16,23 @@ import java.util.List;
 public class LoanService {
 
     public List<Loan> findActiveLoansByReaderId(int readerId) {
+        FineAccrualService.ensureLedger(); // loans are read with their accrued fine
         List<Loan> loans = new ArrayList<>();
         String sql = "SELECT l.id, l.book_id, l.reader_id, l.issue_date, l.due_date, l.return_date, l.status, " +
-                "b.title, b.author, b.isbn " +
+                "b.title, b.author, b.isbn, a.amount AS accrued_fine, a.accrued_through " +
                 "FROM loans l " +
                 "JOIN books b ON l.book_id = b.id " +
+                "LEFT JOIN fine_accruals a ON a.loan_id = l.id " +
                 "WHERE l.reader_id = ? AND l.status = 'ISSUED'";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, readerId);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                Loan loan = new Loan();
-                loan.setLoanId(rs.getInt("id"));
-                loan.setBookId(rs.getInt("book_id"));
-                loan.setReaderId(rs.getInt("reader_id"));
-                loan.setBorrowedDate(rs.getDate("issue_date").toLocalDate());
-                loan.setDueDate(rs.getDate("due_date").toLocalDate());
-
-                Date returnDate = rs.getDate("return_date");
-                if (returnDate != null) {
-                    loan.setReturnDate(returnDate.toLocalDate());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    loans.add(mapRowToLoan(rs));
                 }
-
-                loan.setStatus(rs.getString("status"));
-                loan.setBookTitle(rs.getString("title"));
-                loan.setBookAuthor(rs.getString("author"));
-                loan.setBookIsbn(rs.getString("isbn"));
-
-                loans.add(loan);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -52,11 +41,13 @@ public class LoanService {
     }
 
     public List<Loan> findLoanHistoryByReaderId(int readerId) {
+        FineAccrualService.ensureLedger(); // loans are read with their accrued fine
         List<Loan> history = new ArrayList<>();
         String sql = "SELECT l.id, l.book_id, l.reader_id, l.issue_date, l.due_date, l.return_date, l.status, " +
-                "b.title, b.author, b.isbn " +
+                "b.title, b.author, b.isbn, a.amount AS accrued_fine, a.accrued_through " +
                 "FROM loans l " +
                 "JOIN books b ON l.book_id = b.id " +
+                "LEFT JOIN fine_accruals a ON a.loan_id = l.id " +
                 "WHERE l.reader_id = ? AND l.status = 'RETURNED' " +
                 "ORDER BY l.return_date DESC";
 
@@ -64,32 +55,91 @@ public class LoanService {
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, readerId);
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                Loan loan = new Loan();
-                loan.setLoanId(rs.getInt("id"));
-                loan.setBookId(rs.getInt("book_id"));
-                loan.setReaderId(rs.getInt("reader_id"));
-                loan.setBorrowedDate(rs.getDate("issue_date").toLocalDate());
-                loan.setDueDate(rs.getDate("due_date").toLocalDate());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    history.add(mapRowToLoan(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return history;
+    }
 
-                Date returnDate = rs.getDate("return_date");
-                if (returnDate != null) {
-                    loan.setReturnDate(returnDate.toLocalDate());
+    /**
+     * Loads the reader dashboard (summary counters, active loans, history and fines) over a single
+     * connection: one aggregate query for the counters, one for all of the reader's loans and one
+     * for their fines. Replaces the five count queries and repeated loan lookups the dashboard
+     * used to make on separate connections.
+     */
+    public ReaderDashboardSnapshot loadReaderDashboard(int readerId, int dueSoonDays) {
+        FineAccrualService.ensureLedger(); // loans are read with their accrued fine
+        ReaderDashboardSnapshot snapshot = new ReaderDashboardSnapshot(readerId);
+        LocalDate today = LocalDate.now();
+
+        String countsSql = "SELECT " +
+                "COALESCE(SUM(CASE WHEN status = 'ISSUED' THEN 1 ELSE 0 END), 0) AS active_count, " +
+                "COALESCE(SUM(CASE WHEN status = 'ISSUED' AND due_date BETWEEN ? AND ? THEN 1 ELSE 0 END), 0) AS due_soon_count, " +
+                "COALESCE(SUM(CASE WHEN status = 'ISSUED' AND due_date < ? THEN 1 ELSE 0 END), 0) AS overdue_count, " +
+                "COALESCE(SUM(CASE WHEN status = 'RETURNED' THEN 1 ELSE 0 END), 0) AS read_count, " +
+                "(SELECT COALESCE(SUM(amount), 0) FROM fines WHERE reader_id = ? AND status = 'UNPAID') AS unpaid_fines " +
+                "FROM loans WHERE reader_id = ?";
+
+        String loansSql = "SELECT l.id, l.book_id, l.reader_id, l.issue_date, l.due_date, l.return_date, l.status, " +
+                "b.title, b.author, b.isbn, a.amount AS accrued_fine, a.accrued_through " +
+                "FROM loans l " +
+                "JOIN books b ON l.book_id = b.id " +
+                "LEFT JOIN fine_accruals a ON a.loan_id = l.id " +
+                "WHERE l.reader_id = ? AND l.status IN ('ISSUED', 'RETURNED') " +
+                "ORDER BY l.return_date DESC, l.id";
+
+        String finesSql = "SELECT id, loan_id, reader_id, amount, status, created_date, paid_date " +
+                "FROM fines WHERE reader_id = ? ORDER BY created_date DESC";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(countsSql)) {
+                ps.setDate(1, Date.valueOf(today));
+                ps.setDate(2, Date.valueOf(today.plusDays(dueSoonDays)));
+                ps.setDate(3, Date.valueOf(today));
+                ps.setInt(4, readerId);
+                ps.setInt(5, readerId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        snapshot.setActiveLoanCount(rs.getInt("active_count"));
+                        snapshot.setDueSoonCount(rs.getInt("due_soon_count"));
+                        snapshot.setOverdueCount(rs.getInt("overdue_count"));
+                        snapshot.setTotalBooksRead(rs.getInt("read_count"));
+                        snapshot.setTotalUnpaidFines(rs.getDouble("unpaid_fines"));
+                    }
                 }
+            }
 
-                loan.setStatus(rs.getString("status"));
-                loan.setBookTitle(rs.getString("title"));
-                loan.setBookAuthor(rs.getString("author"));
-                loan.setBookIsbn(rs.getString("isbn"));
+            try (PreparedStatement ps = conn.prepareStatement(loansSql)) {
+                ps.setInt(1, readerId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Loan loan = mapRowToLoan(rs);
+                        if ("ISSUED".equals(loan.getStatus())) {
+                            snapshot.getActiveLoans().add(loan);
+                        } else {
+                            snapshot.getHistory().add(loan);
+                        }
+                    }
+                }
+            }
 
-                history.add(loan);
+            try (PreparedStatement ps = conn.prepareStatement(finesSql)) {
+                ps.setInt(1, readerId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        snapshot.getFines().add(FineService.mapRowToFine(rs));
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return history;
+        return snapshot;
     }
 
     public int countActiveLoansByReaderId(int readerId) {
@@ -113,17 +163,19 @@ public class LoanService {
     public int countDueSoonByReaderId(int readerId, int daysThreshold) {
         String sql = "SELECT COUNT(*) FROM loans " +
                 "WHERE reader_id = ? AND status = 'ISSUED' " +
-                "AND due_date BETWEEN CURDATE() AND DATE_ADD(CURDATE(), INTERVAL ? DAY)";
+                "AND due_date BETWEEN ? AND ?";
+        LocalDate today = LocalDate.now();
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, readerId);
-            ps.setInt(2, daysThreshold);
-            ResultSet rs = ps.executeQuery();
-
-            if (rs.next()) {
-                return rs.getInt(1);
+            ps.setDate(2, Date.valueOf(today));
+            ps.setDate(3, Date.valueOf(today.plusDays(daysThreshold)));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -169,33 +221,101 @@ public class LoanService {
         return 0;
     }
 
-    public void generateFinesForOverdueLoans() {
-        FineService fineService = new FineService();
-
-        // Get all overdue issued loans without existing fines
-        String sql = "SELECT l.id, l.reader_id, l.due_date FROM loans l " +
-                "WHERE l.status = 'ISSUED' AND l.due_date < CURDATE() " +
-                "AND NOT EXISTS (SELECT 1 FROM fines f WHERE f.loan_id = l.id)";
+    // Overdue loans fined per transaction by generateFinesForOverdueLoans
+    public static final int FINE_CHUNK_SIZE = 500;
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+    public FineGenerationResult generateFinesForOverdueLoans() {
+        return generateFinesForOverdueLoans(0, FINE_CHUNK_SIZE, null);
+    }
 
-            while (rs.next()) {
-                int loanId = rs.getInt("id");
-                int readerId = rs.getInt("reader_id");
-                LocalDate dueDate = rs.getDate("due_date").toLocalDate();
+    /**
+     * Fines every overdue loan that does not have a fine yet, walking loans in id order in chunks of
+     * {@code chunkSize}. Each chunk is read, priced and written with one batch insert in its own
+     * transaction, so a failure only rolls back the chunk in progress. Because loans that already
+     * have a fine are skipped, running the job again (or passing the result's
+     * {@link FineGenerationResult#getLastLoanId()} as {@code afterLoanId}) resumes where it stopped.
+     *
+     * @param afterLoanId only loans with a larger id are considered; 0 for all
+     * @param listener    told after every committed chunk, may be null
+     */
+    public FineGenerationResult generateFinesForOverdueLoans(int afterLoanId, int chunkSize, FineGenerationListener listener) {
+        FineGenerationEvent event = new FineGenerationEvent();
+        event.begin();
+        FineService fineService = new FineService();
+        LocalDate today = LocalDate.now();
+        FineGenerationResult result = new FineGenerationResult(afterLoanId);
 
-                double fineAmount = fineService.calculateFine(dueDate);
+        String pending = "FROM loans l " +
+                "WHERE l.status = 'ISSUED' AND l.due_date < ? AND l.id > ? " +
+                "AND NOT EXISTS (SELECT 1 FROM fines f WHERE f.loan_id = l.id)";
+        String countSql = "SELECT COUNT(*) " + pending;
+        String chunkSql = "SELECT l.id, l.reader_id, l.due_date " + pending + " ORDER BY l.id LIMIT ?";
+        String insertSql = "INSERT INTO fines (loan_id, reader_id, amount, status, created_date) " +
+                "VALUES (?, ?, ?, 'UNPAID', ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int total = 0;
+            try (PreparedStatement ps = conn.prepareStatement(countSql)) {
+                ps.setDate(1, Date.valueOf(today));
+                ps.setInt(2, afterLoanId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) total = rs.getInt(1);
+                }
+            }
 
-                if (fineAmount > 0) {
-                    Fine fine = new Fine(loanId, readerId, fineAmount);
-                    fineService.addFine(fine);
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(chunkSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+
+                while (true) {
+                    select.setDate(1, Date.valueOf(today));
+                    select.setInt(2, result.lastLoanId);
+                    select.setInt(3, chunkSize);
+
+                    int loans = 0;
+                    int fines = 0;
+                    int lastLoanId = result.lastLoanId;
+                    // Read the whole chunk before writing so no cursor stays open across the inserts
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            loans++;
+                            lastLoanId = rs.getInt("id");
+                            double amount = fineService.calculateFine(rs.getDate("due_date").toLocalDate(), today);
+                            if (amount <= 0) continue;
+
+                            insert.setInt(1, lastLoanId);
+                            insert.setInt(2, rs.getInt("reader_id"));
+                            insert.setDouble(3, amount);
+                            insert.setDate(4, Date.valueOf(today));
+                            insert.addBatch();
+                            fines++;
+                        }
+                    }
+                    if (loans == 0) break;
+
+                    if (fines > 0) insert.executeBatch();
+                    conn.commit();
+
+                    result.loansProcessed += loans;
+                    result.finesCreated += fines;
+                    result.chunks++;
+                    result.lastLoanId = lastLoanId;
+                    if (listener != null) {
+                        listener.onChunkCommitted(result.loansProcessed, total, lastLoanId);
+                    }
+                    if (loans < chunkSize) break;
                 }
+                result.completed = true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            result.failure = e;
         }
+        event.complete("generate", result.loansProcessed, result.finesCreated, result.completed);
+        return result;
     }
 
     public boolean issueBook(int bookId, int readerId, LocalDate borrowDate, LocalDate dueDate) {
@@ -203,6 +323,10 @@ public class LoanService {
     }
 
     public boolean issueBook(int bookId, int readerId, int librarianId, LocalDate issueDate, LocalDate dueDate, String notes) {
+        LoanIssueEvent event = new LoanIssueEvent();
+        event.begin();
+        boolean issued = false;
+        int loanId = 0;
         String sql = "INSERT INTO loans (book_id, reader_id, librarian_id, issue_date, due_date, status, notes) " +
                 "VALUES (?, ?, ?, ?, ?, 'ISSUED', ?)";
 
@@ -217,42 +341,67 @@ public class LoanService {
             ps.setString(6, notes);
 
             int affected = ps.executeUpdate();
-            return affected > 0;
+            issued = affected > 0;
+            if (issued) {
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (keys.next()) loanId = keys.getInt(1);
+                }
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
         }
+        event.complete(0, loanId, bookId, readerId, librarianId, issued ? "ISSUED" : "FAILED");
+        return issued;
     }
 
     public boolean returnBook(int loanId) {
-        String sql = "UPDATE loans SET status = 'RETURNED', return_date = CURDATE() WHERE id = ?";
+        LoanReturnEvent event = new LoanReturnEvent();
+        event.begin();
+        boolean returned = false;
+        // A loan already returned stays as it was, so two approvals cannot return it twice
+        String sql = "UPDATE loans SET status = 'RETURNED', return_date = CURDATE() WHERE id = ? AND status = 'ISSUED'";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, loanId);
-            return ps.executeUpdate() > 0;
+            returned = ps.executeUpdate() > 0;
 
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
         }
+        event.complete(loanId, returned);
+        return returned;
     }
 
     public Loan findActiveLoanByBookId(int bookId) {
+        return findIssuedLoan("l.book_id = ?", bookId);
+    }
+
+    /**
+     * The reader's loan of this book that is still out. Unlike {@link #findActiveLoanByBookId(int)},
+     * it is not some other reader's copy of the same book.
+     */
+    public Loan findActiveLoan(int bookId, int readerId) {
+        return findIssuedLoan("l.book_id = ? AND l.reader_id = ?", bookId, readerId);
+    }
+
+    private Loan findIssuedLoan(String filter, int... params) {
         String sql = "SELECT l.id, l.book_id, l.reader_id, l.issue_date, l.due_date, l.return_date, l.status, " +
                 "b.title, b.author, b.isbn, u.full_name as reader_name " +
                 "FROM loans l " +
                 "JOIN books b ON l.book_id = b.id " +
                 "JOIN users u ON l.reader_id = u.id " +
-                "WHERE l.book_id = ? AND l.status = 'ISSUED' " +
+                "WHERE " + filter + " AND l.status = 'ISSUED' " +
                 "LIMIT 1";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
-            ps.setInt(1, bookId);
+            for (int i = 0; i < params.length; i++) {
+                ps.setInt(i + 1, params[i]);
+            }
             ResultSet rs = ps.executeQuery();
 
             if (rs.next()) {
@@ -281,4 +430,68 @@ public class LoanService {
         }
         return null;
     }
+
+    private Loan mapRowToLoan(ResultSet rs) throws SQLException {
+        Loan loan = new Loan();
+        loan.setLoanId(rs.getInt("id"));
+        loan.setBookId(rs.getInt("book_id"));
+        loan.setReaderId(rs.getInt("reader_id"));
+        loan.setBorrowedDate(rs.getDate("issue_date").toLocalDate());
+        loan.setDueDate(rs.getDate("due_date").toLocalDate());
+
+        Date returnDate = rs.getDate("return_date");
+        if (returnDate != null) {
+            loan.setReturnDate(returnDate.toLocalDate());
+        }
+
+        loan.setStatus(rs.getString("status"));
+        loan.setBookTitle(rs.getString("title"));
+        loan.setBookAuthor(rs.getString("author"));
+        loan.setBookIsbn(rs.getString("isbn"));
+
+        Date accruedThrough = rs.getDate("accrued_through");
+        if (accruedThrough != null) {
+            loan.setAccruedFine(rs.getDouble("accrued_fine"));
+            loan.setFineAccruedThrough(accruedThrough.toLocalDate());
+        }
+        return loan;
+    }
+
+    /**
+     * Progress callback for {@link #generateFinesForOverdueLoans(int, int, FineGenerationListener)}.
+     */
+    public interface FineGenerationListener {
+        void onChunkCommitted(int loansProcessed, int loansTotal, int lastLoanId);
+    }
+
+    /**
+     * Outcome of a fine generation run. When it did not complete, everything up to
+     * {@link #getLastLoanId()} has been committed and the run can be resumed from there.
+     */
+    public static final class FineGenerationResult {
+        private int lastLoanId;
+        private int loansProcessed;
+        private int finesCreated;
+        private int chunks;
+        private boolean completed;
+        private SQLException failure;
+
+        private FineGenerationResult(int afterLoanId) {
+            this.lastLoanId = afterLoanId;
+        }
+
+        public int getLastLoanId() { return lastLoanId; }
+        public int getLoansProcessed() { return loansProcessed; }
+        public int getFinesCreated() { return finesCreated; }
+        public int getChunks() { return chunks; }
+        public boolean isCompleted() { return completed; }
+        public SQLException getFailure() { return failure; }
+
+        @Override
+        public String toString() {
+            return "FineGenerationResult{completed=" + completed + ", chunks=" + chunks +
+                    ", loansProcessed=" + loansProcessed + ", finesCreated=" + finesCreated +
+                    ", lastLoanId=" + lastLoanId + "}";
+        }
+    }
 }
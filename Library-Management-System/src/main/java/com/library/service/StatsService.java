@@ -0,0 +1,207 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.DatabaseConfig;
+import com.library.util.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Librarian dashboard counters kept in memory: number of books, total and available copies,
+ * and number of users.
+ *
+ * The counters are read from the database once, then kept current by BookService, UserService
+ * and IssueService reporting each change they commit. A reconciliation query replaces them
+ * every db.cache.statsReconcileMs to pick up changes from other workstations and to correct a
+ * change counted twice because it landed while the counters were being read.
+ */
+public class StatsService {
+
+    private static final class Holder {
+        private static final StatsService INSTANCE = new StatsService(DatabaseConfig.getStatsReconcileMs());
+    }
+
+    private static final int SEED_ATTEMPTS = 3;
+
+    private final long reconcileMs;
+    private ScheduledExecutorService reconciler;
+
+    // Guarded by this
+    private boolean seeded;
+    private long changes;
+    private int books;
+    private int totalCopies;
+    private int availableCopies;
+    private int users;
+
+    StatsService(long reconcileMs) {
+        this.reconcileMs = reconcileMs;
+    }
+
+    public static StatsService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Current counters. Only the first call, or the first after {@link #invalidate()}, reads the database.
+     *
+     * @throws IllegalStateException if the counters could not be read
+     */
+    public Snapshot getSnapshot() {
+        for (int attempt = 0; attempt < SEED_ATTEMPTS; attempt++) {
+            synchronized (this) {
+                if (seeded) return current();
+            }
+            reconcile();
+        }
+        // Changes keep landing while the counters are read. Take the next read as it is: a change
+        // reported during it may be counted twice until the next reconciliation, but the counters
+        // without a seed are only the changes since and would be far off.
+        synchronized (this) {
+            if (seeded) return current();
+        }
+        if (!reconcile(true)) {
+            throw new IllegalStateException("The library counters could not be read from the database");
+        }
+        synchronized (this) {
+            return current();
+        }
+    }
+
+    /**
+     * Replaces the counters with fresh values from the database. Returns false if the query
+     * failed or a change was reported while it ran, in which case the counters are left alone.
+     */
+    public boolean reconcile() {
+        return reconcile(false);
+    }
+
+    // With force the counters are replaced even if a change was reported while they were read
+    private boolean reconcile(boolean force) {
+        String sql = "SELECT " +
+                "(SELECT COUNT(*) FROM books), " +
+                "(SELECT COALESCE(SUM(total_copies), 0) FROM books), " +
+                "(SELECT COALESCE(SUM(available_copies), 0) FROM books), " +
+                "(SELECT COUNT(*) FROM users)";
+
+        long expectedChanges;
+        synchronized (this) {
+            expectedChanges = changes;
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return false;
+            synchronized (this) {
+                if (!force && changes != expectedChanges) return false;
+                books = rs.getInt(1);
+                totalCopies = rs.getInt(2);
+                availableCopies = rs.getInt(3);
+                users = rs.getInt(4);
+                seeded = true;
+                return true;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Reconciles in the background every db.cache.statsReconcileMs. Safe to call more than once.
+     */
+    public synchronized void startReconciling() {
+        if (reconciler != null) return;
+
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-stats-reconcile");
+            t.setDaemon(true);
+            return t;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcile, reconcileMs, reconcileMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReconciling() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            reconciler = null;
+        }
+    }
+
+    /**
+     * Forgets the counters so the next read goes to the database, for changes whose size is unknown.
+     */
+    public synchronized void invalidate() {
+        changes++;
+        seeded = false;
+    }
+
+    synchronized void bookAdded(Book book) {
+        changes++;
+        books++;
+        totalCopies += book.getTotalCopies();
+        availableCopies += book.getAvailableCopies();
+    }
+
+    synchronized void bookRemoved(Book book) {
+        changes++;
+        books--;
+        totalCopies -= book.getTotalCopies();
+        availableCopies -= book.getAvailableCopies();
+    }
+
+    synchronized void bookChanged(Book before, Book after) {
+        changes++;
+        totalCopies += after.getTotalCopies() - before.getTotalCopies();
+        availableCopies += after.getAvailableCopies() - before.getAvailableCopies();
+    }
+
+    synchronized void availableCopiesChanged(int delta) {
+        changes++;
+        availableCopies += delta;
+    }
+
+    synchronized void usersChanged(int delta) {
+        changes++;
+        users += delta;
+    }
+
+    private Snapshot current() {
+        return new Snapshot(books, totalCopies, availableCopies, users);
+    }
+
+    public static final class Snapshot {
+        private final int books;
+        private final int totalCopies;
+        private final int availableCopies;
+        private final int users;
+
+        Snapshot(int books, int totalCopies, int availableCopies, int users) {
+            this.books = books;
+            this.totalCopies = totalCopies;
+            this.availableCopies = availableCopies;
+            this.users = users;
+        }
+
+        public int getBooks() { return books; }
+        public int getTotalCopies() { return totalCopies; }
+        public int getAvailableCopies() { return availableCopies; }
+        public int getIssuedCopies() { return totalCopies - availableCopies; }
+        public int getUsers() { return users; }
+
+        @Override
+        public String toString() {
+            return "books=" + books +
+                    ", totalCopies=" + totalCopies +
+                    ", availableCopies=" + availableCopies +
+                    ", users=" + users;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.library.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram index over the search dictionary, used to find terms within a few edits of a
+ * misspelled query token ("tolkein" -> "tolkien", "hary" -> "harry").
+ *
+ * Terms are padded with '$' on both sides before being cut into trigrams. One edit changes at
+ * most four trigrams (an adjacent swap; other edits change three), so a term within k edits
+ * shares at least |trigrams(token)| - 4k of them. Only terms passing that filter and a length
+ * filter, and sharing at least one trigram, are verified with an exact, bounded edit distance.
+ */
+class TrigramIndex {
+
+    // Searches run concurrently under the index's read lock, so each thread counts in its own
+    // array, kept between queries and zeroed again through the ids it touched
+    private static final ThreadLocal<Counts> COUNTS = ThreadLocal.withInitial(Counts::new);
+
+    // Terms get small int ids so candidate counting can use a plain array
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, IdList> idsByGram = new HashMap<>();
+    private String[] termsById = new String[64];
+    private int[] lengths = new int[64];
+    private final IdList freeIds = new IdList();
+    private int nextId;
+
+    void add(String term) {
+        if (ids.containsKey(term)) return;
+        int id = freeIds.size > 0 ? freeIds.ids[--freeIds.size] : nextId++;
+        if (id == termsById.length) {
+            termsById = Arrays.copyOf(termsById, id * 2);
+            lengths = Arrays.copyOf(lengths, id * 2);
+        }
+        termsById[id] = term;
+        lengths[id] = term.length();
+        ids.put(term, id);
+        for (String gram : new HashSet<>(trigrams(term))) {
+            idsByGram.computeIfAbsent(gram, g -> new IdList()).add(id);
+        }
+    }
+
+    void remove(String term) {
+        Integer id = ids.remove(term);
+        if (id == null) return;
+        for (String gram : new HashSet<>(trigrams(term))) {
+            IdList list = idsByGram.get(gram);
+            if (list != null) {
+                list.remove(id);
+                if (list.size == 0) idsByGram.remove(gram);
+            }
+        }
+        termsById[id] = null;
+        freeIds.add(id);
+    }
+
+    /**
+     * Terms within {@code maxEdits} of the token, paired with their edit distance.
+     */
+    List<Candidate> candidates(String token, int maxEdits) {
+        Set<String> grams = new HashSet<>(trigrams(token));
+        int required = Math.max(1, grams.size() - 4 * maxEdits);
+        List<Candidate> result = new ArrayList<>();
+
+        Counts counts = COUNTS.get();
+        int[] shared = counts.shared(nextId);
+        IdList touched = counts.touched;
+        try {
+            for (String gram : grams) {
+                IdList list = idsByGram.get(gram);
+                if (list == null) continue;
+                for (int i = 0; i < list.size; i++) {
+                    int id = list.ids[i];
+                    if (Math.abs(lengths[id] - token.length()) > maxEdits) continue;
+                    if (shared[id]++ == 0) touched.add(id);
+                }
+            }
+
+            for (int i = 0; i < touched.size; i++) {
+                int id = touched.ids[i];
+                if (shared[id] < required) continue;
+                String term = termsById[id];
+                int distance = boundedDistance(token, term, maxEdits);
+                if (distance <= maxEdits) {
+                    result.add(new Candidate(term, distance));
+                }
+            }
+        } finally {
+            for (int i = 0; i < touched.size; i++) {
+                shared[touched.ids[i]] = 0;
+            }
+            touched.size = 0;
+        }
+        return result;
+    }
+
+    static List<String> trigrams(String term) {
+        String padded = "$" + term + "$";
+        List<String> grams = new ArrayList<>(Math.max(1, padded.length() - 2));
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Optimal string alignment distance (insert, delete, substitute, swap adjacent), giving up
+     * with {@code max + 1} as soon as every cell in a row exceeds {@code max}. Only the diagonal
+     * band of width {@code 2 * max + 1} is computed; cells outside it can never come back under
+     * the bound.
+     */
+    static int boundedDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int over = max + 1;
+        if (Math.abs(n - m) > max) return over;
+
+        int[] prevPrev = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        Arrays.fill(prevPrev, over);
+        Arrays.fill(prev, over);
+        Arrays.fill(cur, over);
+        for (int j = 0; j <= Math.min(m, max); j++) prev[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            cur[0] = i <= max ? i : over;
+            if (from > 1) cur[from - 1] = over;
+            int rowMin = cur[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, prevPrev[j - 2] + 1);
+                }
+                cur[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (to < m) cur[to + 1] = over;
+            if (rowMin > max) return over;
+            int[] recycled = prevPrev;
+            prevPrev = prev;
+            prev = cur;
+            cur = recycled;
+        }
+        return prev[m];
+    }
+
+    private static final class IdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        private void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Counts {
+        private int[] shared = new int[64];
+        private final IdList touched = new IdList();
+
+        // All zero between queries
+        private int[] shared(int terms) {
+            if (shared.length < terms) shared = new int[Math.max(terms, shared.length * 2)];
+            return shared;
+        }
+    }
+
+    static final class Candidate {
+        final String term;
+        final int distance;
+
+        Candidate(String term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+    }
+}
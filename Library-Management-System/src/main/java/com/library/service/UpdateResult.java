@@ -0,0 +1,47 @@
+package com.library.service;
+
+/**
+ * What became of an edit made with {@link BookService#update} or {@link UserService#update}.
+ *
+ * Edits are checked against the row version the editor loaded. When someone else saved the row
+ * in the meantime the edit is refused as a {@link Outcome#CONFLICT} and {@link #getCurrent()}
+ * holds the row as it is now, so the editor can look at both and try again.
+ */
+public final class UpdateResult<T> {
+
+    public enum Outcome {
+        UPDATED,
+        /** Nothing was changed, so nothing was written. */
+        UNCHANGED,
+        CONFLICT,
+        /**
+         * The row is unchanged since it was loaded, but the edit would take away copies that are
+         * on loan, leaving fewer than none or more than the total on the shelf.
+         */
+        INVALID_COPIES,
+        NOT_FOUND,
+        FAILED
+    }
+
+    private final Outcome outcome;
+    private final T current;
+
+    UpdateResult(Outcome outcome, T current) {
+        this.outcome = outcome;
+        this.current = current;
+    }
+
+    public Outcome getOutcome() { return outcome; }
+
+    /** The row as stored after the attempt; null when it is gone or could not be read. */
+    public T getCurrent() { return current; }
+
+    public boolean isUpdated() {
+        return outcome == Outcome.UPDATED || outcome == Outcome.UNCHANGED;
+    }
+
+    @Override
+    public String toString() {
+        return "UpdateResult{outcome=" + outcome + ", current=" + current + "}";
+    }
+}
@@ -8,13 +8,16 @@ import com.library.util.DatabaseConnection;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class UserService {
 
+    private final StatsService stats = StatsService.getInstance();
+
     // Get all users (librarians + readers)
     public List<User> findAll() {
         List<User> users = new ArrayList<>();
-        String sql = "SELECT id, username, password, full_name, role, email, status FROM users";
+        String sql = "SELECT id, username, password, full_name, role, email, status, row_version FROM users";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
@@ -31,10 +34,66 @@ public class UserService {
         return users;
     }
 
+    // Get up to limit users with an id above afterId, in id order; role is ignored when null
+    public List<User> findPage(int afterId, int limit, String role) {
+        List<User> users = new ArrayList<>(limit);
+        String sql = "SELECT id, username, password, full_name, role, email, status, row_version FROM users WHERE id > ?" +
+                (role != null ? " AND role = ?" : "") +
+                " ORDER BY id LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            ps.setInt(i++, afterId);
+            if (role != null) ps.setString(i++, role);
+            ps.setInt(i, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapRowToUser(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return users;
+    }
+
+    // Like findPage, keeping users whose username, full name or role contains query, ignoring case
+    public List<User> searchPage(int afterId, int limit, String query) {
+        List<User> users = new ArrayList<>(limit);
+        String sql = "SELECT id, username, password, full_name, role, email, status, row_version FROM users " +
+                "WHERE id > ? AND (LOWER(username) LIKE ? OR LOWER(full_name) LIKE ? OR LOWER(role) LIKE ?) " +
+                "ORDER BY id LIMIT ?";
+        String pattern = "%" + query.toLowerCase() + "%";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            ps.setInt(1, afterId);
+            ps.setString(2, pattern);
+            ps.setString(3, pattern);
+            ps.setString(4, pattern);
+            ps.setInt(5, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapRowToUser(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return users;
+    }
+
     // Get all librarians
     public List<User> findAllLibrarians() {
         List<User> users = new ArrayList<>();
-        String sql = "SELECT id, username, password, full_name, role, email, status FROM users WHERE role = 'LIBRARIAN'";
+        String sql = "SELECT id, username, password, full_name, role, email, status, row_version FROM users WHERE role = 'LIBRARIAN'";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
@@ -53,7 +112,7 @@ public class UserService {
     // Get all readers
     public List<User> findAllReaders() {
         List<User> users = new ArrayList<>();
-        String sql = "SELECT id, username, password, full_name, role, email, status FROM users WHERE role = 'READER'";
+        String sql = "SELECT id, username, password, full_name, role, email, status, row_version FROM users WHERE role = 'READER'";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
@@ -71,7 +130,7 @@ public class UserService {
 
     // Find by username
     public User findByUsername(String username) {
-        String sql = "SELECT id, username, password, full_name, role, email, status FROM users WHERE username = ?";
+        String sql = "SELECT id, username, password, full_name, role, email, status, row_version FROM users WHERE username = ?";
 
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -113,6 +172,7 @@ public class UserService {
                     user.setId(keys.getInt(1));
                 }
             }
+            stats.usersChanged(1);
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -120,51 +180,78 @@ public class UserService {
         }
     }
 
-    // Update user
-    public boolean update(User user) {
-        String sql = "UPDATE users SET username = ?, password = ?, full_name = ?, " +
-                "role = ?, email = ?, status = ? WHERE id = ?";
+    /**
+     * Saves the changes made to {@code original} in {@code edited}, unless someone else has saved
+     * the user since {@code original} was read. Only the fields that differ are written.
+     */
+    public UpdateResult<User> update(User original, User edited) {
+        List<String> assignments = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        change(assignments, values, "username", original.getUsername(), edited.getUsername());
+        change(assignments, values, "password", original.getPassword(), edited.getPassword());
+        change(assignments, values, "full_name", original.getFullName(), edited.getFullName());
+        change(assignments, values, "role", original.getRole(), edited.getRole());
+        change(assignments, values, "email",
+                original.getEmail() != null ? original.getEmail() : "",
+                edited.getEmail() != null ? edited.getEmail() : "");
+        if (assignments.isEmpty()) {
+            return new UpdateResult<>(UpdateResult.Outcome.UNCHANGED, original);
+        }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        String sql = "UPDATE users SET " + String.join(", ", assignments) + ", row_version = row_version + 1 " +
+                "WHERE id = ? AND row_version = ?";
 
-            ps.setString(1, user.getUsername());
-            ps.setString(2, user.getPassword());
-            ps.setString(3, user.getFullName());
-            ps.setString(4, user.getRole());
-            ps.setString(5, user.getEmail() != null ? user.getEmail() : "");
-            ps.setString(6, "ACTIVE"); // or get from user if you add status field
-            ps.setInt(7, user.getId());
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int affected;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                for (String value : values) {
+                    ps.setString(i++, value);
+                }
+                ps.setInt(i++, original.getId());
+                ps.setInt(i, original.getVersion());
+                affected = ps.executeUpdate();
+            }
 
-            int affected = ps.executeUpdate();
-            return affected > 0;
+            User current = findById(conn, original.getId());
+            if (current == null) {
+                return new UpdateResult<>(UpdateResult.Outcome.NOT_FOUND, null);
+            }
+            return new UpdateResult<>(affected > 0 ? UpdateResult.Outcome.UPDATED : UpdateResult.Outcome.CONFLICT, current);
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
+            return new UpdateResult<>(UpdateResult.Outcome.FAILED, null);
         }
+    }
 
-
+    private static void change(List<String> assignments, List<String> values, String column, String from, String to) {
+        if (!Objects.equals(from, to)) {
+            assignments.add(column + " = ?");
+            values.add(to);
+        }
     }
 
     // Find user by ID
     public User findById(int id) {
-        String sql = "SELECT id, username, password, full_name, role, email, status FROM users WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return findById(conn, id);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        return null;
+    }
+
+    private User findById(Connection conn, int id) throws SQLException {
+        String sql = "SELECT id, username, password, full_name, role, email, status, row_version FROM users WHERE id = ?";
 
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
 
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return mapRowToUser(rs);
-                }
+                return rs.next() ? mapRowToUser(rs) : null;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-
-        return null;
     }
 
 
@@ -177,6 +264,9 @@ public class UserService {
 
             ps.setInt(1, id);
             int affected = ps.executeUpdate();
+            if (affected > 0) {
+                stats.usersChanged(-1);
+            }
             return affected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -202,6 +292,7 @@ public class UserService {
 
         user.setId(id);
         user.setEmail(email);
+        user.setVersion(rs.getInt("row_version"));
 
         return user;
     }
@@ -0,0 +1,570 @@
+package com.library.tools;
+
+import com.library.service.CatalogCache;
+import com.library.service.FineService;
+import com.library.service.StatsService;
+import com.library.util.DatabaseConnection;
+import com.library.util.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+/**
+ * Fills the configured database with a synthetic library for load and scale testing: books,
+ * readers, librarians, loan histories with overdue and fined loans, and book requests in every
+ * status.
+ *
+ * Everything follows from {@link Spec#getSeed()}, so the same spec always writes the same rows,
+ * with dates counted back from the day it runs.
+ * Each kind of row draws from its own random stream, which means more loans per reader does not
+ * change the books. Popularity is Zipfian: a few books take most of the loans and requests, and
+ * a few words, authors and categories turn up in most titles. {@link Spec#getPopularitySkew()}
+ * is the exponent; 0.8 to 1.2 matches typical circulation data.
+ *
+ * Rows go in through batched JDBC with explicit ids following the largest id already in each
+ * table, so a generator can add to a database that already has data. The service layer would
+ * take hours for millions of rows. Benchmarks and load tests use {@link #sampleBook(Random)} and
+ * {@link #titleWord(Random)} to pick the same popular books and words the data was built from.
+ *
+ * Run {@code java com.library.tools.DatasetGenerator} to fill the database in config/db.properties,
+ * sized by dataset.* system properties (see {@link Spec#fromSystemProperties(String)}).
+ */
+public class DatasetGenerator {
+
+    // Mixed into the seed so each kind of row draws from its own stream
+    private static final long BOOK_STREAM = 0x5DEECE66DL;
+    private static final long USER_STREAM = 0x2545F491L;
+    private static final long LOAN_STREAM = 0x9E3779B9L;
+    private static final long REQUEST_STREAM = 0x7F4A7C15L;
+
+    private static final String[] SYLLABLES = {
+            "an", "ber", "cal", "dor", "el", "fin", "gar", "hel", "is", "jor", "kal", "lin", "mor",
+            "nor", "or", "pel", "quin", "ros", "sil", "tor", "ul", "van", "wen", "xan", "yor", "zel"
+    };
+    private static final String[] CATEGORIES = {
+            "Fiction", "Science", "History", "Children", "Biography", "Travel", "Poetry", "Philosophy",
+            "Art", "Technology", "Religion", "Reference"
+    };
+    private static final int VOCABULARY = 4_000;
+    private static final int PUBLISHERS = 200;
+
+    private final Spec spec;
+    private final String[] vocabulary;
+    private final String[] authors;
+    private final int[] bookByRank;
+    private final ZipfDistribution bookPopularity;
+    private final ZipfDistribution wordPopularity;
+    private final ZipfDistribution authorPopularity;
+    private final ZipfDistribution categoryPopularity;
+
+    public DatasetGenerator(Spec spec) {
+        this.spec = spec;
+        Random random = new Random(spec.getSeed());
+
+        vocabulary = new String[VOCABULARY];
+        for (int i = 0; i < vocabulary.length; i++) vocabulary[i] = word(random);
+        authors = new String[Math.max(1, spec.getBooks() / 8)];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = capitalize(word(random)) + " " + capitalize(word(random));
+        }
+
+        // Popularity rank to book index, shuffled so the favourites are spread over the id range
+        bookByRank = new int[spec.getBooks()];
+        for (int i = 0; i < bookByRank.length; i++) bookByRank[i] = i;
+        for (int i = bookByRank.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = bookByRank[i];
+            bookByRank[i] = bookByRank[j];
+            bookByRank[j] = t;
+        }
+
+        double skew = spec.getPopularitySkew();
+        bookPopularity = new ZipfDistribution(Math.max(1, spec.getBooks()), skew);
+        wordPopularity = new ZipfDistribution(VOCABULARY, skew);
+        authorPopularity = new ZipfDistribution(authors.length, skew);
+        categoryPopularity = new ZipfDistribution(CATEGORIES.length, skew);
+    }
+
+    public Spec getSpec() {
+        return spec;
+    }
+
+    /**
+     * Index (0 to books - 1) of a book, picked by popularity. Add it to
+     * {@link Dataset#getFirstBookId()}, or pass it to {@link Dataset#bookId(int)}.
+     */
+    public int sampleBook(Random random) {
+        return bookByRank[bookPopularity.sample(random) - 1];
+    }
+
+    /** A word from the titles, common words more often than rare ones. */
+    public String titleWord(Random random) {
+        return vocabulary[wordPopularity.sample(random) - 1];
+    }
+
+    /** The ISBN the generator gives the book with this id. */
+    public static String isbn(int bookId) {
+        return String.format("978-%010d", bookId);
+    }
+
+    /**
+     * Writes the dataset, committing every {@link Spec#getBatchSize()} rows, then drops the
+     * catalog cache and dashboard counters so they pick up the new rows.
+     *
+     * @throws SQLException if a write fails; batches committed before it stay in the database
+     */
+    public Dataset generate() throws SQLException {
+        long start = System.nanoTime();
+        Dataset dataset = new Dataset();
+        LocalDate today = LocalDate.now();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                dataset.firstBookId = maxId(conn, "books") + 1;
+                dataset.firstReaderId = maxId(conn, "users") + 1;
+                dataset.firstLibrarianId = dataset.firstReaderId + spec.getReaders();
+                dataset.books = spec.getBooks();
+                dataset.readers = spec.getReaders();
+                dataset.librarians = spec.getLibrarians();
+
+                int[] copies = insertBooks(conn, dataset, today);
+                insertUsers(conn, dataset);
+                int[] onLoan = insertLoansAndFines(conn, dataset, copies, today);
+                updateAvailableCopies(conn, dataset, copies, onLoan);
+                insertRequests(conn, dataset, today);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        CatalogCache.getInstance().invalidateAll();
+        StatsService.getInstance().invalidate();
+        dataset.elapsedNanos = System.nanoTime() - start;
+        return dataset;
+    }
+
+    private int[] insertBooks(Connection conn, Dataset dataset, LocalDate today) throws SQLException {
+        Random random = new Random(spec.getSeed() ^ BOOK_STREAM);
+        int[] copies = new int[spec.getBooks()];
+        String sql = "INSERT INTO books (id, isbn, title, author, category, publisher, published_date, " +
+                "total_copies, available_copies) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            Batch batch = new Batch(conn, ps);
+            for (int i = 0; i < spec.getBooks(); i++) {
+                int id = dataset.bookId(i);
+                int words = 1 + random.nextInt(5);
+                StringBuilder title = new StringBuilder();
+                for (int w = 0; w < words; w++) {
+                    String word = titleWord(random);
+                    title.append(w == 0 ? capitalize(word) : word);
+                    if (w < words - 1) title.append(' ');
+                }
+                copies[i] = 1 + random.nextInt(spec.getMaxCopies());
+
+                ps.setInt(1, id);
+                ps.setString(2, isbn(id));
+                ps.setString(3, title.toString());
+                ps.setString(4, authors[authorPopularity.sample(random) - 1]);
+                ps.setString(5, CATEGORIES[categoryPopularity.sample(random) - 1]);
+                ps.setString(6, "Publisher " + random.nextInt(PUBLISHERS));
+                ps.setDate(7, Date.valueOf(today.minusDays(random.nextInt(70 * 365))));
+                ps.setInt(8, copies[i]);
+                ps.setInt(9, copies[i]);
+                batch.add();
+            }
+            batch.flush();
+        }
+        return copies;
+    }
+
+    private void insertUsers(Connection conn, Dataset dataset) throws SQLException {
+        String sql = "INSERT INTO users (id, username, password, full_name, role, email, status) " +
+                "VALUES (?, ?, ?, ?, ?, ?, 'ACTIVE')";
+        Random random = new Random(spec.getSeed() ^ USER_STREAM);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            Batch batch = new Batch(conn, ps);
+            int users = spec.getReaders() + spec.getLibrarians();
+            for (int i = 0; i < users; i++) {
+                int id = dataset.firstReaderId + i;
+                boolean reader = i < spec.getReaders();
+                String username = (reader ? "reader" : "librarian") + id;
+                ps.setInt(1, id);
+                ps.setString(2, username);
+                ps.setString(3, spec.getPassword());
+                ps.setString(4, capitalize(word(random)) + " " + capitalize(word(random)));
+                ps.setString(5, reader ? "READER" : "LIBRARIAN");
+                ps.setString(6, username + "@example.com");
+                batch.add();
+            }
+            batch.flush();
+        }
+    }
+
+    /**
+     * Returned loans spread over the history window, some of them late and fined. Loans still
+     * out never exceed a book's copies; those past due carry an unpaid fine priced as
+     * {@link FineService} would.
+     *
+     * @return copies of each book still out
+     */
+    private int[] insertLoansAndFines(Connection conn, Dataset dataset, int[] copies, LocalDate today)
+            throws SQLException {
+        Random random = new Random(spec.getSeed() ^ LOAN_STREAM);
+        int[] onLoan = new int[spec.getBooks()];
+        int loanDays = spec.getLoanDays();
+        int firstLoanId = maxId(conn, "loans") + 1;
+
+        String loanSql = "INSERT INTO loans (id, book_id, reader_id, librarian_id, issue_date, due_date, " +
+                "return_date, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String fineSql = "INSERT INTO fines (loan_id, reader_id, amount, status, created_date, paid_date) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement loans = conn.prepareStatement(loanSql);
+             PreparedStatement fines = conn.prepareStatement(fineSql)) {
+            Batch loanBatch = new Batch(conn, loans);
+            Batch fineBatch = new Batch(conn, fines);
+            if (spec.getBooks() == 0) return onLoan;
+
+            for (int r = 0; r < spec.getReaders(); r++) {
+                int readerId = dataset.readerId(r);
+                int count = random.nextInt(2 * spec.getLoansPerReader() + 1);
+                for (int l = 0; l < count; l++) {
+                    int book = sampleBook(random);
+                    boolean out = random.nextDouble() < spec.getActiveLoanRatio() && onLoan[book] < copies[book];
+                    boolean late = random.nextDouble() < spec.getOverdueRatio();
+
+                    LocalDate issued;
+                    LocalDate due;
+                    LocalDate returned = null;
+                    if (out && late) {
+                        due = today.minusDays(1 + Math.min(spec.getHistoryDays(), exponential(random, 14)));
+                        issued = due.minusDays(loanDays);
+                    } else if (out) {
+                        issued = today.minusDays(random.nextInt(loanDays));
+                        due = issued.plusDays(loanDays);
+                    } else {
+                        issued = today.minusDays(loanDays + random.nextInt(spec.getHistoryDays() + 1));
+                        due = issued.plusDays(loanDays);
+                        returned = late ? due.plusDays(1 + exponential(random, 7))
+                                : issued.plusDays(random.nextInt(loanDays + 1));
+                        if (returned.isAfter(today)) returned = today;
+                    }
+
+                    int loanId = firstLoanId + dataset.loans;
+                    loans.setInt(1, loanId);
+                    loans.setInt(2, dataset.bookId(book));
+                    loans.setInt(3, readerId);
+                    loans.setInt(4, dataset.librarianId(random.nextInt(Math.max(1, spec.getLibrarians()))));
+                    loans.setDate(5, Date.valueOf(issued));
+                    loans.setDate(6, Date.valueOf(due));
+                    loans.setDate(7, returned != null ? Date.valueOf(returned) : null);
+                    loans.setString(8, out ? "ISSUED" : "RETURNED");
+                    loanBatch.add();
+                    dataset.loans++;
+                    if (out) {
+                        onLoan[book]++;
+                        dataset.activeLoans++;
+                    }
+
+                    LocalDate fineDate = out ? today : returned;
+                    long daysLate = ChronoUnit.DAYS.between(due, fineDate);
+                    if (daysLate > 0) {
+                        // Most late returns were settled at the desk; fines on loans still out never are
+                        boolean paid = !out && random.nextInt(10) < 7;
+                        fines.setInt(1, loanId);
+                        fines.setInt(2, readerId);
+                        fines.setDouble(3, FineService.fineForDaysOverdue(daysLate));
+                        fines.setString(4, paid ? "PAID" : "UNPAID");
+                        fines.setDate(5, Date.valueOf(fineDate));
+                        fines.setDate(6, paid ? Date.valueOf(fineDate) : null);
+                        fineBatch.add();
+                        dataset.fines++;
+                    }
+                }
+            }
+            loanBatch.flush();
+            fineBatch.flush();
+        }
+        return onLoan;
+    }
+
+    private void updateAvailableCopies(Connection conn, Dataset dataset, int[] copies, int[] onLoan)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE books SET available_copies = ? WHERE id = ?")) {
+            Batch batch = new Batch(conn, ps);
+            for (int i = 0; i < onLoan.length; i++) {
+                if (onLoan[i] == 0) continue;
+                ps.setInt(1, copies[i] - onLoan[i]);
+                ps.setInt(2, dataset.bookId(i));
+                batch.add();
+            }
+            batch.flush();
+        }
+    }
+
+    /**
+     * Requests in every status: pending ones from the last week, approved and rejected ones
+     * resolved within a day, and holds kept for up to a week. Mostly ISSUE, with RE_ISSUE and
+     * RETURN mixed in.
+     */
+    private void insertRequests(Connection conn, Dataset dataset, LocalDate today) throws SQLException {
+        Random random = new Random(spec.getSeed() ^ REQUEST_STREAM);
+        String sql = "INSERT INTO book_requests (book_id, reader_id, librarian_id, request_type, status, " +
+                "hold_until_date, created_at, resolved_at, notes) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        LocalDateTime now = today.atStartOfDay();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            Batch batch = new Batch(conn, ps);
+            if (spec.getBooks() == 0) return;
+
+            for (int r = 0; r < spec.getReaders(); r++) {
+                int count = random.nextInt(2 * spec.getRequestsPerReader() + 1);
+                for (int q = 0; q < count; q++) {
+                    int pick = random.nextInt(100);
+                    String status = pick < 20 ? "PENDING" : pick < 70 ? "APPROVED" : pick < 85 ? "REJECTED" : "ON_HOLD";
+                    int kind = random.nextInt(100);
+                    String type = kind < 75 ? "ISSUE" : kind < 90 ? "RE_ISSUE" : "RETURN";
+                    int days = "PENDING".equals(status) ? random.nextInt(7) : random.nextInt(spec.getHistoryDays() + 1);
+                    LocalDateTime created = now.minusDays(days).plusSeconds(random.nextInt(86_400));
+                    boolean resolved = "APPROVED".equals(status) || "REJECTED".equals(status);
+
+                    ps.setInt(1, dataset.bookId(sampleBook(random)));
+                    ps.setInt(2, dataset.readerId(r));
+                    if ("PENDING".equals(status)) {
+                        ps.setNull(3, Types.INTEGER);
+                    } else {
+                        ps.setInt(3, dataset.librarianId(random.nextInt(Math.max(1, spec.getLibrarians()))));
+                    }
+                    ps.setString(4, type);
+                    ps.setString(5, status);
+                    ps.setDate(6, "ON_HOLD".equals(status) ? Date.valueOf(today.plusDays(1 + random.nextInt(7))) : null);
+                    ps.setTimestamp(7, Timestamp.valueOf(created));
+                    ps.setTimestamp(8, resolved ? Timestamp.valueOf(created.plusMinutes(1 + random.nextInt(24 * 60))) : null);
+                    ps.setString(9, "REJECTED".equals(status) ? "No copies available" : null);
+                    batch.add();
+                    dataset.requests++;
+                }
+            }
+            batch.flush();
+        }
+    }
+
+    private static int maxId(Connection conn, String table) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // Whole days, exponentially distributed around the mean
+    private static int exponential(Random random, double mean) {
+        return (int) (-mean * Math.log(1 - random.nextDouble()));
+    }
+
+    private static String word(Random random) {
+        int syllables = 2 + random.nextInt(2);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        Spec spec = Spec.fromSystemProperties("dataset");
+        if (!SchemaMigrator.ensureCurrent()) return;
+        System.out.println("Generating " + spec);
+        System.out.println(new DatasetGenerator(spec).generate());
+        DatabaseConnection.shutdown();
+    }
+
+    /** Executes and commits every batch-size rows. */
+    private final class Batch {
+        private final Connection conn;
+        private final PreparedStatement ps;
+        private int pending;
+
+        private Batch(Connection conn, PreparedStatement ps) {
+            this.conn = conn;
+            this.ps = ps;
+        }
+
+        private void add() throws SQLException {
+            ps.addBatch();
+            if (++pending >= spec.getBatchSize()) flush();
+        }
+
+        private void flush() throws SQLException {
+            if (pending == 0) return;
+            ps.executeBatch();
+            conn.commit();
+            pending = 0;
+        }
+    }
+
+    /**
+     * What to generate. The defaults make a mid-sized branch library; scale books and readers
+     * up for production-sized runs.
+     */
+    public static final class Spec {
+        private int books = 100_000;
+        private int readers = 10_000;
+        private int librarians = 10;
+        private int loansPerReader = 20;
+        private int requestsPerReader = 2;
+        private int maxCopies = 5;
+        private double popularitySkew = 1.0;
+        private double activeLoanRatio = 0.3;
+        private double overdueRatio = 0.25;
+        private int historyDays = 365;
+        private int loanDays = 14;
+        private String password = "password";
+        private int batchSize = 1000;
+        private long seed = 42;
+
+        /**
+         * A spec with each field overridden by the system property {@code <prefix>.<field>} where
+         * set, e.g. dataset.books or dataset.popularitySkew.
+         */
+        public static Spec fromSystemProperties(String prefix) {
+            Spec spec = new Spec();
+            spec.books = Integer.getInteger(prefix + ".books", spec.books);
+            spec.readers = Integer.getInteger(prefix + ".readers", spec.readers);
+            spec.librarians = Integer.getInteger(prefix + ".librarians", spec.librarians);
+            spec.loansPerReader = Integer.getInteger(prefix + ".loansPerReader", spec.loansPerReader);
+            spec.requestsPerReader = Integer.getInteger(prefix + ".requestsPerReader", spec.requestsPerReader);
+            spec.maxCopies = Integer.getInteger(prefix + ".maxCopies", spec.maxCopies);
+            spec.popularitySkew = getDouble(prefix + ".popularitySkew", spec.popularitySkew);
+            spec.activeLoanRatio = getDouble(prefix + ".activeLoanRatio", spec.activeLoanRatio);
+            spec.overdueRatio = getDouble(prefix + ".overdueRatio", spec.overdueRatio);
+            spec.historyDays = Integer.getInteger(prefix + ".historyDays", spec.historyDays);
+            spec.loanDays = Integer.getInteger(prefix + ".loanDays", spec.loanDays);
+            spec.password = System.getProperty(prefix + ".password", spec.password);
+            spec.batchSize = Integer.getInteger(prefix + ".batchSize", spec.batchSize);
+            spec.seed = Long.getLong(prefix + ".seed", spec.seed);
+            return spec;
+        }
+
+        private static double getDouble(String key, double defaultValue) {
+            String value = System.getProperty(key);
+            return value != null ? Double.parseDouble(value) : defaultValue;
+        }
+
+        public int getBooks() { return books; }
+        public void setBooks(int books) { this.books = books; }
+
+        public int getReaders() { return readers; }
+        public void setReaders(int readers) { this.readers = readers; }
+
+        public int getLibrarians() { return librarians; }
+        public void setLibrarians(int librarians) { this.librarians = librarians; }
+
+        /** Average; each reader gets between none and twice as many. */
+        public int getLoansPerReader() { return loansPerReader; }
+        public void setLoansPerReader(int loansPerReader) { this.loansPerReader = loansPerReader; }
+
+        /** Average; each reader gets between none and twice as many. */
+        public int getRequestsPerReader() { return requestsPerReader; }
+        public void setRequestsPerReader(int requestsPerReader) { this.requestsPerReader = requestsPerReader; }
+
+        public int getMaxCopies() { return maxCopies; }
+        public void setMaxCopies(int maxCopies) { this.maxCopies = maxCopies; }
+
+        /** Zipf exponent for book, word, author and category popularity. */
+        public double getPopularitySkew() { return popularitySkew; }
+        public void setPopularitySkew(double popularitySkew) { this.popularitySkew = popularitySkew; }
+
+        /** Share of loans still out, as far as copies allow. */
+        public double getActiveLoanRatio() { return activeLoanRatio; }
+        public void setActiveLoanRatio(double activeLoanRatio) { this.activeLoanRatio = activeLoanRatio; }
+
+        /** Share of loans past due: still out and overdue, or returned late. */
+        public double getOverdueRatio() { return overdueRatio; }
+        public void setOverdueRatio(double overdueRatio) { this.overdueRatio = overdueRatio; }
+
+        public int getHistoryDays() { return historyDays; }
+        public void setHistoryDays(int historyDays) { this.historyDays = historyDays; }
+
+        public int getLoanDays() { return loanDays; }
+        public void setLoanDays(int loanDays) { this.loanDays = loanDays; }
+
+        /** Every generated user's password, so load tests can log in. */
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public long getSeed() { return seed; }
+        public void setSeed(long seed) { this.seed = seed; }
+
+        @Override
+        public String toString() {
+            return "Spec{books=" + books + ", readers=" + readers + ", librarians=" + librarians +
+                    ", loansPerReader=" + loansPerReader + ", requestsPerReader=" + requestsPerReader +
+                    ", popularitySkew=" + popularitySkew + ", seed=" + seed + '}';
+        }
+    }
+
+    /** Where the generated rows landed and how many there are. */
+    public static final class Dataset {
+        private int firstBookId;
+        private int books;
+        private int firstReaderId;
+        private int readers;
+        private int firstLibrarianId;
+        private int librarians;
+        private int loans;
+        private int activeLoans;
+        private int fines;
+        private int requests;
+        private long elapsedNanos;
+
+        public int getFirstBookId() { return firstBookId; }
+        public int getBooks() { return books; }
+        public int getFirstReaderId() { return firstReaderId; }
+        public int getReaders() { return readers; }
+        public int getFirstLibrarianId() { return firstLibrarianId; }
+        public int getLibrarians() { return librarians; }
+        public int getLoans() { return loans; }
+        public int getActiveLoans() { return activeLoans; }
+        public int getFines() { return fines; }
+        public int getRequests() { return requests; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        /** Id of the book with this index, 0 to books - 1. */
+        public int bookId(int index) { return firstBookId + index; }
+
+        /** Id of the reader with this index, 0 to readers - 1. */
+        public int readerId(int index) { return firstReaderId + index; }
+
+        /** Id of the librarian with this index, 0 to librarians - 1. */
+        public int librarianId(int index) { return firstLibrarianId + index; }
+
+        @Override
+        public String toString() {
+            return String.format("Dataset{books=%d, readers=%d, librarians=%d, loans=%d (%d out), fines=%d, " +
+                            "requests=%d, %.1f s}", books, readers, librarians, loans, activeLoans, fines,
+                    requests, elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package com.library.tools;
+
+import com.library.model.BookRequest;
+import com.library.model.Fine;
+import com.library.model.Loan;
+import com.library.service.AuthenticationService;
+import com.library.service.BookRequestService;
+import com.library.service.BookService;
+import com.library.service.FineService;
+import com.library.service.IssueService;
+import com.library.service.LoanService;
+import com.library.util.DatabaseConnection;
+import com.library.util.SchemaMigrator;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Drives the service layer the way the circulation desks do, without Swing: librarians work
+ * through the pending requests while readers search, request and return books and pay fines.
+ *
+ * Each librarian and reader is a thread running its workflow in a loop, pausing for an
+ * exponentially distributed think time between steps. The run ramps up in
+ * {@link Config#getSteps()} steps to the full number of librarians and readers, so the report
+ * shows how throughput and latency change with concurrency. Every step has a warm-up, then
+ * records each operation's latency in an HdrHistogram along with errors (a service call that
+ * failed) and contention (losing a race to another librarian, e.g. a request someone else
+ * already issued).
+ *
+ * Users and books come from a {@link DatasetGenerator} run, which also decides which books are
+ * popular. Run {@code java com.library.tools.LoadTestHarness} to generate a dataset in the
+ * database from config/db.properties and load it, configured by dataset.* and load.* system
+ * properties.
+ */
+public class LoadTestHarness {
+
+    public static final String LOGIN = "login";
+    public static final String SEARCH = "search";
+    public static final String DASHBOARD = "dashboard";
+    public static final String REQUEST = "request";
+    public static final String REQUEST_RETURN = "requestReturn";
+    public static final String PAY_FINE = "payFine";
+    public static final String PENDING_REQUESTS = "pendingRequests";
+    public static final String ISSUE = "issue";
+    public static final String REJECT = "reject";
+    public static final String APPROVE_RETURN = "approveReturn";
+
+    // Librarians pick from the top of the queue, oldest first, like the requests table shows it
+    private static final int QUEUE_HEAD = 20;
+
+    private enum Result { OK, ERROR, CONTENTION }
+
+    private final Config config;
+    private final DatasetGenerator generator;
+    private final DatasetGenerator.Dataset dataset;
+
+    private final AuthenticationService authService = new AuthenticationService();
+    private final BookService bookService = new BookService();
+    private final LoanService loanService = new LoanService();
+    private final FineService fineService = new FineService();
+    private final BookRequestService requestService = new BookRequestService();
+    private final IssueService issueService = new IssueService();
+
+    public LoadTestHarness(Config config, DatasetGenerator generator, DatasetGenerator.Dataset dataset) {
+        this.config = config;
+        this.generator = generator;
+        this.dataset = dataset;
+    }
+
+    /**
+     * Runs every step in turn and returns once the last one is done.
+     */
+    public Report run() throws InterruptedException {
+        Report report = new Report();
+        for (int i = 1; i <= config.getSteps(); i++) {
+            int librarians = Math.max(1, Math.round((float) config.getLibrarians() * i / config.getSteps()));
+            int readers = Math.max(1, Math.round((float) config.getReaders() * i / config.getSteps()));
+            report.steps.add(runStep(librarians, readers));
+        }
+        return report;
+    }
+
+    private Step runStep(int librarians, int readers) throws InterruptedException {
+        Step step = new Step(librarians, readers);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < librarians; i++) {
+            Session session = new LibrarianSession(step, dataset.librarianId(i % dataset.getLibrarians()), i);
+            threads.add(new Thread(session, "library-load-librarian-" + i));
+        }
+        for (int i = 0; i < readers; i++) {
+            Session session = new ReaderSession(step, dataset.readerId(i % dataset.getReaders()), librarians + i);
+            threads.add(new Thread(session, "library-load-reader-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Thread.sleep(config.getWarmupMs());
+        long start = System.nanoTime();
+        step.recording = true;
+        Thread.sleep(config.getDurationMs());
+        step.recording = false;
+        step.elapsedNanos = System.nanoTime() - start;
+
+        step.stopped = true;
+        // Not interrupted: a session stopped halfway through a call would log a spurious failure
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return step;
+    }
+
+    /** One simulated user: logs in, then acts and thinks until the step ends. */
+    private abstract class Session implements Runnable {
+        final Step step;
+        final int userId;
+        final Random random;
+
+        Session(Step step, int userId, int index) {
+            this.step = step;
+            this.userId = userId;
+            this.random = new Random(config.getSeed() * 31 + index);
+        }
+
+        abstract String role();
+
+        abstract String username();
+
+        abstract void act();
+
+        @Override
+        public void run() {
+            timed(LOGIN, () -> authService.authenticate(username(), generator.getSpec().getPassword(), role()) != null
+                    ? Result.OK : Result.ERROR);
+            while (!step.stopped) {
+                act();
+                if (!think()) return;
+            }
+        }
+
+        Result timed(String operation, Supplier<Result> call) {
+            long start = System.nanoTime();
+            Result result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                result = Result.ERROR;
+            }
+            if (step.recording) {
+                step.record(operation, System.nanoTime() - start, result);
+            }
+            return result;
+        }
+
+        int popularBook() {
+            return dataset.bookId(generator.sampleBook(random));
+        }
+
+        private boolean think() {
+            if (config.getThinkTimeMs() <= 0) return !step.stopped;
+            long pause = (long) (-config.getThinkTimeMs() * Math.log(1 - random.nextDouble()));
+            try {
+                Thread.sleep(pause);
+                return !step.stopped;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private final class ReaderSession extends Session {
+
+        ReaderSession(Step step, int readerId, int index) {
+            super(step, readerId, index);
+        }
+
+        @Override
+        String role() {
+            return "READER";
+        }
+
+        @Override
+        String username() {
+            return "reader" + userId;
+        }
+
+        @Override
+        void act() {
+            int pick = random.nextInt(100);
+            if (pick < 40) {
+                timed(SEARCH, () -> bookService.search(generator.titleWord(random)) != null ? Result.OK : Result.ERROR);
+            } else if (pick < 60) {
+                timed(DASHBOARD, () -> loanService.loadReaderDashboard(userId, 3) != null ? Result.OK : Result.ERROR);
+            } else if (pick < 80) {
+                timed(REQUEST, () -> requestService.createRequest(popularBook(), userId, "ISSUE")
+                        ? Result.OK : Result.ERROR);
+            } else if (pick < 90) {
+                timed(REQUEST_RETURN, () -> {
+                    List<Loan> loans = loanService.findActiveLoansByReaderId(userId);
+                    if (loans.isEmpty()) return Result.OK;
+                    Loan loan = loans.get(random.nextInt(loans.size()));
+                    return requestService.createRequest(loan.getBookId(), userId, "RETURN") ? Result.OK : Result.ERROR;
+                });
+            } else {
+                timed(PAY_FINE, () -> {
+                    List<Fine> fines = fineService.findUnpaidFinesByReaderId(userId);
+                    if (fines.isEmpty()) return Result.OK;
+                    return fineService.payFine(fines.get(0).getFineId()) ? Result.OK : Result.ERROR;
+                });
+            }
+        }
+    }
+
+    private final class LibrarianSession extends Session {
+        private List<BookRequest> pending = Collections.emptyList();
+
+        LibrarianSession(Step step, int librarianId, int index) {
+            super(step, librarianId, index);
+        }
+
+        @Override
+        String role() {
+            return "LIBRARIAN";
+        }
+
+        @Override
+        String username() {
+            return "librarian" + userId;
+        }
+
+        @Override
+        void act() {
+            timed(PENDING_REQUESTS, () -> {
+                pending = requestService.getPendingRequests();
+                return Result.OK;
+            });
+            if (pending.isEmpty()) return;
+
+            BookRequest request = pending.get(random.nextInt(Math.min(QUEUE_HEAD, pending.size())));
+            if ("RETURN".equals(request.getRequestType())) {
+                timed(APPROVE_RETURN, () -> approveReturn(request));
+            } else if (random.nextInt(10) == 0) {
+                timed(REJECT, () -> requestService.rejectRequest(request.getId(), userId, "Not available")
+                        ? Result.OK : Result.ERROR);
+            } else {
+                timed(ISSUE, () -> {
+                    switch (issueService.issue(request.getId(), userId)) {
+                        case ISSUED:
+                            return Result.OK;
+                        case ALREADY_PROCESSED:
+                        case NO_COPIES_AVAILABLE:
+                            return Result.CONTENTION;
+                        default:
+                            return Result.ERROR;
+                    }
+                });
+            }
+        }
+
+        // Same steps as approving a return from the librarian dashboard, except that the request
+        // is claimed while still pending, so a librarian who loses the race to another one stops
+        private Result approveReturn(BookRequest request) {
+            Loan loan = loanService.findActiveLoan(request.getBookId(), request.getReaderId());
+            if (loan == null) return Result.CONTENTION;
+
+            double fine = fineService.calculateFineForLoan(loan);
+            if (fine > 0) {
+                if (!requestService.claimPendingRequest(request.getId(), userId, LocalDate.now().plusDays(7))) {
+                    return Result.CONTENTION;
+                }
+                Fine record = new Fine();
+                record.setLoanId(loan.getLoanId());
+                record.setReaderId(request.getReaderId());
+                record.setAmount(fine);
+                record.setStatus("UNPAID");
+                // A loan keeps the fine it already has when the reader asks to return it again
+                return fineService.addFineIfNoneForLoan(record) ? Result.OK : Result.ERROR;
+            }
+            if (!requestService.claimPendingRequest(request.getId(), userId, null)) return Result.CONTENTION;
+            // Another return request for the same loan may have been approved in the meantime
+            if (!loanService.returnBook(loan.getLoanId())) return Result.CONTENTION;
+            return bookService.incrementAvailableCopies(request.getBookId()) ? Result.OK : Result.ERROR;
+        }
+    }
+
+    public static void main(String[] args) throws SQLException, InterruptedException {
+        if (!SchemaMigrator.ensureCurrent()) return;
+        DatasetGenerator generator = new DatasetGenerator(DatasetGenerator.Spec.fromSystemProperties("dataset"));
+        Config config = Config.fromSystemProperties("load");
+        System.out.println("Generating " + generator.getSpec());
+        DatasetGenerator.Dataset dataset = generator.generate();
+        System.out.println(dataset);
+        System.out.println("Running " + config);
+        new LoadTestHarness(config, generator, dataset).run().print(System.out);
+        DatabaseConnection.shutdown();
+    }
+
+    /**
+     * How many librarians and readers to simulate and for how long.
+     */
+    public static final class Config {
+        private int librarians = 5;
+        private int readers = 50;
+        private int steps = 4;
+        private long warmupMs = 5_000;
+        private long durationMs = 30_000;
+        private long thinkTimeMs = 100;
+        private long seed = 42;
+
+        /**
+         * A config with each field overridden by the system property {@code <prefix>.<field>}
+         * where set, e.g. load.readers or load.thinkTimeMs.
+         */
+        public static Config fromSystemProperties(String prefix) {
+            Config config = new Config();
+            config.librarians = Integer.getInteger(prefix + ".librarians", config.librarians);
+            config.readers = Integer.getInteger(prefix + ".readers", config.readers);
+            config.steps = Integer.getInteger(prefix + ".steps", config.steps);
+            config.warmupMs = Long.getLong(prefix + ".warmupMs", config.warmupMs);
+            config.durationMs = Long.getLong(prefix + ".durationMs", config.durationMs);
+            config.thinkTimeMs = Long.getLong(prefix + ".thinkTimeMs", config.thinkTimeMs);
+            config.seed = Long.getLong(prefix + ".seed", config.seed);
+            return config;
+        }
+
+        /** Librarians at full load. */
+        public int getLibrarians() { return librarians; }
+        public void setLibrarians(int librarians) { this.librarians = librarians; }
+
+        /** Readers at full load. */
+        public int getReaders() { return readers; }
+        public void setReaders(int readers) { this.readers = readers; }
+
+        /** Load levels from a fraction of the users to all of them; 1 runs full load only. */
+        public int getSteps() { return steps; }
+        public void setSteps(int steps) { this.steps = steps; }
+
+        public long getWarmupMs() { return warmupMs; }
+        public void setWarmupMs(long warmupMs) { this.warmupMs = warmupMs; }
+
+        /** Measured time per step. */
+        public long getDurationMs() { return durationMs; }
+        public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+
+        /** Mean pause between a user's actions; 0 runs flat out. */
+        public long getThinkTimeMs() { return thinkTimeMs; }
+        public void setThinkTimeMs(long thinkTimeMs) { this.thinkTimeMs = thinkTimeMs; }
+
+        public long getSeed() { return seed; }
+        public void setSeed(long seed) { this.seed = seed; }
+
+        @Override
+        public String toString() {
+            return "Config{librarians=" + librarians + ", readers=" + readers + ", steps=" + steps +
+                    ", warmupMs=" + warmupMs + ", durationMs=" + durationMs + ", thinkTimeMs=" + thinkTimeMs + '}';
+        }
+    }
+
+    /** Latency, errors and contention for one kind of operation within a step. */
+    public static final class OperationStats {
+        // Microseconds, resized as needed
+        private final Histogram latency = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder contention = new LongAdder();
+
+        public long getCount() { return latency.getTotalCount(); }
+        public long getErrors() { return errors.sum(); }
+        public long getContention() { return contention.sum(); }
+        public double getMeanMicros() { return latency.getMean(); }
+        public long getMaxMicros() { return latency.getMaxValue(); }
+
+        public long getPercentileMicros(double percentile) {
+            return latency.getValueAtPercentile(percentile);
+        }
+    }
+
+    /** One load level. */
+    public static final class Step {
+        private final int librarians;
+        private final int readers;
+        private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+        private volatile boolean recording;
+        private volatile boolean stopped;
+        private long elapsedNanos;
+
+        private Step(int librarians, int readers) {
+            this.librarians = librarians;
+            this.readers = readers;
+        }
+
+        private void record(String operation, long nanos, Result result) {
+            OperationStats stats = operations.computeIfAbsent(operation, k -> new OperationStats());
+            stats.latency.recordValue(Math.max(1, nanos / 1000));
+            if (result == Result.ERROR) stats.errors.increment();
+            else if (result == Result.CONTENTION) stats.contention.increment();
+        }
+
+        public int getLibrarians() { return librarians; }
+        public int getReaders() { return readers; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public Map<String, OperationStats> getOperations() {
+            return Collections.unmodifiableMap(new TreeMap<>(operations));
+        }
+
+        public long getCount() {
+            return operations.values().stream().mapToLong(OperationStats::getCount).sum();
+        }
+
+        public long getErrors() {
+            return operations.values().stream().mapToLong(OperationStats::getErrors).sum();
+        }
+
+        public long getContention() {
+            return operations.values().stream().mapToLong(OperationStats::getContention).sum();
+        }
+
+        public double getOpsPerSecond() {
+            return elapsedNanos > 0 ? getCount() * 1e9 / elapsedNanos : 0;
+        }
+
+        /** 99th percentile over all operations, in microseconds. */
+        public long getP99Micros() {
+            Histogram all = new Histogram(3);
+            for (OperationStats stats : operations.values()) all.add(stats.latency);
+            return all.getValueAtPercentile(99);
+        }
+    }
+
+    /** Every step of a run, lightest load first. */
+    public static final class Report {
+        private final List<Step> steps = new ArrayList<>();
+
+        public List<Step> getSteps() {
+            return Collections.unmodifiableList(steps);
+        }
+
+        /**
+         * The throughput curve, then each operation at full load.
+         */
+        public void print(PrintStream out) {
+            out.println();
+            out.printf("%10s %8s %12s %10s %8s %10s%n", "librarians", "readers", "ops/s", "p99 ms", "errors", "contention");
+            for (Step step : steps) {
+                out.printf("%10d %8d %,12.1f %,10.1f %8d %10d%n", step.librarians, step.readers,
+                        step.getOpsPerSecond(), step.getP99Micros() / 1000.0, step.getErrors(), step.getContention());
+            }
+            if (steps.isEmpty()) return;
+
+            Step last = steps.get(steps.size() - 1);
+            double seconds = last.elapsedNanos / 1e9;
+            out.println();
+            out.printf("%-16s %9s %9s %9s %9s %9s %9s %9s %8s %10s%n", "operation (ms)", "count", "ops/s",
+                    "mean", "p50", "p90", "p99", "max", "errors", "contention");
+            for (Map.Entry<String, OperationStats> entry : last.getOperations().entrySet()) {
+                OperationStats s = entry.getValue();
+                out.printf("%-16s %9d %,9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d %10d%n", entry.getKey(),
+                        s.getCount(), s.getCount() / seconds, s.getMeanMicros() / 1000.0,
+                        s.getPercentileMicros(50) / 1000.0, s.getPercentileMicros(90) / 1000.0,
+                        s.getPercentileMicros(99) / 1000.0, s.getMaxMicros() / 1000.0,
+                        s.getErrors(), s.getContention());
+            }
+            out.println();
+        }
+    }
+}
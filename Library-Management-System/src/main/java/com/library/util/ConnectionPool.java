@@ -0,0 +1,438 @@
+package com.library.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ *
+ * Borrowers get a proxy whose close() hands the physical connection back to the pool.
+ * Idle connections are re-validated before reuse once they have been idle longer than the
+ * validation interval, connections older than the max lifetime are retired, and a
+ * housekeeping thread reports connections that stay borrowed past the leak threshold.
+ * Each physical connection keeps its own {@link StatementCache} so hot queries are prepared once.
+ */
+public class ConnectionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final long HOUSEKEEPING_PERIOD_MS = 5_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    /**
+     * Opens a new physical connection.
+     */
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final int minIdle;
+    private final long connectionTimeoutMs;
+    private final long validationIntervalMs;
+    private final long maxLifetimeMs;
+    private final long leakDetectionThresholdMs;
+    private final int statementCacheSize;
+    private final MetricsRegistry metrics;
+
+    // One permit per connection that may be handed out. Idle connections never outnumber the
+    // free permits, so idle + borrowed never exceeds maxSize.
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong retiredCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong statementCacheEvictions = new AtomicLong();
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, int minIdle, long connectionTimeoutMs,
+                          long validationIntervalMs, long maxLifetimeMs, long leakDetectionThresholdMs,
+                          int statementCacheSize) {
+        this(factory, maxSize, minIdle, connectionTimeoutMs, validationIntervalMs, maxLifetimeMs,
+                leakDetectionThresholdMs, statementCacheSize, null);
+    }
+
+    /**
+     * @param metrics times every statement run on the pool's connections, or null for none
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, int minIdle, long connectionTimeoutMs,
+                          long validationIntervalMs, long maxLifetimeMs, long leakDetectionThresholdMs,
+                          int statementCacheSize, MetricsRegistry metrics) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+        this.statementCacheSize = statementCacheSize;
+        this.metrics = metrics != null && metrics.isEnabled() ? metrics : null;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + connectionTimeoutMs
+                        + " ms waiting for a database connection (" + getStats() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isExpired(entry) || !isUsable(entry)) {
+                    retire(entry);
+                    continue;
+                }
+                return lease(entry);
+            }
+            return lease(createEntry());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Stats getStats() {
+        long acquired = acquiredCount.get();
+        return new Stats(
+                leases.size(),
+                idle.size(),
+                maxSize,
+                permits.getQueueLength(),
+                acquired,
+                acquired == 0 ? 0 : totalWaitNanos.get() / acquired,
+                maxWaitNanos.get(),
+                timeoutCount.get(),
+                createdCount.get(),
+                retiredCount.get(),
+                leakCount.get(),
+                statementCacheHits.get(),
+                statementCacheMisses.get(),
+                statementCacheEvictions.get()
+        );
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            retire(entry);
+        }
+    }
+
+    private Connection lease(PooledEntry entry) {
+        Lease lease = new Lease(entry);
+        leases.add(lease);
+        acquiredCount.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                lease
+        );
+    }
+
+    private void release(Lease lease) {
+        leases.remove(lease);
+        PooledEntry entry = lease.entry;
+        try {
+            if (entry.statementCache != null) {
+                entry.statementCache.returnAll();
+            }
+            if (!entry.connection.getAutoCommit()) {
+                entry.connection.rollback();
+                entry.connection.setAutoCommit(true);
+            }
+            if (shutdown || isExpired(entry) || entry.connection.isClosed()) {
+                retire(entry);
+            } else {
+                entry.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(entry);
+            }
+        } catch (SQLException e) {
+            log.warn("Discarding connection that failed to reset: {}", e.getMessage());
+            retire(entry);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledEntry createEntry() throws SQLException {
+        Connection connection = factory.create();
+        createdCount.incrementAndGet();
+        StatementCache cache = statementCacheSize > 0
+                ? new StatementCache(connection, statementCacheSize,
+                        statementCacheHits, statementCacheMisses, statementCacheEvictions, metrics)
+                : null;
+        return new PooledEntry(connection, cache);
+    }
+
+    private boolean isExpired(PooledEntry entry) {
+        return maxLifetimeMs > 0 && System.currentTimeMillis() - entry.createdAt >= maxLifetimeMs;
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        if (System.currentTimeMillis() - entry.lastUsedAt < validationIntervalMs) {
+            return true;
+        }
+        try {
+            return entry.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void retire(PooledEntry entry) {
+        retiredCount.incrementAndGet();
+        if (entry.statementCache != null) {
+            entry.statementCache.closeAll();
+        }
+        try {
+            entry.connection.close();
+        } catch (SQLException e) {
+            log.debug("Error closing retired connection", e);
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void housekeep() {
+        try {
+            // Retire idle connections that outlived maxLifetime
+            for (PooledEntry entry : idle) {
+                if (isExpired(entry) && idle.remove(entry)) {
+                    retire(entry);
+                }
+            }
+
+            // Top the idle set back up to minIdle without exceeding maxSize: every idle connection
+            // needs a free permit to be handed out with, so stop once each free permit has one
+            while (!shutdown && idle.size() < minIdle && permits.tryAcquire()) {
+                try {
+                    if (idle.size() > permits.availablePermits()) {
+                        break;
+                    }
+                    idle.offerLast(createEntry());
+                } finally {
+                    permits.release();
+                }
+            }
+
+            if (leakDetectionThresholdMs > 0) {
+                long now = System.currentTimeMillis();
+                for (Lease lease : leases) {
+                    if (!lease.leakReported && now - lease.borrowedAt > leakDetectionThresholdMs) {
+                        lease.leakReported = true;
+                        leakCount.incrementAndGet();
+                        log.warn("Connection borrowed {} ms ago has not been closed; possible leak",
+                                now - lease.borrowedAt, lease.borrowStack);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Could not open idle connection: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Connection pool housekeeping failed", e);
+        }
+    }
+
+    private static final class PooledEntry {
+        private final Connection connection;
+        private final StatementCache statementCache;
+        private final long createdAt;
+        private volatile long lastUsedAt;
+
+        private PooledEntry(Connection connection, StatementCache statementCache) {
+            this.connection = connection;
+            this.statementCache = statementCache;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+    }
+
+    /**
+     * The borrower's view of a pooled connection; closing it returns the connection exactly once.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledEntry entry;
+        private final long borrowedAt = System.currentTimeMillis();
+        private final Throwable borrowStack;
+        private volatile boolean closed;
+        private volatile boolean leakReported;
+
+        private Lease(PooledEntry entry) {
+            this.entry = entry;
+            this.borrowStack = leakDetectionThresholdMs > 0 ? new Throwable("Connection acquired here") : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.connection + (closed ? ", closed]" : "]");
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (entry.statementCache != null && method.getName().equals("prepareStatement")) {
+                Class<?>[] params = method.getParameterTypes();
+                if (params.length == 1) {
+                    return entry.statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (params.length == 2 && params[1] == int.class) {
+                    return entry.statementCache.prepare((String) args[0], (Integer) args[1]);
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(entry.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (metrics != null && result instanceof Statement) {
+                // Statements the cache does not hold: plain, callable or with other options
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return metrics.instrument((Statement) result, method.getReturnType().asSubclass(Statement.class), sql);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Point-in-time pool metrics.
+     */
+    public static final class Stats {
+        private final int active;
+        private final int idle;
+        private final int maxSize;
+        private final int waiting;
+        private final long acquired;
+        private final long averageWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeouts;
+        private final long created;
+        private final long retired;
+        private final long leaks;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long statementCacheEvictions;
+
+        Stats(int active, int idle, int maxSize, int waiting, long acquired, long averageWaitNanos,
+              long maxWaitNanos, long timeouts, long created, long retired, long leaks,
+              long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.waiting = waiting;
+            this.acquired = acquired;
+            this.averageWaitNanos = averageWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.retired = retired;
+            this.leaks = leaks;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getMaxSize() { return maxSize; }
+        public int getWaiting() { return waiting; }
+        public long getAcquired() { return acquired; }
+        public long getAverageWaitNanos() { return averageWaitNanos; }
+        public long getMaxWaitNanos() { return maxWaitNanos; }
+        public long getTimeouts() { return timeouts; }
+        public long getCreated() { return created; }
+        public long getRetired() { return retired; }
+        public long getLeaks() { return leaks; }
+        public long getStatementCacheHits() { return statementCacheHits; }
+        public long getStatementCacheMisses() { return statementCacheMisses; }
+        public long getStatementCacheEvictions() { return statementCacheEvictions; }
+
+        @Override
+        public String toString() {
+            return "active=" + active +
+                    ", idle=" + idle +
+                    ", max=" + maxSize +
+                    ", waiting=" + waiting +
+                    ", acquired=" + acquired +
+                    ", avgWait=" + TimeUnit.NANOSECONDS.toMicros(averageWaitNanos) + "us" +
+                    ", maxWait=" + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms" +
+                    ", timeouts=" + timeouts +
+                    ", created=" + created +
+                    ", retired=" + retired +
+                    ", leaks=" + leaks +
+                    ", stmtCacheHits=" + statementCacheHits +
+                    ", stmtCacheMisses=" + statementCacheMisses +
+                    ", stmtCacheEvictions=" + statementCacheEvictions;
+        }
+    }
+}
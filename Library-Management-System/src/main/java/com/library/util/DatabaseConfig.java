@@ -1,11 +1,34 @@
 package com.library.util;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
 
+/**
+ * Reads connection settings from config/db.properties.
+ *
+ * Besides db.url, db.username and db.password the file may tune the connection pool:
+ * db.pool.maxSize, db.pool.minIdle, db.pool.connectionTimeoutMs, db.pool.validationIntervalMs,
+ * db.pool.maxLifetimeMs, db.pool.leakDetectionThresholdMs (0 disables leak detection) and
+ * db.pool.statementCacheSize (prepared statements kept per connection, 0 disables the cache).
+ * db.cache.catalogTtlMs bounds how long the in-memory book catalog is trusted before it is
+ * reloaded, which matters when several workstations write to the same database.
+ * db.cache.statsReconcileMs is how often the in-memory dashboard counters are checked against
+ * the database for the same reason.
+ * Setting db.debug.trackLeaks=true wraps every connection in a {@link JdbcLeakDetector}.
+ * db.metrics.enabled (default true) times every statement in the {@link MetricsRegistry};
+ * db.metrics.logIntervalMs is how often it logs a summary (0 never) and db.metrics.rowSampling
+ * how many query executions share one row count (0 never counts query rows).
+ * db.slowQuery.thresholdMs (default 0, off) logs every statement that takes at least that long to
+ * the {@link SlowQueryLog}, which hooks into the metrics and so needs them enabled;
+ * db.slowQuery.bufferSize is how many it keeps for the admin view and statements slower than
+ * db.slowQuery.explainThresholdMs also get their EXPLAIN plan captured.
+ *
+ * Any db.* key may also be given as a system property, which takes precedence over the file.
+ * The file may then be omitted entirely, e.g. when tests point the services at another database.
+ */
 public class DatabaseConfig {
 
     private static final String CONFIG_PATH = "config/db.properties";
@@ -14,6 +37,28 @@ public class DatabaseConfig {
     private static String username;
     private static String password;
 
+    private static int poolMaxSize;
+    private static int poolMinIdle;
+    private static long poolConnectionTimeoutMs;
+    private static long poolValidationIntervalMs;
+    private static long poolMaxLifetimeMs;
+    private static long poolLeakDetectionThresholdMs;
+    private static int poolStatementCacheSize;
+
+    private static long catalogCacheTtlMs;
+    private static long statsReconcileMs;
+
+    private static boolean trackLeaks;
+    private static long leakReportThresholdMs;
+
+    private static boolean metricsEnabled;
+    private static long metricsLogIntervalMs;
+    private static int metricsRowSampling;
+
+    private static long slowQueryThresholdMs;
+    private static int slowQueryBufferSize;
+    private static long slowQueryExplainThresholdMs;
+
     static {
         try {
             loadProperties();
@@ -26,11 +71,55 @@ public class DatabaseConfig {
 
     private static void loadProperties() throws IOException {
         Properties props = new Properties();
-        InputStream input = new FileInputStream(CONFIG_PATH);
-        props.load(input);
+        File file = new File(CONFIG_PATH);
+        if (file.exists() || System.getProperty("db.url") == null) {
+            try (InputStream input = new FileInputStream(file)) {
+                props.load(input);
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("db.")) {
+                props.setProperty(key, System.getProperty(key));
+            }
+        }
+
         url = props.getProperty("db.url");
         username = props.getProperty("db.username");
         password = props.getProperty("db.password");
+
+        poolMaxSize = getInt(props, "db.pool.maxSize", 10);
+        poolMinIdle = getInt(props, "db.pool.minIdle", 2);
+        poolConnectionTimeoutMs = getLong(props, "db.pool.connectionTimeoutMs", 30_000);
+        poolValidationIntervalMs = getLong(props, "db.pool.validationIntervalMs", 30_000);
+        poolMaxLifetimeMs = getLong(props, "db.pool.maxLifetimeMs", 30 * 60_000);
+        poolLeakDetectionThresholdMs = getLong(props, "db.pool.leakDetectionThresholdMs", 60_000);
+        poolStatementCacheSize = getInt(props, "db.pool.statementCacheSize", 64);
+
+        catalogCacheTtlMs = getLong(props, "db.cache.catalogTtlMs", 60_000);
+        statsReconcileMs = getLong(props, "db.cache.statsReconcileMs", 60_000);
+
+        trackLeaks = Boolean.parseBoolean(props.getProperty("db.debug.trackLeaks", "false"));
+        leakReportThresholdMs = getLong(props, "db.debug.leakThresholdMs", 10_000);
+
+        metricsEnabled = Boolean.parseBoolean(props.getProperty("db.metrics.enabled", "true"));
+        metricsLogIntervalMs = getLong(props, "db.metrics.logIntervalMs", 60_000);
+        metricsRowSampling = getInt(props, "db.metrics.rowSampling", 16);
+
+        slowQueryThresholdMs = getLong(props, "db.slowQuery.thresholdMs", 0);
+        slowQueryBufferSize = getInt(props, "db.slowQuery.bufferSize", 200);
+        slowQueryExplainThresholdMs = getLong(props, "db.slowQuery.explainThresholdMs", 1_000);
+    }
+
+    private static int getInt(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        return Integer.parseInt(value.trim());
+    }
+
+    private static long getLong(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        return Long.parseLong(value.trim());
     }
 
     public static String getUrl() {
@@ -44,5 +133,72 @@ public class DatabaseConfig {
     public static String getPassword() {
         return password;
     }
-}
 
+    public static int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    public static int getPoolMinIdle() {
+        return poolMinIdle;
+    }
+
+    public static long getPoolConnectionTimeoutMs() {
+        return poolConnectionTimeoutMs;
+    }
+
+    public static long getPoolValidationIntervalMs() {
+        return poolValidationIntervalMs;
+    }
+
+    public static long getPoolMaxLifetimeMs() {
+        return poolMaxLifetimeMs;
+    }
+
+    public static long getPoolLeakDetectionThresholdMs() {
+        return poolLeakDetectionThresholdMs;
+    }
+
+    public static int getPoolStatementCacheSize() {
+        return poolStatementCacheSize;
+    }
+
+    public static long getCatalogCacheTtlMs() {
+        return catalogCacheTtlMs;
+    }
+
+    public static long getStatsReconcileMs() {
+        return statsReconcileMs;
+    }
+
+    public static boolean isLeakTrackingEnabled() {
+        return trackLeaks;
+    }
+
+    public static long getLeakReportThresholdMs() {
+        return leakReportThresholdMs;
+    }
+
+    public static boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public static long getMetricsLogIntervalMs() {
+        return metricsLogIntervalMs;
+    }
+
+    public static int getMetricsRowSampling() {
+        return metricsRowSampling;
+    }
+
+    public static long getSlowQueryThresholdMs() {
+        return slowQueryThresholdMs;
+    }
+
+    public static int getSlowQueryBufferSize() {
+        return slowQueryBufferSize;
+    }
+
+    public static long getSlowQueryExplainThresholdMs() {
+        return slowQueryExplainThresholdMs;
+    }
+}
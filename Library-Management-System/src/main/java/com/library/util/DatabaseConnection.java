@@ -3,13 +3,80 @@ package com.library.util;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 public class DatabaseConnection {
+
+    private static volatile ConnectionPool pool;
+
+    /**
+     * Borrows a connection from the shared pool. Closing it returns it to the pool.
+     */
     public static Connection getConnection() throws SQLException {
+        Connection conn = getPool().getConnection();
+        return DatabaseConfig.isLeakTrackingEnabled() ? JdbcLeakDetector.track(conn) : conn;
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = pool;
+                if (p == null) {
+                    p = createPool();
+                    pool = p;
+                    Runtime.getRuntime().addShutdownHook(new Thread(DatabaseConnection::shutdown, "library-pool-shutdown"));
+                }
+            }
+        }
+        return p;
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private static ConnectionPool createPool() {
+        JdbcLeakDetector.setReportThresholdMs(DatabaseConfig.getLeakReportThresholdMs());
+        return new ConnectionPool(
+                DatabaseConnection::openPhysicalConnection,
+                DatabaseConfig.getPoolMaxSize(),
+                DatabaseConfig.getPoolMinIdle(),
+                DatabaseConfig.getPoolConnectionTimeoutMs(),
+                DatabaseConfig.getPoolValidationIntervalMs(),
+                DatabaseConfig.getPoolMaxLifetimeMs(),
+                DatabaseConfig.getPoolLeakDetectionThresholdMs(),
+                DatabaseConfig.getPoolStatementCacheSize(),
+                MetricsRegistry.getInstance()
+        );
+    }
+
+    /**
+     * A new connection straight from the driver, outside the pool. The caller must close it.
+     */
+    static Connection openPhysicalConnection() throws SQLException {
         String url = DatabaseConfig.getUrl();
         String user = DatabaseConfig.getUsername();
         String pass = DatabaseConfig.getPassword();
 
-        return DriverManager.getConnection(url, user, pass);
+        Properties info = new Properties();
+        if (user != null) info.setProperty("user", user);
+        if (pass != null) info.setProperty("password", pass);
+        // The pool caches prepared statements per connection; let MySQL keep them prepared server-side
+        if (url.startsWith("jdbc:mysql:") && !url.contains("useServerPrepStmts")) {
+            info.setProperty("useServerPrepStmts", "true");
+        }
+        // Sends a JDBC batch as one multi-row INSERT instead of a round trip per row
+        if (url.startsWith("jdbc:mysql:") && !url.contains("rewriteBatchedStatements")) {
+            info.setProperty("rewriteBatchedStatements", "true");
+        }
+        return DriverManager.getConnection(url, info);
     }
 }
@@ -0,0 +1,183 @@
+package com.library.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long the Event Dispatch Thread spends on each event, so work that still blocks
+ * the UI shows up in the log.
+ *
+ * Once installed, every event is timed. Events that take longer than the threshold count as
+ * blocked time. A watchdog checks the EDT while an event is still running and logs its stack
+ * trace once the threshold is passed, which points at the call that is blocking.
+ */
+public class EdtMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(EdtMonitor.class);
+
+    private static final long DEFAULT_THRESHOLD_MS = 100;
+
+    private static EdtMonitor installed;
+
+    private final long thresholdNanos;
+
+    // Events being dispatched, innermost first; only touched on the EDT. A modal dialog pumps
+    // events from inside the event that opened it, so that event is not counted as blocking.
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+
+    // Set by the EDT at the start of each event and cleared when it finishes; read by the watchdog
+    private volatile Thread dispatchThread;
+    private volatile long dispatchStart;
+    private volatile boolean stallReported;
+
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong slowCount = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong maxDispatchNanos = new AtomicLong();
+    private final AtomicLong stallCount = new AtomicLong();
+
+    EdtMonitor(long thresholdMs) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    }
+
+    /**
+     * Starts timing EDT events with the default 100 ms threshold. Safe to call more than once.
+     */
+    public static synchronized void install() {
+        if (installed != null) return;
+
+        EdtMonitor monitor = new EdtMonitor(DEFAULT_THRESHOLD_MS);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+            @Override
+            protected void dispatchEvent(AWTEvent event) {
+                monitor.dispatchStarted(Thread.currentThread());
+                try {
+                    super.dispatchEvent(event);
+                } finally {
+                    monitor.dispatchFinished(event);
+                }
+            }
+        });
+
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-edt-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(10, DEFAULT_THRESHOLD_MS / 2);
+        watchdog.scheduleAtFixedRate(monitor::checkStalled, period, period, TimeUnit.MILLISECONDS);
+        installed = monitor;
+    }
+
+    /**
+     * EDT statistics since {@link #install()}, or all zeros if it was never installed.
+     */
+    public static synchronized Stats getStats() {
+        return installed != null ? installed.stats() : new EdtMonitor(DEFAULT_THRESHOLD_MS).stats();
+    }
+
+    void dispatchStarted(Thread thread) {
+        Frame outer = frames.peek();
+        if (outer != null) outer.pumping = true;
+        long now = System.nanoTime();
+        frames.push(new Frame(now));
+        stallReported = false;
+        dispatchStart = now;
+        dispatchThread = thread;
+    }
+
+    void dispatchFinished(Object event) {
+        Frame frame = frames.pop();
+        long now = System.nanoTime();
+        long elapsed = now - frame.start;
+        // Also cleared inside a modal loop, which is waiting for input rather than blocked
+        dispatchThread = null;
+        dispatchedCount.incrementAndGet();
+        if (frame.pumping) return;
+        maxDispatchNanos.accumulateAndGet(elapsed, Math::max);
+        if (elapsed >= thresholdNanos) {
+            slowCount.incrementAndGet();
+            blockedNanos.addAndGet(elapsed);
+            log.warn("EDT blocked for {} ms by {}", TimeUnit.NANOSECONDS.toMillis(elapsed), event);
+        }
+    }
+
+    /**
+     * Logs where the EDT is stuck if the current event has been running past the threshold.
+     * Returns the stack trace that was reported, or null.
+     */
+    StackTraceElement[] checkStalled() {
+        Thread thread = dispatchThread;
+        if (thread == null || stallReported) return null;
+        long elapsed = System.nanoTime() - dispatchStart;
+        if (elapsed < thresholdNanos) return null;
+
+        StackTraceElement[] stack = thread.getStackTrace();
+        // The event may have finished while the stack was taken
+        if (dispatchThread != thread) return null;
+        stallReported = true;
+        stallCount.incrementAndGet();
+
+        StringBuilder trace = new StringBuilder();
+        for (StackTraceElement frame : stack) {
+            trace.append("\n\tat ").append(frame);
+        }
+        log.warn("EDT busy for {} ms, currently in:{}", TimeUnit.NANOSECONDS.toMillis(elapsed), trace);
+        return stack;
+    }
+
+    Stats stats() {
+        return new Stats(dispatchedCount.get(), slowCount.get(), blockedNanos.get(),
+                maxDispatchNanos.get(), stallCount.get());
+    }
+
+    private static final class Frame {
+        private final long start;
+        private boolean pumping;
+
+        private Frame(long start) {
+            this.start = start;
+        }
+    }
+
+    public static final class Stats {
+        private final long dispatched;
+        private final long slowDispatches;
+        private final long blockedNanos;
+        private final long maxDispatchNanos;
+        private final long stalls;
+
+        Stats(long dispatched, long slowDispatches, long blockedNanos, long maxDispatchNanos, long stalls) {
+            this.dispatched = dispatched;
+            this.slowDispatches = slowDispatches;
+            this.blockedNanos = blockedNanos;
+            this.maxDispatchNanos = maxDispatchNanos;
+            this.stalls = stalls;
+        }
+
+        public long getDispatched() { return dispatched; }
+        public long getSlowDispatches() { return slowDispatches; }
+        /** Total time spent in events that ran past the threshold. */
+        public long getBlockedNanos() { return blockedNanos; }
+        public long getMaxDispatchNanos() { return maxDispatchNanos; }
+        public long getStalls() { return stalls; }
+
+        @Override
+        public String toString() {
+            return "dispatched=" + dispatched +
+                    ", slow=" + slowDispatches +
+                    ", blocked=" + TimeUnit.NANOSECONDS.toMillis(blockedNanos) + "ms" +
+                    ", max=" + TimeUnit.NANOSECONDS.toMillis(maxDispatchNanos) + "ms" +
+                    ", stalls=" + stalls;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.library.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debug-mode wrapper that remembers where every Connection and Statement was opened.
+ *
+ * Enabled with db.debug.trackLeaks=true. Resources still open after the report threshold are
+ * logged once with their acquisition stack, and tests can call {@link #assertNoLeaks()} to fail
+ * as soon as a code path forgets to close something.
+ */
+public class JdbcLeakDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcLeakDetector.class);
+
+    private static final Map<Object, OpenResource> open = new ConcurrentHashMap<>();
+    private static volatile long reportThresholdMs = 10_000;
+    private static ScheduledExecutorService reporter;
+
+    private JdbcLeakDetector() {}
+
+    public static void setReportThresholdMs(long thresholdMs) {
+        reportThresholdMs = thresholdMs;
+    }
+
+    /**
+     * Wraps a connection so that it, and every statement created from it, is tracked until closed.
+     */
+    public static Connection track(Connection connection) {
+        startReporter();
+        Connection proxy = (Connection) Proxy.newProxyInstance(
+                JdbcLeakDetector.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new TrackingHandler(connection)
+        );
+        open.put(proxy, new OpenResource("Connection", null));
+        return proxy;
+    }
+
+    public static List<OpenResource> getOpenResources() {
+        List<OpenResource> resources = new ArrayList<>(open.values());
+        resources.sort(Comparator.comparingLong(OpenResource::getOpenedAt));
+        return resources;
+    }
+
+    /**
+     * Logs every resource that has been open longer than the threshold and not reported yet.
+     */
+    public static int reportLeaks(long thresholdMs) {
+        long now = System.currentTimeMillis();
+        int reported = 0;
+        for (OpenResource resource : getOpenResources()) {
+            if (!resource.reported && now - resource.openedAt >= thresholdMs) {
+                resource.reported = true;
+                reported++;
+                log.warn("{} open for {} ms without being closed{}", resource.type, now - resource.openedAt,
+                        resource.sql != null ? ": " + resource.sql : "", resource.acquisitionStack);
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * Fails if any tracked Connection or Statement is still open.
+     */
+    public static void assertNoLeaks() {
+        List<OpenResource> resources = getOpenResources();
+        if (resources.isEmpty()) return;
+
+        StringBuilder message = new StringBuilder(resources.size() + " JDBC resource(s) left open:");
+        for (OpenResource resource : resources) {
+            message.append("\n  ").append(resource);
+        }
+        IllegalStateException failure = new IllegalStateException(message.toString(), resources.get(0).acquisitionStack);
+        for (int i = 1; i < resources.size(); i++) {
+            failure.addSuppressed(resources.get(i).acquisitionStack);
+        }
+        throw failure;
+    }
+
+    public static void reset() {
+        open.clear();
+    }
+
+    private static synchronized void startReporter() {
+        if (reporter != null) return;
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-jdbc-leak-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleWithFixedDelay(() -> reportLeaks(reportThresholdMs), 1, 1, TimeUnit.SECONDS);
+    }
+
+    private static Object wrapStatement(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        Object proxy = Proxy.newProxyInstance(
+                JdbcLeakDetector.class.getClassLoader(),
+                new Class<?>[]{type},
+                new TrackingHandler(statement)
+        );
+        open.put(proxy, new OpenResource(type.getSimpleName(), sql));
+        return proxy;
+    }
+
+    private static final class TrackingHandler implements InvocationHandler {
+        private final Object target;
+
+        private TrackingHandler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("hashCode")) return System.identityHashCode(proxy);
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (name.equals("close")) {
+                open.remove(proxy);
+            } else if (result instanceof Statement && target instanceof Connection) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                result = wrapStatement((Statement) result, sql);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A Connection or Statement that has been opened and not yet closed.
+     */
+    public static final class OpenResource {
+        private final String type;
+        private final String sql;
+        private final String thread;
+        private final long openedAt;
+        private final Throwable acquisitionStack;
+        private volatile boolean reported;
+
+        private OpenResource(String type, String sql) {
+            this.type = type;
+            this.sql = sql;
+            this.thread = Thread.currentThread().getName();
+            this.openedAt = System.currentTimeMillis();
+            this.acquisitionStack = new Throwable(type + " acquired here");
+        }
+
+        public String getType() { return type; }
+        public String getSql() { return sql; }
+        public String getThread() { return thread; }
+        public long getOpenedAt() { return openedAt; }
+        public StackTraceElement[] getAcquisitionStack() { return acquisitionStack.getStackTrace(); }
+
+        @Override
+        public String toString() {
+            return type + " opened on " + thread + " " + (System.currentTimeMillis() - openedAt) + " ms ago"
+                    + (sql != null ? " [" + sql + "]" : "");
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package com.library.util;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Call counts, errors, row counts and latency histograms per named operation.
+ *
+ * Every JDBC statement run through the pool is timed without changes to the services: a
+ * statement is named after the service method that first prepares it, e.g.
+ * "LoanService.findActiveLoansByReaderId", with "#2" and so on when one method runs several.
+ * Statements that differ only in the length of an IN list or in how many rows a VALUES clause
+ * inserts share a metric, and a method that builds more than a handful of other variants, such
+ * as an UPDATE of just the changed columns, records the rest under "#other".
+ * Work that never reaches JDBC, like the in-memory search, uses {@link #timer(String)}. Updates
+ * and batches count affected rows. Counting the rows a query returns means wrapping its result
+ * set, so that is done for one execution in db.metrics.rowSampling and averaged.
+ *
+ * Each operation is published as a JMX MXBean under com.library:type=Metrics, and the busiest
+ * ones are logged every db.metrics.logIntervalMs. db.metrics.enabled=false turns it all off.
+ * Executions slower than db.slowQuery.thresholdMs are passed on to the {@link SlowQueryLog}.
+ * Recording costs well under a microsecond per call; see MetricsBenchmark.
+ */
+public class MetricsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final String JMX_TYPE = "com.library:type=Metrics,name=";
+    private static final int SUMMARY_SIZE = 20;
+    // Statements named after one caller before the rest share its "#other" metric
+    private static final int MAX_STATEMENTS_PER_CALLER = 16;
+    // SQL texts remembered; beyond this a statement is looked up by its caller every time
+    private static final int MAX_TRACKED_SQL = 4096;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN ?\\( ?\\?(?: ?, ?\\?)+ ?\\)");
+    private static final Pattern VALUES_ROWS =
+            Pattern.compile("(?i)(\\bVALUES ?\\([^()]*\\))(?: ?, ?\\([^()]*\\))+");
+
+    // Frames skipped when naming a statement after its caller
+    private static final Set<String> INFRASTRUCTURE = Set.of(
+            ConnectionPool.class.getName(), StatementCache.class.getName(), MetricsRegistry.class.getName(),
+            JdbcLeakDetector.class.getName(), DatabaseConnection.class.getName(),
+            SlowQueryLog.class.getName());
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private static final class Holder {
+        private static final MetricsRegistry INSTANCE = new MetricsRegistry(DatabaseConfig.isMetricsEnabled(),
+                DatabaseConfig.getMetricsLogIntervalMs(), DatabaseConfig.getMetricsRowSampling(),
+                SlowQueryLog.getInstance());
+    }
+
+    private final boolean enabled;
+    private final int rowSampling;
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    // Keyed by normalized SQL
+    private final Map<String, Metric> bySql = new ConcurrentHashMap<>();
+    // Statements named after each caller so far; guarded by bySql
+    private final Map<String, Integer> perCaller = new HashMap<>();
+    private final Metric disabled;
+    private final SlowQueryLog slowLog;
+
+    MetricsRegistry(boolean enabled, long logIntervalMs, int rowSampling) {
+        this(enabled, logIntervalMs, rowSampling, null);
+    }
+
+    /**
+     * @param slowLog receives executions over its threshold, or null for none
+     */
+    MetricsRegistry(boolean enabled, long logIntervalMs, int rowSampling, SlowQueryLog slowLog) {
+        this.enabled = enabled;
+        this.rowSampling = rowSampling;
+        this.slowLog = enabled && slowLog != null && slowLog.isEnabled() ? slowLog : null;
+        this.disabled = new Metric("disabled", false);
+        if (enabled && logIntervalMs > 0) {
+            ScheduledExecutorService logger = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "library-metrics-log");
+                t.setDaemon(true);
+                return t;
+            });
+            logger.scheduleAtFixedRate(this::logSummary, logIntervalMs, logIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static MetricsRegistry getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The metric with this name, created on first use. Time a call with
+     * {@code long start = metric.start(); ... metric.stop(start);}.
+     */
+    public Metric timer(String name) {
+        if (!enabled) return disabled;
+        return metrics.computeIfAbsent(name, n -> register(new Metric(n, true)));
+    }
+
+    /**
+     * Every metric by name, as of now.
+     */
+    public Map<String, Metric> getMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    /**
+     * The metric for a statement, or null when metrics are off. Named after the calling service
+     * method the first time the SQL, as {@link #normalize(String) normalized}, is seen.
+     */
+    Metric forSql(String sql) {
+        if (!enabled || sql == null) return null;
+        // Most SQL is already in normal form, so try it as it is before normalizing
+        Metric metric = bySql.get(sql);
+        if (metric != null) return metric;
+        String key = normalize(sql);
+        metric = bySql.get(key);
+        if (metric != null) return metric;
+
+        synchronized (bySql) {
+            metric = bySql.get(key);
+            if (metric != null) return metric;
+            String base = callerName();
+            int named = perCaller.getOrDefault(base, 0);
+            if (named >= MAX_STATEMENTS_PER_CALLER) {
+                metric = timer(base + "#other");
+            } else {
+                String name = base;
+                for (int i = 2; metrics.containsKey(name); i++) {
+                    name = base + "#" + i;
+                }
+                metric = timer(name);
+                metric.sql = key;
+                perCaller.put(base, named + 1);
+            }
+            if (bySql.size() < MAX_TRACKED_SQL) bySql.put(key, metric);
+            return metric;
+        }
+    }
+
+    /**
+     * The SQL with runs of whitespace collapsed, IN lists of placeholders cut to one and
+     * multi-row VALUES clauses cut to their first row, so that statements built for different
+     * batch sizes share a metric.
+     */
+    static String normalize(String sql) {
+        String normal = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        if (normal.indexOf('(') < 0) return normal;
+        normal = IN_LIST.matcher(normal).replaceAll("IN (?)");
+        return VALUES_ROWS.matcher(normal).replaceAll("$1");
+    }
+
+    /**
+     * A holder for the parameters bound to a statement, or null when nothing needs them.
+     */
+    SlowQueryLog.Parameters parameters() {
+        return slowLog != null ? new SlowQueryLog.Parameters() : null;
+    }
+
+    /**
+     * Wraps a statement the statement cache did not hand out, so its executions are timed too.
+     * {@code sql} is null for a plain Statement, whose SQL comes with each execute call.
+     */
+    <T extends Statement> T instrument(T statement, Class<T> type, String sql) {
+        if (!enabled) return statement;
+        Metric metric = forSql(sql);
+        SlowQueryLog.Parameters parameters = sql != null ? parameters() : null;
+        return type.cast(Proxy.newProxyInstance(MetricsRegistry.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        String executed = sql != null ? sql
+                                : args != null && args.length > 0 ? (String) args[0] : null;
+                        Metric m = metric != null ? metric : forSql(executed);
+                        if (m != null) return execute(m, executed, statement, method, args, parameters);
+                    }
+                    if (parameters != null) parameters.capture(method, args);
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }));
+    }
+
+    /**
+     * Runs an execute method of a statement and records it against {@code metric}.
+     *
+     * @param sql what the statement runs, as the slow query log should show it
+     * @param parameters what is bound to the statement, for the slow query log; may be null
+     */
+    Object execute(Metric metric, String sql, Object statement, Method method, Object[] args,
+                   SlowQueryLog.Parameters parameters) throws Throwable {
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            long elapsed = System.nanoTime() - start;
+            metric.record(elapsed);
+            metric.errors.increment();
+            if (slowLog != null && slowLog.isSlow(elapsed)) {
+                slowLog.finish(slowLog.record(sql, parameters, elapsed, e.getCause()), -1);
+            }
+            throw e.getCause();
+        }
+        long elapsed = System.nanoTime() - start;
+        metric.record(elapsed);
+        SlowQueryLog.Entry slow = slowLog != null && slowLog.isSlow(elapsed)
+                ? slowLog.record(sql, parameters, elapsed, null) : null;
+
+        long rows = -1;
+        if (result instanceof Integer) {
+            rows = (Integer) result;
+        } else if (result instanceof Long) {
+            rows = (Long) result;
+        } else if (result instanceof int[]) {
+            rows = 0;
+            for (int n : (int[]) result) if (n > 0) rows += n;
+        } else if (result instanceof long[]) {
+            rows = 0;
+            for (long n : (long[]) result) if (n > 0) rows += n;
+        } else if (result instanceof ResultSet) {
+            boolean sampled = rowSampling > 0 && metric.sampleRows(rowSampling);
+            if (sampled || slow != null) {
+                // The slow query is logged once its rows are known
+                return countRows((ResultSet) result, n -> {
+                    if (sampled) metric.rows(n);
+                    if (slow != null) slowLog.finish(slow, n);
+                });
+            }
+        }
+        if (rows >= 0) metric.rows(rows);
+        if (slow != null) slowLog.finish(slow, rows);
+        return result;
+    }
+
+    private static ResultSet countRows(ResultSet rs, LongConsumer onDone) {
+        return (ResultSet) Proxy.newProxyInstance(MetricsRegistry.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new InvocationHandler() {
+                    private long rows;
+                    private boolean recorded;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Object result;
+                        try {
+                            result = method.invoke(rs, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        String name = method.getName();
+                        if (name.equals("next")) {
+                            if ((Boolean) result) rows++;
+                            else record();
+                        } else if (name.equals("close")) {
+                            record();
+                        }
+                        return result;
+                    }
+
+                    private void record() {
+                        if (recorded) return;
+                        recorded = true;
+                        onDone.accept(rows);
+                    }
+                });
+    }
+
+    /**
+     * Logs the operations that took the most time since the last summary.
+     */
+    void logSummary() {
+        try {
+            String summary = summary();
+            if (summary != null) log.info(summary);
+        } catch (RuntimeException e) {
+            log.warn("Could not summarize metrics", e);
+        }
+    }
+
+    /**
+     * The busiest operations since the previous call, or null if nothing ran.
+     */
+    String summary() {
+        List<Interval> intervals = new ArrayList<>();
+        for (Metric metric : metrics.values()) {
+            Interval interval = metric.takeInterval();
+            if (interval.histogram.getTotalCount() > 0) intervals.add(interval);
+        }
+        if (intervals.isEmpty()) return null;
+        intervals.sort(Comparator.comparingDouble(Interval::totalMicros).reversed());
+
+        StringBuilder sb = new StringBuilder("Busiest operations since the last summary:");
+        for (Interval i : intervals.subList(0, Math.min(SUMMARY_SIZE, intervals.size()))) {
+            Histogram h = i.histogram;
+            sb.append(String.format("%n  %-45s calls=%d errors=%d total=%.1fms mean=%.3fms p99=%.3fms max=%.3fms",
+                    i.name, h.getTotalCount(), i.errors, i.totalMicros() / 1000,
+                    h.getMean() / 1e6, h.getValueAtPercentile(99) / 1e6, h.getMaxValue() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    private Metric register(Metric metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_TYPE + ObjectName.quote(metric.name));
+            if (!server.isRegistered(name)) server.registerMBean(metric, name);
+        } catch (Exception e) {
+            log.warn("Could not publish metric {} over JMX: {}", metric.name, e.getMessage());
+        }
+        return metric;
+    }
+
+    // "BookService.findById" for the first frame outside the JDBC plumbing
+    static String callerName() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> {
+                    String cls = f.getClassName();
+                    int inner = cls.indexOf('$');
+                    return cls.startsWith("com.library.")
+                            && !INFRASTRUCTURE.contains(inner < 0 ? cls : cls.substring(0, inner));
+                })
+                .findFirst()
+                .map(f -> {
+                    String cls = f.getClassName();
+                    cls = cls.substring(cls.lastIndexOf('.') + 1);
+                    int inner = cls.indexOf('$');
+                    if (inner >= 0) cls = cls.substring(0, inner);
+                    String method = f.getMethodName();
+                    // lambda$loadAll$3 -> loadAll
+                    if (method.startsWith("lambda$")) {
+                        int end = method.indexOf('$', 7);
+                        method = method.substring(7, end > 7 ? end : method.length());
+                    }
+                    return cls + "." + method;
+                })
+                .orElse("jdbc"));
+    }
+
+    /**
+     * Readable over JMX as com.library:type=Metrics,name="...". Times are in microseconds.
+     */
+    public interface MetricMXBean {
+        String getName();
+        String getSql();
+        long getCount();
+        long getErrors();
+        double getRowsPerCall();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    /**
+     * One named operation. Thread-safe; recording is wait-free.
+     */
+    public static final class Metric implements MetricMXBean {
+        private final String name;
+        private final boolean enabled;
+        private volatile String sql;
+        // Nanoseconds; resizes itself
+        private final Recorder recorder = new Recorder(2);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder rowSamples = new LongAdder();
+        private int sampleCounter;
+
+        // Guarded by this
+        private final Histogram total = new Histogram(2);
+        private final Histogram sinceSummary = new Histogram(2);
+        private Histogram recycled;
+        private long errorsAtSummary;
+
+        private Metric(String name, boolean enabled) {
+            this.name = name;
+            this.enabled = enabled;
+        }
+
+        public long start() {
+            return System.nanoTime();
+        }
+
+        public void stop(long startNanos) {
+            if (enabled) record(System.nanoTime() - startNanos);
+        }
+
+        public void stop(long startNanos, long rowCount) {
+            if (!enabled) return;
+            stop(startNanos);
+            rows(rowCount);
+        }
+
+        /** Records a call that failed. */
+        public void fail(long startNanos) {
+            if (!enabled) return;
+            stop(startNanos);
+            errors.increment();
+        }
+
+        public void rows(long rowCount) {
+            if (!enabled) return;
+            rows.add(rowCount);
+            rowSamples.increment();
+        }
+
+        private void record(long nanos) {
+            recorder.recordValue(Math.max(0, nanos));
+        }
+
+        // Racy on purpose: an occasional extra or missed sample does not matter
+        private boolean sampleRows(int every) {
+            return sampleCounter++ % every == 0;
+        }
+
+        private synchronized void drain() {
+            recycled = recorder.getIntervalHistogram(recycled);
+            total.add(recycled);
+            sinceSummary.add(recycled);
+        }
+
+        private synchronized Interval takeInterval() {
+            drain();
+            long errorCount = errors.sum();
+            Interval interval = new Interval(name, sinceSummary.copy(), errorCount - errorsAtSummary);
+            sinceSummary.reset();
+            errorsAtSummary = errorCount;
+            return interval;
+        }
+
+        private synchronized double micros(double percentile) {
+            drain();
+            return total.getTotalCount() == 0 ? 0 : total.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public String getSql() { return sql; }
+
+        @Override
+        public synchronized long getCount() {
+            drain();
+            return total.getTotalCount();
+        }
+
+        @Override
+        public long getErrors() { return errors.sum(); }
+
+        @Override
+        public double getRowsPerCall() {
+            long samples = rowSamples.sum();
+            return samples == 0 ? 0 : (double) rows.sum() / samples;
+        }
+
+        @Override
+        public synchronized double getMeanMicros() {
+            drain();
+            return total.getMean() / 1000.0;
+        }
+
+        @Override
+        public double getP50Micros() { return micros(50); }
+
+        @Override
+        public double getP99Micros() { return micros(99); }
+
+        @Override
+        public double getP999Micros() { return micros(99.9); }
+
+        @Override
+        public synchronized double getMaxMicros() {
+            drain();
+            return total.getMaxValue() / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{count=%d, errors=%d, rowsPerCall=%.1f, p50=%.1fus, p99=%.1fus}",
+                    name, getCount(), getErrors(), getRowsPerCall(), getP50Micros(), getP99Micros());
+        }
+    }
+
+    private static final class Interval {
+        private final String name;
+        private final Histogram histogram;
+        private final long errors;
+
+        private Interval(String name, Histogram histogram, long errors) {
+            this.name = name;
+            this.histogram = histogram;
+            this.errors = errors;
+        }
+
+        private double totalMicros() {
+            return histogram.getMean() * histogram.getTotalCount() / 1000;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.library.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Brings the database schema up to date from the versioned scripts in db/migration.
+ *
+ * db/migration/migrations.list names the migrations in order, e.g. V2__query_indexes. Each one is
+ * read from V2__query_indexes.mysql.sql (or .h2.sql) when the database has its own variant, and
+ * from V2__query_indexes.sql otherwise. Scripts are plain SQL: statements end with a semicolon at
+ * the end of a line and lines starting with -- are comments.
+ *
+ * Applied versions are recorded in schema_version once their script has run, so each migration
+ * runs once per database. Workstations starting together take turns: on MySQL through a named
+ * lock (GET_LOCK), which the server drops if the holder dies, and elsewhere, where the database
+ * is embedded in this JVM, through a lock in the JVM. MySQL commits DDL as it goes, so a
+ * migration that failed or was killed half-way is run again from the top; statements that only
+ * fail because their index, column or table is already there count as done.
+ */
+public class SchemaMigrator {
+
+    private static final String BASE = "db/migration/";
+    private static final String LOCK_NAME = "library_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 120;
+    // Error codes for an index, column or table that already exists: MySQL, then H2
+    private static final Set<Integer> ALREADY_EXISTS = Set.of(1050, 1060, 1061, 42101, 42111, 42121);
+
+    // For databases without named locks, which only this JVM can reach
+    private static final ReentrantLock LOCAL_LOCK = new ReentrantLock();
+
+    private static volatile boolean current;
+
+    private final String base;
+
+    public SchemaMigrator() {
+        this(BASE);
+    }
+
+    /**
+     * @param base classpath directory holding migrations.list and the scripts, ending in "/"
+     */
+    SchemaMigrator(String base) {
+        this.base = base;
+    }
+
+    /**
+     * Migrates the configured database once per run of the app.
+     *
+     * @return false if the schema could not be brought up to date
+     */
+    public static synchronized boolean ensureCurrent() {
+        if (current) return true;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            new SchemaMigrator().migrate(conn);
+            current = true;
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
+        return current;
+    }
+
+    /**
+     * Applies every migration this database has not had yet, in order.
+     *
+     * @return the migrations applied now
+     */
+    public List<Migration> migrate(Connection conn) throws SQLException, IOException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(true);
+        String database = databaseName(conn);
+        try {
+            lock(conn, database);
+            try {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                            "version INT PRIMARY KEY, " +
+                            "description VARCHAR(200) NOT NULL, " +
+                            "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+                }
+                Set<Integer> applied = appliedVersions(conn);
+
+                List<Migration> ran = new ArrayList<>();
+                for (Migration migration : getMigrations()) {
+                    if (applied.contains(migration.version)) continue;
+                    for (String sql : statements(script(migration, database))) {
+                        execute(conn, sql);
+                    }
+                    record(conn, migration);
+                    ran.add(migration);
+                }
+                return ran;
+            } finally {
+                unlock(conn, database);
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * The migrations listed in migrations.list, in order.
+     */
+    public List<Migration> getMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (String line : readLines(base + "migrations.list")) {
+            String name = line.trim();
+            if (name.isEmpty() || name.startsWith("#")) continue;
+            migrations.add(Migration.parse(name));
+        }
+        return migrations;
+    }
+
+    /**
+     * The versions recorded in schema_version.
+     */
+    public static Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT version FROM schema_version");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * The script text for this database: its own variant if there is one, else the shared one.
+     */
+    String script(Migration migration, String database) throws IOException {
+        String variant = base + migration.name + "." + database + ".sql";
+        if (getClass().getClassLoader().getResource(variant) != null) {
+            return String.join("\n", readLines(variant));
+        }
+        return String.join("\n", readLines(base + migration.name + ".sql"));
+    }
+
+    /**
+     * Splits a script into statements, dropping comments.
+     */
+    static List<String> statements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (String line : script.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(line);
+            if (trimmed.endsWith(";")) {
+                sb.setLength(sb.lastIndexOf(";"));
+                statements.add(sb.toString().trim());
+                sb.setLength(0);
+            }
+        }
+        if (sb.toString().trim().length() > 0) {
+            statements.add(sb.toString().trim());
+        }
+        return statements;
+    }
+
+    // "mysql", "h2", ...
+    static String databaseName(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        int space = product.indexOf(' ');
+        return space < 0 ? product : product.substring(0, space);
+    }
+
+    // Waits for any other workstation migrating the same database to finish
+    private static void lock(Connection conn, String database) throws SQLException {
+        if (!database.equals("mysql")) {
+            LOCAL_LOCK.lock();
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out after " + LOCK_TIMEOUT_SECONDS
+                            + " s waiting for another workstation to finish migrating the schema");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection conn, String database) {
+        if (!database.equals("mysql")) {
+            LOCAL_LOCK.unlock();
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(sql);
+        } catch (SQLException e) {
+            // Left behind by an earlier run that stopped before recording its version
+            if (!ALREADY_EXISTS.contains(e.getErrorCode())) throw e;
+        }
+    }
+
+    private static void record(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            ps.setInt(1, migration.version);
+            ps.setString(2, migration.description);
+            ps.executeUpdate();
+        }
+    }
+
+    private List<String> readLines(String resource) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Missing migration resource " + resource);
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * One entry of migrations.list, e.g. V2__query_indexes.
+     */
+    public static final class Migration {
+        private final int version;
+        private final String name;
+        private final String description;
+
+        private Migration(int version, String name, String description) {
+            this.version = version;
+            this.name = name;
+            this.description = description;
+        }
+
+        static Migration parse(String name) {
+            int separator = name.indexOf("__");
+            if (!name.startsWith("V") || separator < 2) {
+                throw new IllegalArgumentException("Migration names look like V2__description: " + name);
+            }
+            int version = Integer.parseInt(name.substring(1, separator));
+            return new Migration(version, name, name.substring(separator + 2).replace('_', ' '));
+        }
+
+        public int getVersion() { return version; }
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.library.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Statements that took longer than db.slowQuery.thresholdMs, for diagnosing hangs.
+ *
+ * The {@link MetricsRegistry} already times every execution, so it hands anything over the
+ * threshold to this log along with the parameters bound to it. Each slow statement is logged
+ * with its SQL, parameters, row count, elapsed time and the service method that ran it; for a
+ * query that means once its result set has been read. The most recent ones are kept for the
+ * librarian dashboard.
+ *
+ * Statements slower than db.slowQuery.explainThresholdMs are also run through EXPLAIN with the
+ * same parameters, on a background thread and its own connection so a saturated pool does not
+ * hold it up. Each distinct statement is explained at most once every ten minutes.
+ *
+ * Statements on the users table, or on any password column, have their parameters and error
+ * messages left out of the log, the dashboard and EXPLAIN failures, since they carry credentials.
+ */
+public class SlowQueryLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final int MAX_VALUE_LENGTH = 100;
+    private static final int PLAN_CACHE_SIZE = 64;
+    private static final long PLAN_REFRESH_MS = 10 * 60_000;
+    private static final int EXPLAIN_QUEUE_SIZE = 16;
+    private static final String REDACTED = "<redacted>";
+    private static final Pattern SENSITIVE = Pattern.compile("(?i)\\b(users|\\w*password\\w*)\\b");
+
+    private static final class Holder {
+        private static final SlowQueryLog INSTANCE = new SlowQueryLog(
+                TimeUnit.MILLISECONDS.toNanos(DatabaseConfig.getSlowQueryThresholdMs()),
+                DatabaseConfig.getSlowQueryBufferSize(),
+                TimeUnit.MILLISECONDS.toNanos(DatabaseConfig.getSlowQueryExplainThresholdMs()),
+                DatabaseConnection::openPhysicalConnection);
+    }
+
+    private final long thresholdNanos;
+    private final long explainThresholdNanos;
+    private final ConnectionPool.ConnectionFactory explainConnections;
+    private final ThreadPoolExecutor explainer;
+
+    // Ring buffer, guarded by itself
+    private final Entry[] recent;
+    private int next;
+    private long recorded;
+
+    // Guarded by itself; a null text means an EXPLAIN is under way
+    private final Map<String, Plan> plans = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+            return size() > PLAN_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param thresholdNanos         statements at least this slow are recorded; 0 turns the log off
+     * @param explainThresholdNanos  statements at least this slow are explained too
+     * @param explainConnections     opens the connection EXPLAIN runs on, or null to never explain
+     */
+    SlowQueryLog(long thresholdNanos, int bufferSize, long explainThresholdNanos,
+                 ConnectionPool.ConnectionFactory explainConnections) {
+        this.thresholdNanos = thresholdNanos > 0 ? thresholdNanos : Long.MAX_VALUE;
+        this.explainThresholdNanos = Math.max(explainThresholdNanos, this.thresholdNanos);
+        this.explainConnections = explainConnections;
+        this.recent = new Entry[Math.max(1, bufferSize)];
+        if (isEnabled() && explainConnections != null) {
+            explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(EXPLAIN_QUEUE_SIZE), r -> {
+                        Thread t = new Thread(r, "library-slow-query-explain");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        } else {
+            explainer = null;
+        }
+    }
+
+    public static SlowQueryLog getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos != Long.MAX_VALUE;
+    }
+
+    public long getThresholdMs() {
+        return isEnabled() ? TimeUnit.NANOSECONDS.toMillis(thresholdNanos) : 0;
+    }
+
+    /**
+     * The slow statements still in the buffer, newest first.
+     */
+    public List<Entry> getRecent() {
+        synchronized (recent) {
+            int size = (int) Math.min(recorded, recent.length);
+            List<Entry> entries = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                entries.add(recent[Math.floorMod(next - i, recent.length)]);
+            }
+            return entries;
+        }
+    }
+
+    /** How many slow statements have been recorded, including those no longer in the buffer. */
+    public long getRecordedCount() {
+        synchronized (recent) {
+            return recorded;
+        }
+    }
+
+    public void clear() {
+        synchronized (recent) {
+            Arrays.fill(recent, null);
+            next = 0;
+            recorded = 0;
+        }
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * Records a slow statement and starts its EXPLAIN if it is slow enough. It is logged by
+     * {@link #finish} once its row count is known.
+     */
+    Entry record(String sql, Parameters parameters, long elapsedNanos, Throwable error) {
+        Object[] values = parameters != null ? parameters.snapshot() : new Object[0];
+        boolean sensitive = isSensitive(sql);
+        String failure = error == null ? null : sensitive ? redact(error) : error.toString();
+        Entry entry = new Entry(System.currentTimeMillis(), MetricsRegistry.callerName(), sql,
+                format(values, sensitive), elapsedNanos, failure);
+        synchronized (recent) {
+            recent[next] = entry;
+            next = (next + 1) % recent.length;
+            recorded++;
+        }
+        if (elapsedNanos >= explainThresholdNanos) {
+            explain(entry, values, sensitive);
+        }
+        return entry;
+    }
+
+    /**
+     * Logs a recorded statement with the number of rows it returned or changed, -1 if unknown.
+     */
+    void finish(Entry entry, long rows) {
+        entry.rows = rows;
+        if (entry.error != null) {
+            log.warn("Slow statement in {} failed after {} ms: {} params={} error={}",
+                    entry.caller, entry.getElapsedMsText(), entry.sql, entry.parameters, entry.error);
+        } else {
+            log.warn("Slow statement in {} took {} ms, {} rows: {} params={}",
+                    entry.caller, entry.getElapsedMsText(), rows < 0 ? "?" : rows, entry.sql, entry.parameters);
+        }
+    }
+
+    private void explain(Entry entry, Object[] values, boolean sensitive) {
+        String sql = entry.sql;
+        if (explainer == null || !isExplainable(sql, values)) return;
+
+        synchronized (plans) {
+            Plan plan = plans.get(sql);
+            if (plan != null && (plan.text == null || System.currentTimeMillis() - plan.at < PLAN_REFRESH_MS)) {
+                entry.plan = plan.text;
+                return;
+            }
+            plans.put(sql, new Plan(null, System.currentTimeMillis()));
+        }
+        try {
+            explainer.execute(() -> {
+                String text = runExplain(sql, values, sensitive);
+                synchronized (plans) {
+                    plans.put(sql, new Plan(text, System.currentTimeMillis()));
+                }
+                entry.plan = text;
+                log.info("Plan for slow statement in {}: {}{}{}", entry.caller, sql, System.lineSeparator(), text);
+            });
+        } catch (RejectedExecutionException e) {
+            // Enough plans are already queued; try again the next time this one is slow
+            synchronized (plans) {
+                plans.remove(sql);
+            }
+        }
+    }
+
+    private String runExplain(String sql, Object[] values, boolean sensitive) {
+        try (Connection conn = explainConnections.create();
+             PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < values.length; i++) {
+                ps.setObject(i + 1, values[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return formatPlan(rs);
+            }
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + (sensitive ? redact(e) : e.getMessage());
+        }
+    }
+
+    // One line per plan row, "column=value" separated by spaces; H2 returns the plan as one column
+    private static String formatPlan(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        StringBuilder sb = new StringBuilder();
+        while (rs.next()) {
+            if (sb.length() > 0) sb.append(System.lineSeparator());
+            if (meta.getColumnCount() == 1) {
+                sb.append(rs.getString(1));
+                continue;
+            }
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (i > 1) sb.append(' ');
+                sb.append(meta.getColumnLabel(i)).append('=').append(rs.getString(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isExplainable(String sql, Object[] values) {
+        if (sql == null) return false;
+        String verb = sql.stripLeading().toUpperCase(Locale.ROOT);
+        if (!(verb.startsWith("SELECT") || verb.startsWith("UPDATE") || verb.startsWith("DELETE")
+                || verb.startsWith("INSERT") || verb.startsWith("REPLACE"))) {
+            return false;
+        }
+        for (Object value : values) {
+            // Streams can only be read once, and the statement already has
+            if (value instanceof InputStream || value instanceof Reader || value instanceof Blob || value instanceof Clob) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether the statement may bind a password, so its values must not be shown
+    static boolean isSensitive(String sql) {
+        return sql != null && SENSITIVE.matcher(sql).find();
+    }
+
+    // Drivers quote the offending values in their messages, so keep only what kind of failure it was
+    private static String redact(Throwable error) {
+        String kind = error.getClass().getName();
+        return error instanceof SQLException && ((SQLException) error).getSQLState() != null
+                ? kind + " (SQLState " + ((SQLException) error).getSQLState() + ")" : kind;
+    }
+
+    private static String format(Object[] values, boolean sensitive) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            Object value = values[i];
+            if (value == null) {
+                sb.append("NULL");
+            } else if (sensitive) {
+                sb.append(REDACTED);
+            } else if (value instanceof CharSequence) {
+                String s = value.toString();
+                if (s.length() > MAX_VALUE_LENGTH) s = s.substring(0, MAX_VALUE_LENGTH) + "...";
+                sb.append('\'').append(s).append('\'');
+            } else if (value instanceof Number || value instanceof Boolean || value instanceof java.util.Date
+                    || value instanceof java.time.temporal.Temporal) {
+                sb.append(value);
+            } else {
+                sb.append('<').append(value.getClass().getSimpleName()).append('>');
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Parameters bound to one prepared statement, captured from its setXxx calls.
+     * Not thread-safe, like the statement itself.
+     */
+    static final class Parameters {
+        private Object[] values = new Object[8];
+        private int count;
+
+        void capture(Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("clearParameters")) {
+                clear();
+                return;
+            }
+            if (!name.startsWith("set") || args == null || args.length < 2 || !(args[0] instanceof Integer)) {
+                return;
+            }
+            int index = (Integer) args[0];
+            if (index < 1) return;
+            if (index > values.length) {
+                values = Arrays.copyOf(values, Math.max(index, values.length * 2));
+            }
+            values[index - 1] = name.equals("setNull") ? null : args[1];
+            count = Math.max(count, index);
+        }
+
+        void clear() {
+            Arrays.fill(values, 0, count, null);
+            count = 0;
+        }
+
+        Object[] snapshot() {
+            return Arrays.copyOf(values, count);
+        }
+    }
+
+    /**
+     * One slow statement. Batches show the parameters of their last row.
+     */
+    public static final class Entry {
+        private final long timestamp;
+        private final String caller;
+        private final String sql;
+        private final String parameters;
+        private final long elapsedNanos;
+        private final String error;
+        private volatile long rows = -1;
+        private volatile String plan;
+
+        private Entry(long timestamp, String caller, String sql, String parameters, long elapsedNanos, String error) {
+            this.timestamp = timestamp;
+            this.caller = caller;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        }
+
+        /** The service method that ran the statement, e.g. "LoanService.findActiveLoansByReaderId". */
+        public String getCaller() { return caller; }
+
+        public String getSql() { return sql; }
+
+        public String getParameters() { return parameters; }
+
+        public double getElapsedMs() { return elapsedNanos / 1e6; }
+
+        /** Rows returned or changed; -1 until a query's results have been read, or if unknown. */
+        public long getRows() { return rows; }
+
+        /** The exception the statement failed with, or null. */
+        public String getError() { return error; }
+
+        /** The EXPLAIN output, or null if the statement was not explained (yet). */
+        public String getPlan() { return plan; }
+
+        private String getElapsedMsText() {
+            return String.format(Locale.ROOT, "%.1f", getElapsedMs());
+        }
+
+        @Override
+        public String toString() {
+            return "SlowQueryLog.Entry{" +
+                    "caller='" + caller + '\'' +
+                    ", elapsedMs=" + getElapsedMsText() +
+                    ", rows=" + rows +
+                    ", sql='" + sql + '\'' +
+                    ", parameters=" + parameters +
+                    (error != null ? ", error='" + error + '\'' : "") +
+                    '}';
+        }
+    }
+
+    private static final class Plan {
+        private final String text;
+        private final long at;
+
+        private Plan(String text, long at) {
+            this.text = text;
+            this.at = at;
+        }
+    }
+}
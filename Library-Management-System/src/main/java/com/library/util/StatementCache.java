@@ -0,0 +1,216 @@
+package com.library.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ *
+ * Closing a statement obtained from the cache only returns it: its parameters are cleared, the
+ * fetch size, row limit and query timeout go back to what the driver gave it, and the server-side
+ * prepared statement stays alive for the next caller that prepares the same SQL.
+ */
+final class StatementCache {
+
+    private final Connection connection;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final MetricsRegistry metrics;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection connection, int maxSize, AtomicLong hits, AtomicLong misses, AtomicLong evictions,
+                   MetricsRegistry metrics) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.metrics = metrics;
+    }
+
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.handle == null) {
+            hits.incrementAndGet();
+            return cached.checkout();
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement ps = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
+        if (cached != null) {
+            // Same SQL is already checked out on this connection; hand out a plain statement
+            return metrics != null ? metrics.instrument(ps, PreparedStatement.class, sql) : ps;
+        }
+
+        cached = new CachedStatement(ps, sql, metrics != null ? metrics.forSql(sql) : null);
+        statements.put(key, cached);
+        evictOverflow();
+        return cached.checkout();
+    }
+
+    /**
+     * Returns statements the borrower forgot to close before giving the connection back.
+     */
+    synchronized void returnAll() {
+        for (CachedStatement cached : new ArrayList<>(statements.values())) {
+            if (cached.handle != null) {
+                cached.handle.giveBack();
+            }
+        }
+    }
+
+    synchronized void closeAll() {
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            cached.closeQuietly();
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, CachedStatement>> it = statements.entrySet().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next().getValue();
+            it.remove();
+            evictions.incrementAndGet();
+            if (eldest.handle == null) {
+                eldest.closeQuietly();
+            } else {
+                eldest.evicted = true;
+            }
+        }
+    }
+
+    private final class CachedStatement {
+        private final PreparedStatement statement;
+        private final String sql;
+        private final MetricsRegistry.Metric metric;
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private final int defaultQueryTimeout;
+        private Handle handle;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement, String sql, MetricsRegistry.Metric metric)
+                throws SQLException {
+            this.statement = statement;
+            this.sql = sql;
+            this.metric = metric;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.defaultMaxRows = statement.getMaxRows();
+            this.defaultQueryTimeout = statement.getQueryTimeout();
+        }
+
+        /** Undoes the settings a borrower may have changed, so they do not carry over to the next. */
+        private void resetSettings() throws SQLException {
+            // Row limit first: some drivers refuse a fetch size larger than the current limit
+            if (statement.getMaxRows() != defaultMaxRows) statement.setMaxRows(defaultMaxRows);
+            if (statement.getFetchSize() != defaultFetchSize) statement.setFetchSize(defaultFetchSize);
+            if (statement.getQueryTimeout() != defaultQueryTimeout) statement.setQueryTimeout(defaultQueryTimeout);
+        }
+
+        private PreparedStatement checkout() {
+            handle = new Handle(this);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    handle
+            );
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // the connection is going away or the statement is already gone
+            }
+        }
+    }
+
+    /**
+     * One checkout of a cached statement; once closed it can no longer reach the real statement.
+     */
+    private final class Handle implements InvocationHandler {
+        private final CachedStatement owner;
+        private final SlowQueryLog.Parameters parameters;
+        private boolean closed;
+
+        private Handle(CachedStatement owner) {
+            this.owner = owner;
+            this.parameters = owner.metric != null ? metrics.parameters() : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (StatementCache.this) {
+                        giveBack();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            if (owner.metric != null && method.getName().startsWith("execute")) {
+                return metrics.execute(owner.metric, owner.sql, owner.statement, method, args, parameters);
+            }
+            if (parameters != null) {
+                parameters.capture(method, args);
+            }
+            try {
+                return method.invoke(owner.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void giveBack() {
+            if (closed) return;
+            closed = true;
+            owner.handle = null;
+            try {
+                ResultSet rs = owner.statement.getResultSet();
+                if (rs != null) rs.close();
+                // A batch abandoned after a failure would otherwise run with the next borrower's
+                owner.statement.clearBatch();
+                owner.statement.clearParameters();
+                owner.statement.clearWarnings();
+                owner.resetSettings();
+            } catch (SQLException e) {
+                owner.evicted = true;
+                statements.values().remove(owner);
+            }
+            if (owner.evicted) {
+                owner.closeQuietly();
+            }
+        }
+    }
+}
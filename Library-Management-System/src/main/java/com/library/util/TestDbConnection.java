@@ -10,5 +10,7 @@ public class TestDbConnection {
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        System.out.println("Pool: " + DatabaseConnection.getPoolStats());
+        DatabaseConnection.shutdown();
     }
 }
@@ -0,0 +1,234 @@
+package com.library.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs the GUI's background loads on a small, bounded worker pool and hands the results back
+ * on the Event Dispatch Thread.
+ *
+ * Loads are submitted under a key, usually one per table or panel. Only the latest load for a
+ * key is delivered: submitting a new one cancels a superseded load that has not started yet and
+ * discards the result of one that is already running. Running loads are not interrupted, since
+ * an interrupt in the middle of a JDBC call can leave a pooled connection unusable. A load
+ * dropped because the queue is full is reported to its error handler like any other failure.
+ */
+public class UiTaskScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(UiTaskScheduler.class);
+
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static final class Holder {
+        private static final UiTaskScheduler INSTANCE =
+                new UiTaskScheduler(DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY, SwingUtilities::invokeLater);
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Executor callbackExecutor;
+    private final ConcurrentHashMap<String, Task<?>> latest = new ConcurrentHashMap<>();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong supersededCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * @param callbackExecutor where results and errors are delivered; the shared instance uses the EDT
+     */
+    public UiTaskScheduler(int workers, int queueCapacity, Executor callbackExecutor) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "library-ui-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public static UiTaskScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Runs {@code load} in the background and passes its result to {@code onResult}, unless a newer
+     * load for the same key was submitted in the meantime. Failures go to {@code onError}, and so
+     * does a {@link RejectedExecutionException} when the queue is full.
+     */
+    public <T> void submit(String key, Callable<T> load, Consumer<? super T> onResult,
+                           Consumer<? super Exception> onError) {
+        Task<T> task = new Task<>(key, load, onResult, onError);
+        Task<?> previous = latest.put(key, task);
+        if (previous != null && previous.cancel(false)) {
+            executor.remove(previous);
+            supersededCount.incrementAndGet();
+        }
+        enqueue(task, key);
+    }
+
+    /**
+     * Drops the pending load for {@code key}, if any, so its result is never delivered.
+     */
+    public void cancel(String key) {
+        Task<?> previous = latest.remove(key);
+        if (previous != null && previous.cancel(false)) {
+            executor.remove(previous);
+            supersededCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs a fire-and-forget job on the same workers, without coalescing.
+     */
+    public void execute(String name, Runnable job) {
+        Task<Void> task = new Task<>(null, () -> {
+            job.run();
+            return null;
+        }, result -> { }, e -> log.warn("Background job {} failed", name, e));
+        enqueue(task, name);
+    }
+
+    private void enqueue(Task<?> task, String name) {
+        submittedCount.incrementAndGet();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            if (task.key != null) latest.remove(task.key, task);
+            log.warn("UI task queue full, dropped {} ({})", name, getStats());
+            // The caller is waiting for this load, and any earlier one for the key is cancelled
+            failedCount.incrementAndGet();
+            callbackExecutor.execute(() -> task.onError.accept(e));
+            return;
+        }
+        int depth = executor.getQueue().size();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public Stats getStats() {
+        return new Stats(
+                executor.getQueue().size(),
+                maxQueueDepth.get(),
+                executor.getActiveCount(),
+                executor.getMaximumPoolSize(),
+                submittedCount.get(),
+                completedCount.get(),
+                failedCount.get(),
+                supersededCount.get(),
+                rejectedCount.get()
+        );
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        latest.clear();
+    }
+
+    private final class Task<T> extends FutureTask<T> {
+        private final String key;
+        private final Consumer<? super T> onResult;
+        private final Consumer<? super Exception> onError;
+
+        Task(String key, Callable<T> load, Consumer<? super T> onResult, Consumer<? super Exception> onError) {
+            super(load);
+            this.key = key;
+            this.onResult = onResult;
+            this.onError = onError;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) return;
+            callbackExecutor.execute(this::deliver);
+        }
+
+        private void deliver() {
+            // Checked on the callback thread so a load submitted after this one finished still wins
+            if (key != null && !latest.remove(key, this)) {
+                supersededCount.incrementAndGet();
+                return;
+            }
+            T result;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                failedCount.incrementAndGet();
+                Throwable cause = e.getCause();
+                onError.accept(cause instanceof Exception ? (Exception) cause : e);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            completedCount.incrementAndGet();
+            onResult.accept(result);
+        }
+    }
+
+    public static final class Stats {
+        private final int queued;
+        private final int maxQueued;
+        private final int running;
+        private final int workers;
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long superseded;
+        private final long rejected;
+
+        Stats(int queued, int maxQueued, int running, int workers, long submitted, long completed,
+              long failed, long superseded, long rejected) {
+            this.queued = queued;
+            this.maxQueued = maxQueued;
+            this.running = running;
+            this.workers = workers;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.superseded = superseded;
+            this.rejected = rejected;
+        }
+
+        public int getQueued() { return queued; }
+        public int getMaxQueued() { return maxQueued; }
+        public int getRunning() { return running; }
+        public int getWorkers() { return workers; }
+        public long getSubmitted() { return submitted; }
+        public long getCompleted() { return completed; }
+        public long getFailed() { return failed; }
+        public long getSuperseded() { return superseded; }
+        public long getRejected() { return rejected; }
+
+        @Override
+        public String toString() {
+            return "queued=" + queued +
+                    ", maxQueued=" + maxQueued +
+                    ", running=" + running +
+                    ", workers=" + workers +
+                    ", submitted=" + submitted +
+                    ", completed=" + completed +
+                    ", failed=" + failed +
+                    ", superseded=" + superseded +
+                    ", rejected=" + rejected;
+        }
+    }
+}
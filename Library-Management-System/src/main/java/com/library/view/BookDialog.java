@@ -9,6 +9,7 @@ import java.awt.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Objects;
 
 public class BookDialog {
 
@@ -161,6 +162,94 @@ public class BookDialog {
         );
     }
 
+    /**
+     * Shows that a book was saved by someone else while it was being edited, with each field
+     * the librarian changed next to its value now.
+     * @param parent parent component for positioning
+     * @param original the book as it was when editing started
+     * @param edited the librarian's edit of it
+     * @param current the book as it is now
+     * @return the current book with the librarian's changes applied, to edit again, or null if
+     *         they chose to discard their changes
+     */
+    public static Book showConflictDialog(Component parent, Book original, Book edited, Book current) {
+        JPanel mainPanel = new JPanel(new BorderLayout(15, 15));
+        mainPanel.setBackground(Theme.AQUA);
+        mainPanel.setBorder(new EmptyBorder(25, 25, 25, 25));
+
+        JLabel message = new JLabel("<html>Someone else saved \"" + current.getTitle() +
+                "\" while you were editing it.<br>Your changes were not saved.</html>");
+        message.setFont(Theme.NORMAL_FONT);
+        message.setForeground(Theme.VIOLET);
+        mainPanel.add(message, BorderLayout.NORTH);
+
+        JPanel contentPanel = new JPanel(new GridLayout(1, 2, 20, 0));
+        contentPanel.setBackground(Theme.AQUA);
+        JPanel yoursPanel = createSectionPanel("Your Change");
+        JPanel currentPanel = createSectionPanel("Saved Meanwhile");
+        addConflictRow(yoursPanel, currentPanel, "ISBN", original.getIsbn(), edited.getIsbn(), current.getIsbn());
+        addConflictRow(yoursPanel, currentPanel, "Title", original.getTitle(), edited.getTitle(), current.getTitle());
+        addConflictRow(yoursPanel, currentPanel, "Author", original.getAuthor(), edited.getAuthor(), current.getAuthor());
+        addConflictRow(yoursPanel, currentPanel, "Publisher",
+                original.getPublisher(), edited.getPublisher(), current.getPublisher());
+        addConflictRow(yoursPanel, currentPanel, "Category",
+                original.getCategory(), edited.getCategory(), current.getCategory());
+        addConflictRow(yoursPanel, currentPanel, "Published Date",
+                original.getPublicationDate(), edited.getPublicationDate(), current.getPublicationDate());
+        addConflictRow(yoursPanel, currentPanel, "Total Copies",
+                original.getTotalCopies(), edited.getTotalCopies(), current.getTotalCopies());
+        addConflictRow(yoursPanel, currentPanel, "Available Copies",
+                original.getAvailableCopies(), edited.getAvailableCopies(), current.getAvailableCopies());
+        contentPanel.add(yoursPanel);
+        contentPanel.add(currentPanel);
+        mainPanel.add(contentPanel, BorderLayout.CENTER);
+
+        UIManager.put("OptionPane.background", Theme.AQUA);
+        UIManager.put("Panel.background", Theme.AQUA);
+        UIManager.put("Button.background", Theme.INDIGO);
+        UIManager.put("Button.foreground", Color.WHITE);
+        UIManager.put("Button.font", Theme.SECONDARY_FONT);
+
+        String[] options = {"Edit Again", "Discard My Changes"};
+        int choice = JOptionPane.showOptionDialog(
+                parent,
+                mainPanel,
+                "Book Changed",
+                JOptionPane.DEFAULT_OPTION,
+                JOptionPane.WARNING_MESSAGE,
+                null,
+                options,
+                options[0]
+        );
+        if (choice != 0) {
+            return null;
+        }
+
+        // Reapply what the librarian changed; copies move by the amount they were edited by
+        Book draft = new Book(current);
+        if (!Objects.equals(original.getIsbn(), edited.getIsbn())) draft.setIsbn(edited.getIsbn());
+        if (!Objects.equals(original.getTitle(), edited.getTitle())) draft.setTitle(edited.getTitle());
+        if (!Objects.equals(original.getAuthor(), edited.getAuthor())) draft.setAuthor(edited.getAuthor());
+        if (!Objects.equals(original.getPublisher(), edited.getPublisher())) draft.setPublisher(edited.getPublisher());
+        if (!Objects.equals(original.getCategory(), edited.getCategory())) draft.setCategory(edited.getCategory());
+        if (!Objects.equals(original.getPublicationDate(), edited.getPublicationDate())) {
+            draft.setPublicationDate(edited.getPublicationDate());
+        }
+        if (original.getTotalCopies() != edited.getTotalCopies()) draft.setTotalCopies(edited.getTotalCopies());
+        draft.setAvailableCopies(current.getAvailableCopies() + edited.getAvailableCopies() - original.getAvailableCopies());
+        return draft;
+    }
+
+    /**
+     * Adds a field the librarian changed to both columns of the conflict dialog.
+     */
+    private static void addConflictRow(JPanel yoursPanel, JPanel currentPanel, String labelText,
+                                       Object original, Object edited, Object current) {
+        if (Objects.equals(original, edited)) return;
+        addDetailRow(yoursPanel, labelText, edited != null ? edited.toString() : "N/A");
+        addDetailRow(currentPanel, labelText, current != null ? current.toString() : "N/A");
+    }
+
     /**
      * Creates the main panel for edit/add dialogs with two-column layout.
      */
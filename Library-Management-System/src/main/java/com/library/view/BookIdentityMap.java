@@ -0,0 +1,139 @@
+package com.library.view;
+
+import com.library.model.Book;
+import com.library.service.CatalogCache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The books behind the rows on screen, by id and by ISBN, so a click on a row finds its book
+ * without going back to the database.
+ *
+ * Tables put the books they show. The map listens to the {@link CatalogCache} and drops a book as
+ * soon as it changes, and everything when the cache is invalidated or reloaded. A book read while
+ * a change was being made could predate it, so callers pass {@link #getGeneration()} as it was
+ * before the read and the map ignores just the books that changed since, or all of them if the
+ * whole cache did or the changes since are too many to remember. Entries also expire
+ * after the cache's TTL, so changes from other workstations show up no later than in the cache.
+ *
+ * Only the most recently used {@code maxSize} books are kept.
+ */
+public class BookIdentityMap implements CatalogCache.ChangeListener {
+
+    // Changed ids remembered for loads still under way
+    private static final int CHANGE_LOG_SIZE = 1024;
+
+    private final int maxSize;
+    private final long ttlMs;
+
+    // Guarded by this
+    private final LinkedHashMap<Integer, Entry> byId = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Integer> byIsbn = new HashMap<>();
+    private long generation;
+    // The generation each recently changed book last changed at, oldest change first
+    private final LinkedHashMap<Integer, Long> changedAt = new LinkedHashMap<>();
+    // Loads older than this cannot tell which books changed since
+    private long unknownChangesUpTo;
+
+    public BookIdentityMap(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Bumped by every change the cache reports. Read it before loading books to pass to
+     * {@link #putAll(Iterable, long)}.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Remembers books read while the generation was {@code expectedGeneration}, except those that
+     * have changed since.
+     */
+    public synchronized void putAll(Iterable<Book> books, long expectedGeneration) {
+        if (unknownChangesUpTo > expectedGeneration) return;
+        long now = System.currentTimeMillis();
+        for (Book book : books) {
+            Long changed = changedAt.get(book.getBookId());
+            if (changed != null && changed > expectedGeneration) continue;
+            remove(book.getBookId());
+            byId.put(book.getBookId(), new Entry(new Book(book), now));
+            if (book.getIsbn() != null) byIsbn.put(book.getIsbn(), book.getBookId());
+        }
+        evictOverflow();
+    }
+
+    public synchronized Book findById(int id) {
+        Entry entry = byId.get(id);
+        if (entry == null) return null;
+        if (System.currentTimeMillis() - entry.loadedAt >= ttlMs) {
+            remove(id);
+            return null;
+        }
+        return new Book(entry.book);
+    }
+
+    public synchronized Book findByIsbn(String isbn) {
+        Integer id = isbn != null ? byIsbn.get(isbn) : null;
+        return id != null ? findById(id) : null;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    @Override
+    public synchronized void bookChanged(int bookId) {
+        generation++;
+        remove(bookId);
+        changedAt.remove(bookId);
+        changedAt.put(bookId, generation);
+        if (changedAt.size() > CHANGE_LOG_SIZE) {
+            Iterator<Long> oldest = changedAt.values().iterator();
+            unknownChangesUpTo = oldest.next();
+            oldest.remove();
+        }
+    }
+
+    @Override
+    public synchronized void allChanged() {
+        generation++;
+        unknownChangesUpTo = generation;
+        changedAt.clear();
+        byId.clear();
+        byIsbn.clear();
+    }
+
+    private void remove(int id) {
+        Entry old = byId.remove(id);
+        if (old != null && old.book.getIsbn() != null) {
+            byIsbn.remove(old.book.getIsbn(), id);
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<Integer, Entry>> it = byId.entrySet().iterator();
+        while (byId.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            if (eldest.book.getIsbn() != null) {
+                byIsbn.remove(eldest.book.getIsbn(), eldest.book.getBookId());
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Book book;
+        private final long loadedAt;
+
+        private Entry(Book book, long loadedAt) {
+            this.book = book;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
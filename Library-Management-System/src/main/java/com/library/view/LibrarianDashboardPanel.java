@@ -1,18 +1,29 @@
 package com.library.view;
 
+import com.library.jfr.TableReloadEvent;
 import com.library.model.Librarian;
+import com.library.util.SlowQueryLog;
+import com.library.util.UiTaskScheduler;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 public class LibrarianDashboardPanel extends JPanel {
 
+    // Books and users tables hold at most this many pages of rows at a time
+    private static final int TABLE_PAGE_SIZE = 200;
+    private static final int TABLE_MAX_LOADED_PAGES = 10;
+
     private Librarian librarian;
 
     // Main layout components
@@ -24,6 +35,7 @@ public class LibrarianDashboardPanel extends JPanel {
     private JButton dashboardBtn;
     private JButton booksBtn;
     private JButton usersBtn;
+    private JButton slowQueriesBtn;
     private JButton logoutBtn;
 
 
@@ -41,7 +53,7 @@ public class LibrarianDashboardPanel extends JPanel {
     private JButton addBookBtn;
     private JButton[] categoryButtons;
     private JTable booksTable;
-    private DefaultTableModel booksTableModel;
+    private PagedTableModel booksTableModel;
     private BookActionsListener bookActionsListener;
 
     // Users panel components
@@ -49,9 +61,16 @@ public class LibrarianDashboardPanel extends JPanel {
     private JTextField userSearchField;
     private JButton addUserBtn;
     private JTable usersTable;
-    private DefaultTableModel usersTableModel;
+    private PagedTableModel usersTableModel;
     private UserActionsListener userActionsListener;
 
+    // Slow queries panel components, only when the slow query log is on
+    private JPanel slowQueriesPanel;
+    private DefaultTableModel slowQueriesTableModel;
+    private JTable slowQueriesTable;
+    private JTextArea slowQueryDetails;
+    private java.util.List<SlowQueryLog.Entry> slowQueries = java.util.List.of();
+
     public LibrarianDashboardPanel(Librarian librarian) {
         this.librarian = librarian;
         setLayout(new BorderLayout());
@@ -79,6 +98,10 @@ public class LibrarianDashboardPanel extends JPanel {
         mainContentPanel.add(dashboardPanel, "DASHBOARD");
         mainContentPanel.add(booksPanel, "BOOKS");
         mainContentPanel.add(usersPanel, "USERS");
+        if (SlowQueryLog.getInstance().isEnabled()) {
+            slowQueriesPanel = createSlowQueriesPanel();
+            mainContentPanel.add(slowQueriesPanel, "SLOW_QUERIES");
+        }
     }
 
     private void createSidebar() {
@@ -111,6 +134,11 @@ public class LibrarianDashboardPanel extends JPanel {
         sidebarPanel.add(booksBtn);
         sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         sidebarPanel.add(usersBtn);
+        if (SlowQueryLog.getInstance().isEnabled()) {
+            slowQueriesBtn = UIComponents.createSidebarButton("⏱  Slow Queries", false, this::getSelectedButtonText);
+            sidebarPanel.add(Box.createRigidArea(new Dimension(0, 10)));
+            sidebarPanel.add(slowQueriesBtn);
+        }
 
         sidebarPanel.add(Box.createVerticalGlue());
 
@@ -133,6 +161,7 @@ public class LibrarianDashboardPanel extends JPanel {
         dashboardBtn.setOpaque(false);
         booksBtn.setOpaque(false);
         usersBtn.setOpaque(false);
+        if (slowQueriesBtn != null) slowQueriesBtn.setOpaque(false);
 
         // Set selected button
         button.setOpaque(true);
@@ -328,12 +357,8 @@ public class LibrarianDashboardPanel extends JPanel {
         tablePanel.setBorder(new EmptyBorder(20, 20, 20, 20));
 
         String[] columns = {"ISBN", "Book Title", "Author", "Category", "Status", "Actions"};
-        booksTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        booksTableModel = new PagedTableModel(columns, TABLE_PAGE_SIZE, TABLE_MAX_LOADED_PAGES,
+                UiTaskScheduler.getInstance(), "librarian-books-page");
 
         booksTable = createStyledTable(booksTableModel);
 
@@ -344,7 +369,7 @@ public class LibrarianDashboardPanel extends JPanel {
                 int row = booksTable.rowAtPoint(e.getPoint());
                 int col = booksTable.columnAtPoint(e.getPoint());
 
-                if (row >= 0 && col == booksTable.getColumnCount() - 1) {
+                if (row >= 0 && col == booksTable.getColumnCount() - 1 && booksTableModel.isRowLoaded(row)) {
                     showBookActionsMenu(booksTable, row, e.getX(), e.getY());
                 }
             }
@@ -405,12 +430,8 @@ public class LibrarianDashboardPanel extends JPanel {
         tablePanel.setBorder(new EmptyBorder(20, 20, 20, 20));
 
         String[] columns = {"ID", "Name", "Email", "Role", "Status", "Actions"};
-        usersTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        usersTableModel = new PagedTableModel(columns, TABLE_PAGE_SIZE, TABLE_MAX_LOADED_PAGES,
+                UiTaskScheduler.getInstance(), "librarian-users-page");
 
         usersTable = createStyledTable(usersTableModel);
 
@@ -421,7 +442,7 @@ public class LibrarianDashboardPanel extends JPanel {
                 int row = usersTable.rowAtPoint(e.getPoint());
                 int col = usersTable.columnAtPoint(e.getPoint());
 
-                if (row >= 0 && col == usersTable.getColumnCount() - 1) {
+                if (row >= 0 && col == usersTable.getColumnCount() - 1 && usersTableModel.isRowLoaded(row)) {
                     showUserActionsMenu(usersTable, row, e.getX(), e.getY());
                 }
             }
@@ -438,7 +459,109 @@ public class LibrarianDashboardPanel extends JPanel {
         return panel;
     }
 
-    private JTable createStyledTable(DefaultTableModel model) {
+    private JPanel createSlowQueriesPanel() {
+        JPanel panel = new JPanel(new BorderLayout(20, 20));
+        panel.setBackground(Theme.AQUA);
+        panel.setBorder(new EmptyBorder(30, 30, 30, 30));
+
+        // Header with refresh
+        JPanel headerPanel = new JPanel(new BorderLayout(20, 0));
+        headerPanel.setOpaque(false);
+
+        JLabel titleLabel = new JLabel("Slow Queries");
+        titleLabel.setFont(Theme.HEADER_FONT);
+        titleLabel.setForeground(Theme.VIOLET);
+
+        JLabel thresholdLabel = new JLabel("Statements over " + SlowQueryLog.getInstance().getThresholdMs() + " ms, newest first");
+        thresholdLabel.setFont(Theme.SUB_HEADER_FONT);
+        thresholdLabel.setForeground(new Color(120, 120, 120));
+
+        JPanel headerText = new JPanel();
+        headerText.setLayout(new BoxLayout(headerText, BoxLayout.Y_AXIS));
+        headerText.setOpaque(false);
+        headerText.add(titleLabel);
+        headerText.add(thresholdLabel);
+
+        JButton refreshBtn = UIComponents.createActionButton("🔄 Refresh", Theme.INDIGO);
+        refreshBtn.addActionListener(e -> refreshSlowQueries());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(refreshBtn);
+
+        headerPanel.add(headerText, BorderLayout.WEST);
+        headerPanel.add(buttonPanel, BorderLayout.EAST);
+
+        // Slow queries table; the selected one is shown in full below it
+        String[] columns = {"Time", "Elapsed (ms)", "Rows", "Called From", "SQL"};
+        slowQueriesTableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        slowQueriesTable = createStyledTable(slowQueriesTableModel);
+        slowQueriesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        slowQueriesTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) showSlowQueryDetails(slowQueriesTable.getSelectedRow());
+        });
+
+        JScrollPane tableScroll = new JScrollPane(slowQueriesTable);
+        tableScroll.setBorder(null);
+
+        slowQueryDetails = new JTextArea(8, 80);
+        slowQueryDetails.setEditable(false);
+        slowQueryDetails.setLineWrap(true);
+        slowQueryDetails.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        slowQueryDetails.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tableScroll, new JScrollPane(slowQueryDetails));
+        splitPane.setResizeWeight(0.7);
+        splitPane.setBorder(null);
+
+        panel.add(headerPanel, BorderLayout.NORTH);
+        panel.add(splitPane, BorderLayout.CENTER);
+
+        return panel;
+    }
+
+    /**
+     * Reloads the slow queries table from the slow query log.
+     */
+    public void refreshSlowQueries() {
+        if (slowQueriesTableModel == null) return;
+        DateTimeFormatter time = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        slowQueries = SlowQueryLog.getInstance().getRecent();
+        slowQueriesTableModel.setRowCount(0);
+        for (SlowQueryLog.Entry entry : slowQueries) {
+            slowQueriesTableModel.addRow(new Object[]{
+                    entry.getTimestamp().format(time),
+                    String.format("%.1f", entry.getElapsedMs()),
+                    entry.getError() != null ? "failed" : entry.getRows() < 0 ? "?" : String.valueOf(entry.getRows()),
+                    entry.getCaller(),
+                    UIComponents.truncateText(entry.getSql(), 80)
+            });
+        }
+        slowQueryDetails.setText("");
+    }
+
+    private void showSlowQueryDetails(int row) {
+        if (row < 0 || row >= slowQueries.size()) {
+            slowQueryDetails.setText("");
+            return;
+        }
+        SlowQueryLog.Entry entry = slowQueries.get(row);
+        StringBuilder sb = new StringBuilder();
+        sb.append(entry.getSql()).append("\n\nParameters: ").append(entry.getParameters());
+        if (entry.getError() != null) {
+            sb.append("\nError: ").append(entry.getError());
+        }
+        sb.append("\n\nPlan:\n").append(entry.getPlan() != null ? entry.getPlan() : "(not explained)");
+        slowQueryDetails.setText(sb.toString());
+        slowQueryDetails.setCaretPosition(0);
+    }
+
+    private JTable createStyledTable(TableModel model) {
         JTable table = new JTable(model);
         table.setFont(Theme.SUB_HEADER_FONT);
         table.setRowHeight(40);
@@ -600,6 +723,14 @@ public class LibrarianDashboardPanel extends JPanel {
             setSelectedButton(usersBtn);
             cardLayout.show(mainContentPanel, "USERS");
         });
+
+        if (slowQueriesBtn != null) {
+            slowQueriesBtn.addActionListener(e -> {
+                setSelectedButton(slowQueriesBtn);
+                refreshSlowQueries();
+                cardLayout.show(mainContentPanel, "SLOW_QUERIES");
+            });
+        }
     }
 
     private void showRequestActionsMenu(JTable table, int row, int x, int y) {
@@ -669,14 +800,19 @@ public class LibrarianDashboardPanel extends JPanel {
     }
 
     public void setBooksData(Object[][] rows) {
-        booksTableModel.setRowCount(0);
-        for (Object[] row : rows) {
-            booksTableModel.addRow(row);
-        }
+        booksTableModel.setRows(rows);
+    }
+
+    /**
+     * Shows books read page by page from {@code source} as the table scrolls.
+     */
+    public <T> void setBooksSource(PagedTableModel.PageSource<T> source, Function<? super T, Object[]> toRow,
+                                   ToIntFunction<? super T> keyOf) {
+        booksTableModel.setSource(source, toRow, keyOf);
     }
 
     public void clearBooks() {
-        booksTableModel.setRowCount(0);
+        booksTableModel.clear();
     }
 
     public void addBookRow(Object[] row) {
@@ -684,36 +820,35 @@ public class LibrarianDashboardPanel extends JPanel {
     }
 
     public void removeBookRow(int row) {
-        if (row >= 0 && row < booksTableModel.getRowCount()) {
-            booksTableModel.removeRow(row);
-        }
+        booksTableModel.removeRow(row);
     }
 
     public void markBookIssued(int row) {
-        if (row >= 0 && row < booksTableModel.getRowCount()) {
-            booksTableModel.setValueAt("Issued", row, 4); // column 4 = Status
-        }
+        booksTableModel.setValueAt("Issued", row, 4); // column 4 = Status
     }
 
     public void markBookAvailable(int row) {
-        if (row >= 0 && row < booksTableModel.getRowCount()) {
-            booksTableModel.setValueAt("Available", row, 4);
-        }
+        booksTableModel.setValueAt("Available", row, 4);
     }
 
-    public DefaultTableModel getBooksTableModel() {
+    public PagedTableModel getBooksTableModel() {
         return booksTableModel;
     }
 
     public void setUsersData(Object[][] rows) {
-        usersTableModel.setRowCount(0);
-        for (Object[] row : rows) {
-            usersTableModel.addRow(row);
-        }
+        usersTableModel.setRows(rows);
+    }
+
+    /**
+     * Shows users read page by page from {@code source} as the table scrolls.
+     */
+    public <T> void setUsersSource(PagedTableModel.PageSource<T> source, Function<? super T, Object[]> toRow,
+                                   ToIntFunction<? super T> keyOf) {
+        usersTableModel.setSource(source, toRow, keyOf);
     }
 
     public void clearUsers() {
-        usersTableModel.setRowCount(0);
+        usersTableModel.clear();
     }
 
     public void addUserRow(Object[] row) {
@@ -721,12 +856,10 @@ public class LibrarianDashboardPanel extends JPanel {
     }
 
     public void removeUserRow(int row) {
-        if (row >= 0 && row < usersTableModel.getRowCount()) {
-            usersTableModel.removeRow(row);
-        }
+        usersTableModel.removeRow(row);
     }
 
-    public DefaultTableModel getUsersTableModel() {
+    public PagedTableModel getUsersTableModel() {
         return usersTableModel;
     }
 
@@ -766,10 +899,13 @@ public class LibrarianDashboardPanel extends JPanel {
     }
 
     public void setRequestsData(Object[][] rows) {
+        TableReloadEvent event = new TableReloadEvent();
+        event.begin();
         requestsTableModel.setRowCount(0);
         for (Object[] row : rows) {
             requestsTableModel.addRow(row);
         }
+        event.complete("librarian-requests", -1, rows.length);
     }
 
     public interface BookActionsListener {
@@ -3,12 +3,19 @@ package com.library.view;
 import com.library.controller.LoginController;
 import com.library.model.*;
 import com.library.service.*;
+import com.library.util.DatabaseConfig;
+import com.library.util.EdtMonitor;
+import com.library.util.SchemaMigrator;
+import com.library.util.UiTaskScheduler;
 
 import javax.swing.*;
 import java.awt.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class LibraryGUI extends JFrame implements LoginController.LoginCallBack {
 
@@ -18,6 +25,19 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
     private static final String DASHBOARD_LIBRARIAN_PANEL = "DashboardLibrarian";
     private static final String DASHBOARD_READER_PANEL = "DashboardReader";
 
+    // Background load keys; a newer load for the same key replaces the pending one
+    private static final String TASK_LIBRARIAN_STATS = "librarian-stats";
+    private static final String TASK_LIBRARIAN_BOOKS = "librarian-books";
+    private static final String TASK_LIBRARIAN_USERS = "librarian-users";
+    private static final String TASK_READER_DASHBOARD = "reader-dashboard";
+    private static final String TASK_READER_BROWSE = "reader-browse";
+    private static final String TASK_READER_MY_BOOKS = "reader-my-books";
+    private static final String TASK_READER_HISTORY = "reader-history";
+    private static final String TASK_READER_FINES = "reader-fines";
+
+    // Books remembered for row actions; a little more than the books table keeps loaded
+    private static final int SHOWN_BOOKS_MAX = 4096;
+
     private JPanel mainPanel;
     private CardLayout cardLayout;
 
@@ -37,7 +57,22 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
     private final UserService userService = new UserService();
     private final LoanService loanService = new LoanService();
     private final FineService fineService = new FineService();
+    private final IssueService issueService = new IssueService();
+    private final StatsService statsService = StatsService.getInstance();
+    private final UiTaskScheduler uiTasks = UiTaskScheduler.getInstance();
     private BookRequestService bookRequestService = new BookRequestService();
+    private final CatalogCache catalogCache = CatalogCache.getInstance();
+
+    // Catalog version shown in the unfiltered books views; -1 while a search or category filter is shown
+    private volatile long librarianBooksVersion = -1;
+    private volatile long readerBrowseVersion = -1;
+
+    // Books behind the rows on screen, so row actions find them without a query
+    private final BookIdentityMap shownBooks = new BookIdentityMap(SHOWN_BOOKS_MAX, DatabaseConfig.getCatalogCacheTtlMs());
+    // The reader's screens show titles only; these map them back to the book shown. EDT only.
+    // The loans behind the My Books rows, in row order, and the book of every loan shown
+    private final List<Loan> readerMyLoans = new ArrayList<>();
+    private final Map<Integer, Integer> readerLoanBookIds = new HashMap<>();
 
     public LibraryGUI() {
         setTitle("Good Books");
@@ -50,6 +85,8 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
         mainPanel = new JPanel(cardLayout);
         add(mainPanel);
 
+        catalogCache.addChangeListener(shownBooks);
+
         launchPanel = new LaunchPanel();
         launchPanel.addLibrarianButtonListener(e -> showLibrarianLogin());
         launchPanel.addReaderButtonListener(e -> showReaderLogin());
@@ -75,6 +112,15 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
         // Start on launch
         CardLayout layout = (CardLayout) mainPanel.getLayout();
         layout.show(mainPanel, LAUNCH_PANEL);
+
+        // Load the catalog and build the search index while the user logs in
+        uiTasks.execute("catalog-warmup", bookService::findAll);
+
+        // Bring the fine ledger up to date, including days missed while the app was closed
+        FineAccrualService.startDailyAccrual();
+
+        // Re-check the in-memory dashboard counters against the database now and then
+        statsService.startReconciling();
     }
 
     private void showLibrarianLogin() {
@@ -127,33 +173,15 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
             // Category filter for books
             librarianDashboard.setCategoryFilterListener(category -> {
-                List<Book> filteredBooks;
-                if (category.equals("All")) {
-                    filteredBooks = bookService.findAll();
-                } else {
-                    filteredBooks = bookService.findByCategory(category);
-                }
-
-                // Update table
-                Object[][] rows = new Object[filteredBooks.size()][6];
-                for (int i = 0; i < filteredBooks.size(); i++) {
-                    Book b = filteredBooks.get(i);
-                    String status = b.getAvailableCopies() > 0 ? "Available" : "Issued";
-                    rows[i][0] = b.getIsbn();
-                    rows[i][1] = b.getTitle();
-                    rows[i][2] = b.getAuthor();
-                    rows[i][3] = b.getCategory();
-                    rows[i][4] = status;
-                    rows[i][5] = "Actions";
-                }
-                librarianDashboard.setBooksData(rows);
+                librarianBooksVersion = -1;
+                showLibrarianBookPages(category);
             });
 
             librarianDashboard.setBookActionsListener(
                     new LibrarianDashboardPanel.BookActionsListener() {
                         @Override
                         public void onView(String bookIsbn, int row) {
-                            Book book = bookService.findByISBN(bookIsbn);
+                            Book book = findShownBook(bookIsbn);
                             if (book == null) {
                                 JOptionPane.showMessageDialog(
                                         librarianDashboard,
@@ -168,7 +196,7 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
                         @Override
                         public void onEdit(String bookIsbn, int row) {
-                            Book original = bookService.findByISBN(bookIsbn);
+                            Book original = findShownBook(bookIsbn);
                             if (original == null) {
                                 JOptionPane.showMessageDialog(
                                         librarianDashboard,
@@ -181,11 +209,37 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
                             Book edited = BookDialog.showEditBookDialog(librarianDashboard, original);
                             if (edited == null) return;
 
-                            boolean ok = bookService.update(edited);
-                            if (!ok) {
+                            UpdateResult<Book> result = bookService.update(original, edited);
+                            // Saved by someone else meanwhile: show both and let the librarian redo the edit
+                            while (result.getOutcome() == UpdateResult.Outcome.CONFLICT) {
+                                Book current = result.getCurrent();
+                                Book draft = BookDialog.showConflictDialog(librarianDashboard, original, edited, current);
+                                edited = draft != null ? BookDialog.showEditBookDialog(librarianDashboard, draft) : null;
+                                if (edited == null) {
+                                    loadBooksIntoLibrarianDashboard();
+                                    return;
+                                }
+                                original = current;
+                                result = bookService.update(original, edited);
+                            }
+                            if (result.getOutcome() == UpdateResult.Outcome.INVALID_COPIES) {
+                                Book current = result.getCurrent();
+                                loadBooksIntoLibrarianDashboard();
+                                JOptionPane.showMessageDialog(
+                                        librarianDashboard,
+                                        "Cannot remove those copies: " + (current.getTotalCopies() - current.getAvailableCopies())
+                                                + " of " + current.getTotalCopies() + " are on loan.",
+                                        "Copies On Loan",
+                                        JOptionPane.WARNING_MESSAGE
+                                );
+                                return;
+                            }
+                            if (!result.isUpdated()) {
                                 JOptionPane.showMessageDialog(
                                         librarianDashboard,
-                                        "Failed to update book in database.",
+                                        result.getOutcome() == UpdateResult.Outcome.NOT_FOUND
+                                                ? "This book has been deleted."
+                                                : "Failed to update book in database.",
                                         "Error",
                                         JOptionPane.ERROR_MESSAGE
                                 );
@@ -202,7 +256,16 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
                         @Override
                         public void onDelete(String bookIsbn, int row) {
-                            Book b = bookService.findByISBN(bookIsbn);
+                            Book b = findShownBook(bookIsbn);
+                            if (b == null) {
+                                JOptionPane.showMessageDialog(
+                                        librarianDashboard,
+                                        "Book not found for ISBN: " + bookIsbn,
+                                        "Error",
+                                        JOptionPane.ERROR_MESSAGE
+                                );
+                                return;
+                            }
                             int confirm = JOptionPane.showConfirmDialog(
                                     librarianDashboard,
                                     "Delete book: " + bookIsbn + "?",
@@ -265,11 +328,29 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
                             User edited = UserDialog.showEditDialog(librarianDashboard, original);
                             if (edited == null) return;
 
-                            Boolean ok = userService.update(edited);
-                            if (!ok) {
+                            UpdateResult<User> result = userService.update(original, edited);
+                            while (result.getOutcome() == UpdateResult.Outcome.CONFLICT) {
                                 JOptionPane.showMessageDialog(
                                         librarianDashboard,
-                                        "Failed to update user in database",
+                                        "Someone else saved this user while you were editing it.\n" +
+                                                "Their changes are shown now; please make your edit again.",
+                                        "User Changed",
+                                        JOptionPane.WARNING_MESSAGE
+                                );
+                                original = result.getCurrent();
+                                edited = UserDialog.showEditDialog(librarianDashboard, original);
+                                if (edited == null) {
+                                    loadUsersIntoLibrarianDashboard();
+                                    return;
+                                }
+                                result = userService.update(original, edited);
+                            }
+                            if (!result.isUpdated()) {
+                                JOptionPane.showMessageDialog(
+                                        librarianDashboard,
+                                        result.getOutcome() == UpdateResult.Outcome.NOT_FOUND
+                                                ? "This user has been deleted"
+                                                : "Failed to update user in database",
                                         "Error",
                                         JOptionPane.ERROR_MESSAGE
                                 );
@@ -321,25 +402,11 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
     }
 
     private void loadDashboardStats() {
-        new Thread(() -> {
-            try {
-                int totalBooks = bookService.countAll();
-                int totalCopies = bookService.countTotalCopies();
-                int availableCopies = bookService.countAvailable();
-                int totalUsers = userService.countAll();
-                int issuedCopies = totalCopies - availableCopies;
-
-                SwingUtilities.invokeLater(() -> {
-                    librarianDashboard.setStats(totalBooks, issuedCopies, totalUsers, availableCopies);
-                });
-
-            } catch (Exception ex) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(librarianDashboard,
-                            "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                });
-            }
-        }).start();
+        // Served from memory once seeded; only the first load reads the database
+        uiTasks.submit(TASK_LIBRARIAN_STATS, statsService::getSnapshot,
+                stats -> librarianDashboard.setStats(stats.getBooks(), stats.getIssuedCopies(),
+                        stats.getUsers(), stats.getAvailableCopies()),
+                this::showLoadError);
     }
 
     private void loadPendingRequests() {
@@ -397,49 +464,39 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
                     return;
                 }
 
-                // Approve the request
-                boolean approved = bookRequestService.approveRequest(Integer.parseInt(requestId), librarianId);
-                if (!approved) {
-                    JOptionPane.showMessageDialog(
-                            librarianDashboard,
-                            "Failed to approve request",
-                            "Error",
-                            JOptionPane.ERROR_MESSAGE
-                    );
-                    return;
-                }
-
-                // ✅ Create the loan with librarian-specified dates
-                boolean loanCreated = loanService.issueBook(
-                        request.getBookId(),
-                        request.getReaderId(),
+                // ✅ Approve, create the loan and take a copy in one transaction
+                IssueService.Outcome outcome = issueService.issue(
+                        Integer.parseInt(requestId),
                         librarianId,
                         loanResult.getBorrowDate(),
-                        loanResult.getDueDate(),
-                        null
+                        loanResult.getDueDate()
                 );
 
-                if (!loanCreated) {
+                if (outcome != IssueService.Outcome.ISSUED) {
+                    String message;
+                    switch (outcome) {
+                        case ALREADY_PROCESSED:
+                            message = "This request has already been processed";
+                            break;
+                        case NO_COPIES_AVAILABLE:
+                            message = "No copies of this book are available right now";
+                            break;
+                        case REQUEST_NOT_FOUND:
+                            message = "Request not found";
+                            break;
+                        default:
+                            message = "Failed to approve request";
+                    }
                     JOptionPane.showMessageDialog(
                             librarianDashboard,
-                            "Approved request but failed to create loan record",
+                            message,
                             "Error",
                             JOptionPane.ERROR_MESSAGE
                     );
+                    loadPendingRequests();
                     return;
                 }
 
-                // ✅ Decrement available copies
-                boolean copiesUpdated = bookService.decrementAvailableCopies(request.getBookId());
-                if (!copiesUpdated) {
-                    JOptionPane.showMessageDialog(
-                            librarianDashboard,
-                            "Approved request and created loan, but failed to update book inventory",
-                            "Warning",
-                            JOptionPane.WARNING_MESSAGE
-                    );
-                }
-
                 JOptionPane.showMessageDialog(
                         librarianDashboard,
                         "✅ Request approved!\n\nBook issued for " + loanResult.getLoanDays() + " days\nDue Date: " + loanResult.getDueDate(),
@@ -455,7 +512,6 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
                 if (readerDashboard != null && currentUser instanceof Reader) {
                     loadReaderDashboardData((Reader) currentUser);
-                    loadReaderMyBooks((Reader) currentUser);
                 }
             }
 
@@ -697,67 +753,69 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
             if (readerDashboard != null && currentUser instanceof Reader) {
                 loadReaderDashboardData((Reader) currentUser);
-                loadReaderMyBooks((Reader) currentUser);
             }
         }
     }
 
     private void loadBooksIntoLibrarianDashboard() {
-        new Thread(() -> {
-            try {
-                List<Book> books = bookService.findAll();
-
-                Object[][] rows = new Object[books.size()][6];
-                for (int i = 0; i < books.size(); i++) {
-                    Book b = books.get(i);
-                    rows[i][0] = b.getIsbn();
-                    rows[i][1] = b.getTitle();
-                    rows[i][2] = b.getAuthor();
-                    rows[i][3] = b.getCategory();
-                    rows[i][4] = b.getAvailableCopies() > 0 ? "Available" : "Issued";
-                    rows[i][5] = "Actions";
-                }
+        if (catalogCache.isComplete() && catalogCache.getVersion() == librarianBooksVersion) {
+            return;
+        }
+        librarianBooksVersion = catalogCache.getVersion();
+        showLibrarianBookPages(null);
+    }
 
-                SwingUtilities.invokeLater(() -> {
-                    librarianDashboard.setBooksData(rows);
-                });
+    /**
+     * Pages through the books table as the librarian scrolls instead of loading the whole catalog.
+     */
+    private void showLibrarianBookPages(String category) {
+        // A search still running would otherwise replace the pages when it finishes
+        uiTasks.cancel(TASK_LIBRARIAN_BOOKS);
+        librarianDashboard.setBooksSource(
+                (afterId, limit) -> loadShownBooks(() -> bookService.findPage(afterId, limit, category, false)),
+                this::toLibrarianBookRow, Book::getBookId);
+    }
 
-            } catch (Exception ex) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(librarianDashboard,
-                            "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                });
-            }
-        }).start();
+    private Object[][] toLibrarianBookRows(List<Book> books) {
+        Object[][] rows = new Object[books.size()][];
+        for (int i = 0; i < books.size(); i++) {
+            rows[i] = toLibrarianBookRow(books.get(i));
+        }
+        return rows;
+    }
+
+    private Object[] toLibrarianBookRow(Book b) {
+        return new Object[]{
+                b.getIsbn(),
+                b.getTitle(),
+                b.getAuthor(),
+                b.getCategory(),
+                b.getAvailableCopies() > 0 ? "Available" : "Issued",
+                "Actions"
+        };
     }
 
     private void loadUsersIntoLibrarianDashboard() {
-        new Thread(() -> {
-            try {
-                List<User> users = userService.findAll();
-
-                Object[][] rows = new Object[users.size()][6];
-                for (int i = 0; i < users.size(); i++) {
-                    User u = users.get(i);
-                    rows[i][0] = u.getId();
-                    rows[i][1] = u.getFullName();
-                    rows[i][2] = u.getEmail() != null ? u.getEmail() : "-";
-                    rows[i][3] = u.getRole();
-                    rows[i][4] = u.getStatus();
-                    rows[i][5] = "Actions";
-                }
+        uiTasks.cancel(TASK_LIBRARIAN_USERS);
+        librarianDashboard.setUsersSource(
+                (afterId, limit) -> userService.findPage(afterId, limit, null),
+                this::toLibrarianUserRow, User::getId);
+    }
 
-                SwingUtilities.invokeLater(() -> {
-                    librarianDashboard.setUsersData(rows);
-                });
+    private Object[] toLibrarianUserRow(User u) {
+        return new Object[]{
+                u.getId(),
+                u.getFullName(),
+                u.getEmail() != null ? u.getEmail() : "-",
+                u.getRole(),
+                u.getStatus(),
+                "Actions"
+        };
+    }
 
-            } catch (Exception ex) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(librarianDashboard,
-                            "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                });
-            }
-        }).start();
+    private void showLoadError(Exception ex) {
+        JOptionPane.showMessageDialog(this,
+                "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
     }
 
     private void handleAddBook() {
@@ -812,79 +870,35 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
     private void handleSearchBook() {
         String query = librarianDashboard.getBooksSearchText().trim();
+        librarianBooksVersion = -1;
+        if (query.isEmpty()) {
+            showLibrarianBookPages(null);
+            return;
+        }
 
-        new Thread(() -> {
-            try {
-                List<Book> books = query.isEmpty()
-                        ? bookService.findAll()
-                        : bookService.search(query);
-
-                Object[][] rows = new Object[books.size()][6];
-                for (int i = 0; i < books.size(); i++) {
-                    Book b = books.get(i);
-                    rows[i][0] = b.getIsbn();
-                    rows[i][1] = b.getTitle();
-                    rows[i][2] = b.getAuthor();
-                    rows[i][3] = b.getCategory();
-                    rows[i][4] = b.getAvailableCopies() > 0 ? "Available" : "Issued";
-                    rows[i][5] = "Actions";
-                }
-
-                SwingUtilities.invokeLater(() -> {
-                    librarianDashboard.setBooksData(rows);
-                });
-
-            } catch (Exception ex) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(librarianDashboard,
-                            "Search error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                });
-            }
-        }).start();
+        // Only the latest search fills the table
+        uiTasks.submit(TASK_LIBRARIAN_BOOKS, () -> toLibrarianBookRows(loadShownBooks(() -> bookService.search(query))),
+                rows -> librarianDashboard.setBooksData(rows),
+                ex -> JOptionPane.showMessageDialog(librarianDashboard,
+                        "Search error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
     }
 
     private void handleUserSearch() {
         String query = librarianDashboard.getUserSearchText().trim();
-        List<User> users;
-
         if (query.isEmpty()) {
-            users = userService.findAll();
-        } else {
-            users = searchUsers(query);
-        }
-
-        Object[][] rows = new Object[users.size()][6];
-        for (int i = 0; i < users.size(); i++) {
-            User u = users.get(i);
-            rows[i][0] = u.getId();
-            rows[i][1] = u.getFullName();
-            rows[i][2] = u.getEmail() != null ? u.getEmail() : "-";
-            rows[i][3] = u.getRole();
-            rows[i][4] = u.getStatus();
-            rows[i][5] = "Actions";
-        }
-
-        librarianDashboard.setUsersData(rows);
-    }
-
-    private List<User> searchUsers(String query) {
-        List<User> allUsers = userService.findAll();
-        List<User> results = new ArrayList<>();
-        String lowerQuery = query.toLowerCase();
-
-        for (User u : allUsers) {
-            if (u.getUsername().toLowerCase().contains(lowerQuery) ||
-                    u.getFullName().toLowerCase().contains(lowerQuery) ||
-                    u.getRole().toLowerCase().contains(lowerQuery)) {
-                results.add(u);
-            }
+            loadUsersIntoLibrarianDashboard();
+            return;
         }
 
-        return results;
+        // Matching users are paged in off the EDT, the same way as the full list
+        uiTasks.cancel(TASK_LIBRARIAN_USERS);
+        librarianDashboard.setUsersSource(
+                (afterId, limit) -> userService.searchPage(afterId, limit, query),
+                this::toLibrarianUserRow, User::getId);
     }
 
     private void handleIssueBook(String bookIsbn, int row) {
-        Book book = bookService.findByISBN(bookIsbn);
+        Book book = findShownBook(bookIsbn);
         if (book == null) {
             JOptionPane.showMessageDialog(
                     librarianDashboard,
@@ -1063,30 +1077,19 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
             readerDashboard.addBookSearchListener(e -> handleReaderBookSearch());
 
             readerDashboard.setCategoryFilterListener(category -> {
-                List<Book> filteredBooks;
-                if (category.equals("All")) {
-                    filteredBooks = bookService.findAll();
-                } else {
-                    filteredBooks = bookService.findByCategory(category);
-                }
-
-                readerDashboard.clearBrowseBooks();
-                for (Book book : filteredBooks) {
-                    boolean available = book.getAvailableCopies() > 0;
-                    readerDashboard.addBrowseBookCard(
-                            book.getTitle(),
-                            book.getAuthor(),
-                            book.getCategory() != null ? book.getCategory() : "General",
-                            available
-                    );
-                }
+                readerBrowseVersion = -1;
+                uiTasks.submit(TASK_READER_BROWSE, () -> loadShownBooks(() -> category.equals("All")
+                                ? bookService.findAll()
+                                : bookService.findByCategory(category)),
+                        this::showReaderBrowseBooks, this::showLoadError);
             });
 
             // Actions in "My Books" table
             readerDashboard.setMyBookActionsListener(new ReaderDashboardPanel.MyBookActionsListener() {
                 @Override
                 public void onView(String bookTitle, int row) {
-                    Book book = bookService.findByTitle(bookTitle);
+                    Loan loan = findShownLoan(row);
+                    Book book = loan != null ? findReaderBook(loan.getBookId()) : null;
                     if (book == null) {
                         JOptionPane.showMessageDialog(
                                 readerDashboard,
@@ -1111,7 +1114,8 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
                 @Override
                 public void onRequestReturn(String bookTitle, int row, int loanId) {
-                    Book book = bookService.findByTitle(bookTitle);
+                    Integer bookId = readerLoanBookIds.get(loanId);
+                    Book book = bookId != null ? findReaderBook(bookId) : null;
                     if (book == null) return;
 
                     boolean ok = bookRequestService.createRequest(
@@ -1136,8 +1140,8 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
             readerDashboard.setBrowseBookActionsListener(
                     new ReaderDashboardPanel.BrowseBookActionsListener() {
                         @Override
-                        public void onView(String bookTitle) {
-                            Book book = bookService.findByTitle(bookTitle);
+                        public void onView(int bookId, String bookTitle) {
+                            Book book = findReaderBook(bookId);
                             if (book == null) {
                                 JOptionPane.showMessageDialog(
                                         readerDashboard,
@@ -1151,39 +1155,41 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
                         }
 
                         @Override
-                        public void onBorrow(String bookTitle) {
-                            handleBorrowRequest(reader, bookTitle);
+                        public void onBorrow(int bookId, String bookTitle) {
+                            handleBorrowRequest(reader, bookId, bookTitle);
                         }
                     }
             );
 
             mainPanel.add(readerDashboard, DASHBOARD_READER_PANEL);
 
-            // Load initial data
+            // Load initial data; both loads run in parallel and each fills its part when ready
             loadBooksIntoReaderBrowse();
             loadReaderDashboardData(reader);
-            loadReaderMyBooks(reader);
-            loadReaderHistory(reader);
-            loadReaderFines(reader);
         }
 
         cardLayout.show(mainPanel, DASHBOARD_READER_PANEL);
     }
 
+    /**
+     * Refreshes the summary cards and the My Books, History and Fines tabs from one snapshot.
+     */
     private void loadReaderDashboardData(Reader reader) {
-        int activeLoanCount = loanService.countActiveLoansByReaderId(reader.getId());
-        int dueSoonCount = loanService.countDueSoonByReaderId(reader.getId(), 3);
-        int overdueCount = loanService.countOverdueByReaderId(reader.getId());
-        int totalBooksRead = loanService.countTotalReadByReaderId(reader.getId());
-        double totalUnpaidFines = fineService.getTotalUnpaidFinesByReaderId(reader.getId());
+        uiTasks.submit(TASK_READER_DASHBOARD, () -> loanService.loadReaderDashboard(reader.getId(), 3),
+                this::showReaderDashboardData, this::showLoadError);
+    }
+
+    private void showReaderDashboardData(ReaderDashboardSnapshot snapshot) {
+        if (readerDashboard == null) return;
 
         // ✅ Set dashboard stats (4 args + separate fines call)
-        readerDashboard.setDashboardStats(activeLoanCount, dueSoonCount, overdueCount, totalBooksRead);
-        readerDashboard.setUnpaidFines(totalUnpaidFines);
+        readerDashboard.setDashboardStats(snapshot.getActiveLoanCount(), snapshot.getDueSoonCount(),
+                snapshot.getOverdueCount(), snapshot.getTotalBooksRead());
+        readerDashboard.setUnpaidFines(snapshot.getTotalUnpaidFines());
 
         // ✅ FIX: Use card-based API instead of rows array
         readerDashboard.clearBorrowedCards();
-        List<Loan> activeLoans = loanService.findActiveLoansByReaderId(reader.getId());
+        List<Loan> activeLoans = snapshot.getActiveLoans();
 
         for (Loan loan : activeLoans) {
             double fine = fineService.calculateFineForLoan(loan);
@@ -1196,14 +1202,30 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
                     loan.getLoanId()
             );
         }
+
+        showReaderMyBooks(activeLoans);
+        showReaderHistory(snapshot.getHistory());
+        showReaderFines(snapshot.getFines());
     }
 
     private void loadBooksIntoReaderBrowse() {
-        List<Book> books = bookService.findAll();
+        if (catalogCache.isComplete() && catalogCache.getVersion() == readerBrowseVersion) {
+            return;
+        }
+        long version = catalogCache.getVersion();
+        uiTasks.submit(TASK_READER_BROWSE, () -> loadShownBooks(bookService::findAll), books -> {
+            showReaderBrowseBooks(books);
+            readerBrowseVersion = version;
+        }, this::showLoadError);
+    }
+
+    private void showReaderBrowseBooks(List<Book> books) {
+        if (readerDashboard == null) return;
         readerDashboard.clearBrowseBooks();
         for (Book b : books) {
             boolean available = b.getAvailableCopies() > 0;
             readerDashboard.addBrowseBookCard(
+                    b.getBookId(),
                     b.getTitle(),
                     b.getAuthor(),
                     b.getCategory() != null ? b.getCategory() : "General",
@@ -1213,11 +1235,19 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
     }
 
     private void loadReaderMyBooks(Reader reader) {
-        List<Loan> loans = loanService.findActiveLoansByReaderId(reader.getId());
+        uiTasks.submit(TASK_READER_MY_BOOKS, () -> loanService.findActiveLoansByReaderId(reader.getId()),
+                this::showReaderMyBooks, this::showLoadError);
+    }
+
+    private void showReaderMyBooks(List<Loan> loans) {
+        if (readerDashboard == null) return;
         Object[][] rows = new Object[loans.size()][7];
+        readerMyLoans.clear();
+        readerMyLoans.addAll(loans);
 
         for (int i = 0; i < loans.size(); i++) {
             Loan loan = loans.get(i);
+            readerLoanBookIds.put(loan.getLoanId(), loan.getBookId());
             long daysLeft = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), loan.getDueDate());
             double fine = fineService.calculateFineForLoan(loan);
 
@@ -1234,7 +1264,12 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
     }
 
     private void loadReaderHistory(Reader reader) {
-        List<Loan> history = loanService.findLoanHistoryByReaderId(reader.getId());
+        uiTasks.submit(TASK_READER_HISTORY, () -> loanService.findLoanHistoryByReaderId(reader.getId()),
+                this::showReaderHistory, this::showLoadError);
+    }
+
+    private void showReaderHistory(List<Loan> history) {
+        if (readerDashboard == null) return;
         Object[][] rows = new Object[history.size()][5];
 
         for (int i = 0; i < history.size(); i++) {
@@ -1250,7 +1285,12 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
     }
 
     private void loadReaderFines(Reader reader) {
-        List<Fine> fines = fineService.findAllFinesByReaderId(reader.getId());
+        uiTasks.submit(TASK_READER_FINES, () -> fineService.findAllFinesByReaderId(reader.getId()),
+                this::showReaderFines, this::showLoadError);
+    }
+
+    private void showReaderFines(List<Fine> fines) {
+        if (readerDashboard == null) return;
         Object[][] rows = new Object[fines.size()][5];
 
         for (int i = 0; i < fines.size(); i++) {
@@ -1265,8 +1305,8 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
         readerDashboard.setFinesData(rows);
     }
 
-    private void handleBorrowRequest(Reader reader, String bookTitle) {
-        Book book = bookService.findByTitle(bookTitle);
+    private void handleBorrowRequest(Reader reader, int bookId, String bookTitle) {
+        Book book = findReaderBook(bookId);
         if (book == null) {
             JOptionPane.showMessageDialog(
                     readerDashboard,
@@ -1309,14 +1349,7 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
         );
         if (confirm != JOptionPane.YES_OPTION) return;
 
-        Loan targetLoan = null;
-        List<Loan> loans = loanService.findActiveLoansByReaderId(reader.getId());
-        for (Loan loan : loans) {
-            if (bookTitle.equals(loan.getBookTitle())) {
-                targetLoan = loan;
-                break;
-            }
-        }
+        Loan targetLoan = findActiveLoan(reader, row);
 
         if (targetLoan == null) {
             JOptionPane.showMessageDialog(
@@ -1360,15 +1393,7 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
         );
         if (confirm != JOptionPane.YES_OPTION) return;
 
-        // Find the active loan
-        Loan targetLoan = null;
-        List<Loan> loans = loanService.findActiveLoansByReaderId(reader.getId());
-        for (Loan loan : loans) {
-            if (bookTitle.equals(loan.getBookTitle())) {
-                targetLoan = loan;
-                break;
-            }
-        }
+        Loan targetLoan = findActiveLoan(reader, row);
 
         if (targetLoan == null) {
             JOptionPane.showMessageDialog(
@@ -1381,11 +1406,8 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
         }
 
         // ✅ FIX: Create a RETURN request for the librarian to approve
-        Book book = bookService.findByTitle(bookTitle);
-        if (book == null) return;
-
         boolean ok = bookRequestService.createRequest(
-                book.getBookId(),
+                targetLoan.getBookId(),
                 reader.getId(),
                 "RETURN"  // ✅ This creates the request in librarian's dashboard!
         );
@@ -1412,28 +1434,65 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
 
     private void handleReaderBookSearch() {
         String query = readerDashboard.getBookSearchText().trim();
-        List<Book> books;
-
-        if (query.isEmpty()) {
-            books = bookService.findAll();
-        } else {
-            books = bookService.search(query);
-        }
+        readerBrowseVersion = -1;
 
-        readerDashboard.clearBrowseBooks();
-        for (Book b : books) {
-            boolean available = b.getAvailableCopies() > 0;
-            readerDashboard.addBrowseBookCard(
-                    b.getTitle(),
-                    b.getAuthor(),
-                    b.getCategory() != null ? b.getCategory() : "General",
-                    available
-            );
-        }
+        uiTasks.submit(TASK_READER_BROWSE, () -> loadShownBooks(() -> {
+            if (query.isEmpty()) {
+                return bookService.findAll();
+            }
+            List<Book> books = bookService.search(query);
+            if (books.isEmpty()) {
+                // Nothing matched as typed; try again allowing for typos
+                books = bookService.fuzzySearch(query);
+            }
+            return books;
+        }), this::showReaderBrowseBooks, this::showLoadError);
     }
 
     // ===================== SHARED =====================
 
+    /**
+     * Runs a book load for a table and remembers the books it returns for the row actions.
+     */
+    private List<Book> loadShownBooks(Supplier<List<Book>> load) {
+        long generation = shownBooks.getGeneration();
+        List<Book> books = load.get();
+        shownBooks.putAll(books, generation);
+        return books;
+    }
+
+    /**
+     * The book behind a librarian table row, from the rows on screen when still current.
+     */
+    private Book findShownBook(String isbn) {
+        Book book = shownBooks.findByIsbn(isbn);
+        return book != null ? book : bookService.findByISBN(isbn);
+    }
+
+    /**
+     * A book shown on one of the reader's screens, from the rows on screen when still current.
+     */
+    private Book findReaderBook(int bookId) {
+        Book book = shownBooks.findById(bookId);
+        return book != null ? book : bookService.findById(bookId);
+    }
+
+    private Loan findShownLoan(int row) {
+        return row >= 0 && row < readerMyLoans.size() ? readerMyLoans.get(row) : null;
+    }
+
+    /**
+     * The loan behind a My Books row, if it is still active.
+     */
+    private Loan findActiveLoan(Reader reader, int row) {
+        Loan shown = findShownLoan(row);
+        if (shown == null) return null;
+        for (Loan loan : loanService.findActiveLoansByReaderId(reader.getId())) {
+            if (loan.getLoanId() == shown.getLoanId()) return loan;
+        }
+        return null;
+    }
+
     private void handleLogout() {
         int confirm = JOptionPane.showConfirmDialog(
                 this,
@@ -1451,12 +1510,22 @@ public class LibraryGUI extends JFrame implements LoginController.LoginCallBack
             mainPanel.remove(readerDashboard);
             readerDashboard = null;
         }
+        librarianBooksVersion = -1;
+        readerBrowseVersion = -1;
 
         cardLayout.show(mainPanel, LAUNCH_PANEL);
         currentUser = null;
     }
 
     public static void main(String[] args) {
+        EdtMonitor.install();
+        // Every service query relies on the migrated schema
+        if (!SchemaMigrator.ensureCurrent()) {
+            JOptionPane.showMessageDialog(null,
+                    "The database schema could not be brought up to date.\nSee the log for details.",
+                    "Database Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         SwingUtilities.invokeLater(() -> new LibraryGUI().setVisible(true));
     }
 }
\ No newline at end of file
@@ -0,0 +1,371 @@
+package com.library.view;
+
+import com.library.jfr.TableReloadEvent;
+import com.library.util.UiTaskScheduler;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Table model that reads its rows a page at a time as the table scrolls.
+ *
+ * Pages are fetched in key order from a {@link PageSource}, each one starting after the last key
+ * of the page before, so no page ever needs an OFFSET. The table grows by one page whenever the
+ * last known page comes into view. Only the most recently viewed pages keep their rows; older
+ * ones are dropped and fetched again, between the same keys, if the user scrolls back to them.
+ *
+ * Short lists such as search results can be shown with {@link #setRows(Object[][])} instead,
+ * which keeps every row in memory like a DefaultTableModel.
+ *
+ * Apart from the page fetches, all methods must be called on the Event Dispatch Thread.
+ */
+public class PagedTableModel extends AbstractTableModel {
+
+    /**
+     * Fetches up to {@code limit} items with a key above {@code afterKey}, in key order.
+     * Called on a background thread.
+     */
+    public interface PageSource<T> {
+        List<T> fetch(int afterKey, int limit);
+    }
+
+    /** Shown in cells whose page is still being fetched. */
+    public static final String LOADING = "…";
+
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final String[] columns;
+    private final int pageSize;
+    private final int maxLoadedPages;
+    private final UiTaskScheduler scheduler;
+    private final String taskKey;
+
+    // Bumped whenever the content is replaced, so fetches for the old content are ignored
+    private int generation;
+    private Fetcher<?> fetcher;
+    private final List<Object[]> fixedRows = new ArrayList<>();
+
+    private final List<Page> pages = new ArrayList<>();
+    private final LinkedHashMap<Integer, Page> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private int rowCount;
+    private boolean exhausted;
+
+    /**
+     * @param taskKey prefix for the scheduler keys of this model's page fetches
+     */
+    public PagedTableModel(String[] columns, int pageSize, int maxLoadedPages,
+                           UiTaskScheduler scheduler, String taskKey) {
+        this.columns = columns.clone();
+        this.pageSize = pageSize;
+        this.maxLoadedPages = Math.max(2, maxLoadedPages);
+        this.scheduler = scheduler;
+        this.taskKey = taskKey;
+    }
+
+    /**
+     * Replaces the content with pages read from {@code source}, starting with the first.
+     */
+    public <T> void setSource(PageSource<T> source, Function<? super T, Object[]> toRow,
+                              ToIntFunction<? super T> keyOf) {
+        reset();
+        fetcher = new Fetcher<>(source, toRow, keyOf);
+        pages.add(new Page(0, 0));
+        fireTableDataChanged();
+        requestPage(0);
+    }
+
+    /**
+     * Replaces the content with a fixed list of rows.
+     */
+    public void setRows(Object[][] rows) {
+        TableReloadEvent event = new TableReloadEvent();
+        event.begin();
+        reset();
+        fixedRows.addAll(Arrays.asList(rows));
+        rowCount = rows.length;
+        fireTableDataChanged();
+        event.complete(taskKey, -1, rows.length);
+    }
+
+    public boolean isPaged() {
+        return fetcher != null;
+    }
+
+    /**
+     * True if the row's values are in memory rather than {@link #LOADING} placeholders.
+     */
+    public boolean isRowLoaded(int row) {
+        if (row < 0 || row >= rowCount) return false;
+        return fetcher == null || pages.get(pageOf(row)).rows != null;
+    }
+
+    /**
+     * Rows currently held in memory.
+     */
+    public int getLoadedRowCount() {
+        if (fetcher == null) return fixedRows.size();
+        int count = 0;
+        for (Page page : loaded.values()) count += page.size;
+        return count;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (fetcher == null) return fixedRows.get(row)[column];
+
+        int index = pageOf(row);
+        Page page = loaded.get(index);
+        if (page == null) {
+            requestPage(index);
+            return LOADING;
+        }
+        if (index == pages.size() - 1) {
+            requestNextPage();
+        }
+        return page.rows[row - page.startRow][column];
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        Object[] values = rowValues(row);
+        if (values == null) return;
+        values[column] = value;
+        fireTableCellUpdated(row, column);
+    }
+
+    /**
+     * Appends a row. Only for content set with {@link #setRows(Object[][])}; paged content comes
+     * from its source.
+     */
+    public void addRow(Object[] row) {
+        if (fetcher != null) {
+            throw new IllegalStateException("Rows of a paged table come from its source");
+        }
+        fixedRows.add(row);
+        rowCount++;
+        fireTableRowsInserted(rowCount - 1, rowCount - 1);
+    }
+
+    public void removeRow(int row) {
+        if (row < 0 || row >= rowCount) return;
+        if (fetcher == null) {
+            fixedRows.remove(row);
+            rowCount--;
+        } else {
+            int index = pageOf(row);
+            Page page = pages.get(index);
+            if (page.rows == null) return;
+
+            // The page keeps its key range, so fetching it again later also leaves the row out
+            Object[][] rows = new Object[page.size - 1][];
+            int at = row - page.startRow;
+            System.arraycopy(page.rows, 0, rows, 0, at);
+            System.arraycopy(page.rows, at + 1, rows, at, page.size - at - 1);
+            page.rows = rows;
+            resize(index, page.size - 1);
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    public void clear() {
+        setRows(new Object[0][]);
+    }
+
+    private void reset() {
+        generation++;
+        fetcher = null;
+        fixedRows.clear();
+        pages.clear();
+        loaded.clear();
+        rowCount = 0;
+        exhausted = false;
+        if (scheduler != null) scheduler.cancel(taskKey + ":next");
+    }
+
+    private Object[] rowValues(int row) {
+        if (row < 0 || row >= rowCount) return null;
+        if (fetcher == null) return fixedRows.get(row);
+        Page page = pages.get(pageOf(row));
+        return page.rows == null ? null : page.rows[row - page.startRow];
+    }
+
+    private int pageOf(int row) {
+        int low = 0;
+        int high = pages.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pages.get(mid).startRow <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void requestNextPage() {
+        Page last = pages.get(pages.size() - 1);
+        if (exhausted || last.lastKey == UNKNOWN || last.loading) return;
+
+        pages.add(new Page(last.lastKey, rowCount));
+        requestPage(pages.size() - 1);
+    }
+
+    private void requestPage(int index) {
+        Page page = pages.get(index);
+        if (page.loading) return;
+        page.loading = true;
+
+        // Ends when the rows are on screen, so it covers the wait for the fetch as well
+        TableReloadEvent event = new TableReloadEvent();
+        event.begin();
+        int expectedGeneration = generation;
+        Fetcher<?> source = fetcher;
+        int afterKey = page.afterKey;
+        int upToKey = page.lastKey;
+        // A page not seen before is the newest one; anything else is a revisit of a known range
+        String key = taskKey + ":" + (upToKey == UNKNOWN ? "next" : index);
+        scheduler.submit(key, () -> source.fetch(afterKey, pageSize, upToKey),
+                fetched -> {
+                    pageLoaded(expectedGeneration, index, fetched);
+                    if (expectedGeneration == generation) event.complete(taskKey, index, fetched.rows.length);
+                },
+                e -> {
+                    if (expectedGeneration == generation) page.loading = false;
+                    e.printStackTrace();
+                });
+    }
+
+    private void pageLoaded(int expectedGeneration, int index, Fetched fetched) {
+        if (expectedGeneration != generation) return;
+
+        Page page = pages.get(index);
+        page.loading = false;
+        boolean firstLoad = page.lastKey == UNKNOWN;
+        if (firstLoad) {
+            page.lastKey = fetched.lastKey != UNKNOWN ? fetched.lastKey : page.afterKey;
+            if (fetched.rows.length < pageSize) exhausted = true;
+        }
+
+        int oldSize = page.size;
+        page.rows = fetched.rows;
+        loaded.put(index, page);
+        evictOldPages(index);
+
+        if (fetched.rows.length == oldSize) {
+            if (oldSize > 0) fireTableRowsUpdated(page.startRow, page.startRow + oldSize - 1);
+        } else if (firstLoad && index == pages.size() - 1) {
+            resize(index, fetched.rows.length);
+            if (oldSize == 0 && page.size > 0) {
+                fireTableRowsInserted(page.startRow, page.startRow + page.size - 1);
+            } else {
+                fireTableDataChanged();
+            }
+        } else {
+            resize(index, fetched.rows.length);
+            fireTableDataChanged();
+        }
+    }
+
+    private void evictOldPages(int keep) {
+        Iterator<Map.Entry<Integer, Page>> it = loaded.entrySet().iterator();
+        while (loaded.size() > maxLoadedPages && it.hasNext()) {
+            Map.Entry<Integer, Page> eldest = it.next();
+            if (eldest.getKey() == keep) continue;
+            eldest.getValue().rows = null;
+            it.remove();
+        }
+    }
+
+    /**
+     * Changes a page's row count and moves the pages after it.
+     */
+    private void resize(int index, int size) {
+        Page page = pages.get(index);
+        int delta = size - page.size;
+        page.size = size;
+        for (int i = index + 1; i < pages.size(); i++) {
+            pages.get(i).startRow += delta;
+        }
+        rowCount += delta;
+    }
+
+    private static final class Page {
+        private final int afterKey;
+        private int lastKey = UNKNOWN;
+        private int startRow;
+        private int size;
+        private Object[][] rows;
+        private boolean loading;
+
+        private Page(int afterKey, int startRow) {
+            this.afterKey = afterKey;
+            this.startRow = startRow;
+        }
+    }
+
+    private static final class Fetched {
+        private final Object[][] rows;
+        private final int lastKey;
+
+        private Fetched(Object[][] rows, int lastKey) {
+            this.rows = rows;
+            this.lastKey = lastKey;
+        }
+    }
+
+    private static final class Fetcher<T> {
+        private final PageSource<T> source;
+        private final Function<? super T, Object[]> toRow;
+        private final ToIntFunction<? super T> keyOf;
+
+        private Fetcher(PageSource<T> source, Function<? super T, Object[]> toRow, ToIntFunction<? super T> keyOf) {
+            this.source = source;
+            this.toRow = toRow;
+            this.keyOf = keyOf;
+        }
+
+        /**
+         * Rows after {@code afterKey}, stopping at {@code upToKey} when the page's range is known.
+         */
+        private Fetched fetch(int afterKey, int limit, int upToKey) {
+            List<T> items = source.fetch(afterKey, limit);
+            List<Object[]> rows = new ArrayList<>(items.size());
+            int lastKey = UNKNOWN;
+            for (T item : items) {
+                int key = keyOf.applyAsInt(item);
+                if (upToKey != UNKNOWN && key > upToKey) break;
+                rows.add(toRow.apply(item));
+                lastKey = key;
+            }
+            return new Fetched(rows.toArray(new Object[0][]), lastKey);
+        }
+    }
+}
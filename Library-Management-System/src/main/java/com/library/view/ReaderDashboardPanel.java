@@ -1,5 +1,6 @@
 package com.library.view;
 
+import com.library.jfr.TableReloadEvent;
 import com.library.model.Book;
 import com.library.model.Reader;
 
@@ -539,7 +540,7 @@ public class ReaderDashboardPanel extends JPanel {
         return panel;
     }
 
-    private JPanel createBookCard(String title, String author, String category, boolean available) {
+    private JPanel createBookCard(int bookId, String title, String author, String category, boolean available) {
         JPanel card = new JPanel();
         card.setLayout(new BorderLayout(8, 8));
         card.setBackground(Color.WHITE);
@@ -640,13 +641,13 @@ public class ReaderDashboardPanel extends JPanel {
 
         viewBtn.addActionListener(e -> {
             if (browseBookActionsListener != null) {
-                browseBookActionsListener.onView(title);
+                browseBookActionsListener.onView(bookId, title);
             }
         });
 
         borrowBtn.addActionListener(e -> {
             if (available && browseBookActionsListener != null) {
-                browseBookActionsListener.onBorrow(title);
+                browseBookActionsListener.onBorrow(bookId, title);
             }
         });
 
@@ -899,10 +900,13 @@ public class ReaderDashboardPanel extends JPanel {
 
 
     public void setMyBooksData(Object[][] rows) {
+        TableReloadEvent event = new TableReloadEvent();
+        event.begin();
         myBooksTableModel.setRowCount(0);
         for (Object[] row : rows) {
             myBooksTableModel.addRow(row);
         }
+        event.complete("reader-my-books", -1, rows.length);
     }
 
     public void clearMyBooks() {
@@ -916,17 +920,23 @@ public class ReaderDashboardPanel extends JPanel {
     }
 
     public void setHistoryData(Object[][] rows) {
+        TableReloadEvent event = new TableReloadEvent();
+        event.begin();
         historyTableModel.setRowCount(0);
         for (Object[] row : rows) {
             historyTableModel.addRow(row);
         }
+        event.complete("reader-history", -1, rows.length);
     }
 
     public void setFinesData(Object[][] rows) {
+        TableReloadEvent event = new TableReloadEvent();
+        event.begin();
         finesTableModel.setRowCount(0);
         for (Object[] row : rows) {
             finesTableModel.addRow(row);
         }
+        event.complete("reader-fines", -1, rows.length);
     }
 
     public void clearBrowseBooks() {
@@ -935,8 +945,8 @@ public class ReaderDashboardPanel extends JPanel {
         booksCardsContainer.repaint();
     }
 
-    public void addBrowseBookCard(String title, String author, String category, boolean available) {
-        booksCardsContainer.add(createBookCard(title, author, category, available));
+    public void addBrowseBookCard(int bookId, String title, String author, String category, boolean available) {
+        booksCardsContainer.add(createBookCard(bookId, title, author, category, available));
         booksCardsContainer.revalidate();
         booksCardsContainer.repaint();
     }
@@ -1065,7 +1075,7 @@ public class ReaderDashboardPanel extends JPanel {
     }
 
     public interface BrowseBookActionsListener {
-        void onView(String bookTitle);
-        void onBorrow(String bookTitle);
+        void onView(int bookId, String bookTitle);
+        void onBorrow(int bookId, String bookTitle);
     }
 }
\ No newline at end of file
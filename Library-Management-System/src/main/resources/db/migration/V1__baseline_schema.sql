@@ -0,0 +1,70 @@
+-- The tables the services use. IF NOT EXISTS lets databases created before migrations existed
+-- adopt this history as they are.
+
+CREATE TABLE IF NOT EXISTS users (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    full_name VARCHAR(100),
+    role VARCHAR(20) NOT NULL,
+    email VARCHAR(100),
+    status VARCHAR(20) DEFAULT 'ACTIVE',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS books (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    isbn VARCHAR(20) NOT NULL UNIQUE,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255),
+    category VARCHAR(50),
+    publisher VARCHAR(255),
+    published_date DATE,
+    total_copies INT NOT NULL DEFAULT 1,
+    available_copies INT NOT NULL DEFAULT 1,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS loans (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    book_id INT NOT NULL,
+    reader_id INT NOT NULL,
+    librarian_id INT,
+    issue_date DATE NOT NULL,
+    due_date DATE NOT NULL,
+    return_date DATE,
+    status VARCHAR(20) NOT NULL,
+    notes VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS fines (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    loan_id INT NOT NULL,
+    reader_id INT NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_date DATE NOT NULL,
+    paid_date DATE
+);
+
+CREATE TABLE IF NOT EXISTS book_requests (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    book_id INT NOT NULL,
+    reader_id INT NOT NULL,
+    librarian_id INT,
+    request_type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    hold_until_date DATE,
+    created_at TIMESTAMP NOT NULL,
+    resolved_at TIMESTAMP,
+    notes VARCHAR(255)
+);
+
+-- Fine accrued so far per overdue loan, advanced daily by FineAccrualService
+CREATE TABLE IF NOT EXISTS fine_accruals (
+    loan_id INT PRIMARY KEY,
+    reader_id INT NOT NULL,
+    days_overdue INT NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    accrued_through DATE NOT NULL
+);
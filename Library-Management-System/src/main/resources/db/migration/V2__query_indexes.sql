@@ -0,0 +1,20 @@
+-- Composite indexes for the filters the services run. Equality columns come first and the range
+-- or sort column last, so one index range answers the query.
+
+-- Reader dashboard, My Books, history and the loan counters: reader_id = ? AND status = ...
+CREATE INDEX idx_loans_reader_status ON loans (reader_id, status);
+
+-- Who has this copy: book_id = ? AND status = 'ISSUED'
+CREATE INDEX idx_loans_book_status ON loans (book_id, status);
+
+-- Fine generation and daily accrual: status = 'ISSUED' AND due_date < ?
+CREATE INDEX idx_loans_status_due ON loans (status, due_date);
+
+-- A reader's fines, unpaid or all of them: reader_id = ? [AND status = 'UNPAID']
+CREATE INDEX idx_fines_reader_status ON fines (reader_id, status);
+
+-- Fine generation skips loans that already have a fine: f.loan_id = l.id
+CREATE INDEX idx_fines_loan ON fines (loan_id);
+
+-- Librarian request queue: status = 'PENDING' ORDER BY created_at
+CREATE INDEX idx_book_requests_status_created ON book_requests (status, created_at);
@@ -0,0 +1,3 @@
+-- Category filter: LOWER(category) = LOWER(?). A functional index (MySQL 8.0.13+) matches the
+-- expression itself, so neither the query nor the table needs a lower-cased copy of the column.
+CREATE INDEX idx_books_category_lower ON books ((LOWER(category)));
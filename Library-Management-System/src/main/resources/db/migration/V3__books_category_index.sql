@@ -0,0 +1,3 @@
+-- Category filter: LOWER(category) = LOWER(?). Only MySQL can index the expression (see the
+-- .mysql.sql variant); elsewhere this version is recorded without changes, and the query scans
+-- books, which the catalog cache answers in memory anyway once it is loaded.
@@ -0,0 +1,6 @@
+-- Row versions for optimistic concurrency. A catalog or account edit only applies if the row is
+-- still at the version the editor loaded, and bumps it; see BookService.update and
+-- UserService.update. Issues and returns move available_copies without touching the version.
+ALTER TABLE books ADD COLUMN row_version INT NOT NULL DEFAULT 0;
+
+ALTER TABLE users ADD COLUMN row_version INT NOT NULL DEFAULT 0;
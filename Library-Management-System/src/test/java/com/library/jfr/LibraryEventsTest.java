@@ -0,0 +1,143 @@
+package com.library.jfr;
+
+import com.library.model.Book;
+import com.library.model.Reader;
+import com.library.model.User;
+import com.library.service.AuthenticationService;
+import com.library.service.BookService;
+import com.library.service.CatalogCache;
+import com.library.service.LoanService;
+import com.library.service.UserService;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import com.library.util.UiTaskScheduler;
+import com.library.view.PagedTableModel;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryEventsTest {
+
+    private static final List<String> EVENTS = List.of("com.library.BookSearch", "com.library.LoanIssue",
+            "com.library.LoanReturn", "com.library.FineGeneration", "com.library.Login", "com.library.TableReload");
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        TestDatabase.clear("fines", "loans", "books", "users");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void bundledProfileEnablesEveryLibraryEvent() throws Exception {
+        Map<String, String> settings = LibraryEvents.configuration().getSettings();
+        for (String event : EVENTS) {
+            assertEquals("true", settings.get(event + "#enabled"), event);
+        }
+        assertEquals("1 ms", settings.get("com.library.BookSearch#threshold"));
+    }
+
+    @Test
+    public void servicesAndTablesEmitEventsWithTheirIds() throws Exception {
+        Configuration profile = LibraryEvents.configuration();
+        Path file = Files.createTempFile("library", ".jfr");
+        try (Recording recording = new Recording(profile)) {
+            // Searches against a handful of books finish well under the profile's threshold
+            recording.enable(BookSearchEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            BookService bookService = new BookService();
+            Book book = new Book("111", "Dune", "Frank Herbert", "Chilton", null, "Fiction", 2, 2);
+            bookService.add(book);
+            int bookId = book.getBookId();
+            assertEquals(1, bookService.search("dune").size());
+
+            LoanService loanService = new LoanService();
+            LocalDate today = LocalDate.now();
+            loanService.issueBook(bookId, 7, today.minusDays(20), today.minusDays(6));
+            int loanId = loanService.findActiveLoansByReaderId(7).get(0).getLoanId();
+            loanService.generateFinesForOverdueLoans();
+            loanService.returnBook(loanId);
+
+            User reader = new Reader("reader1", "secret", "Ann Reader");
+            new UserService().add(reader);
+            assertNotNull(new AuthenticationService().authenticate("reader1", "secret", "reader"));
+            assertNull(new AuthenticationService().authenticate("reader1", "wrong", "reader"));
+
+            UiTaskScheduler scheduler = new UiTaskScheduler(1, 8, Runnable::run);
+            try {
+                new PagedTableModel(new String[]{"Id"}, 10, 2, scheduler, "test-table")
+                        .setRows(new Object[][]{{1}, {2}, {3}});
+            } finally {
+                scheduler.shutdown();
+            }
+
+            recording.stop();
+            recording.dump(file);
+
+            Map<String, List<RecordedEvent>> byType = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().startsWith("com.library."))
+                    .collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+            assertEquals(EVENTS.stream().sorted().collect(Collectors.toList()),
+                    byType.keySet().stream().sorted().collect(Collectors.toList()));
+
+            RecordedEvent search = byType.get("com.library.BookSearch").get(0);
+            assertEquals("dune", search.getString("query"));
+            assertEquals(1, search.getInt("results"));
+            assertTrue(search.getBoolean("indexed"));
+
+            RecordedEvent issue = byType.get("com.library.LoanIssue").get(0);
+            assertEquals(loanId, issue.getInt("loanId"));
+            assertEquals(bookId, issue.getInt("bookId"));
+            assertEquals(7, issue.getInt("readerId"));
+            assertEquals("ISSUED", issue.getString("outcome"));
+
+            RecordedEvent returned = byType.get("com.library.LoanReturn").get(0);
+            assertEquals(loanId, returned.getInt("loanId"));
+            assertTrue(returned.getBoolean("returned"));
+
+            RecordedEvent fines = byType.get("com.library.FineGeneration").get(0);
+            assertEquals("generate", fines.getString("job"));
+            assertEquals(1, fines.getInt("finesWritten"));
+            assertTrue(fines.getBoolean("completed"));
+
+            List<RecordedEvent> logins = byType.get("com.library.Login");
+            assertEquals(2, logins.size());
+            assertTrue(logins.get(0).getBoolean("succeeded"));
+            assertEquals(reader.getId(), logins.get(0).getInt("userId"));
+            assertFalse(logins.get(1).getBoolean("succeeded"));
+
+            RecordedEvent reload = byType.get("com.library.TableReload").get(0);
+            assertEquals("test-table", reload.getString("table"));
+            assertEquals(3, reload.getInt("rows"));
+            assertFalse(reload.getDuration().isNegative());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.library.service;
+
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.Writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Imports and exports a generated books table without holding it in memory. The row count
+ * defaults to one million; pass {@code -Dbenchmark.backupRows=10000000} for a full-size run.
+ * Run with {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+public class BackupBenchmark {
+
+    private static final long ROWS = Long.getLong("benchmark.backupRows", 1_000_000);
+
+    @Test
+    public void importAndExportStreamLargeTables() {
+        TestDatabase.init();
+        TestDatabase.clear("books");
+        BackupService backupService = new BackupService();
+        BackupService.TransferListener progress = (table, rows, rowsPerSecond) ->
+                System.out.printf("  %s: %,d rows, %,.0f rows/s%n", table, rows, rowsPerSecond);
+
+        try {
+            BackupService.TransferResult imported = backupService.importTable(BackupService.Table.BOOKS,
+                    BackupFormat.CSV, new GeneratedBooks(ROWS), progress);
+            System.out.println("Import: " + imported);
+            assertTrue(imported.isCompleted(), imported.toString());
+            assertEquals(ROWS, imported.getRows());
+
+            for (BackupFormat format : BackupFormat.values()) {
+                CountingWriter out = new CountingWriter();
+                BackupService.TransferResult exported = backupService.exportTable(BackupService.Table.BOOKS,
+                        format, out, progress);
+                System.out.println("Export " + format + ": " + exported + ", " + out.chars / (1 << 20) + " MiB");
+                assertTrue(exported.isCompleted(), exported.toString());
+                assertEquals(ROWS, exported.getRows());
+            }
+        } finally {
+            TestDatabase.clear("books");
+            CatalogCache.getInstance().invalidateAll();
+            StatsService.getInstance().invalidate();
+        }
+    }
+
+    /**
+     * CSV for {@code rows} books, generated as it is read.
+     */
+    private static final class GeneratedBooks extends Reader {
+        private final long rows;
+        private long next;
+        private String pending = "isbn,title,author,category,publisher,published_date,total_copies,available_copies\n";
+        private int position;
+
+        private GeneratedBooks(long rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int written = 0;
+            while (written < length) {
+                if (position == pending.length()) {
+                    if (next == rows) break;
+                    next++;
+                    pending = String.format("%013d,\"Title %d, volume %d\",Author %d,Category %d,Publisher,2020-01-01,3,2%n",
+                            next, next, next % 7, next % 5000, next % 12);
+                    position = 0;
+                }
+                int n = Math.min(length - written, pending.length() - position);
+                pending.getChars(position, position + n, buffer, offset + written);
+                position += n;
+                written += n;
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class CountingWriter extends Writer {
+        private long chars;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            chars += length;
+        }
+
+        @Override
+        public void write(String s) {
+            chars += s.length();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.model.Reader;
+import com.library.util.DatabaseConnection;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackupServiceTest {
+
+    private final BackupService backupService = new BackupService();
+    private final BookService bookService = new BookService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void clearTables() {
+        TestDatabase.clear("fines", "loans", "books", "users");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void csvAndJsonLinesRoundTripAwkwardValues() {
+        bookService.add(new Book("111", "Commas, \"quotes\"\nand a second line", "Zoë Ångström", null,
+                LocalDate.of(2001, 2, 3), "Fiction", 3, 2));
+        bookService.add(new Book("222", "Back\\slash\ttab", "", "Plain", null, "Science", 1, 1));
+        List<String> before = dump("books");
+
+        for (BackupFormat format : BackupFormat.values()) {
+            StringWriter out = new StringWriter();
+            BackupService.TransferResult exported = backupService.exportTable(BackupService.Table.BOOKS, format, out, null);
+            assertTrue(exported.isCompleted(), format + ": " + exported);
+            assertEquals(2, exported.getRows());
+
+            TestDatabase.clear("books");
+            BackupService.TransferResult imported = backupService.importTable(BackupService.Table.BOOKS, format,
+                    new StringReader(out.toString()), null);
+            assertTrue(imported.isCompleted(), format + ": " + imported);
+            assertEquals(2, imported.getRows());
+            assertEquals(before, dump("books"), format.toString());
+        }
+    }
+
+    @Test
+    public void exportAllThenImportAllRestoresEveryTable(@TempDir Path dir) throws SQLException {
+        new UserService().add(new Reader("ann", "pw", "Ann"));
+        bookService.add(new Book("111", "Title", "Author", "Pub", null, "Fiction", 1, 0));
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("INSERT INTO loans (id, book_id, reader_id, issue_date, due_date, status) " +
+                    "VALUES (7, 1, 1, DATE '2024-01-01', DATE '2024-01-15', 'ISSUED')");
+            st.execute("INSERT INTO fines (loan_id, reader_id, amount, status, created_date) " +
+                    "VALUES (7, 1, 12.50, 'UNPAID', DATE '2024-02-01')");
+        }
+        String[] tables = {"users", "books", "loans", "fines"};
+        List<List<String>> before = new ArrayList<>();
+        for (String table : tables) before.add(dump(table));
+
+        List<BackupService.TransferResult> exported = backupService.exportAll(dir, BackupFormat.JSONL, null);
+        assertEquals(4, exported.size());
+        exported.forEach(r -> assertTrue(r.isCompleted(), r.toString()));
+
+        TestDatabase.clear("fines", "loans", "books", "users");
+        List<BackupService.TransferResult> imported = backupService.importAll(dir, BackupFormat.JSONL, null);
+        assertEquals(4, imported.size());
+        imported.forEach(r -> assertTrue(r.isCompleted(), r.toString()));
+
+        for (int i = 0; i < tables.length; i++) {
+            assertEquals(before.get(i), dump(tables[i]), tables[i]);
+        }
+    }
+
+    @Test
+    public void malformedInputRollsBackTheBatchInProgress() {
+        String csv = "id,isbn,title\n1,111,One\n2,222,\"Unterminated\n";
+        BackupService.TransferResult result = backupService.importTable(BackupService.Table.BOOKS, BackupFormat.CSV,
+                new StringReader(csv), null);
+
+        assertFalse(result.isCompleted());
+        assertNotNull(result.getFailure());
+        assertEquals(0, result.getRows());
+        assertTrue(dump("books").isEmpty());
+    }
+
+    @Test
+    public void badUnicodeEscapeFailsTheImportWithItsLine() {
+        String json = "{\"id\":1,\"isbn\":\"111\",\"title\":\"One\"}\n" +
+                "{\"id\":2,\"isbn\":\"222\",\"title\":\"T\\u00zzwo\"}\n";
+        BackupService.TransferResult result = backupService.importTable(BackupService.Table.BOOKS,
+                BackupFormat.JSONL, new StringReader(json), null);
+
+        assertFalse(result.isCompleted());
+        assertTrue(result.getFailure() instanceof IOException, String.valueOf(result.getFailure()));
+        assertTrue(result.getFailure().getMessage().contains("on line 2"), result.getFailure().getMessage());
+        assertTrue(dump("books").isEmpty());
+    }
+
+    private static List<String> dump(String table) {
+        List<String> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM " + table + " ORDER BY id")) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                String[] values = new String[columns];
+                for (int i = 0; i < columns; i++) values[i] = rs.getString(i + 1);
+                rows.add(Arrays.toString(values));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return rows;
+    }
+}
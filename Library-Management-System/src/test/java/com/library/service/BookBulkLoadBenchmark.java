@@ -0,0 +1,64 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares {@link BookService#addAll(Iterable)} with one {@link BookService#add(Book)} call per
+ * book, then loads the same list again to measure the update path. Run with
+ * {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+public class BookBulkLoadBenchmark {
+
+    private static final int BULK_BOOKS = 200_000;
+    private static final int SINGLE_BOOKS = 5_000;
+
+    @Test
+    public void bulkLoadOutpacesSingleInserts() {
+        TestDatabase.init();
+        TestDatabase.clear("books");
+        BookService bookService = new BookService();
+
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < SINGLE_BOOKS; i++) {
+                assertTrue(bookService.add(book("single-", i)));
+            }
+            double singleRate = SINGLE_BOOKS * 1e9 / (System.nanoTime() - start);
+
+            List<Book> books = new ArrayList<>(BULK_BOOKS);
+            for (int i = 0; i < BULK_BOOKS; i++) books.add(book("bulk-", i));
+            BookBulkLoader.Result inserted = bookService.addAll(books);
+
+            for (Book book : books) book.setTotalCopies(book.getTotalCopies() + 1);
+            BookBulkLoader.Result updated = bookService.addAll(books);
+
+            System.out.printf("add():    %,.0f books/s%n", singleRate);
+            System.out.println("insert:   " + inserted);
+            System.out.println("update:   " + updated);
+
+            assertTrue(inserted.isCompleted() && updated.isCompleted());
+            assertEquals(BULK_BOOKS, inserted.getInserted());
+            assertEquals(BULK_BOOKS, updated.getUpdated());
+            assertTrue(inserted.getRowsPerSecond() > singleRate,
+                    "bulk load should beat single inserts: " + inserted.getRowsPerSecond() + " vs " + singleRate);
+        } finally {
+            TestDatabase.clear("books");
+            CatalogCache.getInstance().invalidateAll();
+            StatsService.getInstance().invalidate();
+        }
+    }
+
+    private static Book book(String prefix, int i) {
+        return new Book(prefix + i, "Title " + i, "Author " + (i % 5000), "Publisher " + (i % 40),
+                null, "Category " + (i % 12), 2, 2);
+    }
+}
@@ -0,0 +1,123 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookBulkLoaderTest {
+
+    private final BookService bookService = new BookService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void clearBooks() {
+        TestDatabase.clear("books");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void insertsNewBooksInBatchesAndAssignsTheirIds() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 1; i <= 1234; i++) {
+            books.add(new Book("isbn-" + i, "Title " + i, "Author", "Pub", null, "Fiction", 2, 2));
+        }
+
+        BookBulkLoader.Result result = bookService.addAll(books);
+
+        assertTrue(result.isCompleted(), result.toString());
+        assertEquals(1234, result.getInserted());
+        assertTrue(result.getErrors().isEmpty(), result.getErrors().toString());
+        assertEquals(1234, bookService.countAll());
+        for (Book book : Arrays.asList(books.get(0), books.get(700), books.get(1233))) {
+            assertTrue(book.getBookId() > 0);
+            assertEquals(book.getIsbn(), bookService.findById(book.getBookId()).getIsbn());
+        }
+    }
+
+    @Test
+    public void upsertsOnIsbnAndReportsBadRowsWithoutStopping() {
+        Book onLoan = new Book("111", "Old title", "A", "P", null, "Fiction", 3, 1);
+        Book shelved = new Book("222", "Shelved", "B", "P", null, "Science", 5, 5);
+        bookService.add(onLoan);
+        bookService.add(shelved);
+
+        BookBulkLoader.Result result = bookService.addAll(Arrays.asList(
+                new Book("111", "Too few copies", "A", "P", null, "Fiction", 1, 1),
+                new Book("222", "Shelved, 2nd edition", "B", "P", LocalDate.of(2020, 5, 1), "Science", 8, 8),
+                new Book("333", "New", "C", "P", null, "History", 1, 1),
+                new Book("", "No ISBN", "D", "P", null, "History", 1, 1),
+                new Book("444", "Bad counts", "E", "P", null, "History", 1, 4),
+                new Book("333", "Duplicate", "C", "P", null, "History", 1, 1),
+                null));
+
+        assertTrue(result.isCompleted());
+        assertEquals(7, result.getRowsRead());
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        List<Integer> failedRows = new ArrayList<>();
+        result.getErrors().forEach(e -> failedRows.add(e.getRow()));
+        assertEquals(Arrays.asList(1, 4, 5, 6, 7), failedRows);
+        assertTrue(result.getErrors().get(0).getMessage().contains("2 copies on loan"));
+
+        Book updated = bookService.findByISBN("222");
+        assertEquals(shelved.getBookId(), updated.getBookId());
+        assertEquals("Shelved, 2nd edition", updated.getTitle());
+        assertEquals(8, updated.getTotalCopies());
+        assertEquals(8, updated.getAvailableCopies());
+        assertEquals("Old title", bookService.findByISBN("111").getTitle());
+        assertNotNull(bookService.findByISBN("333"));
+        assertEquals(3, bookService.countAll());
+    }
+
+    @Test
+    public void csvRowsThatDoNotParseAreReported() {
+        String csv = "isbn,title,author,total_copies,available_copies,published_date\n" +
+                "111,\"Dune, Part One\",Frank Herbert,2,1,1965-08-01\n" +
+                "222,Cosmos,Carl Sagan,two,1,\n" +
+                "333,Contact,Carl Sagan,,,1985-13-01\n" +
+                "444,Solaris,Stanislaw Lem,,,\n" +
+                "555,Ubik\n" +
+                "666,Hyperion,Dan Simmons,1,1,,extra\n" +
+                "777,Neuromancer,William Gibson,1,1,\n";
+
+        BookBulkLoader.Result result = bookService.addAllFromCsv(new StringReader(csv));
+
+        assertTrue(result.isCompleted());
+        assertEquals(3, result.getInserted());
+        assertEquals(4, result.getErrors().size());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertEquals(3, result.getErrors().get(1).getRow());
+        assertEquals(5, result.getErrors().get(2).getRow());
+        assertEquals(6, result.getErrors().get(3).getRow());
+        assertNull(bookService.findByISBN("555"));
+        assertEquals("Neuromancer", bookService.findByISBN("777").getTitle());
+
+        Book dune = bookService.findByISBN("111");
+        assertEquals("Dune, Part One", dune.getTitle());
+        assertEquals(LocalDate.of(1965, 8, 1), dune.getPublicationDate());
+        assertEquals(1, dune.getAvailableCopies());
+        assertEquals(1, bookService.findByISBN("444").getTotalCopies());
+    }
+}
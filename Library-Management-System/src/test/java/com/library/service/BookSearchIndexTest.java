@@ -0,0 +1,145 @@
+package com.library.service;
+
+import com.library.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    public void buildIndex() {
+        index = new BookSearchIndex();
+        index.rebuild(List.of(
+                book(1, "978-0261103573", "The Fellowship of the Ring", "J.R.R. Tolkien", "Fiction"),
+                book(2, "978-0553293357", "Foundation", "Isaac Asimov", "Science Fiction"),
+                book(3, "978-0140449136", "Crime and Punishment", "Fyodor Dostoevsky", "Fiction"),
+                book(4, "978-2070360024", "L'Étranger", "Albert Camus", "Fiction"),
+                book(5, "978-0000000001", "Tolkien: A Biography", "Humphrey Carpenter", "History")
+        ));
+    }
+
+    @Test
+    public void matchesPrefixesCaseInsensitively() {
+        assertEquals(List.of(1), ids(index.search("FELLOW", 10)));
+        assertEquals(List.of(1), ids(index.search("tolk ring", 10)));
+        assertTrue(index.search("tolkien dune", 10).isEmpty());
+    }
+
+    @Test
+    public void foldsAccentsAndSeparators() {
+        assertEquals(List.of(4), ids(index.search("etranger", 10)));
+        assertEquals(List.of(2), ids(index.search("9780553", 10)));
+        assertEquals(List.of(2), ids(index.search("978-0553293357", 10)));
+    }
+
+    @Test
+    public void ranksTitleMatchesAboveAuthorMatches() {
+        assertEquals(List.of(5, 1), ids(index.search("tolkien", 10)));
+        assertEquals(List.of(5), ids(index.search("tolkien", 1)));
+    }
+
+    @Test
+    public void followsUpdatesAndDeletes() {
+        index.put(book(2, "978-0553293357", "Foundation and Empire", "Isaac Asimov", "Science Fiction"));
+        assertEquals(List.of(2), ids(index.search("empire", 10)));
+
+        index.remove(3);
+        assertTrue(index.search("punishment", 10).isEmpty());
+
+        index.adjustAvailableCopies(1, -1);
+        assertEquals(0, index.search("fellowship", 10).get(0).getAvailableCopies());
+    }
+
+    @Test
+    public void prefixesMatchEveryTermTheyExpandTo() {
+        List<Book> catalog = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            catalog.add(book(100 + i, "isbn-" + i, "Volume" + i, "Editor", "Reference"));
+        }
+        index.rebuild(catalog);
+        assertEquals(200, index.search("volume", 500).size());
+        assertEquals(List.of(299), ids(index.search("volume199", 10)));
+        assertEquals(200, index.search("reference vol", 500).size());
+        assertEquals(List.of(299), ids(index.search("vol volume199", 10)));
+    }
+
+    @Test
+    public void shortPrefixesMatchEveryTermTheyStart() {
+        List<Book> catalog = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            catalog.add(book(100 + i, "isbn-" + i, "Volume" + i, "Editor", "Reference"));
+        }
+        catalog.add(book(20_000, "rare", "Rare Volumex", "Editor", "Reference"));
+        index.rebuild(catalog);
+
+        assertEquals(5_001, index.search("vol", 10_000).size());
+        assertEquals(List.of(20_000), ids(index.search("rare vol", 10)));
+
+        index.put(book(20_001, "new", "Volumetric Atlas", "Editor", "Reference"));
+        index.remove(100);
+        List<Integer> found = ids(index.search("vol", 10_000));
+        assertEquals(5_001, found.size());
+        assertTrue(found.contains(20_001));
+        assertFalse(found.contains(100));
+        assertEquals(List.of(20_001), ids(index.search("atlas v", 10)));
+    }
+
+    @Test
+    public void prefixesFollowTermsAddedAndRemovedOneByOne() {
+        index.rebuild(List.of());
+        for (int i = 0; i < 100; i++) {
+            index.put(book(100 + i, "isbn-" + i, "Chapter" + i, "Editor", "Reference"));
+        }
+        assertEquals(100, index.search("chap", 500).size());
+        assertEquals(List.of(150), ids(index.search("chapter50", 10)));
+
+        for (int i = 0; i < 99; i++) {
+            index.remove(100 + i);
+        }
+        assertEquals(List.of(199), ids(index.search("chap", 10)));
+        index.remove(199);
+        assertTrue(index.search("c", 10).isEmpty());
+    }
+
+    @Test
+    public void fuzzySearchToleratesTypos() {
+        assertTrue(index.search("tolkein", 10).isEmpty());
+        assertEquals(List.of(5, 1), ids(index.fuzzySearch("tolkein", 10)));
+        assertEquals(List.of(3), ids(index.fuzzySearch("crime punishmnet", 10)));
+        assertEquals(List.of(3), ids(index.fuzzySearch("dostoyevsky", 10)));
+        // Exact matches still rank above typo matches
+        assertEquals(List.of(2), ids(index.fuzzySearch("foundation", 1)));
+    }
+
+    @Test
+    public void fuzzySearchKeepsShortTokensExact() {
+        assertEquals(List.of(1), ids(index.fuzzySearch("rinx", 10)));
+        assertTrue(index.fuzzySearch("tha", 10).isEmpty());
+    }
+
+    @Test
+    public void fuzzySearchFollowsUpdates() {
+        index.put(book(2, "978-0553293357", "Foundation and Empire", "Isaac Asimov", "Science Fiction"));
+        assertEquals(List.of(2), ids(index.fuzzySearch("empyre", 10)));
+
+        index.remove(2);
+        assertTrue(index.fuzzySearch("empyre", 10).isEmpty());
+    }
+
+    private static Book book(int id, String isbn, String title, String author, String category) {
+        Book book = new Book(isbn, title, author, "Publisher", null, category, 1, 1);
+        book.setBookId(id);
+        return book;
+    }
+
+    private static List<Integer> ids(List<Book> books) {
+        return books.stream().map(Book::getBookId).toList();
+    }
+}
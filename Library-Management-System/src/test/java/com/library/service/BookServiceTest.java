@@ -0,0 +1,350 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.DatabaseConnection;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookServiceTest {
+
+    private final BookService bookService = new BookService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void clearBooks() {
+        TestDatabase.clear("books");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void addAssignsIdAndLookupsFindTheBook() {
+        Book book = new Book("978-0261103573", "The Fellowship of the Ring", "J.R.R. Tolkien", "Allen & Unwin",
+                LocalDate.of(1954, 7, 29), "Fiction", 3, 3);
+        assertTrue(bookService.add(book));
+        assertTrue(book.getBookId() > 0);
+
+        assertEquals("The Fellowship of the Ring", bookService.findByISBN("978-0261103573").getTitle());
+        assertEquals("978-0261103573", bookService.findById(book.getBookId()).getIsbn());
+        assertEquals(book.getBookId(), bookService.findByTitle("The Fellowship of the Ring").getBookId());
+        assertNull(bookService.findByISBN("missing"));
+    }
+
+    @Test
+    public void updateKeepsCirculationChangesAndRefusesStaleEdits() {
+        Book book = new Book("555", "Middlemarch", "George Eliot", "Blackwood", null, "Fiction", 3, 3);
+        bookService.add(book);
+        Book original = bookService.findById(book.getBookId());
+        bookService.decrementAvailableCopies(book.getBookId());
+
+        // One more copy bought while a copy was out: the shelf count moves by one, not back to 4
+        Book edited = new Book(original);
+        edited.setTitle("Middlemarch (Penguin)");
+        edited.setTotalCopies(4);
+        edited.setAvailableCopies(4);
+        UpdateResult<Book> saved = bookService.update(original, edited);
+        assertEquals(UpdateResult.Outcome.UPDATED, saved.getOutcome());
+        assertEquals(3, saved.getCurrent().getAvailableCopies());
+        assertEquals(original.getVersion() + 1, saved.getCurrent().getVersion());
+        assertEquals(3, bookService.findById(book.getBookId()).getAvailableCopies());
+
+        Book stale = new Book(original);
+        stale.setAuthor("Mary Ann Evans");
+        UpdateResult<Book> refused = bookService.update(original, stale);
+        assertEquals(UpdateResult.Outcome.CONFLICT, refused.getOutcome());
+        assertEquals("Middlemarch (Penguin)", refused.getCurrent().getTitle());
+        assertEquals("George Eliot", bookService.findById(book.getBookId()).getAuthor());
+
+        assertEquals(UpdateResult.Outcome.UNCHANGED,
+                bookService.update(saved.getCurrent(), new Book(saved.getCurrent())).getOutcome());
+    }
+
+    @Test
+    public void updateRefusesToTakeCopiesThatAreOnLoan() {
+        Book book = new Book("666", "Ivanhoe", "Walter Scott", "Constable", null, "Fiction", 2, 2);
+        bookService.add(book);
+        Book original = bookService.findById(book.getBookId());
+        bookService.decrementAvailableCopies(book.getBookId());
+        bookService.decrementAvailableCopies(book.getBookId());
+
+        Book edited = new Book(original);
+        edited.setTotalCopies(1);
+        edited.setAvailableCopies(1);
+        UpdateResult<Book> refused = bookService.update(original, edited);
+        assertEquals(UpdateResult.Outcome.INVALID_COPIES, refused.getOutcome());
+        assertEquals(0, refused.getCurrent().getAvailableCopies());
+        assertEquals(2, bookService.findById(book.getBookId()).getTotalCopies());
+    }
+
+    @Test
+    public void aConflictRefreshesTheCachedBook() throws SQLException {
+        Book book = new Book("777", "Emma", "Jane Austen", "John Murray", null, "Fiction", 1, 1);
+        bookService.add(book);
+        Book original = bookService.findById(book.getBookId());
+        assertTrue(bookService.search("novel").isEmpty());
+
+        // Saved from another workstation, so this one's cache still holds the old row
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE books SET title = 'Emma: A Novel', row_version = row_version + 1 WHERE id = ?")) {
+            ps.setInt(1, book.getBookId());
+            ps.executeUpdate();
+        }
+        assertEquals("Emma", bookService.findById(book.getBookId()).getTitle());
+
+        Book edited = new Book(original);
+        edited.setAuthor("J. Austen");
+        assertEquals(UpdateResult.Outcome.CONFLICT, bookService.update(original, edited).getOutcome());
+        assertEquals("Emma: A Novel", bookService.findById(book.getBookId()).getTitle());
+        assertEquals(book.getBookId(), bookService.search("novel").get(0).getBookId());
+    }
+
+    @Test
+    public void editsRacingIssuesLeaveTheCachedCopiesRight() throws Exception {
+        Book book = new Book("888", "Persuasion", "Jane Austen", "John Murray", null, "Fiction", 2000, 2000);
+        bookService.add(book);
+        int id = book.getBookId();
+        bookService.findAll();
+
+        // Each edit is the last change racing its issues, so nothing later repairs a stale row
+        for (int round = 0; round < 300; round++) {
+            Book original = bookService.findById(id);
+            Book edited = new Book(original);
+            edited.setAuthor(round % 2 == 0 ? "J. Austen" : "Jane Austen");
+            Thread issues = new Thread(() -> {
+                for (int i = 0; i < 3; i++) bookService.decrementAvailableCopies(id);
+            });
+            issues.start();
+            bookService.update(original, edited);
+            issues.join();
+
+            int stored = storedAvailableCopies(id);
+            assertEquals(stored, bookService.findById(id).getAvailableCopies(), "round " + round);
+            assertEquals(stored, bookService.search("persuasion").get(0).getAvailableCopies(),
+                    "search, round " + round);
+        }
+        assertEquals(1100, storedAvailableCopies(id));
+    }
+
+    private static int storedAvailableCopies(int id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT available_copies FROM books WHERE id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void listingAndCountingQueriesCloseTheirResources() {
+        bookService.add(new Book("111", "Dune", "Frank Herbert", "Chilton", null, "Fiction", 2, 0));
+        bookService.add(new Book("222", "Cosmos", "Carl Sagan", "Random House", null, "Science", 1, 1));
+
+        assertEquals(2, bookService.findAll().size());
+        assertEquals(1, bookService.findAvailable().size());
+        assertEquals(1, bookService.findByCategory("science").size());
+        assertEquals(1, bookService.search("sagan").size());
+        assertEquals(2, bookService.countAll());
+        assertEquals(3, bookService.countTotalCopies());
+        assertEquals(1, bookService.countAvailable());
+    }
+
+    @Test
+    public void copiesNeverGoNegative() {
+        Book book = new Book("333", "Emma", "Jane Austen", "John Murray", null, "Romance", 1, 1);
+        bookService.add(book);
+
+        assertTrue(bookService.decrementAvailableCopies(book.getBookId()));
+        assertFalse(bookService.decrementAvailableCopies(book.getBookId()));
+        assertTrue(bookService.incrementAvailableCopies(book.getBookId()));
+        assertEquals(1, bookService.findById(book.getBookId()).getAvailableCopies());
+        assertTrue(bookService.deleteById(book.getBookId()));
+    }
+
+    @Test
+    public void writesGoThroughTheCatalogCache() {
+        CatalogCache cache = CatalogCache.getInstance();
+        Book book = new Book("444", "Persuasion", "Jane Austen", "John Murray", null, "Romance", 2, 2);
+        bookService.add(book);
+        assertEquals(1, bookService.findAll().size());
+        assertTrue(cache.isComplete());
+
+        long version = cache.getVersion();
+        bookService.decrementAvailableCopies(book.getBookId());
+        assertTrue(cache.getVersion() > version);
+        assertEquals(1, cache.findByIsbn("444").getAvailableCopies());
+
+        Book edited = bookService.findById(book.getBookId());
+        edited.setTitle("Persuasion (Annotated)");
+        bookService.update(bookService.findById(book.getBookId()), edited);
+        assertNull(cache.findByTitle("Persuasion"));
+        assertEquals(book.getBookId(), bookService.findByTitle("Persuasion (Annotated)").getBookId());
+
+        // Callers get copies; changing them must not corrupt the cache
+        bookService.findById(book.getBookId()).setAvailableCopies(99);
+        assertEquals(1, bookService.findById(book.getBookId()).getAvailableCopies());
+
+        bookService.deleteById(book.getBookId());
+        assertTrue(bookService.findAll().isEmpty());
+    }
+
+    @Test
+    public void cachedBooksExpireWithTheSnapshot() throws InterruptedException {
+        CatalogCache cache = new CatalogCache(50);
+        Book book = new Book("333", "Emma", "Jane Austen", "John Murray", null, "Romance", 1, 1);
+        book.setBookId(7);
+        cache.remember(book, cache.getVersion());
+        assertEquals("Emma", cache.findById(7).getTitle());
+        assertEquals(7, cache.findByIsbn("333").getBookId());
+
+        Thread.sleep(60);
+        // Another workstation may have changed the row since it was read
+        assertNull(cache.findById(7));
+        assertNull(cache.findByIsbn("333"));
+        assertNull(cache.findByTitle("Emma"));
+
+        cache.remember(book, cache.getVersion());
+        assertEquals(7, cache.findByTitle("Emma").getBookId());
+    }
+
+    @Test
+    public void rememberingARowIsNotAChange() {
+        CatalogCache cache = new CatalogCache(60_000);
+        int[] changes = {0};
+        cache.addChangeListener(new CatalogCache.ChangeListener() {
+            @Override
+            public void bookChanged(int bookId) {
+                changes[0]++;
+            }
+
+            @Override
+            public void allChanged() {
+                changes[0]++;
+            }
+        });
+
+        // A full load that started before the row was read must still install
+        long version = cache.getVersion();
+        Book book = new Book("555", "Sanditon", "Jane Austen", "John Murray", null, "Romance", 1, 1);
+        book.setBookId(9);
+        cache.remember(book, version);
+        assertEquals(version, cache.getVersion());
+        assertEquals(0, changes[0]);
+        assertEquals("Sanditon", cache.findById(9).getTitle());
+        assertTrue(cache.loadAll(List.of(book), version, null));
+    }
+
+    @Test
+    public void rowsReadWhileAChangeIsUnderWayAreNotCachedAfterIt() {
+        CatalogCache cache = new CatalogCache(60_000);
+        Book book = new Book("666", "Lady Susan", "Jane Austen", "John Murray", null, "Romance", 2, 2);
+        book.setBookId(10);
+
+        // The version is read after the issue began but the row before it committed; the
+        // delta then finds nothing cached to adjust
+        cache.beginChange();
+        long version = cache.getVersion();
+        cache.adjustAvailableCopies(10, -1);
+        cache.endChange();
+        assertFalse(cache.remember(book, version));
+        assertNull(cache.findById(10));
+    }
+
+    @Test
+    public void rowsReadWhileACopyMovesAreNotCachedOverTheDelta() {
+        CatalogCache cache = new CatalogCache(60_000);
+        Book book = new Book("444", "Persuasion", "Jane Austen", "John Murray", null, "Romance", 2, 2);
+        book.setBookId(8);
+        cache.loadAll(List.of(book), cache.getVersion(), null);
+
+        int[] seen = {-1};
+        cache.addChangeListener(new CatalogCache.ChangeListener() {
+            @Override
+            public void bookChanged(int bookId) {
+                seen[0] = cache.findById(bookId).getAvailableCopies();
+            }
+
+            @Override
+            public void allChanged() {
+            }
+        });
+
+        // A refresh reads its version, then the issue commits and the refresh reads the new row
+        cache.beginChange();
+        long version = cache.getVersion();
+        Book committed = new Book(book);
+        committed.setAvailableCopies(1);
+        assertFalse(cache.loadAll(List.of(committed), version, null));
+        cache.remember(committed, version);
+        cache.adjustAvailableCopies(8, -1);
+        cache.endChange();
+
+        assertEquals(1, cache.findById(8).getAvailableCopies());
+        assertEquals(1, seen[0], "listeners hear about the change once it is in the cache");
+    }
+
+    @Test
+    public void anExpiredCatalogIsNotAnInvalidatedOne() throws InterruptedException {
+        CatalogCache cache = new CatalogCache(50);
+        boolean[] indexed = {false};
+        assertTrue(cache.loadAll(List.of(), cache.getVersion(), () -> indexed[0] = true));
+        assertTrue(indexed[0]);
+        assertFalse(cache.loadAll(List.of(), cache.getVersion() - 1, () -> fail("stale snapshot installed")));
+
+        Thread.sleep(60);
+        assertFalse(cache.isComplete());
+        assertTrue(cache.isExpired(), "searches may keep the index while it reloads");
+        cache.invalidateAll();
+        assertFalse(cache.isExpired());
+    }
+
+    @Test
+    public void findPageWalksTheCatalogByKey() {
+        for (int i = 1; i <= 7; i++) {
+            bookService.add(new Book("p" + i, "Book " + i, "Author", "Publisher", null,
+                    i % 2 == 0 ? "Science" : "Fiction", 1, i <= 3 ? 0 : 1));
+        }
+
+        List<Book> first = bookService.findPage(0, 3, null, false);
+        List<Book> second = bookService.findPage(first.get(2).getBookId(), 3, null, false);
+        List<Book> third = bookService.findPage(second.get(2).getBookId(), 3, null, false);
+        assertEquals(List.of("p1", "p2", "p3"), isbns(first));
+        assertEquals(List.of("p4", "p5", "p6"), isbns(second));
+        assertEquals(List.of("p7"), isbns(third));
+
+        assertEquals(List.of("p2", "p4", "p6"), isbns(bookService.findPage(0, 10, "science", false)));
+        assertEquals(List.of("p4", "p6"), isbns(bookService.findPage(0, 10, "Science", true)));
+        assertEquals(7, bookService.findPage(0, 10, "All", false).size());
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        List<String> isbns = new ArrayList<>();
+        for (Book book : books) isbns.add(book.getIsbn());
+        return isbns;
+    }
+}
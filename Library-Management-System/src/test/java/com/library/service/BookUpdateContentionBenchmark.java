@@ -0,0 +1,269 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.DatabaseConnection;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Librarians editing a handful of popular books while the desks issue and return copies of the
+ * same books, with {@link BookService#update(Book, Book)} against locking each row for the whole
+ * edit. Run with {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+public class BookUpdateContentionBenchmark {
+
+    private static final int HOT_BOOKS = 4;
+    private static final int COPIES = 1_000;
+    private static final int EDITORS = 4;
+    private static final int DESKS = 4;
+    private static final long RUN_MS = 3_000;
+
+    private final BookService bookService = new BookService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @Test
+    public void optimisticEditsKeepCirculationMoving() throws Exception {
+        try {
+            Result pessimistic = run(new Pessimistic());
+            Result optimistic = run(new Optimistic());
+
+            System.out.println("pessimistic: " + pessimistic);
+            System.out.println("optimistic:  " + optimistic);
+
+            assertEquals(0, pessimistic.lostCopies);
+            assertEquals(0, optimistic.lostCopies, "edits must not overwrite issues and returns");
+            assertTrue(optimistic.edits > 0);
+            assertTrue(optimistic.circulationPerSecond() > pessimistic.circulationPerSecond(),
+                    "desks should not wait on edits: " + optimistic + " vs " + pessimistic);
+        } finally {
+            TestDatabase.clear("books");
+            CatalogCache.getInstance().invalidateAll();
+            StatsService.getInstance().invalidate();
+        }
+    }
+
+    private Result run(Locking locking) throws InterruptedException {
+        TestDatabase.clear("books");
+        CatalogCache.getInstance().invalidateAll();
+        int[] ids = new int[HOT_BOOKS];
+        for (int i = 0; i < HOT_BOOKS; i++) {
+            Book book = new Book("hot-" + i, "Popular " + i, "Author " + i, "Publisher", null, "Fiction", COPIES, COPIES);
+            bookService.add(book);
+            ids[i] = book.getBookId();
+        }
+
+        Result result = new Result(locking.getClass().getSimpleName());
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(EDITORS + DESKS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < EDITORS + DESKS; t++) {
+            boolean editor = t < EDITORS;
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (running.get()) {
+                        int id = ids[random.nextInt(HOT_BOOKS)];
+                        if (editor) {
+                            result.conflicts.addAndGet(locking.edit(id, "Edition " + random.nextInt(1_000)));
+                            result.editCount.incrementAndGet();
+                        } else if (locking.take(id)) {
+                            locking.giveBack(id);
+                            result.circulationCount.incrementAndGet();
+                        }
+                    }
+                } catch (SQLException e) {
+                    result.failures.incrementAndGet();
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            }, "library-contention-" + t));
+        }
+
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        Thread.sleep(RUN_MS);
+        running.set(false);
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        result.seconds = (System.nanoTime() - start) / 1e9;
+        result.edits = result.editCount.get();
+
+        CatalogCache.getInstance().invalidateAll();
+        for (int id : ids) {
+            Book book = bookService.findById(id);
+            result.lostCopies += book.getTotalCopies() - book.getAvailableCopies();
+        }
+        assertEquals(0, result.failures.get());
+        return result;
+    }
+
+    private interface Locking {
+        /** Retitles the book; returns how many attempts conflicted first. */
+        int edit(int bookId, String title) throws SQLException;
+
+        boolean take(int bookId) throws SQLException;
+
+        void giveBack(int bookId) throws SQLException;
+    }
+
+    /**
+     * Row versions: an edit writes only the title and retries if the book moved on, and the
+     * desks adjust copies without waiting for anyone.
+     */
+    private final class Optimistic implements Locking {
+        @Override
+        public int edit(int bookId, String title) throws SQLException {
+            int conflicts = 0;
+            Book original = bookService.findById(bookId);
+            while (true) {
+                Book edited = new Book(original);
+                edited.setTitle(title);
+                UpdateResult<Book> result = bookService.update(original, edited);
+                if (result.isUpdated()) return conflicts;
+                if (result.getOutcome() != UpdateResult.Outcome.CONFLICT) {
+                    throw new SQLException("Edit failed: " + result);
+                }
+                conflicts++;
+                original = result.getCurrent();
+            }
+        }
+
+        @Override
+        public boolean take(int bookId) {
+            return bookService.decrementAvailableCopies(bookId);
+        }
+
+        @Override
+        public void giveBack(int bookId) {
+            bookService.incrementAvailableCopies(bookId);
+        }
+    }
+
+    /**
+     * What whole-row writes force: every change locks the row, reads it and writes it back, so
+     * the desks queue behind each edit.
+     */
+    private static final class Pessimistic implements Locking {
+        @Override
+        public int edit(int bookId, String title) throws SQLException {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement lock = conn.prepareStatement(
+                        "SELECT isbn, author, publisher, published_date, category, total_copies, available_copies " +
+                                "FROM books WHERE id = ? FOR UPDATE");
+                     PreparedStatement write = conn.prepareStatement(
+                             "UPDATE books SET isbn = ?, title = ?, author = ?, publisher = ?, published_date = ?, " +
+                                     "category = ?, total_copies = ?, available_copies = ? WHERE id = ?")) {
+                    lock.setInt(1, bookId);
+                    try (ResultSet rs = lock.executeQuery()) {
+                        rs.next();
+                        write.setString(1, rs.getString("isbn"));
+                        write.setString(2, title);
+                        write.setString(3, rs.getString("author"));
+                        write.setString(4, rs.getString("publisher"));
+                        write.setDate(5, rs.getDate("published_date"));
+                        write.setString(6, rs.getString("category"));
+                        write.setInt(7, rs.getInt("total_copies"));
+                        write.setInt(8, rs.getInt("available_copies"));
+                        write.setInt(9, bookId);
+                    }
+                    write.executeUpdate();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean take(int bookId) throws SQLException {
+            return adjust(bookId, -1);
+        }
+
+        @Override
+        public void giveBack(int bookId) throws SQLException {
+            adjust(bookId, 1);
+        }
+
+        private boolean adjust(int bookId, int delta) throws SQLException {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement lock = conn.prepareStatement(
+                        "SELECT available_copies FROM books WHERE id = ? FOR UPDATE");
+                     PreparedStatement write = conn.prepareStatement(
+                             "UPDATE books SET available_copies = ? WHERE id = ?")) {
+                    lock.setInt(1, bookId);
+                    int available;
+                    try (ResultSet rs = lock.executeQuery()) {
+                        rs.next();
+                        available = rs.getInt(1);
+                    }
+                    if (available + delta < 0) {
+                        conn.rollback();
+                        return false;
+                    }
+                    write.setInt(1, available + delta);
+                    write.setInt(2, bookId);
+                    write.executeUpdate();
+                    conn.commit();
+                    return true;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    private static final class Result {
+        private final String locking;
+        private final AtomicLong editCount = new AtomicLong();
+        private final AtomicLong circulationCount = new AtomicLong();
+        private final AtomicLong conflicts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private long edits;
+        private long lostCopies;
+        private double seconds;
+
+        private Result(String locking) {
+            this.locking = locking;
+        }
+
+        private double circulationPerSecond() {
+            return circulationCount.get() / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %,.0f edits/s (%d conflicts retried), %,.0f issue+return pairs/s, %d copies lost",
+                    locking, edits / seconds, conflicts.get(), circulationPerSecond(), lostCopies);
+        }
+    }
+}
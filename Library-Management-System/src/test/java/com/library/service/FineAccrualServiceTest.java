@@ -0,0 +1,102 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.model.Loan;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FineAccrualServiceTest {
+
+    private static final int READER_ID = 11;
+
+    private final FineAccrualService accrualService = new FineAccrualService();
+    private final LoanService loanService = new LoanService();
+    private final FineService fineService = new FineService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+        FineAccrualService.ensureLedger();
+    }
+
+    @BeforeEach
+    public void clearTables() {
+        TestDatabase.clear("fine_accruals", "fines", "loans", "books");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void accruesOncePerDayAcrossTierBoundaries() {
+        LocalDate due = LocalDate.now().minusDays(3);
+        int bookId = addBook("555");
+        loanService.issueBook(bookId, READER_ID, due.minusDays(14), due);
+
+        assertEquals(1, accrualService.accrueThrough(due.plusDays(3)).getLoansAccrued());
+        assertEquals(300, accruedFine(), 0.001);
+        assertEquals(0, accrualService.accrueThrough(due.plusDays(3)).getLoansAccrued(), "already current");
+
+        accrualService.accrueThrough(due.plusDays(4));
+        accrualService.accrueThrough(due.plusDays(5));
+        accrualService.accrueThrough(due.plusDays(6));
+        assertEquals(5 * 100 + 200, accruedFine(), 0.001);
+    }
+
+    @Test
+    public void catchUpChargesMissedDaysAtTheirTierRates() {
+        LocalDate due = LocalDate.now().minusDays(12);
+        int bookId = addBook("666");
+        loanService.issueBook(bookId, READER_ID, due.minusDays(14), due);
+
+        accrualService.accrueThrough(due.plusDays(2));
+        FineAccrualService.AccrualResult result = accrualService.accrueThrough(due.plusDays(12));
+
+        assertTrue(result.isCompleted());
+        assertEquals(10, result.getMaxDaysCaughtUp());
+        assertEquals(fineService.calculateFine(due, due.plusDays(12)), accruedFine(), 0.001);
+        assertEquals(5 * 100 + 5 * 200 + 2 * 500, accruedFine(), 0.001);
+    }
+
+    @Test
+    public void loansCarryTheLedgerAmountOnceCurrent() {
+        LocalDate due = LocalDate.now().minusDays(7);
+        int bookId = addBook("777");
+        loanService.issueBook(bookId, READER_ID, due.minusDays(14), due);
+
+        Loan beforeAccrual = loanService.findActiveLoansByReaderId(READER_ID).get(0);
+        assertNull(beforeAccrual.getFineAccruedThrough());
+        assertEquals(900, fineService.calculateFineForLoan(beforeAccrual), 0.001);
+
+        accrualService.catchUp();
+        Loan loan = loanService.findActiveLoansByReaderId(READER_ID).get(0);
+        assertEquals(LocalDate.now(), loan.getFineAccruedThrough());
+        assertEquals(900, loan.getAccruedFine(), 0.001);
+        assertEquals(900, fineService.calculateFineForLoan(loan), 0.001);
+    }
+
+    private double accruedFine() {
+        List<Loan> loans = loanService.findActiveLoansByReaderId(READER_ID);
+        assertEquals(1, loans.size());
+        return loans.get(0).getAccruedFine();
+    }
+
+    private int addBook(String isbn) {
+        Book book = new Book(isbn, "Book " + isbn, "Author", "Publisher", null, "Fiction", 1, 1);
+        new BookService().add(book);
+        return book.getBookId();
+    }
+}
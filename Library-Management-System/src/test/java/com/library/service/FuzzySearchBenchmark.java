@@ -0,0 +1,82 @@
+package com.library.service;
+
+import com.library.model.Book;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Typo queries against a synthetic 500k-title catalog. Run with {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+public class FuzzySearchBenchmark {
+
+    private static final int CATALOG_SIZE = 500_000;
+    private static final int WARMUP_QUERIES = 20_000;
+    private static final int MEASURED_QUERIES = 5_000;
+    private static final long P99_BUDGET_NANOS = 10_000_000;
+
+    @Test
+    public void fuzzySearchStaysUnderBudgetOnLargeCatalog() {
+        Random random = new Random(42);
+        List<Book> catalog = SyntheticCatalog.books(random, CATALOG_SIZE);
+
+        long buildStart = System.nanoTime();
+        BookSearchIndex index = new BookSearchIndex();
+        index.rebuild(catalog);
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            index.fuzzySearch(typoQuery(random, catalog), 20);
+        }
+
+        long[] nanos = new long[MEASURED_QUERIES];
+        int hits = 0;
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            String query = typoQuery(random, catalog);
+            long start = System.nanoTime();
+            List<Book> results = index.fuzzySearch(query, 20);
+            nanos[i] = System.nanoTime() - start;
+            if (!results.isEmpty()) hits++;
+        }
+        Arrays.sort(nanos);
+        long p50 = nanos[MEASURED_QUERIES / 2];
+        long p99 = nanos[MEASURED_QUERIES * 99 / 100];
+
+        System.out.printf("Fuzzy search over %,d books (index built in %,d ms): p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d/%d queries matched%n",
+                CATALOG_SIZE, buildMillis, p50 / 1e6, p99 / 1e6, nanos[MEASURED_QUERIES - 1] / 1e6, hits, MEASURED_QUERIES);
+
+        assertTrue(hits > MEASURED_QUERIES * 9 / 10, "typo queries should still find their book");
+        assertTrue(p99 < P99_BUDGET_NANOS, "p99 fuzzy search latency was " + p99 / 1_000_000.0 + " ms");
+    }
+
+    /**
+     * Two words of a random book's title, the longer one with a typo.
+     */
+    private static String typoQuery(Random random, List<Book> catalog) {
+        String[] words = catalog.get(random.nextInt(catalog.size())).getTitle().split(" ");
+        int a = random.nextInt(words.length);
+        int b = (a + 1) % words.length;
+        String first = words[a].length() >= words[b].length() ? words[a] : words[b];
+        String second = first == words[a] ? words[b] : words[a];
+        return typo(random, first) + " " + second;
+    }
+
+    private static String typo(Random random, String word) {
+        if (word.length() < 4) return word;
+        int at = 1 + random.nextInt(word.length() - 2);
+        switch (random.nextInt(3)) {
+            case 0: // swap adjacent letters
+                return word.substring(0, at) + word.charAt(at + 1) + word.charAt(at) + word.substring(at + 2);
+            case 1: // drop a letter
+                return word.substring(0, at) + word.substring(at + 1);
+            default: // wrong letter
+                return word.substring(0, at) + (char) ('a' + random.nextInt(26)) + word.substring(at + 1);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IssueServiceTest {
+
+    private static final int APPROVERS = 64;
+
+    private final IssueService issueService = new IssueService();
+    private final BookService bookService = new BookService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void clearTables() {
+        TestDatabase.clear("book_requests", "loans", "books");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void issuesOnceAndReportsWhyOtherwise() {
+        int bookId = addBook("900", 1);
+        int first = addRequest(bookId, 1, "ISSUE");
+        int second = addRequest(bookId, 2, "ISSUE");
+        int returnRequest = addRequest(bookId, 3, "RETURN");
+
+        assertEquals(IssueService.Outcome.ISSUED, issueService.issue(first, 99));
+        assertEquals(IssueService.Outcome.ALREADY_PROCESSED, issueService.issue(first, 99));
+        assertEquals(IssueService.Outcome.NO_COPIES_AVAILABLE, issueService.issue(second, 99));
+        assertEquals(IssueService.Outcome.NOT_AN_ISSUE_REQUEST, issueService.issue(returnRequest, 99));
+        assertEquals(IssueService.Outcome.REQUEST_NOT_FOUND, issueService.issue(-1, 99));
+
+        assertEquals(0, bookService.findById(bookId).getAvailableCopies());
+        assertEquals("PENDING", scalar("SELECT status FROM book_requests WHERE id = " + second),
+                "a request that found no copy stays pending");
+        assertEquals("1", scalar("SELECT COUNT(*) FROM loans"));
+    }
+
+    @Test
+    public void parallelApproversNeverOverIssue() throws Exception {
+        int copies = 10;
+        int bookId = addBook("901", copies);
+        List<Integer> requests = new ArrayList<>();
+        for (int reader = 1; reader <= APPROVERS; reader++) {
+            requests.add(addRequest(bookId, reader, "ISSUE"));
+        }
+
+        Map<IssueService.Outcome, Integer> outcomes = approveConcurrently(requests);
+
+        assertEquals(copies, outcomes.getOrDefault(IssueService.Outcome.ISSUED, 0));
+        assertEquals(APPROVERS - copies, outcomes.getOrDefault(IssueService.Outcome.NO_COPIES_AVAILABLE, 0));
+        assertEquals("0", scalar("SELECT available_copies FROM books WHERE id = " + bookId));
+        assertEquals(String.valueOf(copies), scalar("SELECT COUNT(*) FROM loans WHERE book_id = " + bookId));
+        assertEquals(String.valueOf(copies), scalar("SELECT COUNT(*) FROM book_requests WHERE status = 'APPROVED'"));
+    }
+
+    @Test
+    public void parallelApprovalsOfOneRequestIssueItOnce() throws Exception {
+        int bookId = addBook("902", 5);
+        int request = addRequest(bookId, 1, "ISSUE");
+        List<Integer> requests = new ArrayList<>();
+        for (int i = 0; i < APPROVERS; i++) {
+            requests.add(request);
+        }
+
+        Map<IssueService.Outcome, Integer> outcomes = approveConcurrently(requests);
+
+        assertEquals(1, outcomes.getOrDefault(IssueService.Outcome.ISSUED, 0));
+        assertEquals(APPROVERS - 1, outcomes.getOrDefault(IssueService.Outcome.ALREADY_PROCESSED, 0));
+        assertEquals("4", scalar("SELECT available_copies FROM books WHERE id = " + bookId));
+        assertEquals("1", scalar("SELECT COUNT(*) FROM loans"));
+    }
+
+    private Map<IssueService.Outcome, Integer> approveConcurrently(List<Integer> requestIds) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(APPROVERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<IssueService.Outcome>> futures = new ArrayList<>();
+            for (int i = 0; i < requestIds.size(); i++) {
+                int requestId = requestIds.get(i);
+                int librarianId = 1000 + i;
+                Callable<IssueService.Outcome> approve = () -> {
+                    start.await();
+                    return issueService.issue(requestId, librarianId);
+                };
+                futures.add(pool.submit(approve));
+            }
+            start.countDown();
+
+            Map<IssueService.Outcome, Integer> outcomes = new EnumMap<>(IssueService.Outcome.class);
+            for (Future<IssueService.Outcome> future : futures) {
+                outcomes.merge(future.get(), 1, Integer::sum);
+            }
+            assertFalse(outcomes.containsKey(IssueService.Outcome.FAILED), outcomes.toString());
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private int addBook(String isbn, int copies) {
+        Book book = new Book(isbn, "Book " + isbn, "Author", "Publisher", null, "Fiction", copies, copies);
+        bookService.add(book);
+        return book.getBookId();
+    }
+
+    private int addRequest(int bookId, int readerId, String type) {
+        String sql = "INSERT INTO book_requests (book_id, reader_id, request_type, status, created_at) " +
+                "VALUES (?, ?, ?, 'PENDING', CURRENT_TIMESTAMP)";
+        try (Connection conn = DriverManager.getConnection(System.getProperty("db.url"), "sa", "");
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, bookId);
+            ps.setInt(2, readerId);
+            ps.setString(3, type);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String scalar(String sql) {
+        try (Connection conn = DriverManager.getConnection(System.getProperty("db.url"), "sa", "");
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getString(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
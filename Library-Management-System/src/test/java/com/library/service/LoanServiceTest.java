@@ -0,0 +1,157 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.model.Fine;
+import com.library.model.Loan;
+import com.library.model.ReaderDashboardSnapshot;
+import com.library.util.ConnectionPool;
+import com.library.util.DatabaseConnection;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanServiceTest {
+
+    private static final int READER_ID = 7;
+
+    private final BookService bookService = new BookService();
+    private final LoanService loanService = new LoanService();
+    private final FineService fineService = new FineService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void clearTables() {
+        TestDatabase.clear("fines", "loans", "books");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void dashboardSnapshotMatchesTheIndividualQueries() {
+        LocalDate today = LocalDate.now();
+        int dueSoon = addBook("111", "Dune");
+        int overdue = addBook("222", "Emma");
+        int returned = addBook("333", "Cosmos");
+        loanService.issueBook(dueSoon, READER_ID, today.minusDays(10), today.plusDays(2));
+        loanService.issueBook(overdue, READER_ID, today.minusDays(20), today.minusDays(4));
+        loanService.issueBook(returned, READER_ID, today.minusDays(30), today.minusDays(16));
+        loanService.issueBook(returned, READER_ID + 1, today, today.plusDays(14));
+
+        Loan toReturn = loanService.findActiveLoansByReaderId(READER_ID).stream()
+                .filter(l -> l.getBookId() == returned).findFirst().orElseThrow();
+        loanService.returnBook(toReturn.getLoanId());
+
+        Fine unpaid = new Fine(toReturn.getLoanId(), READER_ID, 300);
+        Fine paid = new Fine(toReturn.getLoanId(), READER_ID, 100);
+        fineService.addFine(unpaid);
+        fineService.addFine(paid);
+        fineService.payFine(paid.getFineId());
+
+        ConnectionPool.Stats before = DatabaseConnection.getPoolStats();
+        ReaderDashboardSnapshot snapshot = loanService.loadReaderDashboard(READER_ID, 3);
+        ConnectionPool.Stats after = DatabaseConnection.getPoolStats();
+
+        assertEquals(2, snapshot.getActiveLoanCount());
+        assertEquals(1, snapshot.getDueSoonCount());
+        assertEquals(1, snapshot.getOverdueCount());
+        assertEquals(1, snapshot.getTotalBooksRead());
+        assertEquals(300, snapshot.getTotalUnpaidFines(), 0.001);
+        assertEquals(2, snapshot.getActiveLoans().size());
+        assertEquals("Cosmos", snapshot.getHistory().get(0).getBookTitle());
+        assertEquals(2, snapshot.getFines().size());
+
+        assertEquals(loanService.countActiveLoansByReaderId(READER_ID), snapshot.getActiveLoanCount());
+        assertEquals(loanService.countDueSoonByReaderId(READER_ID, 3), snapshot.getDueSoonCount());
+        assertEquals(loanService.countOverdueByReaderId(READER_ID), snapshot.getOverdueCount());
+        assertEquals(loanService.countTotalReadByReaderId(READER_ID), snapshot.getTotalBooksRead());
+        assertEquals(fineService.getTotalUnpaidFinesByReaderId(READER_ID), snapshot.getTotalUnpaidFines(), 0.001);
+
+        assertEquals(1, after.getAcquired() - before.getAcquired(), "one connection for the whole dashboard");
+    }
+
+    @Test
+    public void dashboardSnapshotForNewReaderIsEmpty() {
+        ReaderDashboardSnapshot snapshot = loanService.loadReaderDashboard(READER_ID, 3);
+
+        assertEquals(0, snapshot.getActiveLoanCount());
+        assertEquals(0, snapshot.getTotalUnpaidFines(), 0.001);
+        assertTrue(snapshot.getActiveLoans().isEmpty());
+        assertTrue(snapshot.getHistory().isEmpty());
+        assertTrue(snapshot.getFines().isEmpty());
+    }
+
+    @Test
+    public void generatesTieredFinesInChunks() {
+        LocalDate today = LocalDate.now();
+        for (int daysOverdue = 1; daysOverdue <= 25; daysOverdue++) {
+            LocalDate due = today.minusDays(daysOverdue);
+            loanService.issueBook(1, READER_ID, due.minusDays(14), due);
+        }
+        loanService.issueBook(1, READER_ID, today, today.plusDays(14)); // not overdue
+
+        List<Integer> progress = new ArrayList<>();
+        LoanService.FineGenerationResult result = loanService.generateFinesForOverdueLoans(0, 10,
+                (processed, total, lastLoanId) -> {
+                    assertEquals(25, total);
+                    progress.add(processed);
+                });
+
+        assertTrue(result.isCompleted());
+        assertEquals(25, result.getFinesCreated());
+        assertEquals(3, result.getChunks());
+        assertEquals(List.of(10, 20, 25), progress);
+
+        Map<Double, Long> amounts = fineService.findAllFinesByReaderId(READER_ID).stream()
+                .collect(Collectors.groupingBy(Fine::getAmount, Collectors.counting()));
+        assertEquals(1L, amounts.get(300.0));  // 3 days at 100
+        assertEquals(1L, amounts.get(900.0));  // 5 at 100, 2 at 200
+        assertEquals(1L, amounts.get(2500.0)); // 5 at 100, 5 at 200, 2 at 500
+
+        assertEquals(0, loanService.generateFinesForOverdueLoans().getFinesCreated(), "loans are only fined once");
+    }
+
+    @Test
+    public void interruptedFineGenerationResumesWithoutDuplicates() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 25; i++) {
+            loanService.issueBook(1, READER_ID, today.minusDays(30), today.minusDays(2));
+        }
+
+        assertThrows(IllegalStateException.class, () -> loanService.generateFinesForOverdueLoans(0, 10,
+                (processed, total, lastLoanId) -> {
+                    throw new IllegalStateException("stopped after the first chunk");
+                }));
+        assertEquals(10, fineService.findAllFinesByReaderId(READER_ID).size());
+
+        LoanService.FineGenerationResult resumed = loanService.generateFinesForOverdueLoans();
+        assertTrue(resumed.isCompleted());
+        assertEquals(15, resumed.getFinesCreated());
+        assertEquals(25, fineService.findAllFinesByReaderId(READER_ID).size());
+    }
+
+    private int addBook(String isbn, String title) {
+        Book book = new Book(isbn, title, "Author", "Publisher", null, "Fiction", 2, 2);
+        bookService.add(book);
+        return book.getBookId();
+    }
+}
@@ -0,0 +1,247 @@
+package com.library.service;
+
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the service queries against the migrated schema and checks H2's plan for each one: the
+ * filters on loans, fines, book_requests, books and users must be answered from an index, never a
+ * table scan, unless the query is listed in SCAN_EXEMPT.
+ */
+public class QueryIndexTest {
+
+    private static final String URL = "jdbc:h2:mem:library;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String[] INDEXED_TABLES = {"loans", "fines", "book_requests", "books", "users"};
+
+    /**
+     * Queries allowed to scan, by a fragment of their SQL. Each one reads most of its table anyway
+     * or has no index H2 could use.
+     */
+    private static final String[] SCAN_EXEMPT = {
+            // Category filter: H2 cannot index an expression. MySQL gets idx_books_category_lower
+            // from V3, see categoryFilterMatchesTheMysqlIndexExpression
+            "LOWER(category) = LOWER(?)",
+            // Substring search with a leading '%', which no B-tree index answers. Only runs when the
+            // in-memory BookSearchIndex could not be built
+            "WHERE LOWER(title) LIKE ?",
+            // Exact title lookup on a cache miss. Nothing in the application calls it once the
+            // catalog cache is loaded, and titles are not unique, so an index would only serve tests
+            "FROM books WHERE title = ?",
+            // Role listings return a large share of users, a scan is the cheaper plan
+            "FROM users WHERE role = '",
+    };
+
+    private final LoanService loanService = new LoanService();
+    private final FineService fineService = new FineService();
+    private final BookRequestService requestService = new BookRequestService();
+    private final BookService bookService = new BookService();
+    private final UserService userService = new UserService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        TestDatabase.clear("fine_accruals", "fines", "loans", "book_requests", "books");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+        // Start recording from scratch; the statistics keep the SQL of every statement executed
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement st = conn.createStatement()) {
+            st.execute("SET QUERY_STATISTICS FALSE");
+            st.execute("SET QUERY_STATISTICS TRUE");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement st = conn.createStatement()) {
+            st.execute("SET QUERY_STATISTICS FALSE");
+        }
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void readerQueriesUseTheReaderIndexes() throws SQLException {
+        loanService.findActiveLoansByReaderId(7);
+        loanService.findLoanHistoryByReaderId(7);
+        loanService.loadReaderDashboard(7, 3);
+        loanService.countActiveLoansByReaderId(7);
+        loanService.countDueSoonByReaderId(7, 3);
+        loanService.countOverdueByReaderId(7);
+        loanService.countTotalReadByReaderId(7);
+        fineService.findUnpaidFinesByReaderId(7);
+        fineService.findAllFinesByReaderId(7);
+        fineService.getTotalUnpaidFinesByReaderId(7);
+
+        List<String> plans = plansOfRecordedQueries();
+        assertUses(plans, "WHERE l.reader_id = ? AND l.status = 'ISSUED'", "idx_loans_reader_status");
+        assertUses(plans, "COUNT(*) FROM loans WHERE reader_id = ? AND status = 'RETURNED'", "idx_loans_reader_status");
+        assertUses(plans, "FROM fines WHERE reader_id = ? AND status = 'UNPAID'", "idx_fines_reader_status");
+        assertUses(plans, "FROM fines WHERE reader_id = ? ORDER BY", "idx_fines_reader_status");
+    }
+
+    @Test
+    public void circulationQueriesUseTheStatusIndexes() throws SQLException {
+        loanService.findActiveLoanByBookId(3);
+        loanService.findActiveLoan(3, 7);
+        loanService.generateFinesForOverdueLoans();
+        new FineAccrualService().accrueThrough(LocalDate.now());
+        requestService.getPendingRequests();
+
+        List<String> plans = plansOfRecordedQueries();
+        assertUses(plans, "WHERE l.book_id = ? AND l.status = 'ISSUED'", "idx_loans_book_status");
+        assertUses(plans, "WHERE l.book_id = ? AND l.reader_id = ? AND l.status = 'ISSUED'", "idx_loans_");
+        assertUses(plans, "SELECT COUNT(*) FROM loans l WHERE l.status = 'ISSUED' AND l.due_date < ?",
+                "idx_loans_status_due");
+        assertUses(plans, "SELECT COUNT(*) FROM loans l WHERE l.status = 'ISSUED' AND l.due_date < ?",
+                "idx_fines_loan");
+        assertUses(plans, "LEFT JOIN fine_accruals a", "idx_loans_status_due");
+        assertUses(plans, "WHERE br.status = 'PENDING'", "idx_book_requests_status_created");
+    }
+
+    @Test
+    public void catalogAndAccountLookupsUseTheirKeys() throws SQLException {
+        bookService.findById(3);
+        bookService.findPage(0, 50, null, true);
+        userService.findById(7);
+        userService.findByUsername("reader");
+        userService.findPage(0, 50, "READER");
+        userService.searchPage(0, 50, "ann");
+        new AuthenticationService().authenticate("reader", "secret", "READER");
+
+        List<String> plans = plansOfRecordedQueries();
+        assertUses(plans, "FROM books WHERE id = ?", "public.primary_key_");
+        assertUses(plans, "FROM books WHERE id > ? AND available_copies > 0 ORDER BY id", "public.primary_key_");
+        assertUses(plans, "FROM users WHERE id = ?", "public.primary_key_");
+        assertUses(plans, "FROM users WHERE id > ? AND role = ? ORDER BY id", "public.primary_key_");
+        assertUses(plans, "FROM users WHERE id > ? AND (LOWER(username) LIKE ?", "public.primary_key_");
+        String usernameIndex = "public." + uniqueIndexOn("users", "username");
+        assertUses(plans, "FROM users WHERE username = ?", usernameIndex);
+        assertUses(plans, "FROM users WHERE username = ? AND password = ?", usernameIndex);
+    }
+
+    @Test
+    public void categoryFilterMatchesTheMysqlIndexExpression() throws SQLException, IOException {
+        // H2 has no functional indexes, so the plan can only be checked on MySQL. What can be
+        // checked here is that the queries filter on the exact expression the index is built on,
+        // since MySQL only uses a functional index for a matching expression.
+        bookService.findByCategory("Fiction");
+        bookService.findPage(0, 50, "Fiction", false);
+
+        List<String> plans = plansOfRecordedQueries();
+        assertUses(plans, "WHERE LOWER(category) = LOWER(?)", "public.books.tablescan");
+        // The paged variant still walks the primary key from the last id and filters as it goes
+        assertUses(plans, "WHERE id > ? AND LOWER(category) = LOWER(?)", "public.primary_key_");
+        try (InputStream in = getClass().getClassLoader()
+                .getResourceAsStream("db/migration/V3__books_category_index.mysql.sql")) {
+            assertNotNull(in);
+            String script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(script.contains("ON books ((LOWER(category)))"), script);
+        }
+    }
+
+    /**
+     * EXPLAIN for every SELECT recorded since setUp, as "sql => plan". Fails on any that scans
+     * one of the indexed tables, unless it is in SCAN_EXEMPT.
+     */
+    private List<String> plansOfRecordedQueries() throws SQLException {
+        List<String> plans = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "")) {
+            List<String> queries = new ArrayList<>();
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT sql_statement FROM information_schema.query_statistics")) {
+                while (rs.next()) {
+                    String sql = rs.getString(1);
+                    String lower = sql.toLowerCase(Locale.ROOT);
+                    if (lower.startsWith("select") && !lower.contains("information_schema")) {
+                        queries.add(sql);
+                    }
+                }
+            }
+            for (String sql : queries) {
+                String plan = explain(conn, sql);
+                if (isScanExempt(sql)) {
+                    plans.add(sql + " => " + plan);
+                    continue;
+                }
+                for (String table : INDEXED_TABLES) {
+                    assertFalse(plan.contains("public." + table + ".tablescan"),
+                            "table scan of " + table + " for " + sql + "\n" + plan);
+                }
+                plans.add(sql + " => " + plan);
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * Name H2 gave the index behind a UNIQUE column constraint, lower-cased like the plans.
+     */
+    private static String uniqueIndexOn(String table, String column) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             ResultSet rs = conn.getMetaData().getIndexInfo(null, null, table, true, false)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return rs.getString("INDEX_NAME").toLowerCase(Locale.ROOT);
+                }
+            }
+        }
+        throw new AssertionError("no unique index on " + table + "." + column);
+    }
+
+    private static boolean isScanExempt(String sql) {
+        for (String fragment : SCAN_EXEMPT) {
+            if (sql.contains(fragment)) return true;
+        }
+        return false;
+    }
+
+    private static String explain(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 1; i <= ps.getParameterMetaData().getParameterCount(); i++) {
+                ps.setObject(i, 1);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1).toLowerCase(Locale.ROOT);
+            }
+        }
+    }
+
+    private static void assertUses(List<String> plans, String sqlFragment, String index) {
+        List<String> matching = new ArrayList<>();
+        for (String plan : plans) {
+            if (plan.substring(0, plan.indexOf(" => ")).contains(sqlFragment)) {
+                matching.add(plan);
+            }
+        }
+        assertFalse(matching.isEmpty(), "no recorded query contains " + sqlFragment + " in " + plans);
+        for (String plan : matching) {
+            assertTrue(plan.contains(index), index + " not used by " + plan);
+        }
+    }
+}
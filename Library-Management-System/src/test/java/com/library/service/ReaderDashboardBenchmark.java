@@ -0,0 +1,115 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.model.Fine;
+import com.library.model.ReaderDashboardSnapshot;
+import com.library.util.ConnectionPool;
+import com.library.util.DatabaseConnection;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips and time to load the reader dashboard, before and after the snapshot query.
+ * Run with {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+public class ReaderDashboardBenchmark {
+
+    private static final int READER_ID = 42;
+    private static final int ITERATIONS = 2_000;
+
+    private final LoanService loanService = new LoanService();
+    private final FineService fineService = new FineService();
+
+    @Test
+    public void snapshotCutsRoundTrips() {
+        TestDatabase.init();
+        TestDatabase.clear("fines", "loans", "books");
+        CatalogCache.getInstance().invalidateAll();
+        seed();
+
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            loadSeparately();
+            loanService.loadReaderDashboard(READER_ID, 3);
+        }
+
+        Result separate = measure(this::loadSeparately);
+        Result snapshot = measure(() -> loanService.loadReaderDashboard(READER_ID, 3));
+
+        System.out.printf("Reader dashboard, separate queries: %d connections, %d statements, %.1f us per load%n",
+                separate.connections, separate.statements, separate.micros);
+        System.out.printf("Reader dashboard, snapshot:         %d connections, %d statements, %.1f us per load%n",
+                snapshot.connections, snapshot.statements, snapshot.micros);
+
+        assertEquals(1, snapshot.connections);
+        assertEquals(3, snapshot.statements);
+        assertTrue(separate.statements >= 3 * snapshot.statements);
+    }
+
+    /**
+     * What the dashboard did before: every counter and table on its own connection.
+     */
+    private void loadSeparately() {
+        loanService.countActiveLoansByReaderId(READER_ID);
+        loanService.countDueSoonByReaderId(READER_ID, 3);
+        loanService.countOverdueByReaderId(READER_ID);
+        loanService.countTotalReadByReaderId(READER_ID);
+        fineService.getTotalUnpaidFinesByReaderId(READER_ID);
+        loanService.findActiveLoansByReaderId(READER_ID);
+        loanService.findActiveLoansByReaderId(READER_ID);
+        loanService.findLoanHistoryByReaderId(READER_ID);
+        fineService.findAllFinesByReaderId(READER_ID);
+    }
+
+    private Result measure(Runnable load) {
+        ConnectionPool.Stats before = DatabaseConnection.getPoolStats();
+        load.run();
+        ConnectionPool.Stats after = DatabaseConnection.getPoolStats();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            load.run();
+        }
+        double micros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+
+        Result result = new Result();
+        result.connections = after.getAcquired() - before.getAcquired();
+        result.statements = (after.getStatementCacheHits() + after.getStatementCacheMisses())
+                - (before.getStatementCacheHits() + before.getStatementCacheMisses());
+        result.micros = micros;
+        return result;
+    }
+
+    private void seed() {
+        BookService bookService = new BookService();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 200; i++) {
+            Book book = new Book("bench-" + i, "Book " + i, "Author " + (i % 20), "Publisher", null, "Fiction", 5, 5);
+            bookService.add(book);
+            boolean active = i < 8;
+            LocalDate issued = today.minusDays(active ? i : 30 + i);
+            loanService.issueBook(book.getBookId(), READER_ID, issued, issued.plusDays(7));
+            if (!active) {
+                loanService.findActiveLoansByReaderId(READER_ID).stream()
+                        .filter(l -> l.getBookId() == book.getBookId())
+                        .forEach(l -> {
+                            loanService.returnBook(l.getLoanId());
+                            if (l.getBookId() % 5 == 0) {
+                                fineService.addFine(new Fine(l.getLoanId(), READER_ID, 100));
+                            }
+                        });
+            }
+        }
+    }
+
+    private static final class Result {
+        private long connections;
+        private long statements;
+        private double micros;
+    }
+}
@@ -0,0 +1,73 @@
+package com.library.service;
+
+import com.library.model.Book;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Search-as-you-type queries against a synthetic 1M-title catalog, held to the 1 ms target for
+ * BookService.search. Run with {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+public class SearchBenchmark {
+
+    private static final int CATALOG_SIZE = 1_000_000;
+    private static final int WARMUP_QUERIES = 20_000;
+    private static final int MEASURED_QUERIES = 10_000;
+    private static final long P99_BUDGET_NANOS = 1_000_000;
+
+    @Test
+    public void searchStaysUnderOneMillisecondOnAMillionTitles() {
+        Random random = new Random(42);
+        List<Book> catalog = SyntheticCatalog.books(random, CATALOG_SIZE);
+
+        long buildStart = System.nanoTime();
+        BookSearchIndex index = new BookSearchIndex();
+        index.rebuild(catalog);
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            index.search(typedQuery(random, catalog), 20);
+        }
+
+        long[] nanos = new long[MEASURED_QUERIES];
+        int hits = 0;
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            String query = typedQuery(random, catalog);
+            long start = System.nanoTime();
+            List<Book> results = index.search(query, 20);
+            nanos[i] = System.nanoTime() - start;
+            if (!results.isEmpty()) hits++;
+        }
+        Arrays.sort(nanos);
+        long p50 = nanos[MEASURED_QUERIES / 2];
+        long p99 = nanos[MEASURED_QUERIES * 99 / 100];
+
+        System.out.printf("Search over %,d books (index built in %,d ms): p50 %.3f ms, p99 %.3f ms, max %.2f ms, %d/%d queries matched%n",
+                CATALOG_SIZE, buildMillis, p50 / 1e6, p99 / 1e6, nanos[MEASURED_QUERIES - 1] / 1e6, hits, MEASURED_QUERIES);
+
+        assertEquals(MEASURED_QUERIES, hits, "every query is typed from a title in the catalog");
+        assertTrue(p99 < P99_BUDGET_NANOS, "p99 search latency was " + p99 / 1_000_000.0 + " ms");
+    }
+
+    /**
+     * A random book's title as it is being typed: some whole words, then part of the next one,
+     * down to a single letter.
+     */
+    private static String typedQuery(Random random, List<Book> catalog) {
+        String[] words = catalog.get(random.nextInt(catalog.size())).getTitle().split(" ");
+        int whole = random.nextInt(words.length);
+        StringBuilder query = new StringBuilder();
+        for (int w = 0; w < whole; w++) {
+            query.append(words[w]).append(' ');
+        }
+        String typing = words[whole];
+        return query.append(typing, 0, 1 + random.nextInt(typing.length())).toString();
+    }
+}
@@ -0,0 +1,113 @@
+package com.library.service;
+
+import com.library.model.Book;
+import com.library.model.Reader;
+import com.library.util.DatabaseConnection;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatsServiceTest {
+
+    private final StatsService stats = StatsService.getInstance();
+    private final BookService bookService = new BookService();
+    private final UserService userService = new UserService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void clearTables() {
+        TestDatabase.clear("books", "users");
+        CatalogCache.getInstance().invalidateAll();
+        stats.invalidate();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void countersFollowChangesWithoutQueryingAgain() {
+        Book dune = new Book("111", "Dune", "Frank Herbert", "Chilton", null, "Fiction", 3, 3);
+        bookService.add(dune);
+        userService.add(new Reader("alice", "secret", "Alice"));
+        assertCounts(1, 3, 3, 1, stats.getSnapshot());
+
+        long acquired = DatabaseConnection.getPoolStats().getAcquired();
+        bookService.add(new Book("222", "Cosmos", "Carl Sagan", "Random House", null, "Science", 2, 1));
+        bookService.decrementAvailableCopies(dune.getBookId());
+        userService.add(new Reader("bob", "secret", "Bob"));
+        long writes = DatabaseConnection.getPoolStats().getAcquired() - acquired;
+
+        StatsService.Snapshot snapshot = stats.getSnapshot();
+        assertCounts(2, 5, 3, 2, snapshot);
+        assertEquals(2, snapshot.getIssuedCopies());
+        assertEquals(writes, DatabaseConnection.getPoolStats().getAcquired() - acquired,
+                "reading the counters should not touch the database");
+
+        Book stored = bookService.findById(dune.getBookId());
+        Book edited = new Book(stored);
+        edited.setTotalCopies(5);
+        edited.setAvailableCopies(4);
+        assertTrue(bookService.update(stored, edited).isUpdated());
+        bookService.incrementAvailableCopies(dune.getBookId());
+        bookService.deleteById(bookService.findByISBN("222").getBookId());
+        assertCounts(1, 5, 5, 2, stats.getSnapshot());
+
+        assertTrue(stats.reconcile());
+        assertCounts(1, 5, 5, 2, stats.getSnapshot());
+    }
+
+    @Test
+    public void reconcilePicksUpChangesFromOtherWorkstations() throws SQLException {
+        bookService.add(new Book("333", "Emma", "Jane Austen", "Murray", null, "Fiction", 4, 4));
+        assertCounts(1, 4, 4, 0, stats.getSnapshot());
+
+        try (Connection conn = DriverManager.getConnection(System.getProperty("db.url"), "sa", "");
+             Statement st = conn.createStatement()) {
+            st.executeUpdate("UPDATE books SET available_copies = 1");
+        }
+        assertEquals(4, stats.getSnapshot().getAvailableCopies(), "unseen until reconciled");
+
+        assertTrue(stats.reconcile());
+        assertCounts(1, 4, 1, 0, stats.getSnapshot());
+    }
+
+    @Test
+    public void seedsFromTheDatabaseEvenIfEveryAttemptLosesTheRace() {
+        bookService.add(new Book("444", "Emma", "Jane Austen", "Murray", null, "Fiction", 2, 2));
+        StatsService busy = new StatsService(60_000) {
+            @Override
+            public boolean reconcile() {
+                // As if a desk reported an issue or return during each read
+                return false;
+            }
+        };
+        busy.availableCopiesChanged(-1);
+
+        assertCounts(1, 2, 2, 0, busy.getSnapshot());
+    }
+
+    private static void assertCounts(int books, int totalCopies, int availableCopies, int users,
+                                     StatsService.Snapshot snapshot) {
+        assertEquals(books, snapshot.getBooks(), snapshot.toString());
+        assertEquals(totalCopies, snapshot.getTotalCopies(), snapshot.toString());
+        assertEquals(availableCopies, snapshot.getAvailableCopies(), snapshot.toString());
+        assertEquals(users, snapshot.getUsers(), snapshot.toString());
+    }
+}
@@ -0,0 +1,72 @@
+package com.library.service;
+
+import com.library.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic catalog for the search benchmarks: titles of two to five made-up words picked with
+ * a Zipfian skew, so a few words are very common like in real titles.
+ */
+final class SyntheticCatalog {
+
+    private static final String[] SYLLABLES = {
+            "an", "ber", "cal", "dor", "el", "fin", "gar", "hel", "is", "jor", "kal", "lin", "mor",
+            "nor", "or", "pel", "quin", "ros", "sil", "tor", "ul", "van", "wen", "xan", "yor", "zel"
+    };
+    private static final String[] CATEGORIES = {
+            "Fiction", "Science", "History", "Poetry", "Travel", "Children", "Biography", "Philosophy"
+    };
+
+    private SyntheticCatalog() {
+    }
+
+    static List<Book> books(Random random, int size) {
+        String[] words = words(random, 20_000);
+        String[] surnames = words(random, 5_000);
+
+        List<Book> catalog = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            int length = 2 + random.nextInt(4);
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < length; w++) {
+                if (w > 0) title.append(' ');
+                title.append(zipf(random, words));
+            }
+            String author = capitalize(zipf(random, words)) + " " + capitalize(zipf(random, surnames));
+            Book book = new Book(String.format("978-%010d", id), title.toString(), author, "Publisher",
+                    null, CATEGORIES[random.nextInt(CATEGORIES.length)], 1, 1);
+            book.setBookId(id);
+            catalog.add(book);
+        }
+        return catalog;
+    }
+
+    private static String[] words(Random random, int count) {
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(4);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    /**
+     * Picks a word with a roughly Zipfian skew, so a few words are very common like in real titles.
+     */
+    private static String zipf(Random random, String[] words) {
+        double u = random.nextDouble();
+        int rank = (int) Math.pow(words.length, u) - 1;
+        return words[Math.min(rank, words.length - 1)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
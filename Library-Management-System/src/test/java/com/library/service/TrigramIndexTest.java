@@ -0,0 +1,57 @@
+package com.library.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTest {
+
+    @Test
+    public void computesBoundedEditDistance() {
+        assertEquals(0, TrigramIndex.boundedDistance("tolkien", "tolkien", 2));
+        assertEquals(1, TrigramIndex.boundedDistance("tolkein", "tolkien", 2));
+        assertEquals(1, TrigramIndex.boundedDistance("hary", "harry", 1));
+        assertEquals(2, TrigramIndex.boundedDistance("dostoyevski", "dostoevsky", 2));
+        assertEquals(3, TrigramIndex.boundedDistance("asimov", "orwell", 2), "gives up past the bound");
+    }
+
+    @Test
+    public void findsTermsWithinEditsAndForgetsRemovedOnes() {
+        TrigramIndex index = new TrigramIndex();
+        for (String term : List.of("harry", "potter", "hobbit", "tolkien", "token")) {
+            index.add(term);
+        }
+
+        assertEquals(List.of("tolkien"), terms(index.candidates("tolkein", 1)));
+        assertEquals(List.of("harry"), terms(index.candidates("hary", 1)));
+        assertTrue(index.candidates("hobbits", 0).isEmpty());
+
+        index.remove("tolkien");
+        assertTrue(index.candidates("tolkein", 1).isEmpty());
+        index.add("tolkien");
+        assertEquals(List.of("tolkien"), terms(index.candidates("tolkein", 1)));
+    }
+
+    @Test
+    public void countsStartFromZeroOnEveryQuery() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("tolkien");
+        assertEquals(List.of("tolkien"), terms(index.candidates("tolkein", 1)));
+        assertEquals(List.of("tolkien"), terms(index.candidates("tolkein", 1)));
+
+        // Enough new terms to outgrow the counts kept from the queries above
+        for (int i = 0; i < 500; i++) {
+            index.add("term" + i);
+        }
+        index.add("tolkein");
+        assertEquals(List.of("tolkein", "tolkien"), terms(index.candidates("tolkein", 1)));
+        assertEquals(List.of("tolkein"), terms(index.candidates("tolkein", 0)));
+        assertEquals(List.of("term42"), terms(index.candidates("term42", 0)));
+    }
+
+    private static List<String> terms(List<TrigramIndex.Candidate> candidates) {
+        return candidates.stream().map(c -> c.term).sorted().toList();
+    }
+}
@@ -0,0 +1,94 @@
+package com.library.service;
+
+import com.library.model.Librarian;
+import com.library.model.Reader;
+import com.library.model.User;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserServiceTest {
+
+    private final UserService userService = new UserService();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void clearUsers() {
+        TestDatabase.clear("users");
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void noLeakedResources() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void findPageWalksUsersByKey() {
+        userService.add(new Reader("ann", "pw", "Ann"));
+        userService.add(new Librarian("ben", "pw", "Ben"));
+        userService.add(new Reader("cal", "pw", "Cal"));
+
+        List<User> first = userService.findPage(0, 2, null);
+        assertEquals(2, first.size());
+        assertEquals("ann", first.get(0).getUsername());
+
+        List<User> rest = userService.findPage(first.get(1).getId(), 2, null);
+        assertEquals(1, rest.size());
+        assertEquals("cal", rest.get(0).getUsername());
+
+        List<User> readers = userService.findPage(0, 10, "READER");
+        assertEquals(2, readers.size());
+        assertTrue(userService.findPage(rest.get(0).getId(), 10, null).isEmpty());
+    }
+
+    @Test
+    public void searchPageMatchesNameUsernameOrRoleByKey() {
+        userService.add(new Reader("ann", "pw", "Ann Reader"));
+        userService.add(new Librarian("ben", "pw", "Ben"));
+        userService.add(new Reader("cal", "pw", "Cal Annesley"));
+
+        List<User> first = userService.searchPage(0, 1, "ANN");
+        assertEquals(1, first.size());
+        assertEquals("ann", first.get(0).getUsername());
+        List<User> rest = userService.searchPage(first.get(0).getId(), 10, "ANN");
+        assertEquals(1, rest.size());
+        assertEquals("cal", rest.get(0).getUsername());
+
+        assertEquals(1, userService.searchPage(0, 10, "librar").size());
+        assertTrue(userService.searchPage(0, 10, "zed").isEmpty());
+    }
+
+    @Test
+    public void updateWritesChangedFieldsOnlyIfTheUserIsUnchanged() {
+        Reader ann = new Reader("ann", "pw", "Ann");
+        userService.add(ann);
+        User original = userService.findById(ann.getId());
+
+        Reader edited = new Reader("ann", "pw", "Ann Smith");
+        edited.setId(ann.getId());
+        UpdateResult<User> saved = userService.update(original, edited);
+        assertEquals(UpdateResult.Outcome.UPDATED, saved.getOutcome());
+        assertEquals("Ann Smith", saved.getCurrent().getFullName());
+
+        Reader stale = new Reader("ann", "new-pw", "Ann");
+        stale.setId(ann.getId());
+        UpdateResult<User> refused = userService.update(original, stale);
+        assertEquals(UpdateResult.Outcome.CONFLICT, refused.getOutcome());
+        assertEquals("pw", userService.findById(ann.getId()).getPassword());
+
+        userService.deleteById(ann.getId());
+        assertEquals(UpdateResult.Outcome.NOT_FOUND, userService.update(saved.getCurrent(), stale).getOutcome());
+    }
+}
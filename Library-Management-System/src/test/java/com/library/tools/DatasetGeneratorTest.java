@@ -0,0 +1,111 @@
+package com.library.tools;
+
+import com.library.service.CatalogCache;
+import com.library.util.DatabaseConnection;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatasetGeneratorTest {
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        TestDatabase.clear("book_requests", "fines", "loans", "books", "users");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestDatabase.clear("book_requests", "fines", "loans", "books", "users");
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void writesAConsistentSkewedLibrary() throws SQLException {
+        DatasetGenerator.Dataset dataset = new DatasetGenerator(smallSpec()).generate();
+
+        assertEquals(300, count("SELECT COUNT(*) FROM books"));
+        assertEquals(53, count("SELECT COUNT(*) FROM users"));
+        assertEquals(3, count("SELECT COUNT(*) FROM users WHERE role = 'LIBRARIAN'"));
+        assertEquals(dataset.getLoans(), count("SELECT COUNT(*) FROM loans"));
+        assertEquals(dataset.getActiveLoans(), count("SELECT COUNT(*) FROM loans WHERE status = 'ISSUED'"));
+        assertEquals(dataset.getFines(), count("SELECT COUNT(*) FROM fines"));
+        assertEquals(dataset.getRequests(), count("SELECT COUNT(*) FROM book_requests"));
+        assertEquals(4, count("SELECT COUNT(DISTINCT status) FROM book_requests"));
+        assertEquals(DatasetGenerator.isbn(dataset.bookId(0)),
+                query("SELECT isbn FROM books WHERE id = " + dataset.bookId(0)).get(0));
+
+        assertEquals(0, count("SELECT COUNT(*) FROM books b WHERE b.available_copies < 0 OR " +
+                "b.available_copies <> b.total_copies - " +
+                "(SELECT COUNT(*) FROM loans l WHERE l.book_id = b.id AND l.status = 'ISSUED')"));
+        assertTrue(count("SELECT COUNT(*) FROM loans WHERE status = 'ISSUED' AND due_date < CURRENT_DATE") > 0);
+        assertEquals(0, count("SELECT COUNT(*) FROM loans l WHERE l.status = 'ISSUED' AND l.due_date < CURRENT_DATE " +
+                "AND NOT EXISTS (SELECT 1 FROM fines f WHERE f.loan_id = l.id AND f.status = 'UNPAID')"));
+
+        int busiest = count("SELECT MAX(c) FROM (SELECT COUNT(*) AS c FROM loans GROUP BY book_id) t");
+        assertTrue(busiest > 10.0 * dataset.getLoans() / dataset.getBooks(),
+                "popular books should take a large share of loans: " + busiest);
+    }
+
+    @Test
+    public void sameSeedWritesTheSameRowsAndAppendsAfterExistingIds() throws SQLException {
+        new DatasetGenerator(smallSpec()).generate();
+        List<String> books = query("SELECT CONCAT(id, title, author, total_copies) FROM books ORDER BY id");
+        List<String> loans = query("SELECT CONCAT(id, book_id, reader_id, due_date, status) FROM loans ORDER BY id");
+
+        TestDatabase.clear("book_requests", "fines", "loans", "books", "users");
+        new DatasetGenerator(smallSpec()).generate();
+        assertEquals(books, query("SELECT CONCAT(id, title, author, total_copies) FROM books ORDER BY id"));
+        assertEquals(loans, query("SELECT CONCAT(id, book_id, reader_id, due_date, status) FROM loans ORDER BY id"));
+
+        DatasetGenerator.Spec more = smallSpec();
+        more.setSeed(7);
+        DatasetGenerator.Dataset second = new DatasetGenerator(more).generate();
+        assertEquals(301, second.getFirstBookId());
+        assertEquals(54, second.getFirstReaderId());
+        assertEquals(600, count("SELECT COUNT(*) FROM books"));
+    }
+
+    private static DatasetGenerator.Spec smallSpec() {
+        DatasetGenerator.Spec spec = new DatasetGenerator.Spec();
+        spec.setBooks(300);
+        spec.setReaders(50);
+        spec.setLibrarians(3);
+        spec.setLoansPerReader(6);
+        spec.setRequestsPerReader(3);
+        spec.setBatchSize(100);
+        return spec;
+    }
+
+    private static int count(String sql) throws SQLException {
+        return Integer.parseInt(query(sql).get(0));
+    }
+
+    private static List<String> query(String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) rows.add(rs.getString(1));
+        }
+        return rows;
+    }
+}
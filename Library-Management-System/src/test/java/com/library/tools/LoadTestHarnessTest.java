@@ -0,0 +1,93 @@
+package com.library.tools;
+
+import com.library.service.CatalogCache;
+import com.library.util.DatabaseConnection;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadTestHarnessTest {
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        TestDatabase.clear("book_requests", "fines", "loans", "books", "users");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestDatabase.clear("book_requests", "fines", "loans", "books", "users");
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void rampsUpAndReportsEveryWorkflowStep() throws Exception {
+        DatasetGenerator.Spec spec = new DatasetGenerator.Spec();
+        spec.setBooks(200);
+        spec.setReaders(20);
+        spec.setLibrarians(2);
+        spec.setLoansPerReader(4);
+        spec.setRequestsPerReader(3);
+        DatasetGenerator generator = new DatasetGenerator(spec);
+        DatasetGenerator.Dataset dataset = generator.generate();
+
+        LoadTestHarness.Config config = new LoadTestHarness.Config();
+        config.setLibrarians(2);
+        config.setReaders(6);
+        config.setSteps(2);
+        config.setWarmupMs(0);
+        config.setDurationMs(1_500);
+        config.setThinkTimeMs(1);
+        LoadTestHarness.Report report = new LoadTestHarness(config, generator, dataset).run();
+
+        assertEquals(2, report.getSteps().size());
+        LoadTestHarness.Step full = report.getSteps().get(1);
+        assertEquals(2, full.getLibrarians());
+        assertEquals(6, full.getReaders());
+        assertTrue(full.getOpsPerSecond() > 0);
+        assertEquals(0, full.getErrors(), "no service call should fail");
+
+        Map<String, LoadTestHarness.OperationStats> operations = full.getOperations();
+        for (String operation : new String[]{LoadTestHarness.SEARCH, LoadTestHarness.DASHBOARD,
+                LoadTestHarness.REQUEST, LoadTestHarness.PENDING_REQUESTS, LoadTestHarness.ISSUE}) {
+            assertTrue(operations.containsKey(operation), "missing " + operation + " in " + operations.keySet());
+            assertTrue(operations.get(operation).getPercentileMicros(99) > 0);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out, true));
+        assertTrue(out.toString().contains("pendingRequests"));
+
+        // Librarians racing for the same request must not return a copy or fine a loan twice
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM books WHERE available_copies > total_copies")) {
+                rs.next();
+                assertEquals(0, rs.getInt(1), "books with more copies available than they have");
+            }
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT COUNT(*) FROM (SELECT loan_id FROM fines GROUP BY loan_id HAVING COUNT(*) > 1) t")) {
+                rs.next();
+                assertEquals(0, rs.getInt(1), "loans fined more than once");
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.library.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipfDistributionTest {
+
+    @Test
+    public void ranksComeUpInProportionToOneOverRank() {
+        ZipfDistribution zipf = new ZipfDistribution(1000, 1.0);
+        Random random = new Random(7);
+        int[] counts = new int[1001];
+        int samples = 200_000;
+        for (int i = 0; i < samples; i++) {
+            int k = zipf.sample(random);
+            assertTrue(k >= 1 && k <= 1000, "rank out of range: " + k);
+            counts[k]++;
+        }
+
+        double harmonic = 0;
+        for (int k = 1; k <= 1000; k++) harmonic += 1.0 / k;
+        assertEquals(samples / harmonic, counts[1], samples / harmonic * 0.05);
+        assertEquals(2.0, (double) counts[1] / counts[2], 0.15);
+        assertEquals(10.0, (double) counts[1] / counts[10], 1.5);
+    }
+
+    @Test
+    public void sameSeedGivesTheSameSequence() {
+        ZipfDistribution zipf = new ZipfDistribution(50, 1.2);
+        Random a = new Random(42);
+        Random b = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(zipf.sample(a), zipf.sample(b));
+        }
+        assertEquals(1, new ZipfDistribution(1, 1.0).sample(a));
+        assertThrows(IllegalArgumentException.class, () -> new ZipfDistribution(10, 0));
+    }
+}
@@ -0,0 +1,187 @@
+package com.library.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+    private ConnectionPool pool;
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    @Test
+    public void reusesReturnedConnections() throws SQLException {
+        pool = new ConnectionPool(this::fakeConnection, 2, 0, 1_000, 30_000, 60_000, 0, 16);
+
+        Connection first = pool.getConnection();
+        String physical = first.toString();
+        first.close();
+        first.close(); // closing twice must not return the connection twice
+
+        try (Connection second = pool.getConnection()) {
+            assertEquals(physical, second.toString());
+        }
+        assertEquals(1, opened.get());
+        assertEquals(1, pool.getStats().getIdle());
+        assertEquals(0, pool.getStats().getActive());
+    }
+
+    @Test
+    public void boundsConnectionsAndTimesOut() throws SQLException {
+        pool = new ConnectionPool(this::fakeConnection, 2, 0, 50, 30_000, 60_000, 0, 16);
+
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+        assertEquals(1, pool.getStats().getTimeouts());
+
+        a.close();
+        try (Connection c = pool.getConnection()) {
+            assertFalse(c.isClosed());
+        }
+        b.close();
+        assertEquals(2, opened.get());
+    }
+
+    @Test
+    public void topUpNeverOpensMoreThanMaxSize() throws SQLException {
+        pool = new ConnectionPool(this::fakeConnection, 3, 2, 50, 30_000, 60_000, 0, 16);
+
+        Connection a = pool.getConnection();
+        Connection b = pool.getConnection();
+        pool.housekeep();
+        pool.housekeep();
+        assertTrue(opened.get() - closed.get() <= 3, "open connections: " + (opened.get() - closed.get()));
+
+        try (Connection c = pool.getConnection()) {
+            assertFalse(c.isClosed());
+            pool.housekeep();
+            assertEquals(3, opened.get() - closed.get());
+        }
+        a.close();
+        b.close();
+        pool.housekeep();
+        assertEquals(3, opened.get() - closed.get());
+        assertEquals(3, pool.getStats().getIdle());
+    }
+
+    @Test
+    public void retiresConnectionsPastMaxLifetime() throws Exception {
+        pool = new ConnectionPool(this::fakeConnection, 1, 0, 1_000, 30_000, 1, 0, 16);
+
+        Connection first = pool.getConnection();
+        Thread.sleep(5);
+        first.close();
+
+        try (Connection second = pool.getConnection()) {
+            assertFalse(second.isClosed());
+        }
+        assertTrue(closed.get() >= 1);
+        assertTrue(opened.get() >= 2);
+    }
+
+    @Test
+    public void closedProxyRejectsFurtherUse() throws SQLException {
+        pool = new ConnectionPool(this::fakeConnection, 1, 0, 1_000, 30_000, 60_000, 0, 16);
+
+        Connection conn = pool.getConnection();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+    }
+
+    @Test
+    public void cachesPreparedStatementsPerConnection() throws SQLException {
+        pool = new ConnectionPool(() -> DriverManager.getConnection("jdbc:h2:mem:stmtcache", "sa", ""),
+                1, 0, 1_000, 30_000, 60_000, 0, 1);
+
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("SELECT ?")) {
+                ps.setInt(1, i);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                }
+            }
+        }
+        assertEquals(1, pool.getStats().getStatementCacheMisses());
+        assertEquals(2, pool.getStats().getStatementCacheHits());
+
+        try (Connection conn = pool.getConnection()) {
+            PreparedStatement other = conn.prepareStatement("SELECT 2");
+            other.close();
+            assertTrue(other.isClosed());
+            assertThrows(SQLException.class, other::executeQuery);
+        }
+        assertEquals(1, pool.getStats().getStatementCacheEvictions(), "cache holds a single statement");
+    }
+
+    @Test
+    public void returnedStatementsForgetTheBorrowersSettings() throws SQLException {
+        pool = new ConnectionPool(() -> DriverManager.getConnection("jdbc:h2:mem:stmtsettings", "sa", ""),
+                1, 0, 1_000, 30_000, 60_000, 0, 4);
+
+        int fetchSize;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 10)")) {
+            fetchSize = ps.getFetchSize();
+            ps.setFetchSize(fetchSize + 50);
+            ps.setMaxRows(3);
+            ps.setQueryTimeout(7);
+        }
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 10)")) {
+            assertEquals(fetchSize, ps.getFetchSize());
+            assertEquals(0, ps.getMaxRows());
+            assertEquals(0, ps.getQueryTimeout());
+            int rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) rows++;
+            }
+            assertEquals(10, rows);
+        }
+        assertEquals(1, pool.getStats().getStatementCacheHits());
+    }
+
+    private Connection fakeConnection() {
+        int id = opened.incrementAndGet();
+        boolean[] isClosed = {false};
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!isClosed[0]) closed.incrementAndGet();
+                            isClosed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return isClosed[0];
+                        case "isValid":
+                        case "getAutoCommit":
+                            return !isClosed[0];
+                        case "toString":
+                            return "fake-" + id;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
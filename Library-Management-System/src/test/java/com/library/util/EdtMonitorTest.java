@@ -0,0 +1,52 @@
+package com.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EdtMonitorTest {
+
+    @Test
+    public void reportsWhereSlowEventsBlock() throws InterruptedException {
+        EdtMonitor monitor = new EdtMonitor(20);
+
+        monitor.dispatchStarted(Thread.currentThread());
+        monitor.dispatchFinished("fast event");
+        assertNull(monitor.checkStalled());
+
+        monitor.dispatchStarted(Thread.currentThread());
+        Thread.sleep(40);
+        StackTraceElement[] stack = monitor.checkStalled();
+        assertNotNull(stack);
+        assertTrue(Arrays.stream(stack).anyMatch(f -> f.getMethodName().equals("reportsWhereSlowEventsBlock")),
+                "stall report should show the blocking frame");
+        assertNull(monitor.checkStalled(), "a stall is reported once per event");
+        monitor.dispatchFinished("slow event");
+
+        EdtMonitor.Stats stats = monitor.stats();
+        assertEquals(2, stats.getDispatched());
+        assertEquals(1, stats.getSlowDispatches());
+        assertEquals(1, stats.getStalls());
+        assertTrue(stats.getBlockedNanos() >= 40_000_000L);
+    }
+
+    @Test
+    public void modalLoopDoesNotCountAsBlocked() throws InterruptedException {
+        EdtMonitor monitor = new EdtMonitor(20);
+
+        // A click that opens a dialog keeps dispatching other events until the dialog closes
+        monitor.dispatchStarted(Thread.currentThread());
+        monitor.dispatchStarted(Thread.currentThread());
+        monitor.dispatchFinished("event inside dialog");
+        Thread.sleep(40);
+        assertNull(monitor.checkStalled(), "waiting for input in a dialog is not a stall");
+        monitor.dispatchFinished("click that opened dialog");
+
+        EdtMonitor.Stats stats = monitor.stats();
+        assertEquals(2, stats.getDispatched());
+        assertEquals(0, stats.getSlowDispatches());
+        assertEquals(0, stats.getBlockedNanos());
+    }
+}
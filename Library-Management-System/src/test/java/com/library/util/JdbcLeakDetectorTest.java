@@ -0,0 +1,35 @@
+package com.library.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcLeakDetectorTest {
+
+    @BeforeEach
+    public void reset() {
+        JdbcLeakDetector.reset();
+    }
+
+    @Test
+    public void reportsStatementLeftOpen() throws SQLException {
+        try (Connection conn = JdbcLeakDetector.track(DriverManager.getConnection("jdbc:h2:mem:leaks", "sa", ""))) {
+            PreparedStatement leaked = conn.prepareStatement("SELECT 1");
+            leaked.executeQuery();
+
+            IllegalStateException failure = assertThrows(IllegalStateException.class, JdbcLeakDetector::assertNoLeaks);
+            assertTrue(failure.getMessage().contains("SELECT 1"));
+            assertEquals(2, JdbcLeakDetector.reportLeaks(0), "the connection and the statement");
+            assertEquals(0, JdbcLeakDetector.reportLeaks(0), "each leak is reported once");
+
+            leaked.close();
+        }
+        JdbcLeakDetector.assertNoLeaks();
+    }
+}
@@ -0,0 +1,123 @@
+package com.library.util;
+
+import com.library.model.Book;
+import com.library.service.BookService;
+import com.library.service.CatalogCache;
+import com.library.service.LoanService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        TestDatabase.clear("books", "loans");
+        CatalogCache.getInstance().invalidateAll();
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void namesStatementsAfterTheServiceMethodAndCountsRows() throws Exception {
+        LoanService loanService = new LoanService();
+        loanService.findActiveLoansByReaderId(1);
+        MetricsRegistry.Metric query = registry.getMetrics().get("LoanService.findActiveLoansByReaderId");
+        assertNotNull(query, "metrics: " + registry.getMetrics().keySet());
+        long before = query.getCount();
+        loanService.findActiveLoansByReaderId(1);
+        assertEquals(before + 1, query.getCount());
+        assertTrue(query.getSql().contains("FROM loans"));
+
+        new BookService().add(new Book("111", "Dune", "Frank Herbert", "Chilton", null, "Fiction", 2, 2));
+        MetricsRegistry.Metric insert = registry.getMetrics().get("BookService.add");
+        assertNotNull(insert);
+        assertEquals(1.0, insert.getRowsPerCall());
+        assertTrue(insert.getP99Micros() > 0);
+
+        ObjectName name = new ObjectName("com.library:type=Metrics,name=" + ObjectName.quote("BookService.add"));
+        assertEquals(insert.getCount(), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+    }
+
+    @Test
+    public void countsFailedStatementsAndSummarizesTheInterval() throws SQLException {
+        String sql = "INSERT INTO books (isbn, title) VALUES (?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, "222");
+            ps.setString(2, "Cosmos");
+            ps.executeUpdate();
+            assertThrows(SQLException.class, ps::executeUpdate);
+        }
+
+        MetricsRegistry.Metric metric = registry.getMetrics().values().stream()
+                .filter(m -> sql.equals(m.getSql())).findFirst().orElseThrow();
+        assertTrue(metric.getName().startsWith("MetricsRegistryTest.countsFailedStatements"), metric.getName());
+        assertEquals(2, metric.getCount());
+        assertEquals(1, metric.getErrors());
+
+        String summary = registry.summary();
+        assertNotNull(summary);
+        assertTrue(summary.contains(metric.getName()));
+        String again = registry.summary();
+        assertTrue(again == null || !again.contains(metric.getName()), "each summary covers only its own interval");
+    }
+
+    @Test
+    public void statementVariantsDoNotGrowTheMetricsWithoutBound() {
+        MetricsRegistry metrics = new MetricsRegistry(true, 0, 16);
+        MetricsRegistry.Metric in = metrics.forSql("SELECT id FROM books WHERE isbn IN (?, ?)");
+        assertSame(in, metrics.forSql("SELECT id FROM books WHERE isbn IN (?,?,?,?)"));
+        assertSame(in, metrics.forSql("SELECT id\n  FROM books WHERE isbn IN (?)"));
+        assertEquals("SELECT id FROM books WHERE isbn IN (?)", in.getSql());
+
+        MetricsRegistry.Metric insert = metrics.forSql("INSERT INTO loans (book_id, reader_id) VALUES (?, ?)");
+        assertSame(insert, metrics.forSql("INSERT INTO loans (book_id, reader_id) VALUES (?, ?), (?, ?), (?, ?)"));
+
+        for (int i = 0; i < 100; i++) {
+            metrics.forSql("UPDATE books SET c" + i + " = ? WHERE id = ?");
+        }
+        String caller = "MetricsRegistryTest.statementVariantsDoNotGrowTheMetricsWithoutBound";
+        assertTrue(metrics.getMetrics().size() <= 17, "metrics: " + metrics.getMetrics().keySet());
+        assertSame(metrics.getMetrics().get(caller + "#other"), metrics.forSql("UPDATE books SET c99 = ? WHERE id = ?"));
+    }
+
+    @Test
+    public void timersRecordWorkOutsideJdbc() {
+        MetricsRegistry.Metric timer = registry.timer("MetricsRegistryTest.work");
+        assertSame(timer, registry.timer("MetricsRegistryTest.work"));
+        long start = timer.start();
+        timer.stop(start, 3);
+        timer.fail(timer.start());
+
+        assertEquals(2, timer.getCount());
+        assertEquals(1, timer.getErrors());
+        assertEquals(3.0, timer.getRowsPerCall());
+
+        MetricsRegistry off = new MetricsRegistry(false, 0, 16);
+        MetricsRegistry.Metric noop = off.timer("anything");
+        noop.stop(noop.start());
+        assertEquals(0, noop.getCount());
+        assertTrue(off.getMetrics().isEmpty());
+    }
+}
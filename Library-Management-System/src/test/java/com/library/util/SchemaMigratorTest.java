@@ -0,0 +1,129 @@
+package com.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+
+    private final SchemaMigrator migrator = new SchemaMigrator();
+
+    @Test
+    public void appliesEachMigrationOnceAndRecordsIt() throws Exception {
+        try (Connection conn = freshDatabase("migrator_once")) {
+            List<SchemaMigrator.Migration> applied = migrator.migrate(conn);
+            assertEquals(migrator.getMigrations().size(), applied.size());
+            assertEquals(1, applied.get(0).getVersion());
+            assertEquals("baseline schema", applied.get(0).getDescription());
+            assertEquals(Set.of(1, 2, 3, 4), SchemaMigrator.appliedVersions(conn));
+            assertTrue(hasIndex(conn, "idx_loans_reader_status"));
+
+            assertTrue(migrator.migrate(conn).isEmpty(), "already current");
+        }
+    }
+
+    @Test
+    public void adoptsADatabaseThatAlreadyHasTheTables() throws Exception {
+        try (Connection conn = freshDatabase("migrator_existing");
+             Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE books (id INT AUTO_INCREMENT PRIMARY KEY, isbn VARCHAR(20) NOT NULL UNIQUE, " +
+                    "title VARCHAR(255) NOT NULL, author VARCHAR(255), category VARCHAR(50), " +
+                    "publisher VARCHAR(255), published_date DATE, total_copies INT NOT NULL DEFAULT 1, " +
+                    "available_copies INT NOT NULL DEFAULT 1, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            st.execute("INSERT INTO books (isbn, title) VALUES ('111', 'Dune')");
+
+            migrator.migrate(conn);
+
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM books")) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    public void rerunsAMigrationThatStoppedBeforeItWasRecorded() throws Exception {
+        try (Connection conn = freshDatabase("migrator_rerun");
+             Statement st = conn.createStatement()) {
+            migrator.migrate(conn);
+            // As if the workstation died after running V2 and V4 but before recording them
+            st.execute("DELETE FROM schema_version WHERE version IN (2, 4)");
+
+            List<SchemaMigrator.Migration> applied = migrator.migrate(conn);
+            assertEquals(List.of(2, 4), applied.stream().map(SchemaMigrator.Migration::getVersion).toList());
+            assertEquals(Set.of(1, 2, 3, 4), SchemaMigrator.appliedVersions(conn));
+            assertTrue(hasIndex(conn, "idx_loans_reader_status"));
+        }
+    }
+
+    @Test
+    public void workstationsStartingTogetherTakeTurns() throws Exception {
+        String url = "jdbc:h2:mem:migrator_together;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        ExecutorService workstations = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<List<SchemaMigrator.Migration>>> runs = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                runs.add(workstations.submit(() -> {
+                    try (Connection conn = DriverManager.getConnection(url, "sa", "")) {
+                        return new SchemaMigrator().migrate(conn);
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<List<SchemaMigrator.Migration>> run : runs) {
+                total += run.get(30, TimeUnit.SECONDS).size();
+            }
+            assertEquals(migrator.getMigrations().size(), total, "each migration runs once");
+            try (Connection conn = DriverManager.getConnection(url, "sa", "");
+                 Statement st = conn.createStatement()) {
+                assertEquals(Set.of(1, 2, 3, 4), SchemaMigrator.appliedVersions(conn));
+                st.execute("SHUTDOWN");
+            }
+        } finally {
+            workstations.shutdownNow();
+        }
+    }
+
+    @Test
+    public void picksTheScriptVariantForTheDatabase() throws Exception {
+        SchemaMigrator.Migration categoryIndex = migrator.getMigrations().get(2);
+        assertTrue(migrator.script(categoryIndex, "mysql").contains("(LOWER(category))"));
+        assertTrue(SchemaMigrator.statements(migrator.script(categoryIndex, "h2")).isEmpty());
+        try (Connection conn = freshDatabase("migrator_dialect")) {
+            assertEquals("h2", SchemaMigrator.databaseName(conn));
+        }
+    }
+
+    @Test
+    public void splitsStatementsAndSkipsComments() {
+        List<String> statements = SchemaMigrator.statements(
+                "-- a comment\nCREATE TABLE t (\n    id INT\n);\n\nCREATE INDEX i ON t (id);\n");
+        assertEquals(List.of("CREATE TABLE t (\n    id INT\n)", "CREATE INDEX i ON t (id)"), statements);
+    }
+
+    private static Connection freshDatabase(String name) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+    }
+
+    private static boolean hasIndex(Connection conn, String index) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(null, null, "loans", false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,153 @@
+package com.library.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowQueryLogTest {
+
+    private SlowQueryLog slowLog;
+    private ConnectionPool pool;
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        TestDatabase.clear("books");
+        // Every statement counts as slow, and the worst offenders are those over a minute
+        slowLog = new SlowQueryLog(1, 3, 60_000_000_000L, DatabaseConnection::openPhysicalConnection);
+        MetricsRegistry metrics = new MetricsRegistry(true, 0, 16, slowLog);
+        pool = new ConnectionPool(DatabaseConnection::openPhysicalConnection, 2, 0, 1_000, 30_000, 60_000, 0, 16, metrics);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void recordsParametersRowsAndCaller() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO books (isbn, title, author) VALUES (?, ?, ?)")) {
+                ps.setString(1, "111");
+                ps.setString(2, "Dune");
+                ps.setNull(3, java.sql.Types.VARCHAR);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("SELECT title FROM books WHERE isbn = ? OR id > ?")) {
+                ps.setString(1, "111");
+                ps.setInt(2, 0);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rs.getString(1);
+                    }
+                }
+            }
+        }
+
+        List<SlowQueryLog.Entry> recent = slowLog.getRecent();
+        assertEquals(2, recent.size());
+        SlowQueryLog.Entry query = recent.get(0);
+        assertEquals("SlowQueryLogTest.recordsParametersRowsAndCaller", query.getCaller());
+        assertEquals("['111', 0]", query.getParameters());
+        assertEquals(1, query.getRows());
+        assertNull(query.getError());
+        assertNull(query.getPlan(), "only the worst offenders are explained");
+
+        SlowQueryLog.Entry insert = recent.get(1);
+        assertTrue(insert.getSql().startsWith("INSERT INTO books"));
+        assertEquals("['111', 'Dune', NULL]", insert.getParameters());
+        assertEquals(1, insert.getRows());
+    }
+
+    @Test
+    public void recordsFailuresAndKeepsOnlyTheNewest() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO books (isbn, title) VALUES (?, ?)")) {
+            for (int i = 0; i < 3; i++) {
+                ps.setString(1, "isbn-" + i);
+                ps.setString(2, "Title " + i);
+                ps.executeUpdate();
+            }
+            ps.setString(1, "isbn-0");
+            assertThrows(SQLException.class, ps::executeUpdate);
+        }
+
+        List<SlowQueryLog.Entry> recent = slowLog.getRecent();
+        assertEquals(3, recent.size());
+        assertEquals(4, slowLog.getRecordedCount());
+        assertNotNull(recent.get(0).getError());
+        assertEquals("['isbn-0', 'Title 2']", recent.get(0).getParameters());
+        assertEquals("['isbn-1', 'Title 1']", recent.get(2).getParameters());
+
+        slowLog.clear();
+        assertTrue(slowLog.getRecent().isEmpty());
+    }
+
+    @Test
+    public void slowLoginsDoNotLogThePassword() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT id, username, password, full_name, role " +
+                     "FROM users WHERE username = ? AND password = ? AND role = ?")) {
+            ps.setString(1, "admin");
+            ps.setString(2, "s3cret-pass");
+            ps.setString(3, "LIBRARIAN");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rs.getString(1);
+                }
+            }
+        }
+
+        SlowQueryLog.Entry login = slowLog.getRecent().get(0);
+        assertTrue(login.getSql().contains("FROM users"));
+        assertFalse(login.getParameters().contains("s3cret-pass"), login.getParameters());
+        assertEquals("[<redacted>, <redacted>, <redacted>]", login.getParameters());
+        assertFalse(login.toString().contains("s3cret-pass"));
+    }
+
+    @Test
+    public void explainsTheWorstOffendersInTheBackground() throws Exception {
+        SlowQueryLog explaining = new SlowQueryLog(1, 10, 1, DatabaseConnection::openPhysicalConnection);
+        ConnectionPool explainPool = new ConnectionPool(DatabaseConnection::openPhysicalConnection, 1, 0, 1_000,
+                30_000, 60_000, 0, 16, new MetricsRegistry(true, 0, 16, explaining));
+        try (Connection conn = explainPool.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT id FROM books WHERE isbn = ?")) {
+            ps.setString(1, "111");
+            try (ResultSet rs = ps.executeQuery()) {
+                assertFalse(rs.next());
+            }
+        } finally {
+            explainPool.shutdown();
+        }
+
+        SlowQueryLog.Entry entry = explaining.getRecent().get(0);
+        assertEquals(0, entry.getRows());
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (entry.getPlan() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(entry.getPlan());
+        assertTrue(entry.getPlan().toUpperCase().contains("BOOKS"), entry.getPlan());
+    }
+
+    @Test
+    public void offWithoutAThreshold() {
+        SlowQueryLog off = new SlowQueryLog(0, 10, 0, null);
+        assertFalse(off.isEnabled());
+        assertFalse(off.isSlow(Long.MAX_VALUE - 1));
+        assertNull(new MetricsRegistry(true, 0, 16, off).parameters());
+    }
+}
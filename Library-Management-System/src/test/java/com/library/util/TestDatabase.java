@@ -0,0 +1,51 @@
+package com.library.util;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Points DatabaseConfig at an in-memory H2 database (MySQL mode) migrated to the library schema.
+ * Must run before anything touches DatabaseConfig.
+ */
+public final class TestDatabase {
+
+    // H2 would otherwise hand a re-executed prepared statement its previous result when it sees no
+    // change, and can miss a commit from another session; the pool re-executes statements all the time
+    private static final String URL = "jdbc:h2:mem:library;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;" +
+            "OPTIMIZE_REUSE_RESULTS=FALSE";
+
+    private static boolean initialized;
+
+    private TestDatabase() {}
+
+    public static synchronized void init() {
+        if (initialized) return;
+
+        System.setProperty("db.url", URL);
+        System.setProperty("db.username", "sa");
+        System.setProperty("db.password", "");
+        System.setProperty("db.pool.minIdle", "0");
+        System.setProperty("db.debug.trackLeaks", "true");
+
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "")) {
+            new SchemaMigrator().migrate(conn);
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Could not create test schema", e);
+        }
+        initialized = true;
+    }
+
+    public static void clear(String... tables) {
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "");
+             Statement st = conn.createStatement()) {
+            for (String table : tables) {
+                st.execute("DELETE FROM " + table);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
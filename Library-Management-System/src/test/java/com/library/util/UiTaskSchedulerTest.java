@@ -0,0 +1,101 @@
+package com.library.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UiTaskSchedulerTest {
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final List<Exception> errors = new CopyOnWriteArrayList<>();
+    private UiTaskScheduler scheduler;
+
+    @AfterEach
+    public void tearDown() {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    @Test
+    public void onlyLatestLoadPerKeyIsDelivered() throws Exception {
+        scheduler = new UiTaskScheduler(1, 16, Runnable::run);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+
+        // Occupies the only worker; its result is superseded while it runs
+        scheduler.submit("books", () -> {
+            started.countDown();
+            release.await();
+            return "books-1";
+        }, this::deliver, errors::add);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scheduler.submit("books", () -> "books-2", this::deliver, errors::add);
+        scheduler.submit("users", () -> "users-1", this::deliver, errors::add);
+        scheduler.submit("books", () -> "books-3", r -> { deliver(r); done.countDown(); }, errors::add);
+        scheduler.submit("users", () -> "users-2", r -> { deliver(r); done.countDown(); }, errors::add);
+        assertEquals(2, scheduler.getStats().getQueued(), "superseded loads leave the queue");
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("books-3", "users-2"), delivered);
+        assertTrue(errors.isEmpty());
+        UiTaskScheduler.Stats stats = scheduler.getStats();
+        assertEquals(5, stats.getSubmitted());
+        assertEquals(2, stats.getCompleted());
+        assertEquals(3, stats.getSuperseded());
+        assertTrue(stats.getMaxQueued() >= 2);
+    }
+
+    @Test
+    public void failuresGoToErrorHandler() throws Exception {
+        scheduler = new UiTaskScheduler(2, 16, Runnable::run);
+        CountDownLatch done = new CountDownLatch(1);
+
+        scheduler.submit("stats", () -> {
+            throw new IllegalStateException("database down");
+        }, this::deliver, e -> { errors.add(e); done.countDown(); });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(delivered.isEmpty());
+        assertEquals("database down", errors.get(0).getMessage());
+        assertEquals(1, scheduler.getStats().getFailed());
+    }
+
+    @Test
+    public void fullQueueRejectsInsteadOfSpawningThreads() throws Exception {
+        scheduler = new UiTaskScheduler(1, 1, Runnable::run);
+        CountDownLatch release = new CountDownLatch(1);
+
+        scheduler.execute("blocker", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // Wait until the blocker has left the queue for the worker
+        while (scheduler.getStats().getRunning() == 0) Thread.sleep(1);
+
+        scheduler.submit("a", () -> "a", this::deliver, errors::add);
+        scheduler.submit("b", () -> "b", this::deliver, errors::add);
+
+        assertEquals(1, scheduler.getStats().getRejected());
+        assertEquals(1, scheduler.getStats().getQueued());
+        assertEquals(1, errors.size(), "the caller hears that its load was dropped");
+        assertInstanceOf(RejectedExecutionException.class, errors.get(0));
+        release.countDown();
+    }
+
+    private void deliver(String result) {
+        delivered.add(result);
+    }
+}
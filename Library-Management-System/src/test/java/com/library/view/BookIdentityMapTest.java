@@ -0,0 +1,121 @@
+package com.library.view;
+
+import com.library.model.Book;
+import com.library.service.BookService;
+import com.library.service.CatalogCache;
+import com.library.util.JdbcLeakDetector;
+import com.library.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookIdentityMapTest {
+
+    private final BookService bookService = new BookService();
+    private final BookIdentityMap shown = new BookIdentityMap(3, 60_000);
+
+    @BeforeAll
+    public static void setUpDatabase() {
+        TestDatabase.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        TestDatabase.clear("books");
+        CatalogCache.getInstance().invalidateAll();
+        CatalogCache.getInstance().addChangeListener(shown);
+        JdbcLeakDetector.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        CatalogCache.getInstance().removeChangeListener(shown);
+        JdbcLeakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void servesShownBooksUntilTheCacheReportsAChange() {
+        Book dune = new Book("111", "Dune", "Frank Herbert", "Chilton", null, "Fiction", 2, 2);
+        Book cosmos = new Book("222", "Cosmos", "Carl Sagan", "Random House", null, "Science", 1, 1);
+        bookService.add(dune);
+        bookService.add(cosmos);
+
+        shown.putAll(bookService.findPage(0, 10, null, false), shown.getGeneration());
+        assertEquals("Dune", shown.findByIsbn("111").getTitle());
+        assertEquals("222", shown.findById(cosmos.getBookId()).getIsbn());
+
+        Book edited = new Book(dune);
+        edited.setTitle("Dune Messiah");
+        bookService.update(dune, edited);
+        assertNull(shown.findByIsbn("111"));
+        assertNotNull(shown.findByIsbn("222"));
+
+        bookService.decrementAvailableCopies(cosmos.getBookId());
+        assertNull(shown.findById(cosmos.getBookId()));
+    }
+
+    @Test
+    public void ignoresBooksReadWhileACatalogChangeLanded() {
+        Book dune = new Book("111", "Dune", "Frank Herbert", "Chilton", null, "Fiction", 2, 2);
+        bookService.add(dune);
+
+        long generation = shown.getGeneration();
+        List<Book> page = bookService.findPage(0, 10, null, false);
+        bookService.deleteById(dune.getBookId());
+        shown.putAll(page, generation);
+
+        assertNull(shown.findByIsbn("111"));
+        assertEquals(0, shown.size());
+    }
+
+    @Test
+    public void changesToOtherBooksDoNotDiscardTheRestOfThePage() {
+        Book dune = new Book("111", "Dune", "Frank Herbert", "Chilton", null, "Fiction", 2, 2);
+        Book cosmos = new Book("222", "Cosmos", "Carl Sagan", "Random House", null, "Science", 1, 1);
+        bookService.add(dune);
+        bookService.add(cosmos);
+
+        long generation = shown.getGeneration();
+        List<Book> page = bookService.findPage(0, 10, null, false);
+        // Another desk issues a copy while the page loads
+        bookService.decrementAvailableCopies(cosmos.getBookId());
+        shown.putAll(page, generation);
+
+        assertNotNull(shown.findByIsbn("111"));
+        assertNull(shown.findByIsbn("222"), "the stale copy count must not be kept");
+
+        generation = shown.getGeneration();
+        CatalogCache.getInstance().invalidateAll();
+        shown.putAll(page, generation);
+        assertEquals(0, shown.size());
+    }
+
+    @Test
+    public void invalidationClearsEverythingAndSizeIsBounded() {
+        List<Book> books = Arrays.asList(book(1), book(2), book(3), book(4));
+        shown.putAll(books, shown.getGeneration());
+        assertEquals(3, shown.size());
+        assertNull(shown.findById(1));
+        assertNotNull(shown.findByIsbn("isbn-4"));
+
+        CatalogCache.getInstance().invalidateAll();
+        assertEquals(0, shown.size());
+
+        BookIdentityMap expired = new BookIdentityMap(10, 0);
+        expired.putAll(Collections.singletonList(book(5)), expired.getGeneration());
+        assertNull(expired.findById(5));
+    }
+
+    private static Book book(int id) {
+        Book book = new Book("isbn-" + id, "Title " + id, "Author", "Pub", null, "Fiction", 1, 1);
+        book.setBookId(id);
+        return book;
+    }
+}
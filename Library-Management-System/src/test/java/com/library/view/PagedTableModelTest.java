@@ -0,0 +1,135 @@
+package com.library.view;
+
+import com.library.util.UiTaskScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PagedTableModelTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_PAGES = 3;
+
+    // Stands in for the EDT: results queue up here and the test thread runs them
+    private final BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final List<Integer> keys = new ArrayList<>();
+    private UiTaskScheduler scheduler;
+    private PagedTableModel model;
+
+    @BeforeEach
+    public void setUp() {
+        for (int key = 1; key <= 95; key++) keys.add(key * 2);
+        scheduler = new UiTaskScheduler(1, 64, callbacks::add);
+        model = new PagedTableModel(new String[]{"Key", "Label"}, PAGE_SIZE, MAX_PAGES, scheduler, "test");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void growsAsRowsComeIntoViewAndKeepsABoundedWindow() throws InterruptedException {
+        showKeys();
+        assertEquals(PAGE_SIZE, model.getRowCount());
+        assertEquals(2, model.getValueAt(0, 0));
+
+        // Scrolling to the bottom of what is known fetches the next page
+        for (int page = 1; page < 10; page++) {
+            model.getValueAt(model.getRowCount() - 1, 0);
+            runCallbacks();
+        }
+        model.getValueAt(model.getRowCount() - 1, 0);
+        assertEquals(95, model.getRowCount());
+        assertEquals(190, model.getValueAt(94, 0));
+        assertTrue(model.getLoadedRowCount() <= MAX_PAGES * PAGE_SIZE, "rows in memory: " + model.getLoadedRowCount());
+
+        // Scrolling back refetches an evicted page by its key range
+        assertFalse(model.isRowLoaded(0));
+        assertEquals(PagedTableModel.LOADING, model.getValueAt(0, 0));
+        runCallbacks();
+        assertTrue(model.isRowLoaded(0));
+        assertEquals(2, model.getValueAt(0, 0));
+        assertEquals("item 20", model.getValueAt(9, 1));
+    }
+
+    @Test
+    public void removedRowStaysGoneWhenPageIsFetchedAgain() throws InterruptedException {
+        showKeys();
+        model.getValueAt(PAGE_SIZE - 1, 0);
+        runCallbacks();
+        assertEquals(2 * PAGE_SIZE, model.getRowCount());
+
+        keys.remove(Integer.valueOf(6));
+        model.removeRow(2);
+        assertEquals(2 * PAGE_SIZE - 1, model.getRowCount());
+        assertEquals(8, model.getValueAt(2, 0));
+        assertEquals(22, model.getValueAt(PAGE_SIZE - 1, 0), "rows of later pages move up");
+
+        // Scroll far enough for the first page to be evicted, then back
+        for (int page = 2; page <= MAX_PAGES + 1; page++) {
+            model.getValueAt(model.getRowCount() - 1, 0);
+            runCallbacks();
+        }
+        assertFalse(model.isRowLoaded(0));
+        assertFalse(model.isRowLoaded(PAGE_SIZE - 1));
+        model.getValueAt(0, 0);
+        model.getValueAt(PAGE_SIZE - 1, 0);
+        runCallbacks();
+
+        // Only the first page's key range is fetched again, so nothing from page two repeats
+        assertEquals(8, model.getValueAt(2, 0));
+        assertEquals(20, model.getValueAt(PAGE_SIZE - 2, 0));
+        assertEquals(22, model.getValueAt(PAGE_SIZE - 1, 0));
+    }
+
+    @Test
+    public void fixedRowsBehaveLikeAPlainTable() {
+        model.setRows(new Object[][]{{1, "a"}, {2, "b"}});
+        model.addRow(new Object[]{3, "c"});
+        model.removeRow(0);
+        assertEquals(2, model.getRowCount());
+        assertEquals("b", model.getValueAt(0, 1));
+        assertFalse(model.isPaged());
+        assertEquals(0, fetches.get());
+    }
+
+    private void showKeys() throws InterruptedException {
+        model.setSource((afterKey, limit) -> {
+            fetches.incrementAndGet();
+            List<Integer> page = new ArrayList<>();
+            for (int key : new ArrayList<>(keys)) {
+                if (key > afterKey && page.size() < limit) page.add(key);
+            }
+            return page;
+        }, key -> new Object[]{key, "item " + key}, key -> key);
+        runCallbacks();
+    }
+
+    /**
+     * Runs delivered results until no fetch is outstanding.
+     */
+    private void runCallbacks() throws InterruptedException {
+        while (outstanding() > 0) {
+            Runnable callback = callbacks.poll(5, TimeUnit.SECONDS);
+            assertNotNull(callback, "a page fetch never completed");
+            callback.run();
+        }
+    }
+
+    private long outstanding() {
+        UiTaskScheduler.Stats stats = scheduler.getStats();
+        return stats.getSubmitted() - stats.getCompleted() - stats.getFailed()
+                - stats.getSuperseded() - stats.getRejected();
+    }
+}